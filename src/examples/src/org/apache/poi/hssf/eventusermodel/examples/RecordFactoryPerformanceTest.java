@@ -0,0 +1,135 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.eventusermodel.examples;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactory;
+import org.apache.poi.hssf.record.RecordInputStream;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.IOUtils;
+
+/**
+ * Measures how fast the records of .xls files are created, by {@link RecordFactory} and,
+ *  for comparison, by looking up and calling the record constructors through reflection
+ *  as RecordFactory used to.
+ * <p>
+ * The Workbook streams are read into memory first, so only record creation is timed.
+ *  Each file is read a number of times to warm up, and then timed over the given number
+ *  of passes.
+ * </p>
+ * Usage: RecordFactoryPerformanceTest &lt;passes&gt; &lt;file.xls&gt; [&lt;file.xls&gt; ...]
+ */
+public class RecordFactoryPerformanceTest {
+    private static final int WARMUP_PASSES = 5;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: RecordFactoryPerformanceTest <passes> <file.xls> [<file.xls> ...]");
+            System.exit(1);
+        }
+        int passes = Integer.parseInt(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            byte[] workbook = readWorkbookStream(args[i]);
+            int records = 0;
+            for (int p = 0; p < WARMUP_PASSES; p++) {
+                records = createRecords(workbook);
+                createRecordsReflectively(workbook);
+            }
+
+            long start = System.nanoTime();
+            for (int p = 0; p < passes; p++) {
+                createRecords(workbook);
+            }
+            long direct = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int p = 0; p < passes; p++) {
+                createRecordsReflectively(workbook);
+            }
+            long reflective = System.nanoTime() - start;
+
+            System.out.println(args[i] + ": " + records + " records, "
+                    + format(direct, passes) + " ms per pass (" + format(reflective, passes)
+                    + " ms through reflection)");
+        }
+    }
+
+    private static byte[] readWorkbookStream(String file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            POIFSFileSystem fs = new POIFSFileSystem(is);
+            return IOUtils.toByteArray(fs.createDocumentInputStream("Workbook"));
+        } finally {
+            is.close();
+        }
+    }
+
+    private static int createRecords(byte[] workbook) {
+        RecordInputStream in = new RecordInputStream(new ByteArrayInputStream(workbook));
+        int count = 0;
+        while (in.hasNextRecord()) {
+            in.nextRecord();
+            RecordFactory.createSingleRecord(in);
+            count++;
+        }
+        return count;
+    }
+
+    private static final Map<Integer, Constructor<? extends Record>> _constructors =
+            new HashMap<Integer, Constructor<? extends Record>>();
+
+    private static int createRecordsReflectively(byte[] workbook) throws Exception {
+        RecordInputStream in = new RecordInputStream(new ByteArrayInputStream(workbook));
+        int count = 0;
+        while (in.hasNextRecord()) {
+            in.nextRecord();
+            Integer sid = Integer.valueOf(in.getSid());
+            Constructor<? extends Record> c = _constructors.get(sid);
+            if (c == null && !_constructors.containsKey(sid)) {
+                Class<? extends Record> recClass = RecordFactory.getRecordClass(in.getSid());
+                if (recClass != null) {
+                    try {
+                        c = recClass.getConstructor(RecordInputStream.class);
+                    } catch (NoSuchMethodException e) {
+                        // created by a static method, not worth comparing
+                    }
+                }
+                _constructors.put(sid, c);
+            }
+            if (c == null) {
+                RecordFactory.createSingleRecord(in);
+            } else {
+                c.newInstance(in);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static String format(long nanos, int passes) {
+        return String.valueOf(Math.round(nanos / 1000.0 / passes) / 1000.0);
+    }
+}
@@ -17,10 +17,6 @@
 
 package org.apache.poi.ddf;
 
-import java.lang.reflect.Constructor;
-import java.util.HashMap;
-import java.util.Map;
-
 import org.apache.poi.util.LittleEndian;
 
 /**
@@ -32,15 +28,6 @@ import org.apache.poi.util.LittleEndian;
  * @see EscherRecordFactory
  */
 public class DefaultEscherRecordFactory implements EscherRecordFactory {
-    private static Class<?>[] escherRecordClasses = { EscherBSERecord.class,
-            EscherOptRecord.class, EscherTertiaryOptRecord.class,
-            EscherClientAnchorRecord.class, EscherDgRecord.class,
-            EscherSpgrRecord.class, EscherSpRecord.class,
-            EscherClientDataRecord.class, EscherDggRecord.class,
-            EscherSplitMenuColorsRecord.class, EscherChildAnchorRecord.class,
-            EscherTextboxRecord.class };
-    private static Map<Short, Constructor<? extends EscherRecord>> recordsMap = recordsToMap( escherRecordClasses );
-
     /**
      * Creates an instance of the escher record factory
      */
@@ -94,57 +81,28 @@ public class DefaultEscherRecordFactory implements EscherRecordFactory {
             return r;
         }
 
-        Constructor<? extends EscherRecord> recordConstructor = recordsMap.get(Short.valueOf(recordId));
-        EscherRecord escherRecord = null;
-        if (recordConstructor == null) {
-            return new UnknownEscherRecord();
-        }
-        try {
-            escherRecord = recordConstructor.newInstance(new Object[] {});
-        } catch (Exception e) {
-            return new UnknownEscherRecord();
+        EscherRecord escherRecord;
+        switch (recordId) {
+            case EscherBSERecord.RECORD_ID: escherRecord = new EscherBSERecord(); break;
+            case EscherOptRecord.RECORD_ID: escherRecord = new EscherOptRecord(); break;
+            case EscherTertiaryOptRecord.RECORD_ID: escherRecord = new EscherTertiaryOptRecord(); break;
+            case EscherClientAnchorRecord.RECORD_ID: escherRecord = new EscherClientAnchorRecord(); break;
+            case EscherDgRecord.RECORD_ID: escherRecord = new EscherDgRecord(); break;
+            case EscherSpgrRecord.RECORD_ID: escherRecord = new EscherSpgrRecord(); break;
+            case EscherSpRecord.RECORD_ID: escherRecord = new EscherSpRecord(); break;
+            case EscherClientDataRecord.RECORD_ID: escherRecord = new EscherClientDataRecord(); break;
+            case EscherDggRecord.RECORD_ID: escherRecord = new EscherDggRecord(); break;
+            case EscherSplitMenuColorsRecord.RECORD_ID: escherRecord = new EscherSplitMenuColorsRecord(); break;
+            case EscherChildAnchorRecord.RECORD_ID: escherRecord = new EscherChildAnchorRecord(); break;
+            case EscherTextboxRecord.RECORD_ID: escherRecord = new EscherTextboxRecord(); break;
+            default:
+                return new UnknownEscherRecord();
         }
         escherRecord.setRecordId(recordId);
         escherRecord.setOptions(options);
         return escherRecord;
     }
 
-    /**
-     * Converts from a list of classes into a map that contains the record id as the key and
-     * the Constructor in the value part of the map.  It does this by using reflection to look up
-     * the RECORD_ID field then using reflection again to find a reference to the constructor.
-     *
-     * @param recClasses The records to convert
-     * @return The map containing the id/constructor pairs.
-     */
-    private static Map<Short, Constructor<? extends EscherRecord>> recordsToMap(Class<?>[] recClasses) {
-        Map<Short, Constructor<? extends EscherRecord>> result = new HashMap<Short, Constructor<? extends EscherRecord>>();
-        final Class<?>[] EMPTY_CLASS_ARRAY = new Class[0];
-
-        for (int i = 0; i < recClasses.length; i++) {
-            @SuppressWarnings("unchecked")
-            Class<? extends EscherRecord> recCls = (Class<? extends EscherRecord>) recClasses[i];
-            short sid;
-            try {
-                sid = recCls.getField("RECORD_ID").getShort(null);
-            } catch (IllegalArgumentException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            } catch (NoSuchFieldException e) {
-                throw new RuntimeException(e);
-            }
-            Constructor<? extends EscherRecord> constructor;
-            try {
-                constructor = recCls.getConstructor( EMPTY_CLASS_ARRAY );
-            } catch (NoSuchMethodException e) {
-                throw new RuntimeException(e);
-            }
-            result.put(Short.valueOf(sid), constructor);
-        }
-        return result;
-    }
-
     public static boolean isContainer(short options, short recordId){
         if(recordId >= EscherContainerRecord.DGG_CONTAINER &&  recordId
                 <= EscherContainerRecord.SOLVER_CONTAINER){
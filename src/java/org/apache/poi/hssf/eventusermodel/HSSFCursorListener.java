@@ -0,0 +1,38 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.eventusermodel;
+
+/**
+ * Interface for use with the HSSFRequest and HSSFEventFactory, for listeners which
+ * read the records they are interested in straight from their data, instead of having
+ * a Record object created for every record.  Register it with the HSSFRequest for the
+ * Record SID's of interest.
+ *
+ * @see org.apache.poi.hssf.eventusermodel.HSSFEventFactory
+ * @see org.apache.poi.hssf.eventusermodel.HSSFRequest#addCursorListener(HSSFCursorListener, short)
+ */
+public interface HSSFCursorListener {
+
+    /**
+     * process an HSSF record. Called when a record occurs in an HSSF file.
+     *
+     * @param cursor a view of the record, only valid until this method returns.
+     *  The same cursor is passed for every record.
+     */
+    public void processRecord(HSSFRecordCursor cursor);
+}
@@ -19,6 +19,12 @@ package org.apache.poi.hssf.eventusermodel;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.poi.hssf.eventusermodel.HSSFUserException;
 import org.apache.poi.hssf.record.*;
@@ -32,7 +38,10 @@ import org.apache.poi.poifs.filesystem.POIFSFileSystem;
  *
  * This will cause your file to be processed a record at a time.  Each record with
  * a static id matching one that you have registered in your HSSFRequest will be passed
- * to your associated HSSFListener.
+ * to your associated HSSFListener.  Records no listener is registered for are
+ * skipped without being decoded, and records registered with an
+ * {@link HSSFCursorListener} are read through a reusable {@link HSSFRecordCursor}
+ * instead of being created as Record objects.
  *
  * @author Andrew C. Oliver (acoliver at apache dot org)
  * @author Carey Sublette  (careysub@earthling.net)
@@ -123,6 +132,117 @@ public class HSSFEventFactory {
 		return genericProcessEvents(req, in);
 	}
 
+	/**
+	 * Processes a file into essentially record events, the sheets concurrently.
+	 * <p>
+	 * The records of the workbook globals are passed to the listeners of <code>req</code>
+	 * first, on the calling thread.  Then the records of every sheet, from its BOF record
+	 * to the matching EOF record, are read from the position given by its BoundSheet record
+	 * by a task on the supplied executor, through a stream of its own, and passed to the
+	 * listeners of the request <code>sheetRequests</code> creates for the sheet.  The
+	 * records of any one sheet arrive in order on one thread, but the sheets are processed
+	 * at the same time, so listeners shared between the requests must be thread-safe.
+	 * </p>
+	 * <p>
+	 * A halt by an <code>AbortableHSSFListener</code> of the globals stops all processing,
+	 * one by a listener of a sheet only stops processing that sheet.  Encrypted workbooks
+	 * are processed sequentially on the calling thread, still with a request per sheet.
+	 * </p>
+	 *
+	 * @param req an Instance of HSSFRequest which has your registered listeners for the
+	 *  workbook globals
+	 * @param sheetRequests creates the requests for the sheets, called on the calling thread
+	 * @param dir  a DirectoryNode containing your workbook
+	 * @param executor runs the tasks processing the sheets
+	 */
+	public void processWorkbookEvents(HSSFRequest req, HSSFSheetRequestFactory sheetRequests,
+			final DirectoryNode dir, ExecutorService executor) throws IOException {
+		List<BoundSheetRecord> boundSheets = new ArrayList<BoundSheetRecord>();
+		RecordFactoryInputStream recordStream = new RecordFactoryInputStream(
+				dir.createDocumentInputStream("Workbook"), false);
+		try {
+			if (processRecords(req, recordStream, true, boundSheets) != 0) {
+				return;
+			}
+			if (recordStream.isEncrypted()) {
+				// decryption depends on the stream position, so stay on this stream
+				for (int i = 0; i < boundSheets.size(); i++) {
+					processRecords(sheetRequests.createRequest(i, boundSheets.get(i)),
+							recordStream, true, null);
+				}
+				return;
+			}
+		} catch (HSSFUserException hue) {
+			/*If an HSSFUserException user exception is thrown, ignore it.*/
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(boundSheets.size());
+		for (int i = 0; i < boundSheets.size(); i++) {
+			final HSSFRequest sheetReq = sheetRequests.createRequest(i, boundSheets.get(i));
+			final int bofPosition = boundSheets.get(i).getPositionOfBof();
+			futures.add(executor.submit(new Callable<Void>() {
+				public Void call() throws IOException {
+					InputStream in = openSheetStream(dir, bofPosition);
+					try {
+						processRecords(sheetReq, new RecordFactoryInputStream(in, false), true, null);
+					} catch (HSSFUserException hue) {
+						/*If an HSSFUserException user exception is thrown, ignore it.*/
+					} finally {
+						in.close();
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				cancelAll(futures);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				cancelAll(futures);
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	private static void cancelAll(List<Future<Void>> futures) {
+		for (Future<Void> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Opens the Workbook stream at the BOF record of a sheet
+	 */
+	private static InputStream openSheetStream(DirectoryNode dir, int bofPosition) throws IOException {
+		InputStream in = dir.createDocumentInputStream("Workbook");
+		long toSkip = bofPosition;
+		while (toSkip > 0) {
+			long skipped = in.skip(toSkip);
+			if (skipped <= 0) {
+				in.close();
+				throw new RecordFormatException("Sheet BOF position " + bofPosition
+						+ " is past the end of the workbook stream");
+			}
+			toSkip -= skipped;
+		}
+		return in;
+	}
+
 	/**
 	 * Processes a DocumentInputStream into essentially Record events.
 	 *
@@ -133,20 +253,75 @@ public class HSSFEventFactory {
 	 */
 	private short genericProcessEvents(HSSFRequest req, InputStream in)
 		throws HSSFUserException {
-		short userCode = 0;
-
 		// Create a new RecordStream and use that
 		RecordFactoryInputStream recordStream = new RecordFactoryInputStream(in, false);
+		return processRecords(req, recordStream, false, null);
+	}
+
+	/**
+	 * Passes the records of the stream to the listeners of the request.
+	 *
+	 * @param substream whether to stop at the EOF record matching the first BOF record,
+	 *  i.e. only process the workbook globals or a sheet
+	 * @param boundSheets if not <code>null</code>, collects the BoundSheet records,
+	 *  whether they are listened for or not
+	 * @return    numeric user-specified result code.
+	 */
+	private static short processRecords(HSSFRequest req, RecordFactoryInputStream recordStream,
+			boolean substream, List<BoundSheetRecord> boundSheets) throws HSSFUserException {
+		short userCode = 0;
+		boolean[] decodedSids = req.getDecodedSids();
+		boolean[] cursorSids = req.getCursorSids();
+		HSSFRecordCursor cursor = new HSSFRecordCursor();
 
-		// Process each record as they come in
-		while(true) {
-			Record r = recordStream.nextRecord();
+		// Process each record as they come in, only creating the ones listened for
+		boolean lastDecoded = false;
+		int bofDepth = 0;
+		boolean ended = false;
+		int sid;
+		while(!ended && (sid = recordStream.nextSid()) != -1) {
+			if (substream) {
+				if (sid == BOFRecord.sid) {
+					bofDepth++;
+				} else if (sid == EOFRecord.sid) {
+					ended = --bofDepth <= 0;
+				}
+			}
+			if (cursorSids[sid & 0xFFFF]) {
+				if (recordStream.isRecordDecoded()) {
+					cursor.load(recordStream.decodeRecord());
+				} else {
+					cursor.load(recordStream.getRecordInputStream());
+					recordStream.skipRecord();
+				}
+				req.processRecord(cursor);
+				lastDecoded = false;
+				continue;
+			}
+			boolean decode = decodedSids[sid & 0xFFFF];
+			if (sid == ContinueRecord.sid) {
+				// continue records may belong to the record before
+				decode |= lastDecoded;
+			} else {
+				lastDecoded = decode;
+			}
+			boolean collect = boundSheets != null && sid == BoundSheetRecord.sid;
+			if (!decode && !collect) {
+				recordStream.skipRecord();
+				continue;
+			}
+			Record r = recordStream.decodeRecord();
 			if(r == null) {
-				break;
+				continue;
+			}
+			if (collect) {
+				boundSheets.add((BoundSheetRecord)r);
 			}
-			userCode = req.processRecord(r);
-			if (userCode != 0) {
-				break;
+			if (decode) {
+				userCode = req.processRecord(r);
+				if (userCode != 0) {
+					break;
+				}
 			}
 		}
 
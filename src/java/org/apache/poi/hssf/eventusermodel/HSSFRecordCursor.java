@@ -0,0 +1,253 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.eventusermodel;
+
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFormatException;
+import org.apache.poi.hssf.record.RecordInputStream;
+import org.apache.poi.hssf.util.RKUtil;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.util.LittleEndian;
+
+/**
+ * A reusable view of the current record, passed to {@link HSSFCursorListener}s.
+ * <p>
+ * The data of the record is copied into a buffer which is reused for every record, and
+ * only decoded as far as the accessors called need, so reading a file this way creates
+ * next to no garbage.  Besides raw access to the data by offset, there are typed accessors
+ * for the usual cell value records, NUMBER, RK, MULRK, LABELSST and FORMULA.  Only the
+ * data of the record itself is available, not that of any {@link org.apache.poi.hssf.record.ContinueRecord}s
+ * following it.
+ * </p>
+ * <p>
+ * The cursor is only valid while it is being passed to a listener, keep the values needed
+ * rather than the cursor.
+ * </p>
+ */
+public final class HSSFRecordCursor {
+	private static final int FORMULA_VALUE_OFFSET = 6;
+
+	private short _sid;
+	private int _dataSize;
+	private byte[] _data = new byte[RecordInputStream.MAX_RECORD_DATA_SIZE];
+
+	HSSFRecordCursor() {
+		// only created by HSSFEventFactory
+	}
+
+	/**
+	 * Reads the data of the current record of the stream
+	 */
+	void load(RecordInputStream in) {
+		_sid = in.getSid();
+		_dataSize = in.remaining();
+		in.readFully(_data, 0, _dataSize);
+	}
+
+	/**
+	 * Takes the data of a record which has already been created, e.g. the first
+	 *  records of the stream
+	 */
+	void load(Record record) {
+		byte[] bytes = record.serialize();
+		_sid = record.getSid();
+		_dataSize = bytes.length - 4;
+		if (_dataSize > _data.length) {
+			_data = new byte[_dataSize];
+		}
+		System.arraycopy(bytes, 4, _data, 0, _dataSize);
+	}
+
+	/**
+	 * @return the sid of the record, e.g. {@link NumberRecord#sid}
+	 */
+	public short getSid() {
+		return _sid;
+	}
+
+	/**
+	 * @return the size of the data of the record, excluding the 4 byte record header
+	 */
+	public int getDataSize() {
+		return _dataSize;
+	}
+
+	/**
+	 * Copies the data of the record, excluding the record header
+	 */
+	public void getData(byte[] dst, int dstOffset) {
+		System.arraycopy(_data, 0, dst, dstOffset, _dataSize);
+	}
+
+	public byte getByte(int offset) {
+		checkOffset(offset, LittleEndian.BYTE_SIZE);
+		return _data[offset];
+	}
+
+	public int getUShort(int offset) {
+		checkOffset(offset, LittleEndian.SHORT_SIZE);
+		return LittleEndian.getUShort(_data, offset);
+	}
+
+	public int getInt(int offset) {
+		checkOffset(offset, LittleEndian.INT_SIZE);
+		return LittleEndian.getInt(_data, offset);
+	}
+
+	public double getDouble(int offset) {
+		checkOffset(offset, LittleEndian.DOUBLE_SIZE);
+		return LittleEndian.getDouble(_data, offset);
+	}
+
+	private void checkOffset(int offset, int size) {
+		if (offset < 0 || offset + size > _dataSize) {
+			throw new RecordFormatException("Can not read " + size + " bytes at " + offset
+					+ " from record 0x" + Integer.toHexString(_sid & 0xFFFF)
+					+ " of " + _dataSize + " bytes");
+		}
+	}
+
+	/**
+	 * @return the (0 based) row of a cell record, e.g. NUMBER, RK, MULRK, LABELSST or FORMULA
+	 */
+	public int getRow() {
+		return getUShort(0);
+	}
+
+	/**
+	 * @return the (0 based) column of a cell record, the first column for a MULRK
+	 */
+	public int getColumn() {
+		return getUShort(2);
+	}
+
+	/**
+	 * @return the index of the extended format of a cell record, of the first cell for a MULRK
+	 */
+	public int getXFIndex() {
+		return getUShort(4);
+	}
+
+	/**
+	 * @return the value of a NUMBER or RK record, or the cached value of a FORMULA record
+	 *  with a numeric result
+	 */
+	public double getNumberValue() {
+		switch (_sid) {
+			case NumberRecord.sid:
+			case FormulaRecord.sid:
+				return getDouble(6);
+			case RKRecord.sid:
+				return RKUtil.decodeNumber(getInt(6));
+		}
+		throw new IllegalStateException("Not a number record: 0x" + Integer.toHexString(_sid & 0xFFFF));
+	}
+
+	/**
+	 * @return the index into the shared strings table of a LABELSST record
+	 */
+	public int getSSTIndex() {
+		checkSid(LabelSSTRecord.sid);
+		return getInt(6);
+	}
+
+	/**
+	 * @return the number of cells of a MULRK record
+	 */
+	public int getMulRKCount() {
+		checkSid(MulRKRecord.sid);
+		return (_dataSize - 6) / 6;
+	}
+
+	/**
+	 * @return the last column of a MULRK record
+	 */
+	public int getMulRKLastColumn() {
+		checkSid(MulRKRecord.sid);
+		return getUShort(_dataSize - 2);
+	}
+
+	/**
+	 * @param index the cell of the MULRK record, from 0 to {@link #getMulRKCount()} - 1
+	 */
+	public int getMulRKXFIndex(int index) {
+		checkSid(MulRKRecord.sid);
+		return getUShort(4 + index * 6);
+	}
+
+	/**
+	 * @param index the cell of the MULRK record, from 0 to {@link #getMulRKCount()} - 1
+	 */
+	public double getMulRKNumberValue(int index) {
+		checkSid(MulRKRecord.sid);
+		return RKUtil.decodeNumber(getInt(6 + index * 6));
+	}
+
+	/**
+	 * @return the type of the cached result of a FORMULA record, as for
+	 *  {@link FormulaRecord#getCachedResultType()}.  The value of a string result
+	 *  follows in a {@link org.apache.poi.hssf.record.StringRecord}
+	 */
+	public int getCachedResultType() {
+		checkSid(FormulaRecord.sid);
+		if (!isSpecialCachedValue()) {
+			return Cell.CELL_TYPE_NUMERIC;
+		}
+		int typeCode = getByte(FORMULA_VALUE_OFFSET);
+		switch (typeCode) {
+			case 0: return Cell.CELL_TYPE_STRING;
+			case 1: return Cell.CELL_TYPE_BOOLEAN;
+			case 2: return Cell.CELL_TYPE_ERROR;
+			case 3: return Cell.CELL_TYPE_STRING; // empty string
+		}
+		throw new IllegalStateException("Unexpected type id (" + typeCode + ")");
+	}
+
+	public boolean getCachedBooleanValue() {
+		if (getCachedResultType() != Cell.CELL_TYPE_BOOLEAN) {
+			throw new IllegalStateException("Not a boolean cached value");
+		}
+		return getByte(FORMULA_VALUE_OFFSET + 2) != 0;
+	}
+
+	public int getCachedErrorValue() {
+		if (getCachedResultType() != Cell.CELL_TYPE_ERROR) {
+			throw new IllegalStateException("Not an error cached value");
+		}
+		return getByte(FORMULA_VALUE_OFFSET + 2);
+	}
+
+	/**
+	 * The top two bytes of the value are set for results other than numbers
+	 */
+	private boolean isSpecialCachedValue() {
+		return getUShort(FORMULA_VALUE_OFFSET + 6) == 0xFFFF;
+	}
+
+	private void checkSid(short sid) {
+		if (_sid != sid) {
+			throw new IllegalStateException("Expected record 0x" + Integer.toHexString(sid & 0xFFFF)
+					+ " but was 0x" + Integer.toHexString(_sid & 0xFFFF));
+		}
+	}
+}
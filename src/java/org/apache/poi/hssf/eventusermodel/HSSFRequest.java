@@ -22,8 +22,17 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 
+import org.apache.poi.hssf.record.ContinueRecord;
+import org.apache.poi.hssf.record.DrawingGroupRecord;
+import org.apache.poi.hssf.record.DrawingRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.ObjRecord;
+import org.apache.poi.hssf.record.RKRecord;
 import org.apache.poi.hssf.record.Record;
 import org.apache.poi.hssf.record.RecordFactory;
+import org.apache.poi.hssf.record.TextObjectRecord;
 
 /**
  * An HSSFRequest object should be constructed registering an instance or multiple
@@ -37,6 +46,9 @@ import org.apache.poi.hssf.record.RecordFactory;
  */
 public class HSSFRequest {
 	private final Map<Short, List<HSSFListener>> _records;
+	/** sids with cursor listeners, and their listeners, looked up without boxing the sids */
+	private short[] _cursorSids = new short[0];
+	private HSSFCursorListener[][] _cursorListeners = new HSSFCursorListener[0][];
 
 	/** Creates a new instance of HSSFRequest */
 	public HSSFRequest() {
@@ -84,6 +96,108 @@ public class HSSFRequest {
 		}
 	}
 
+	/**
+	 * add a listener which reads a particular record type through a {@link HSSFRecordCursor},
+	 * without a Record object being created for it.  Records no listener is registered for
+	 * are skipped without being decoded, so listening with cursors for the cell records, and
+	 * for little else, makes reading a file much cheaper.
+	 * <p>
+	 * Records with a cursor listener are not passed to the {@link HSSFListener}s registered
+	 * for the same sid.  Note that HSSFListeners receive RK and MULRK records converted to
+	 * NUMBER records, while cursor listeners receive them as they are in the file, so should
+	 * be registered for {@link org.apache.poi.hssf.record.RKRecord#sid} and
+	 * {@link org.apache.poi.hssf.record.MulRKRecord#sid} as well as
+	 * {@link org.apache.poi.hssf.record.NumberRecord#sid}.
+	 * </p>
+	 *
+	 * @param lsnr for the event
+	 * @param sid identifier for the record type
+	 */
+	public void addCursorListener(HSSFCursorListener lsnr, short sid) {
+		for (int i = 0; i < _cursorSids.length; i++) {
+			if (_cursorSids[i] == sid) {
+				HSSFCursorListener[] listeners = new HSSFCursorListener[_cursorListeners[i].length + 1];
+				System.arraycopy(_cursorListeners[i], 0, listeners, 0, _cursorListeners[i].length);
+				listeners[listeners.length - 1] = lsnr;
+				_cursorListeners[i] = listeners;
+				return;
+			}
+		}
+		short[] sids = new short[_cursorSids.length + 1];
+		System.arraycopy(_cursorSids, 0, sids, 0, _cursorSids.length);
+		sids[_cursorSids.length] = sid;
+		HSSFCursorListener[][] listeners = new HSSFCursorListener[sids.length][];
+		System.arraycopy(_cursorListeners, 0, listeners, 0, _cursorListeners.length);
+		listeners[_cursorListeners.length] = new HSSFCursorListener[] { lsnr };
+		_cursorSids = sids;
+		_cursorListeners = listeners;
+	}
+
+	/**
+	 * @return the sids with cursor listeners, indexed by <tt>sid &amp; 0xFFFF</tt>
+	 */
+	boolean[] getCursorSids() {
+		boolean[] result = new boolean[0x10000];
+		for (int i = 0; i < _cursorSids.length; i++) {
+			result[_cursorSids[i] & 0xFFFF] = true;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the sids of the records which need to be created to be passed to the
+	 *  HSSFListeners, indexed by <tt>sid &amp; 0xFFFF</tt>
+	 */
+	boolean[] getDecodedSids() {
+		boolean[] result = new boolean[0x10000];
+		for (Short sid : _records.keySet()) {
+			result[sid.intValue() & 0xFFFF] = true;
+		}
+		// records converted to the ones listened for
+		if (result[NumberRecord.sid]) {
+			result[RKRecord.sid] = true;
+			result[MulRKRecord.sid] = true;
+		}
+		// records which swallow the continue records following them
+		if (result[DrawingRecord.sid] || result[ContinueRecord.sid]) {
+			result[ObjRecord.sid] = true;
+			result[TextObjectRecord.sid] = true;
+		}
+		if (result[ContinueRecord.sid]) {
+			result[DrawingGroupRecord.sid] = true;
+			// records whose continue records are passed on as they are, which
+			//  would otherwise be skipped along with the record they follow
+			result[DrawingRecord.sid] = true;
+			result[EOFRecord.sid] = true;
+			for (int sid = 0; sid < result.length; sid++) {
+				if (RecordFactory.getRecordClass(sid) == null) {
+					result[sid] = true;
+				}
+			}
+		}
+		for (int i = 0; i < _cursorSids.length; i++) {
+			result[_cursorSids[i] & 0xFFFF] = false;
+		}
+		return result;
+	}
+
+	/**
+	 * Called by HSSFEventFactory, passes the cursor to each cursor listener associated
+	 * with its sid.
+	 */
+	protected void processRecord(HSSFRecordCursor cursor) {
+		short sid = cursor.getSid();
+		for (int i = 0; i < _cursorSids.length; i++) {
+			if (_cursorSids[i] == sid) {
+				HSSFCursorListener[] listeners = _cursorListeners[i];
+				for (int k = 0; k < listeners.length; k++) {
+					listeners[k].processRecord(cursor);
+				}
+				return;
+			}
+		}
+	}
+
 	/**
 	 * Called by HSSFEventFactory, passes the Record to each listener associated with
 	 * a record.sid.
@@ -0,0 +1,38 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.eventusermodel;
+
+import org.apache.poi.hssf.record.BoundSheetRecord;
+
+/**
+ * Creates the HSSFRequest for each sheet of a workbook processed with the sheets in
+ * parallel, so that every sheet can have listeners of its own.
+ *
+ * @see org.apache.poi.hssf.eventusermodel.HSSFEventFactory#processWorkbookEvents(HSSFRequest, HSSFSheetRequestFactory, org.apache.poi.poifs.filesystem.DirectoryNode, java.util.concurrent.ExecutorService)
+ */
+public interface HSSFSheetRequestFactory {
+
+    /**
+     * Called on the thread processing the workbook, before the sheet is processed.
+     *
+     * @param sheetIndex the (0 based) index of the sheet, in the order of the BoundSheet records
+     * @param boundSheet the BoundSheet record of the sheet, with its name
+     * @return the request with the listeners for the records of the sheet
+     */
+    public HSSFRequest createRequest(int sheetIndex, BoundSheetRecord boundSheet);
+}
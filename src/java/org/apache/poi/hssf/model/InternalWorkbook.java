@@ -19,6 +19,7 @@ package org.apache.poi.hssf.model;
 
 import java.security.AccessControlException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -164,6 +165,20 @@ public final class InternalWorkbook {
 	private int numxfs;
     /** the number of font records */
 	private int numfonts;
+    /**
+     * the indexes of the fonts and extended formats by their properties, see
+     *  {@link #findFont} and {@link #findExFormat}, built as they are looked up,
+     *  and the number of changes to the indexed records when they were built
+     */
+    private final Map<FontKey, Integer> fontIndexes = new HashMap<FontKey, Integer>();
+    private int indexedFonts;
+    private int fontModCount;
+    private int indexedFontModCount;
+    private final Map<ExtendedFormatRecord, Integer> xfIndexes = new HashMap<ExtendedFormatRecord, Integer>();
+    private int indexedXfs;
+    private int xfModCount;
+    private int indexedXfModCount;
+    private int indexRebuilds;
     /** holds the max format id */
 	private int maxformatid;
     /** whether 1904 date windowing is being used */
@@ -532,6 +547,7 @@ public final class InternalWorkbook {
     public void removeFontRecord(FontRecord rec) {
         records.remove(rec); // this updates FontPos for us
         numfonts--;
+        fontModCount++;
     }
 
     /**
@@ -544,6 +560,63 @@ public final class InternalWorkbook {
         return numfonts;
     }
 
+    /**
+     * Notes that the font at the given index has been changed in place, so
+     *  that the fonts are indexed again with their current properties the next
+     *  time one is looked up.  Fonts not yet indexed need no reindexing.
+     */
+    public void onFontChanged(int index) {
+        // There is no 4!
+        int pos = index > 4 ? index - 1 : index;
+        if (pos < indexedFonts) {
+            fontModCount++;
+        }
+    }
+
+    /**
+     * Finds the first font with the given properties, without comparing against
+     *  every font when there is one.  Fonts are indexed under the properties they
+     *  have when they are first looked up, and indexed again only after one of
+     *  them has been changed or removed, see {@link #onFontChanged}.
+     *
+     * @return the index of the font, or -1 if there is none
+     */
+    public int findFont(short boldWeight, short color, short fontHeight,
+                        String name, boolean italic, boolean strikeout,
+                        short typeOffset, byte underline) {
+        FontKey key = new FontKey(boldWeight, color, fontHeight, name,
+                italic, strikeout, typeOffset, underline);
+        if (indexedFontModCount != fontModCount) {
+            clearFontIndexes();
+        }
+        Integer idx = findFontIndex(key);
+        if (idx != null && !key.equals(new FontKey(getFontRecordAt(idx.intValue())))) {
+            // changed without being noted, by a caller holding the record
+            clearFontIndexes();
+            idx = findFontIndex(key);
+        }
+        return idx == null ? -1 : idx.intValue();
+    }
+
+    private Integer findFontIndex(FontKey key) {
+        for (; indexedFonts < numfonts; indexedFonts++) {
+            // There is no 4!
+            int idx = indexedFonts > 3 ? indexedFonts + 1 : indexedFonts;
+            FontKey fontKey = new FontKey(getFontRecordAt(idx));
+            if (!fontIndexes.containsKey(fontKey)) {
+                fontIndexes.put(fontKey, Integer.valueOf(idx));
+            }
+        }
+        return fontIndexes.get(key);
+    }
+
+    private void clearFontIndexes() {
+        fontIndexes.clear();
+        indexedFonts = 0;
+        indexedFontModCount = fontModCount;
+        indexRebuilds++;
+    }
+
     /**
      * Sets the BOF for a given sheet
      *
@@ -843,6 +916,7 @@ public final class InternalWorkbook {
     public void removeExFormatRecord(ExtendedFormatRecord rec) {
         records.remove(rec); // this updates XfPos for us
         numxfs--;
+        xfModCount++;
     }
     
     /**
@@ -856,6 +930,7 @@ public final class InternalWorkbook {
         int xfptr = records.getXfpos() - (numxfs - 1) + index;
         records.remove(xfptr); // this updates XfPos for us
         numxfs--;
+        xfModCount++;
     }
 
 
@@ -875,6 +950,67 @@ public final class InternalWorkbook {
         return xf;
     }
 
+    /**
+     * Notes that the ExtendedFormatRecord at the given 0-based index has been
+     *  changed in place, so that the records are indexed again with their current
+     *  contents the next time one is looked up.  Records not yet indexed need no
+     *  reindexing.
+     */
+    public void onExFormatChanged(int index) {
+        if (index < indexedXfs) {
+            xfModCount++;
+        }
+    }
+
+    /**
+     * Finds the first ExtendedFormatRecord with the same contents as the given one,
+     *  which may be one of this workbook, without comparing against every record
+     *  when there is one.  Records are indexed under the contents they have when
+     *  they are first looked up, and indexed again only after one of them has been
+     *  changed or removed, see {@link #onExFormatChanged}.
+     *
+     * @return the 0-based index of the record, or -1 if there is none
+     */
+    public int findExFormat(ExtendedFormatRecord xf) {
+        if (indexedXfModCount != xfModCount) {
+            clearExFormatIndexes();
+        }
+        Integer idx = findExFormatIndex(xf);
+        if (idx != null && !xf.equals(getExFormatAt(idx.intValue()))) {
+            // changed without being noted, by a caller holding the record
+            clearExFormatIndexes();
+            idx = findExFormatIndex(xf);
+        }
+        return idx == null ? -1 : idx.intValue();
+    }
+
+    private Integer findExFormatIndex(ExtendedFormatRecord xf) {
+        for (; indexedXfs < numxfs; indexedXfs++) {
+            // Keyed by a copy, the records themselves are changed in place
+            ExtendedFormatRecord key = new ExtendedFormatRecord();
+            key.cloneStyleFrom(getExFormatAt(indexedXfs));
+            if (!xfIndexes.containsKey(key)) {
+                xfIndexes.put(key, Integer.valueOf(indexedXfs));
+            }
+        }
+        return xfIndexes.get(xf);
+    }
+
+    private void clearExFormatIndexes() {
+        xfIndexes.clear();
+        indexedXfs = 0;
+        indexedXfModCount = xfModCount;
+        indexRebuilds++;
+    }
+
+    /**
+     * @return how often the indexes of the fonts and extended formats have
+     *  been rebuilt from scratch
+     */
+    /* package */ int getIndexRebuildCount() {
+        return indexRebuilds;
+    }
+
     /**
      * Returns the StyleRecord for the given
      *  xfIndex, or null if that ExtendedFormat doesn't
@@ -2503,4 +2639,61 @@ public final class InternalWorkbook {
     public boolean changeExternalReference(String oldUrl, String newUrl) {
     	return linkTable.changeExternalReference(oldUrl, newUrl);
     }
+
+    /**
+     * The properties of a font compared by {@link #findFont}
+     */
+    private static final class FontKey {
+        private final short boldWeight;
+        private final short color;
+        private final short fontHeight;
+        private final String name;
+        private final boolean italic;
+        private final boolean strikeout;
+        private final short typeOffset;
+        private final byte underline;
+
+        FontKey(short boldWeight, short color, short fontHeight, String name,
+                boolean italic, boolean strikeout, short typeOffset, byte underline) {
+            this.boldWeight = boldWeight;
+            this.color = color;
+            this.fontHeight = fontHeight;
+            this.name = name;
+            this.italic = italic;
+            this.strikeout = strikeout;
+            this.typeOffset = typeOffset;
+            this.underline = underline;
+        }
+
+        FontKey(FontRecord font) {
+            this(font.getBoldWeight(), font.getColorPaletteIndex(), font.getFontHeight(),
+                    font.getFontName(), font.isItalic(), font.isStruckout(),
+                    font.getSuperSubScript(), font.getUnderline());
+        }
+
+        public int hashCode() {
+            int result = 31 * boldWeight + color;
+            result = 31 * result + fontHeight;
+            result = 31 * result + (name == null ? 0 : name.hashCode());
+            result = 31 * result + (italic ? 1 : 0);
+            result = 31 * result + (strikeout ? 1 : 0);
+            result = 31 * result + typeOffset;
+            return 31 * result + underline;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FontKey)) {
+                return false;
+            }
+            FontKey other = (FontKey) obj;
+            return boldWeight == other.boldWeight
+                    && color == other.color
+                    && fontHeight == other.fontHeight
+                    && (name == null ? other.name == null : name.equals(other.name))
+                    && italic == other.italic
+                    && strikeout == other.strikeout
+                    && typeOffset == other.typeOffset
+                    && underline == other.underline;
+        }
+    }
 }
@@ -144,6 +144,7 @@ public final class RecordFactoryInputStream {
 
 	private final RecordInputStream _recStream;
 	private final boolean _shouldIncludeContinueRecords;
+	private final boolean _encrypted;
 
 	/**
 	 * Temporarily stores a group of {@link Record}s, for future return by {@link #nextRecord()}.
@@ -170,6 +171,16 @@ public final class RecordFactoryInputStream {
 
 	private boolean _lastRecordWasEOFLevelZero;
 
+	/**
+	 * The current record if it had already been created, see {@link #nextSid()}
+	 */
+	private Record _decodedRecord;
+
+	/**
+	 * Whether the underlying stream is at a record which has been neither decoded nor skipped
+	 */
+	private boolean _rawRecordPending;
+
 
 	/**
 	 * @param shouldIncludeContinueRecords caller can pass <code>false</code> if loose
@@ -192,6 +203,7 @@ public final class RecordFactoryInputStream {
 			_unreadRecordIndex =0;
 		}
 		_recStream = rs;
+		_encrypted = sei.hasEncryption();
 		_shouldIncludeContinueRecords = shouldIncludeContinueRecords;
 		_lastRecord = sei.getLastRecord();
 
@@ -216,45 +228,152 @@ public final class RecordFactoryInputStream {
 		_lastRecordWasEOFLevelZero = false;
 	}
 
+	/**
+	 * @return <code>true</code> if the stream is protected by a {@link FilePassRecord}, in which
+	 * case the records are decrypted with respect to their position from the start of the stream
+	 */
+	public boolean isEncrypted() {
+		return _encrypted;
+	}
+
 	/**
 	 * Returns the next (complete) record from the
 	 * stream, or null if there are no more.
 	 */
 	public Record nextRecord() {
-		Record r;
-		r = getNextUnreadRecord();
-		if (r != null) {
+		while (nextSid() != -1) {
+			Record r = decodeRecord();
+			if (r != null) {
+				return r;
+			}
+			// some record types may get skipped (e.g. DBCellRecord and ContinueRecord)
+		}
+		return null;
+	}
+
+	/**
+	 * Steps to the next record of the stream, without creating a {@link Record} for it yet.
+	 * Follow with {@link #decodeRecord()} to have the record created, records which are not
+	 * decoded are skipped. This lets callers interested in only a few record types step over
+	 * the others without the cost of creating them.
+	 *
+	 * @return the sid of the next record, or -1 if there are no more
+	 */
+	public int nextSid() {
+		if (_rawRecordPending) {
+			skipRecord();
+		}
+		_decodedRecord = getNextUnreadRecord();
+		if (_decodedRecord != null) {
 			// found an unread record
-			return r;
+			return _decodedRecord.getSid();
+		}
+		if (!_recStream.hasNextRecord()) {
+			// recStream is exhausted;
+			return -1;
 		}
-		while (true) {
-			if (!_recStream.hasNextRecord()) {
-				// recStream is exhausted;
-				return null;
-			}
 
-			if (_lastRecordWasEOFLevelZero) {
-				// Potential place for ending the workbook stream
-				// Check that the next record is not BOFRecord(0x0809)
-				// Normally the input stream contains only zero padding after the last EOFRecord,
-				// but bug 46987 and 48068 suggests that the padding may be garbage.
-				// This code relies on the padding bytes not starting with BOFRecord.sid
-				if (_recStream.getNextSid() != BOFRecord.sid) {
-					return null;
-				}
-				// else - another sheet substream starting here
+		if (_lastRecordWasEOFLevelZero) {
+			// Potential place for ending the workbook stream
+			// Check that the next record is not BOFRecord(0x0809)
+			// Normally the input stream contains only zero padding after the last EOFRecord,
+			// but bug 46987 and 48068 suggests that the padding may be garbage.
+			// This code relies on the padding bytes not starting with BOFRecord.sid
+			if (_recStream.getNextSid() != BOFRecord.sid) {
+				return -1;
 			}
+			// else - another sheet substream starting here
+		}
 
-            // step underlying RecordInputStream to the next record
-            _recStream.nextRecord();
+		// step underlying RecordInputStream to the next record
+		_recStream.nextRecord();
+		_rawRecordPending = true;
 
-			r = readNextRecord();
-			if (r == null) {
-				// some record types may get skipped (e.g. DBCellRecord and ContinueRecord)
-				continue;
+		short sid = _recStream.getSid();
+		_lastRecordWasEOFLevelZero = false;
+		if (sid == BOFRecord.sid) {
+			_bofDepth++;
+		} else if (sid == EOFRecord.sid) {
+			_bofDepth--;
+			if (_bofDepth < 1) {
+				_lastRecordWasEOFLevelZero = true;
 			}
+		}
+		return sid;
+	}
+
+	/**
+	 * Creates the current record, as found by {@link #nextSid()}.
+	 *
+	 * @return the record, or <code>null</code> if the record is not
+	 * suitable for returning (eg was a continue record)
+	 */
+	public Record decodeRecord() {
+		if (_decodedRecord != null) {
+			Record r = _decodedRecord;
+			_decodedRecord = null;
 			return r;
 		}
+		if (!_rawRecordPending) {
+			throw new IllegalStateException("No current record, call nextSid() first");
+		}
+		_rawRecordPending = false;
+		return readNextRecord();
+	}
+
+	/**
+	 * Skips the current record, as found by {@link #nextSid()}, without creating it,
+	 * along with any {@link ContinueRecord}s following it, which belong to it.  The
+	 * continue records following an EOF record are not skipped, as they can not
+	 * belong to it.
+	 */
+	public void skipRecord() {
+		if (_decodedRecord != null) {
+			_decodedRecord = null;
+			return;
+		}
+		if (!_rawRecordPending) {
+			return;
+		}
+		_rawRecordPending = false;
+		_recStream.skipRemainder();
+		short sid = _recStream.getSid();
+		if (sid != EOFRecord.sid) {
+			while (_recStream.hasNextRecord() && _recStream.getNextSid() == ContinueRecord.sid) {
+				_recStream.nextRecord();
+				_recStream.skipRemainder();
+			}
+		}
+		switch (sid) {
+			case BOFRecord.sid:
+			case EOFRecord.sid:
+			case DBCellRecord.sid:
+			case RKRecord.sid:
+			case MulRKRecord.sid:
+			case ContinueRecord.sid:
+				// these never become the last record, see readNextRecord()
+				break;
+			default:
+				_lastRecord = null;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the current record, as found by {@link #nextSid()}, has
+	 * already been created (e.g. the first records of the stream, or the number records
+	 * expanded from a {@link MulRKRecord}), so its data is not available from
+	 * {@link #getRecordInputStream()}
+	 */
+	public boolean isRecordDecoded() {
+		return _decodedRecord != null;
+	}
+
+	/**
+	 * @return the underlying stream, positioned at the data of the current record if it has
+	 * been neither decoded nor skipped yet
+	 */
+	public RecordInputStream getRecordInputStream() {
+		return _recStream;
 	}
 
 	/**
@@ -283,19 +402,9 @@ public final class RecordFactoryInputStream {
 	private Record readNextRecord() {
 
 		Record record = RecordFactory.createSingleRecord(_recStream);
-		_lastRecordWasEOFLevelZero = false;
-
-		if (record instanceof BOFRecord) {
-			_bofDepth++;
-			return record;
-		}
-
-		if (record instanceof EOFRecord) {
-			_bofDepth--;
-			if (_bofDepth < 1) {
-				_lastRecordWasEOFLevelZero = true;
-			}
 
+		if (record instanceof BOFRecord || record instanceof EOFRecord) {
+			// nesting level already tracked by nextSid()
 			return record;
 		}
 
@@ -325,6 +434,11 @@ public final class RecordFactoryInputStream {
 		if (record.getSid() == ContinueRecord.sid) {
 			ContinueRecord contRec = (ContinueRecord) record;
 
+			if (_lastRecord == null) {
+				// Follows a record which was skipped, without continuing it
+				return record;
+			}
+
 			if (_lastRecord instanceof ObjRecord || _lastRecord instanceof TextObjectRecord) {
 				// Drawing records have a very strange continue behaviour.
 				//There can actually be OBJ records mixed between the continues.
@@ -80,6 +80,8 @@ public final class RecordInputStream implements LittleEndianInput {
 	 * index within the data section of the current BIFF record
 	 */
 	private int _currentDataOffset;
+	/** scratch space for {@link #skipRemainder()} */
+	private byte[] _skipBuffer;
 
 	private static final class SimpleHeaderInput implements BiffHeaderInput {
 
@@ -380,6 +382,20 @@ public final class RecordInputStream implements LittleEndianInput {
 		return result;
 	}
 
+	/**
+	 * Skips the remaining bytes of the current record, without allocating an array for them.
+	 */
+	public void skipRemainder() {
+		int size = remaining();
+		if (size == 0) {
+			return;
+		}
+		if (_skipBuffer == null) {
+			_skipBuffer = new byte[MAX_RECORD_DATA_SIZE];
+		}
+		readFully(_skipBuffer, 0, size);
+	}
+
   /** Reads all byte data for the current record, including any
    *  that overlaps into any following continue records.
    *
@@ -88,6 +88,7 @@ public final class HSSFCellStyle implements CellStyle {
     public void setDataFormat(short fmt)
     {
         _format.setFormatIndex(fmt);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -146,6 +147,7 @@ public final class HSSFCellStyle implements CellStyle {
         _format.setIndentNotParentFont(true);
         short fontindex = font.getIndex();
         _format.setFontIndex(fontindex);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -175,6 +177,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setIndentNotParentCellOptions(true);
         _format.setHidden(hidden);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -194,6 +197,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setIndentNotParentCellOptions(true);
         _format.setLocked(locked);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -220,6 +224,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setIndentNotParentAlignment(true);
         _format.setAlignment(align);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -246,6 +251,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setIndentNotParentAlignment(true);
         _format.setWrapText(wrapped);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -268,6 +274,7 @@ public final class HSSFCellStyle implements CellStyle {
     public void setVerticalAlignment(short align)
     {
         _format.setVerticalAlignment(align);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -302,6 +309,7 @@ public final class HSSFCellStyle implements CellStyle {
         throw new IllegalArgumentException("The rotation must be between -90 and 90 degrees, or 0xff");
       }
       _format.setRotation(rotation);
+      _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -329,6 +337,7 @@ public final class HSSFCellStyle implements CellStyle {
     public void setIndention(short indent)
     {
         _format.setIndent(indent);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -362,6 +371,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setIndentNotParentBorder(true);
         _format.setBorderLeft(border);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -409,6 +419,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setIndentNotParentBorder(true);
         _format.setBorderRight(border);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -456,6 +467,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setIndentNotParentBorder(true);
         _format.setBorderTop(border);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -503,6 +515,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setIndentNotParentBorder(true);
         _format.setBorderBottom(border);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -535,6 +548,7 @@ public final class HSSFCellStyle implements CellStyle {
     public void setLeftBorderColor(short color)
     {
         _format.setLeftBorderPaletteIdx(color);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -554,6 +568,7 @@ public final class HSSFCellStyle implements CellStyle {
     public void setRightBorderColor(short color)
     {
         _format.setRightBorderPaletteIdx(color);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -573,6 +588,7 @@ public final class HSSFCellStyle implements CellStyle {
     public void setTopBorderColor(short color)
     {
         _format.setTopBorderPaletteIdx(color);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -592,6 +608,7 @@ public final class HSSFCellStyle implements CellStyle {
     public void setBottomBorderColor(short color)
     {
         _format.setBottomBorderPaletteIdx(color);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -631,6 +648,7 @@ public final class HSSFCellStyle implements CellStyle {
     public void setFillPattern(short fp)
     {
         _format.setAdtlFillPattern(fp);
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -694,6 +712,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setFillBackground(bg);
         checkDefaultBackgroundFills();
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -732,6 +751,7 @@ public final class HSSFCellStyle implements CellStyle {
     {
         _format.setFillForeground(bg);
         checkDefaultBackgroundFills();
+        _workbook.onExFormatChanged(_index);
     }
 
     /**
@@ -843,10 +863,11 @@ public final class HSSFCellStyle implements CellStyle {
     		);
 
     		HSSFFont font = new HSSFFont(
-    				(short)_workbook.getFontIndex(fr), fr
+    				(short)_workbook.getFontIndex(fr), fr, _workbook
     		);
     		setFont(font);
     	}
+    	_workbook.onExFormatChanged(_index);
     }
 
 
@@ -17,6 +17,7 @@
 
 package org.apache.poi.hssf.usermodel;
 
+import org.apache.poi.hssf.model.InternalWorkbook;
 import org.apache.poi.hssf.record.FontRecord;
 import org.apache.poi.hssf.util.HSSFColor;
 import org.apache.poi.ss.usermodel.Font;
@@ -41,13 +42,20 @@ public final class HSSFFont implements Font {
 
     private FontRecord         font;
     private short              index;
+    private InternalWorkbook   workbook;
 
     /** Creates a new instance of HSSFFont */
 
     protected HSSFFont(short index, FontRecord rec)
     {
-        font       = rec;
-        this.index = index;
+        this(index, rec, null);
+    }
+
+    protected HSSFFont(short index, FontRecord rec, InternalWorkbook workbook)
+    {
+        font          = rec;
+        this.index    = index;
+        this.workbook = workbook;
     }
 
     /**
@@ -59,6 +67,7 @@ public final class HSSFFont implements Font {
     public void setFontName(String name)
     {
         font.setFontName(name);
+        fontChanged();
     }
 
     /**
@@ -93,6 +102,7 @@ public final class HSSFFont implements Font {
     public void setFontHeight(short height)
     {
         font.setFontHeight(height);
+        fontChanged();
     }
 
     /**
@@ -104,6 +114,7 @@ public final class HSSFFont implements Font {
     public void setFontHeightInPoints(short height)
     {
         font.setFontHeight(( short ) (height * 20));
+        fontChanged();
     }
 
     /**
@@ -137,6 +148,7 @@ public final class HSSFFont implements Font {
     public void setItalic(boolean italic)
     {
         font.setItalic(italic);
+        fontChanged();
     }
 
     /**
@@ -157,6 +169,7 @@ public final class HSSFFont implements Font {
     public void setStrikeout(boolean strikeout)
     {
         font.setStrikeout(strikeout);
+        fontChanged();
     }
 
     /**
@@ -179,6 +192,7 @@ public final class HSSFFont implements Font {
     public void setColor(short color)
     {
         font.setColorPaletteIndex(color);
+        fontChanged();
     }
 
     /**
@@ -212,6 +226,7 @@ public final class HSSFFont implements Font {
     public void setBoldweight(short boldweight)
     {
         font.setBoldWeight(boldweight);
+        fontChanged();
     }
 
     /**
@@ -237,6 +252,7 @@ public final class HSSFFont implements Font {
     public void setTypeOffset(short offset)
     {
         font.setSuperSubScript(offset);
+        fontChanged();
     }
 
     /**
@@ -265,6 +281,7 @@ public final class HSSFFont implements Font {
     public void setUnderline(byte underline)
     {
         font.setUnderline(underline);
+        fontChanged();
     }
 
     /**
@@ -326,6 +343,17 @@ public final class HSSFFont implements Font {
         font.setCharset(charset);
     }
 
+    /**
+     * Lets the workbook know the font has changed, so it is found by its
+     *  new properties
+     */
+    private void fontChanged()
+    {
+        if (workbook != null) {
+            workbook.onFontChanged(index);
+        }
+    }
+
     public String toString()
     {
         return "org.apache.poi.hssf.usermodel.HSSFFont{" +
@@ -17,7 +17,11 @@
 
 package org.apache.poi.hssf.usermodel;
 
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
 import org.apache.poi.ss.formula.CollaboratingWorkbooksEnvironment;
+import org.apache.poi.ss.formula.EvaluationCell;
 import org.apache.poi.ss.formula.IStabilityClassifier;
 import org.apache.poi.ss.formula.WorkbookEvaluator;
 import org.apache.poi.ss.formula.eval.BoolEval;
@@ -76,6 +80,7 @@ public class HSSFFormulaEvaluator implements FormulaEvaluator  {
 	 */
 	private HSSFFormulaEvaluator(HSSFWorkbook workbook, IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
 		_bookEvaluator = new WorkbookEvaluator(HSSFEvaluationWorkbook.create(workbook), stabilityClassifier, udfFinder);
+		_book = workbook;
 	}
 
 	/**
@@ -346,12 +351,77 @@ public class HSSFFormulaEvaluator implements FormulaEvaluator  {
       evaluateAllFormulaCells(_book, this);
    }
 
+   /**
+    * Re-evaluates only the formula cells affected by changes to the specified cells.
+    * The affected formulas are found from a dependency graph of all formula cells in
+    *  the workbook, which is built on the first call and then kept up to date by the
+    *  notify~ methods. The formulas are evaluated in dependency order, and the results
+    *  are saved as by {@link #evaluateFormulaCell(Cell)}.
+    * The supplied cells do not need to be passed to {@link #notifyUpdateCell(Cell)} first.
+    *
+    * @param changedCells the (value or formula) cells that have been modified
+    */
+   public void evaluateDependents(Cell[] changedCells) {
+      registerAllFormulaCells();
+      EvaluationCell[] evalCells = new EvaluationCell[changedCells.length];
+      for (int i = 0; i < changedCells.length; i++) {
+         evalCells[i] = new HSSFEvaluationCell((HSSFCell)changedCells[i]);
+         _bookEvaluator.notifyUpdateCell(evalCells[i]);
+      }
+      EvaluationCell[] dependents = _bookEvaluator.getDependentFormulaCells(evalCells);
+      for (int i = 0; i < dependents.length; i++) {
+         evaluateFormulaCell(((HSSFEvaluationCell)dependents[i]).getHSSFCell());
+      }
+   }
+
+   /**
+    * Evaluates all formula cells of the workbook using several threads, and saves the
+    *  results as by {@link #evaluateFormulaCell(Cell)}.
+    * The formula cells are split into groups that do not depend on each other, which
+    *  are evaluated concurrently on the supplied executor (for example a
+    *  <code>ThreadPoolExecutor</code> sized to the number of cores). The results are
+    *  saved on the calling thread once all groups have been evaluated.
+    * The workbook must not be modified while this method runs.
+    *
+    * @param executor runs the evaluation tasks
+    */
+   public void evaluateAllParallel(ExecutorService executor) {
+      registerAllFormulaCells();
+      Map<EvaluationCell, ValueEval> results = _bookEvaluator.evaluateAllParallel(executor);
+      for (Map.Entry<EvaluationCell, ValueEval> entry : results.entrySet()) {
+         Cell cell = ((HSSFEvaluationCell)entry.getKey()).getHSSFCell();
+         setCellValue(cell, toCellValue(entry.getValue()));
+      }
+   }
+
+   /**
+    * Builds the dependency graph of all formula cells, unless already done
+    */
+   private void registerAllFormulaCells() {
+      if (_bookEvaluator.hasDependencyGraph()) {
+         return;
+      }
+      for(int i=0; i<_book.getNumberOfSheets(); i++) {
+         for(Row r : _book.getSheetAt(i)) {
+            for (Cell c : r) {
+               if (c.getCellType() == HSSFCell.CELL_TYPE_FORMULA) {
+                  _bookEvaluator.registerFormulaCell(new HSSFEvaluationCell((HSSFCell)c));
+               }
+            }
+         }
+      }
+   }
+
 	/**
 	 * Returns a CellValue wrapper around the supplied ValueEval instance.
 	 * @param eval
 	 */
 	private CellValue evaluateFormulaCellValue(Cell cell) {
 		ValueEval eval = _bookEvaluator.evaluate(new HSSFEvaluationCell((HSSFCell)cell));
+		return toCellValue(eval);
+	}
+
+	private static CellValue toCellValue(ValueEval eval) {
 		if (eval instanceof NumberEval) {
 			NumberEval ne = (NumberEval) eval;
 			return new CellValue(ne.getNumberValue());
@@ -130,6 +130,7 @@ public class HSSFOptimiser {
 			xfr.setFontIndex(
 					newPos[ xfr.getFontIndex() ]
 			);
+			workbook.getWorkbook().onExFormatChanged(i);
 		}
 		
 		// Update the rich text strings to point at
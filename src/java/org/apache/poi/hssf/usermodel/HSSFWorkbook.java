@@ -23,10 +23,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import org.apache.poi.POIDocument;
@@ -258,6 +263,77 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      */
     public HSSFWorkbook(DirectoryNode directory, boolean preserveNodes)
             throws IOException
+    {
+        this(directory, preserveNodes, false);
+    }
+
+    /**
+     * given a POI POIFSFileSystem object, and a specific directory
+     *  within it, read in its Workbook and populate the high and
+     *  low level models, optionally only reading in the sheets
+     *  as they are used.
+     * <p>
+     * In lazy mode only the workbook globals are read up front. Every
+     *  sheet is read from its position in the Workbook stream, as given
+     *  by its BoundSheet record, the first time it is fetched, so the
+     *  cell records of the sheets that are never used stay on disk.
+     *  The POIFS filesystem must therefore remain open until all the
+     *  sheets needed have been fetched. Operations which involve all the
+     *  sheets, such as writing the workbook or changing the sheet order,
+     *  read in any sheets not yet fetched. Encrypted workbooks are always
+     *  read in fully.
+     * </p>
+     *
+     * @param directory the POI filesystem directory to process from
+     * @param preserveNodes whether to preseve other nodes, such as
+     *        macros.  This takes more memory, so only say yes if you
+     *        need to. If set, will store all of the POIFSFileSystem
+     *        in memory
+     * @param lazySheets whether to read in each sheet only when it is
+     *        first fetched
+     * @see org.apache.poi.poifs.filesystem.POIFSFileSystem
+     * @exception IOException if the stream cannot be read
+     */
+    public HSSFWorkbook(DirectoryNode directory, boolean preserveNodes, boolean lazySheets)
+            throws IOException
+    {
+        this(directory, preserveNodes, lazySheets, null);
+    }
+
+    /**
+     * given a POI POIFSFileSystem object, and a specific directory
+     *  within it, read in its Workbook and populate the high and
+     *  low level models, reading the sheets concurrently.
+     * <p>
+     * The workbook globals are read first. Then every sheet is read
+     *  from its position in the Workbook stream, as given by its
+     *  BoundSheet record, by a task on the supplied executor, each
+     *  through its own record stream. Only the conversion of any old
+     *  Label records, which adds their strings to the shared string
+     *  table, is done on the calling thread, in sheet order, so that
+     *  the workbook is the same as one read sequentially. The POIFS
+     *  filesystem must allow several streams to be read at once, which
+     *  both POIFSFileSystem and NPOIFSFileSystem do. Encrypted workbooks
+     *  are read sequentially on the calling thread.
+     * </p>
+     *
+     * @param directory the POI filesystem directory to process from
+     * @param preserveNodes whether to preseve other nodes, such as
+     *        macros.  This takes more memory, so only say yes if you
+     *        need to. If set, will store all of the POIFSFileSystem
+     *        in memory
+     * @param executor runs the tasks reading the sheets
+     * @see org.apache.poi.poifs.filesystem.POIFSFileSystem
+     * @exception IOException if the stream cannot be read
+     */
+    public HSSFWorkbook(DirectoryNode directory, boolean preserveNodes, ExecutorService executor)
+            throws IOException
+    {
+        this(directory, preserveNodes, false, executor);
+    }
+
+    private HSSFWorkbook(DirectoryNode directory, boolean preserveNodes, boolean lazySheets,
+            ExecutorService executor) throws IOException
     {
         super(directory);
         String workbookName = getWorkbookDirEntryName(directory);
@@ -277,13 +353,43 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         //  it happens to be spelled.
         InputStream stream = directory.createDocumentInputStream(workbookName);
 
-        List<Record> records = RecordFactory.createRecords(stream);
+        boolean separateSheets = lazySheets || executor != null;
+        List<Record> records;
+        if (separateSheets) {
+            // Only the globals, unless the sheets can't be read separately
+            RecordFactoryInputStream recStream = new RecordFactoryInputStream(stream, true);
+            records = readSubstream(recStream);
+            if (recStream.isEncrypted()) {
+                Record record;
+                while ((record = recStream.nextRecord()) != null) {
+                    records.add(record);
+                }
+                separateSheets = false;
+            }
+        } else {
+            records = RecordFactory.createRecords(stream);
+        }
 
         workbook = InternalWorkbook.createWorkbook(records);
         setPropertiesFromWorkbook(workbook);
         int recOffset = workbook.getNumRecords();
         int sheetNum = 0;
 
+        if (separateSheets) {
+            List<Integer> bofPositions = new ArrayList<Integer>();
+            for (int i = 0; i < recOffset; i++) {
+                Record rec = records.get(i);
+                if (rec instanceof BoundSheetRecord) {
+                    bofPositions.add(Integer.valueOf(((BoundSheetRecord)rec).getPositionOfBof()));
+                }
+            }
+            if (lazySheets) {
+                _sheets = new LazySheetList(directory, workbookName, bofPositions);
+            } else {
+                readSheets(directory, workbookName, bofPositions, executor);
+            }
+        }
+
         // convert all LabelRecord records to LabelSSTRecord
         convertLabelRecords(records, recOffset);
         RecordStream rs = new RecordStream(records, recOffset);
@@ -322,6 +428,195 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         this(new POIFSFileSystem(s), preserveNodes);
     }
 
+    /**
+     * Reads the records of one BOF/EOF substream, i.e. the workbook globals
+     *  or a sheet, including any substreams nested within it.
+     */
+    private static List<Record> readSubstream(RecordFactoryInputStream recStream) {
+        List<Record> records = new ArrayList<Record>();
+        int bofDepth = 0;
+        Record record;
+        while ((record = recStream.nextRecord()) != null) {
+            records.add(record);
+            if (record instanceof BOFRecord) {
+                bofDepth++;
+            } else if (record instanceof EOFRecord) {
+                if (--bofDepth <= 0) {
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * The sheets of a workbook opened with lazy sheets. Holds the stream
+     *  position of the BOF record of every sheet not fetched yet, and reads
+     *  the sheet in place of it when the sheet is first fetched.
+     */
+    private final class LazySheetList extends AbstractList<HSSFSheet> {
+        private final DirectoryNode _directory;
+        private final String _workbookName;
+        /** the HSSFSheet, or the BOF position of a sheet not read yet */
+        private final List<Object> _entries = new ArrayList<Object>();
+
+        LazySheetList(DirectoryNode directory, String workbookName, List<Integer> bofPositions) {
+            _directory = directory;
+            _workbookName = workbookName;
+            _entries.addAll(bofPositions);
+        }
+
+        public HSSFSheet get(int index) {
+            Object entry = _entries.get(index);
+            if (entry instanceof HSSFSheet) {
+                return (HSSFSheet)entry;
+            }
+            HSSFSheet sheet = readSheet(((Integer)entry).intValue());
+            _entries.set(index, sheet);
+            return sheet;
+        }
+
+        /**
+         * Looks up a sheet without reading in the sheets not fetched yet,
+         *  which can't be the sheet looked for.
+         */
+        public int indexOf(Object o) {
+            for (int i = 0; i < _entries.size(); i++) {
+                if (_entries.get(i) == o) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public int size() {
+            return _entries.size();
+        }
+
+        public HSSFSheet set(int index, HSSFSheet sheet) {
+            HSSFSheet old = get(index);
+            _entries.set(index, sheet);
+            return old;
+        }
+
+        public void add(int index, HSSFSheet sheet) {
+            _entries.add(index, sheet);
+        }
+
+        public HSSFSheet remove(int index) {
+            HSSFSheet old = get(index);
+            _entries.remove(index);
+            return old;
+        }
+
+        private HSSFSheet readSheet(int bofPosition) {
+            List<Record> records = readSheetRecords(_directory, _workbookName, bofPosition);
+            convertLabelRecords(records, 0);
+            return createSheet(records);
+        }
+    }
+
+    /**
+     * Reads the sheets at the given positions of the Workbook stream on
+     *  the executor, and adds them to the workbook in order.
+     */
+    private void readSheets(final DirectoryNode directory, final String workbookName,
+            List<Integer> bofPositions, ExecutorService executor) {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        List<Future<List<Record>>> reads = new ArrayList<Future<List<Record>>>(bofPositions.size());
+        for (Integer bof : bofPositions) {
+            final int bofPosition = bof.intValue();
+            Future<List<Record>> read = executor.submit(new Callable<List<Record>>() {
+                public List<Record> call() {
+                    return readSheetRecords(directory, workbookName, bofPosition);
+                }
+            });
+            reads.add(read);
+            futures.add(read);
+        }
+
+        // Converting Label records adds to the SST, so happens here in sheet
+        //  order. The sheets themselves only read the SST.
+        List<Future<HSSFSheet>> sheets = new ArrayList<Future<HSSFSheet>>(reads.size());
+        for (Future<List<Record>> read : reads) {
+            final List<Record> records = getResult(read, futures);
+            convertLabelRecords(records, 0);
+            Future<HSSFSheet> sheet = executor.submit(new Callable<HSSFSheet>() {
+                public HSSFSheet call() {
+                    return createSheet(records);
+                }
+            });
+            sheets.add(sheet);
+            futures.add(sheet);
+        }
+        for (Future<HSSFSheet> sheet : sheets) {
+            _sheets.add(getResult(sheet, futures));
+        }
+    }
+
+    private static <T> T getResult(Future<T> future, List<Future<?>> futures) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            cancelAll(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void cancelAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Reads the records of the sheet whose BOF record is at the given
+     *  position of the Workbook stream, through a stream of its own.
+     */
+    private static List<Record> readSheetRecords(DirectoryNode directory, String workbookName,
+            int bofPosition) {
+        List<Record> records;
+        try {
+            InputStream stream = directory.createDocumentInputStream(workbookName);
+            try {
+                long toSkip = bofPosition;
+                while (toSkip > 0) {
+                    long skipped = stream.skip(toSkip);
+                    if (skipped <= 0) {
+                        throw new RecordFormatException("Sheet BOF position "
+                                + bofPosition + " is past the end of the workbook stream");
+                    }
+                    toSkip -= skipped;
+                }
+                records = readSubstream(new RecordFactoryInputStream(stream, true));
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            throw new RecordFormatException("Could not read the sheet at " + bofPosition, e);
+        }
+        if (records.isEmpty() || !(records.get(0) instanceof BOFRecord)) {
+            throw new RecordFormatException("No sheet BOF record at " + bofPosition);
+        }
+        return records;
+    }
+
+    private HSSFSheet createSheet(List<Record> records) {
+        InternalSheet sheet = InternalSheet.createSheet(new RecordStream(records, 0));
+        return new HSSFSheet(this, sheet);
+    }
+
     /**
      * used internally to set the workbook properties.
      */
@@ -606,12 +901,7 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      * @return index of the sheet (0 based). <tt>-1</tt> if not found
      */
     public int getSheetIndex(org.apache.poi.ss.usermodel.Sheet sheet) {
-        for(int i=0; i<_sheets.size(); i++) {
-            if(_sheets.get(i) == sheet) {
-                return i;
-            }
-        }
-        return -1;
+        return _sheets.indexOf(sheet);
     }
 
     /**
@@ -1042,25 +1332,34 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
                              String name, boolean italic, boolean strikeout,
                              short typeOffset, byte underline)
     {
-        for (short i=0; i<=getNumberOfFonts(); i++) {
-            // Remember - there is no 4!
-            if(i == 4) continue;
-
-            HSSFFont hssfFont = getFontAt(i);
-            if (hssfFont.getBoldweight() == boldWeight
-                    && hssfFont.getColor() == color
-                    && hssfFont.getFontHeight() == fontHeight
-                    && hssfFont.getFontName().equals(name)
-                    && hssfFont.getItalic() == italic
-                    && hssfFont.getStrikeout() == strikeout
-                    && hssfFont.getTypeOffset() == typeOffset
-                    && hssfFont.getUnderline() == underline)
-            {
-                return hssfFont;
-            }
-        }
+        int idx = workbook.findFont(boldWeight, color, fontHeight, name,
+                italic, strikeout, typeOffset, underline);
+        return idx == -1 ? null : getFontAt((short) idx);
+    }
 
-        return null;
+    /**
+     * Finds a font that matches the one with the supplied attributes, or
+     *  creates one if there is none, so that fonts can be looked up for every
+     *  cell without adding duplicates to the font table
+     */
+    public HSSFFont getOrCreateFont(short boldWeight, short color, short fontHeight,
+                                    String name, boolean italic, boolean strikeout,
+                                    short typeOffset, byte underline)
+    {
+        HSSFFont font = findFont(boldWeight, color, fontHeight, name,
+                italic, strikeout, typeOffset, underline);
+        if (font == null) {
+            font = createFont();
+            font.setBoldweight(boldWeight);
+            font.setColor(color);
+            font.setFontHeight(fontHeight);
+            font.setFontName(name);
+            font.setItalic(italic);
+            font.setStrikeout(strikeout);
+            font.setTypeOffset(typeOffset);
+            font.setUnderline(underline);
+        }
+        return font;
     }
 
     /**
@@ -1090,7 +1389,7 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         }
 
         FontRecord font = workbook.getFontRecordAt(idx);
-        HSSFFont retval = new HSSFFont(idx, font);
+        HSSFFont retval = new HSSFFont(idx, font, workbook);
         fonts.put(sIdx, retval);
 
         return retval;
@@ -1127,6 +1426,25 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         return style;
     }
 
+    /**
+     * Returns the first cell style with the same format, font, alignment, borders
+     *  and fill as the given one, which is the given style itself unless an equal
+     *  style was created before it.  Styles are found without comparing against
+     *  every style, so cells can share their styles rather than each using a copy.
+     *
+     * @param style a style of this workbook
+     * @return the first style equal to the given one
+     */
+    public HSSFCellStyle getOrCreateCellStyle(HSSFCellStyle style)
+    {
+        style.verifyBelongsToWorkbook(this);
+        int idx = workbook.findExFormat(workbook.getExFormatAt(style.getIndex()));
+        if (idx == style.getIndex()) {
+            return style;
+        }
+        return getCellStyleAt((short) idx);
+    }
+
     /**
      * get the number of styles the workbook contains
      * @return count of cell styles
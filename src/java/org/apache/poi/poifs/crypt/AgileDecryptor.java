@@ -31,6 +31,7 @@ import javax.crypto.spec.SecretKeySpec;
 import javax.crypto.spec.IvParameterSpec;
 
 import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.nio.DataSource;
 import org.apache.poi.util.LittleEndian;
 
 /**
@@ -103,6 +104,20 @@ public class AgileDecryptor extends Decryptor {
         return new ChunkedCipherInputStream(dis, _length);
     }
 
+    public DataSource getDataSource(DirectoryNode dir) throws IOException, GeneralSecurityException {
+        ChunkedCipherDataSource source = new ChunkedCipherDataSource(dir, 4096) {
+            private final Cipher _cipher = getCipher(_info.getHeader().getAlgorithm(),
+                    _info.getHeader().getCipherMode(), _secretKey, _info.getHeader().getKeySalt());
+
+            protected byte[] decryptChunk(int index, byte[] chunk) throws GeneralSecurityException {
+                initChunkCipher(_cipher, index);
+                return _cipher.doFinal(chunk);
+            }
+        };
+        _length = source.size();
+        return source;
+    }
+
     public long getLength(){
         if(_length == -1) throw new IllegalStateException("EcmaDecryptor.getDataStream() was not called");
         return _length;
@@ -143,7 +158,10 @@ public class AgileDecryptor extends Decryptor {
         public int read(byte[] b, int off, int len) throws IOException {
             int total = 0;
 
-            while (len > 0) {
+            if (available() <= 0 && len > 0)
+                return -1;
+
+            while (len > 0 && available() > 0) {
                 if (_chunk == null) {
                     try {
                         _chunk = nextChunk();
@@ -181,11 +199,7 @@ public class AgileDecryptor extends Decryptor {
 
         private byte[] nextChunk() throws GeneralSecurityException, IOException {
             int index = (int)(_pos >> 12);
-            byte[] blockKey = new byte[4];
-            LittleEndian.putInt(blockKey, 0, index);
-            byte[] iv = generateIv(_info.getHeader().getAlgorithm(),
-                                   _info.getHeader().getKeySalt(), blockKey);
-            _cipher.init(Cipher.DECRYPT_MODE, _secretKey, new IvParameterSpec(iv));
+            initChunkCipher(_cipher, index);
             if (_lastIndex != index)
                 _stream.skip((index - _lastIndex) << 12);
 
@@ -196,6 +210,17 @@ public class AgileDecryptor extends Decryptor {
         }
     }
 
+    /**
+     * Sets up the cipher for a 4096 byte chunk of the package, each chunk has its own IV
+     */
+    private void initChunkCipher(Cipher cipher, int index) throws GeneralSecurityException {
+        byte[] blockKey = new byte[4];
+        LittleEndian.putInt(blockKey, 0, index);
+        byte[] iv = generateIv(_info.getHeader().getAlgorithm(),
+                               _info.getHeader().getKeySalt(), blockKey);
+        cipher.init(Cipher.DECRYPT_MODE, _secretKey, new IvParameterSpec(iv));
+    }
+
     private Cipher getCipher(int algorithm, int mode, SecretKey key, byte[] vec)
         throws GeneralSecurityException {
         String name = null;
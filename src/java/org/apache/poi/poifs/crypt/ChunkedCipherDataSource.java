@@ -0,0 +1,166 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.poifs.crypt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.nio.DataSource;
+
+/**
+ * A read-only {@link DataSource} over the decrypted data of the "EncryptedPackage"
+ *  stream, which decrypts the chunks of the stream as they are read.
+ * <p>
+ * The chunks can be decrypted independently of each other, so the data can be read
+ *  at any position without decrypting all the data before it.  The chunks read most
+ *  recently are kept, so reading close to earlier reads is cheap.  Reads are
+ *  synchronized, the source can be shared between threads.
+ * </p>
+ */
+abstract class ChunkedCipherDataSource extends DataSource {
+    private static final int CACHED_CHUNKS = 16;
+
+    private final int _chunkSize;
+    private final long _size;
+    private final long _encryptedSize;
+    private DocumentInputStream _stream;
+    /** the position in the encrypted data of the stream, after the length */
+    private long _streamPos;
+    private final Map<Integer, byte[]> _chunks = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > CACHED_CHUNKS;
+        }
+    };
+
+    protected ChunkedCipherDataSource(DirectoryNode dir, int chunkSize) throws IOException {
+        _chunkSize = chunkSize;
+        _stream = dir.createDocumentInputStream("EncryptedPackage");
+        _encryptedSize = _stream.available() - 8;
+        _size = _stream.readLong();
+    }
+
+    /**
+     * Decrypts a chunk of the data
+     *
+     * @param index the index of the chunk
+     * @param chunk the encrypted data of the chunk, the last chunk may be shorter
+     */
+    protected abstract byte[] decryptChunk(int index, byte[] chunk) throws GeneralSecurityException;
+
+    /**
+     * @return the length of the decrypted data, as {@link Decryptor#getLength()}
+     */
+    public long size() {
+        return _size;
+    }
+
+    /**
+     * @return the length of the encrypted data, after the length of the decrypted data
+     */
+    public long getEncryptedSize() {
+        return _encryptedSize;
+    }
+
+    public synchronized ByteBuffer read(int length, long position) throws IOException {
+        if (position >= _size) {
+            throw new IllegalArgumentException("Position " + position + " past the end of the data");
+        }
+        int index = (int)(position / _chunkSize);
+        int offset = (int)(position % _chunkSize);
+        byte[] chunk = getChunk(index);
+        if (offset + length <= chunk.length && position + length <= _size) {
+            // The common case, all within one chunk
+            return ByteBuffer.wrap(chunk, offset, length).slice().asReadOnlyBuffer();
+        }
+
+        // Zero fill past the end, like a file read
+        ByteBuffer dst = ByteBuffer.allocate(length);
+        long pos = position;
+        while (dst.hasRemaining() && pos < _size) {
+            chunk = getChunk((int)(pos / _chunkSize));
+            offset = (int)(pos % _chunkSize);
+            int count = (int)Math.min(Math.min(dst.remaining(), chunk.length - offset), _size - pos);
+            dst.put(chunk, offset, count);
+            pos += count;
+        }
+        dst.position(0);
+        return dst;
+    }
+
+    private byte[] getChunk(int index) throws IOException {
+        Integer key = Integer.valueOf(index);
+        byte[] chunk = _chunks.get(key);
+        if (chunk != null) {
+            return chunk;
+        }
+        if (_stream == null) {
+            throw new IOException("Data source has been closed");
+        }
+
+        long start = (long)index * _chunkSize;
+        if (start < _streamPos) {
+            // Start again, just after the length
+            _stream.reset();
+            _stream.skip(8);
+            _streamPos = 0;
+        }
+        _stream.skip(start - _streamPos);
+        byte[] encrypted = new byte[(int)Math.min(_chunkSize, _encryptedSize - start)];
+        _stream.readFully(encrypted);
+        _streamPos = start + encrypted.length;
+
+        try {
+            chunk = decryptChunk(index, encrypted);
+        } catch (GeneralSecurityException e) {
+            throw new EncryptedDocumentException(e.getMessage());
+        }
+        _chunks.put(key, chunk);
+        return chunk;
+    }
+
+    /**
+     * Not supported, the data source is read-only
+     */
+    public void write(ByteBuffer src, long position) {
+        throw new UnsupportedOperationException("A decrypting data source is read-only");
+    }
+
+    public void copyTo(OutputStream stream) throws IOException {
+        for (long pos = 0; pos < _size; pos += _chunkSize) {
+            ByteBuffer src = read((int)Math.min(_chunkSize, _size - pos), pos);
+            byte[] buf = new byte[src.remaining()];
+            src.get(buf);
+            stream.write(buf);
+        }
+    }
+
+    public synchronized void close() {
+        if (_stream != null) {
+            _stream.close();
+            _stream = null;
+        }
+        _chunks.clear();
+    }
+}
@@ -25,7 +25,10 @@ import java.security.NoSuchAlgorithmException;
 import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.nio.ByteArrayBackedDataSource;
+import org.apache.poi.poifs.nio.DataSource;
 import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.LittleEndian;
 
 public abstract class Decryptor {
@@ -45,6 +48,39 @@ public abstract class Decryptor {
     public abstract InputStream getDataStream(DirectoryNode dir)
         throws IOException, GeneralSecurityException;
 
+    /**
+     * Return a read-only, random access view of the decrypted data, which is
+     * decrypted as it is read rather than all at once.
+     * <p>
+     * The size of the view is that of the decrypted data, as for {@link #getLength()},
+     * e.g. to open the zip package it holds without copying it into memory.
+     * </p>
+     * <p>
+     * This implementation reads all the data from {@link #getDataStream(DirectoryNode)}
+     * into memory, decryptors able to decrypt at any position should override it.
+     * </p>
+     *
+     * @param dir the node to read from
+     * @return decrypted data
+     */
+    public DataSource getDataSource(DirectoryNode dir)
+        throws IOException, GeneralSecurityException {
+        InputStream is = getDataStream(dir);
+        try {
+            long length = getLength();
+            if (length > Integer.MAX_VALUE) {
+                throw new EncryptedDocumentException("Decrypted data is too large to be held in memory: " + length);
+            }
+            byte[] data = new byte[(int)length];
+            if (IOUtils.readFully(is, data) < data.length) {
+                throw new EncryptedDocumentException("Encrypted data is shorter than its declared length " + length);
+            }
+            return new ByteArrayBackedDataSource(data);
+        } finally {
+            is.close();
+        }
+    }
+
     public abstract boolean verifyPassword(String password)
         throws GeneralSecurityException;
 
@@ -28,8 +28,10 @@ import javax.crypto.CipherInputStream;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
+import org.apache.poi.EncryptedDocumentException;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.nio.DataSource;
 import org.apache.poi.util.LittleEndian;
 
 /**
@@ -129,6 +131,24 @@ public class EcmaDecryptor extends Decryptor {
         return new CipherInputStream(dis, getCipher());
     }
 
+    public DataSource getDataSource(DirectoryNode dir) throws IOException, GeneralSecurityException {
+        ChunkedCipherDataSource source = new ChunkedCipherDataSource(dir, 4096) {
+            private final Cipher _cipher = getCipher();
+
+            protected byte[] decryptChunk(int index, byte[] chunk) throws GeneralSecurityException {
+                return _cipher.doFinal(chunk);
+            }
+        };
+        // ECB works on whole blocks, so the encrypted data is padded to a multiple of them
+        if (source.getEncryptedSize() % 16 != 0) {
+            source.close();
+            throw new EncryptedDocumentException("Encrypted package size " + source.getEncryptedSize()
+                    + " is not a multiple of the cipher block size");
+        }
+        _length = source.size();
+        return source;
+    }
+
     public long getLength(){
         if(_length == -1) throw new IllegalStateException("EcmaDecryptor.getDataStream() was not called");
         return _length;
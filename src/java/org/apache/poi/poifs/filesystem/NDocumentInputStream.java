@@ -211,9 +211,17 @@ public final class NDocumentInputStream extends DocumentInputStream {
 		
 		long rval = new_offset - _current_offset;
 		
-		// TODO Do this better
-		byte[] skip = new byte[(int)rval];
-		readFully(skip);
+		// Move through the blocks, without copying their data
+		while(_current_offset < new_offset) {
+		   if(_buffer == null || _buffer.remaining() == 0) {
+		      _current_block_count++;
+		      _buffer = _data.next();
+		   }
+		   
+		   int limit = Math.min(new_offset-_current_offset, _buffer.remaining());
+		   _buffer.position(_buffer.position() + limit);
+		   _current_offset += limit;
+		}
 		return rval;
 	}
 
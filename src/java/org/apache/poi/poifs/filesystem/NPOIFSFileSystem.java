@@ -43,6 +43,7 @@ import org.apache.poi.poifs.dev.POIFSViewable;
 import org.apache.poi.poifs.nio.ByteArrayBackedDataSource;
 import org.apache.poi.poifs.nio.DataSource;
 import org.apache.poi.poifs.nio.FileBackedDataSource;
+import org.apache.poi.poifs.nio.MemoryMappedDataSource;
 import org.apache.poi.poifs.property.DirectoryProperty;
 import org.apache.poi.poifs.property.NPropertyTable;
 import org.apache.poi.poifs.storage.BATBlock;
@@ -184,6 +185,36 @@ public class NPOIFSFileSystem extends BlockStore
        this(channel, false);
     }
     
+    /**
+     * Creates a POIFSFileSystem from a {@link DataSource}, e.g. a 
+     *  {@link MemoryMappedDataSource} to let several threads read the
+     *  documents of a file concurrently, without copying its blocks.
+     *  
+     * Note that with this constructor, you will need to call {@link #close()}
+     *  when you're done to have the DataSource closed.
+     *  
+     * @param dataSource the DataSource from which to read the data
+     *
+     * @exception IOException on errors reading, or on invalid data
+     */
+    public NPOIFSFileSystem(DataSource dataSource)
+         throws IOException
+    {
+       this(false);
+
+       // Get the header, copied as the source may be shared
+       ByteBuffer headerBuffer = ByteBuffer.allocate(POIFSConstants.SMALLER_BIG_BLOCK_SIZE);
+       headerBuffer.put(dataSource.read(POIFSConstants.SMALLER_BIG_BLOCK_SIZE, 0));
+       headerBuffer.position(0);
+       
+       // Have the header processed
+       _header = new HeaderBlock(headerBuffer);
+       
+       // Now process the various entries
+       _data = dataSource;
+       readCoreContents();
+    }
+    
     private NPOIFSFileSystem(FileChannel channel, boolean closeChannelOnError)
          throws IOException
     {
@@ -26,23 +26,48 @@ import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
-
-import org.apache.poi.util.IOUtils;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * A POIFS {@link DataSource} backed by a File
+ * A POIFS {@link DataSource} backed by a File.
+ * <p>
+ * Reads use positional channel reads, so several threads may read at the same time.  An
+ *  optional cache keeps the most recently read blocks, to save re-reading blocks which are
+ *  accessed repeatedly, e.g. by several readers of the same document.  Each read returns
+ *  its own copy of a cached block, as callers may change the buffers they are given.
+ * </p>
  */
 public class FileBackedDataSource extends DataSource {
    private FileChannel channel;
+   /** Private copies of recently read buffers by position, or null */
+   private final Map<Long, ByteBuffer> cache;
    
    public FileBackedDataSource(File file) throws FileNotFoundException {
       if(!file.exists()) {
          throw new FileNotFoundException(file.toString());
       }
       this.channel = (new RandomAccessFile(file, "r")).getChannel();
+      this.cache = null;
    }
    public FileBackedDataSource(FileChannel channel) {
+      this(channel, 0);
+   }
+   /**
+    * @param channel the channel to read from
+    * @param cacheSize the number of recently read blocks to keep, 0 for none
+    */
+   public FileBackedDataSource(FileChannel channel, final int cacheSize) {
       this.channel = channel;
+      if(cacheSize > 0) {
+         this.cache = new LinkedHashMap<Long, ByteBuffer>(cacheSize * 4 / 3 + 1, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+               return size() > cacheSize;
+            }
+         };
+      } else {
+         this.cache = null;
+      }
    }
    
    public ByteBuffer read(int length, long position) throws IOException {
@@ -50,24 +75,61 @@ public class FileBackedDataSource extends DataSource {
          throw new IllegalArgumentException("Position " + position + " past the end of the file");
       }
 
-      // Read
-      channel.position(position);
+      if(cache != null) {
+         ByteBuffer cached;
+         synchronized(cache) {
+            cached = cache.get(position);
+         }
+         if(cached != null && cached.capacity() == length) {
+            return copyOf(cached);
+         }
+      }
+
+      // Read, without touching the position of the shared channel
       ByteBuffer dst = ByteBuffer.allocate(length);
-      int worked = IOUtils.readFully(channel, dst);
+      int worked = 0;
+      while(dst.hasRemaining()) {
+         int got = channel.read(dst, position + dst.position());
+         if(got < 0) {
+            break;
+         }
+         worked += got;
+      }
       
       // Check
-      if(worked == -1) {
+      if(worked == 0 && length > 0) {
          throw new IllegalArgumentException("Position " + position + " past the end of the file");
       }
       
       // Ready it for reading
       dst.position(0);
       
+      if(cache != null) {
+         synchronized(cache) {
+            cache.put(position, copyOf(dst));
+         }
+      }
+
       // All done
       return dst;
    }
    
+   private static ByteBuffer copyOf(ByteBuffer buffer) {
+      ByteBuffer src = buffer.duplicate();
+      src.clear();
+      ByteBuffer copy = ByteBuffer.allocate(src.capacity());
+      copy.put(src);
+      copy.position(0);
+      return copy;
+   }
+   
    public void write(ByteBuffer src, long position) throws IOException {
+      // Cached copies of the written range would now be stale
+      if(cache != null) {
+         synchronized(cache) {
+            cache.clear();
+         }
+      }
       channel.write(src, position);
    }
    
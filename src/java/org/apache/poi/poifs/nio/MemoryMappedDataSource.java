@@ -0,0 +1,134 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.poifs.nio;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A read-only POIFS {@link DataSource} backed by a memory mapped File.
+ * <p>
+ * The file is mapped in regions of 256MB.  Reads return read-only slices of the mapped
+ *  regions, without copying the data, and do not change any shared state, so any number
+ *  of threads may read at the same time.  As blocks never cross a region boundary, only
+ *  reads of unusual lengths and positions, and short reads at the end of the file, are
+ *  copied into a new buffer.
+ * </p>
+ * <p>
+ * The file can not be changed through this data source.  Note that the mapping is only
+ *  released once the buffers are garbage collected, on some platforms the file can not be
+ *  deleted until then.
+ * </p>
+ */
+public class MemoryMappedDataSource extends DataSource {
+   private static final int REGION_SHIFT = 28;
+   private static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+   private final FileChannel channel;
+   private final long size;
+   private ByteBuffer[] regions;
+
+   public MemoryMappedDataSource(File file) throws IOException {
+      this(openChannel(file));
+   }
+   public MemoryMappedDataSource(FileChannel channel) throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+      int count = (int)((size + REGION_SIZE - 1) >>> REGION_SHIFT);
+      regions = new ByteBuffer[count];
+      for(int i=0; i<count; i++) {
+         long start = (long)i << REGION_SHIFT;
+         regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+      }
+   }
+
+   private static FileChannel openChannel(File file) throws FileNotFoundException {
+      if(!file.exists()) {
+         throw new FileNotFoundException(file.toString());
+      }
+      return (new RandomAccessFile(file, "r")).getChannel();
+   }
+
+   public ByteBuffer read(int length, long position) throws IOException {
+      if(position >= size) {
+         throw new IllegalArgumentException("Position " + position + " past the end of the file");
+      }
+      ByteBuffer[] regions = this.regions;
+      if(regions == null) {
+         throw new IOException("Data source has been closed");
+      }
+
+      ByteBuffer region = regions[(int)(position >>> REGION_SHIFT)];
+      int offset = (int)(position & (REGION_SIZE - 1));
+      if(offset + length <= region.limit()) {
+         // The common case, a slice of the region
+         ByteBuffer dst = region.duplicate();
+         dst.position(offset);
+         dst.limit(offset + length);
+         return dst.slice();
+      }
+
+      // Crosses a region boundary or the end of the file, zero fill like a file read
+      ByteBuffer dst = ByteBuffer.allocate(length);
+      long pos = position;
+      while(dst.hasRemaining() && pos < size) {
+         ByteBuffer src = regions[(int)(pos >>> REGION_SHIFT)].duplicate();
+         src.position((int)(pos & (REGION_SIZE - 1)));
+         if(src.remaining() > dst.remaining()) {
+            src.limit(src.position() + dst.remaining());
+         }
+         pos += src.remaining();
+         dst.put(src);
+      }
+      dst.position(0);
+      return dst;
+   }
+
+   /**
+    * Not supported, the data source is read-only
+    */
+   public void write(ByteBuffer src, long position) throws IOException {
+      throw new UnsupportedOperationException("A memory mapped data source is read-only");
+   }
+
+   public void copyTo(OutputStream stream) throws IOException {
+      WritableByteChannel out = Channels.newChannel(stream);
+      for(ByteBuffer region : regions) {
+         ByteBuffer src = region.duplicate();
+         while(src.hasRemaining()) {
+            out.write(src);
+         }
+      }
+   }
+
+   public long size() throws IOException {
+      return size;
+   }
+
+   public void close() throws IOException {
+      regions = null;
+      channel.close();
+   }
+}
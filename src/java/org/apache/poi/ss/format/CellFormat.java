@@ -23,6 +23,7 @@ import org.apache.poi.ss.usermodel.DataFormatter;
 
 import javax.swing.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -112,9 +113,12 @@ public class CellFormat {
         }
     };
 
-    /** Maps a format string to its parsed version for efficiencies sake. */
+    /**
+     * Maps a format string to its parsed version for efficiencies sake.
+     * Synchronized, as CellFormats are shared by all threads.
+     */
     private static final Map<String, CellFormat> formatCache =
-            new WeakHashMap<String, CellFormat>();
+            Collections.synchronizedMap(new WeakHashMap<String, CellFormat>());
 
     /**
      * Returns a {@link CellFormat} that applies the given format.  Two calls
@@ -0,0 +1,50 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import org.apache.poi.ss.formula.eval.ValueEval;
+
+/**
+ * Implemented by area evaluations that can share a pre-computed summary (an 'index') of their
+ * cell values between formula evaluations.  Functions that repeatedly search the same range
+ * (e.g. VLOOKUP, MATCH) use this to avoid re-scanning the range on every call.<p/>
+ *
+ * Indexes are held in the evaluation cache and are discarded whenever any cell within the
+ * indexed area changes, so callers must not retain them beyond the current evaluation.
+ */
+public interface AreaIndexSource {
+
+	/**
+	 * Builds an index from the values of an area.  Implementations are used as cache keys (by
+	 * identity) and so should be singletons.
+	 */
+	interface IndexFactory<T> {
+		/**
+		 * @param values the evaluated cell values of the area in row-major order, never
+		 * <code>null</code> elements (blank cells are {@link org.apache.poi.ss.formula.eval.BlankEval})
+		 */
+		T createIndex(ValueEval[] values, int width, int height);
+	}
+
+	/**
+	 * @return the (possibly cached) index for this area, or <code>null</code> if the area
+	 * should be scanned directly, for example because it has not been requested often enough
+	 * to justify building an index, or because it could not be evaluated safely.
+	 */
+	<T> T getIndex(IndexFactory<T> factory);
+}
@@ -17,6 +17,10 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
 import org.apache.poi.ss.formula.eval.BlankEval;
 import org.apache.poi.ss.formula.eval.BoolEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
@@ -39,6 +43,7 @@ final class EvaluationCache {
 
 	private final PlainCellCache _plainCellCache;
 	private final FormulaCellCache _formulaCellCache;
+	private final Map<AreaIndexKey, AreaIndexCacheEntry> _areaIndexCache;
 	/** only used for testing. <code>null</code> otherwise */
 	final IEvaluationListener _evaluationListener;
 
@@ -46,6 +51,86 @@ final class EvaluationCache {
 		_evaluationListener = evaluationListener;
 		_plainCellCache = new PlainCellCache();
 		_formulaCellCache = new FormulaCellCache();
+		_areaIndexCache = new HashMap<AreaIndexKey, AreaIndexCacheEntry>();
+	}
+
+	/**
+	 * Identifies one area index: the indexed area together with the factory that built it.
+	 */
+	private static final class AreaIndexKey {
+		private final int _bookIndex;
+		private final int _sheetIndex;
+		private final int _firstRowIndex;
+		private final int _firstColumnIndex;
+		private final int _lastRowIndex;
+		private final int _lastColumnIndex;
+		private final Object _factory;
+
+		public AreaIndexKey(int bookIndex, int sheetIndex, int firstRowIndex, int firstColumnIndex,
+				int lastRowIndex, int lastColumnIndex, Object factory) {
+			_bookIndex = bookIndex;
+			_sheetIndex = sheetIndex;
+			_firstRowIndex = firstRowIndex;
+			_firstColumnIndex = firstColumnIndex;
+			_lastRowIndex = lastRowIndex;
+			_lastColumnIndex = lastColumnIndex;
+			_factory = factory;
+		}
+		public int hashCode() {
+			int result = _bookIndex * 17 + _sheetIndex;
+			result = result * 31 + _firstRowIndex;
+			result = result * 31 + _firstColumnIndex;
+			result = result * 31 + _lastRowIndex;
+			result = result * 31 + _lastColumnIndex;
+			return result * 31 + System.identityHashCode(_factory);
+		}
+		public boolean equals(Object obj) {
+			assert obj instanceof AreaIndexKey : "these private cache key instances are only compared to themselves";
+			AreaIndexKey other = (AreaIndexKey) obj;
+			return _factory == other._factory
+				&& _firstRowIndex == other._firstRowIndex
+				&& _firstColumnIndex == other._firstColumnIndex
+				&& _lastRowIndex == other._lastRowIndex
+				&& _lastColumnIndex == other._lastColumnIndex
+				&& _sheetIndex == other._sheetIndex
+				&& _bookIndex == other._bookIndex;
+		}
+	}
+
+	/**
+	 * Holds an index built over an area.  The index depends on the area cells in exactly the
+	 * same way as a formula would, so it is tracked by a (cell-less) formula cache entry. When
+	 * any input cell changes, that entry (and everything that used the index) gets cleared.
+	 */
+	static final class AreaIndexCacheEntry {
+		private final FormulaCellCacheEntry _formulaEntry;
+		private Object _index;
+		private int _requestCount;
+
+		public AreaIndexCacheEntry() {
+			_formulaEntry = new FormulaCellCacheEntry();
+		}
+		public FormulaCellCacheEntry getFormulaEntry() {
+			return _formulaEntry;
+		}
+		/**
+		 * @return <code>null</code> if the index has not been built yet, or has been invalidated
+		 */
+		public Object getIndex() {
+			if (_formulaEntry.getValue() == null) {
+				_index = null;
+			}
+			return _index;
+		}
+		public void setIndex(Object index) {
+			_index = index;
+		}
+		/**
+		 * @return the number of times the index has been requested, including this request
+		 */
+		public int incrementRequestCount() {
+			return ++_requestCount;
+		}
 	}
 
 	public void notifyUpdateCell(int bookIndex, int sheetIndex, EvaluationCell cell) {
@@ -124,6 +209,10 @@ final class EvaluationCache {
 				entry.notifyUpdatedBlankCell(bsk, rowIndex, columnIndex, _evaluationListener);
 			}
 		});
+		Iterator<AreaIndexCacheEntry> it = _areaIndexCache.values().iterator();
+		while (it.hasNext()) {
+			it.next().getFormulaEntry().notifyUpdatedBlankCell(bsk, rowIndex, columnIndex, _evaluationListener);
+		}
 	}
 
 	public PlainValueCellCacheEntry getPlainValueEntry(int bookIndex, int sheetIndex,
@@ -185,6 +274,18 @@ final class EvaluationCache {
 		return result;
 	}
 
+	public AreaIndexCacheEntry getOrCreateAreaIndexEntry(int bookIndex, int sheetIndex,
+			int firstRowIndex, int firstColumnIndex, int lastRowIndex, int lastColumnIndex, Object factory) {
+		AreaIndexKey key = new AreaIndexKey(bookIndex, sheetIndex, firstRowIndex, firstColumnIndex,
+				lastRowIndex, lastColumnIndex, factory);
+		AreaIndexCacheEntry result = _areaIndexCache.get(key);
+		if (result == null) {
+			result = new AreaIndexCacheEntry();
+			_areaIndexCache.put(key, result);
+		}
+		return result;
+	}
+
 	/**
 	 * Should be called whenever there are changes to input cells in the evaluated workbook.
 	 */
@@ -194,6 +295,7 @@ final class EvaluationCache {
 		}
 		_plainCellCache.clear();
 		_formulaCellCache.clear();
+		_areaIndexCache.clear();
 	}
 	public void notifyDeleteCell(int bookIndex, int sheetIndex, EvaluationCell cell) {
 
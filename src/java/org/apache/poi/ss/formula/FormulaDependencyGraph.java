@@ -0,0 +1,626 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.poi.ss.formula.ptg.AbstractFunctionPtg;
+import org.apache.poi.ss.formula.ptg.Area3DPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Ref3DPtg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+
+/**
+ * Static precedent/dependent graph of the formula cells of one workbook.<p/>
+ *
+ * Unlike the dependencies recorded by {@link EvaluationCache} (which are only known for
+ * cells that have already been evaluated), this graph is built up front from the
+ * {@link Ptg} tokens of every registered formula, including area references and the
+ * definitions of named ranges.  It is used to find the (transitive) set of formula cells
+ * affected by a batch of input changes, in an order where each formula comes after the
+ * formulas it depends on.<p/>
+ *
+ * Formulas whose precedents cannot be determined statically (e.g. <tt>INDIRECT()</tt>,
+ * <tt>OFFSET()</tt> or references to external workbooks) are treated as volatile and are
+ * always considered dependent.
+ */
+final class FormulaDependencyGraph {
+
+	/** functions whose result does not depend only on the (static) references in their arguments */
+	private static final Set<String> VOLATILE_FUNCTION_NAMES = new HashSet<String>();
+	static {
+		String[] names = { "INDIRECT", "OFFSET", "NOW", "TODAY", "RAND", "CELL", "INFO", };
+		for (int i = 0; i < names.length; i++) {
+			VOLATILE_FUNCTION_NAMES.add(names[i]);
+		}
+	}
+
+	/** guards against names whose definitions (indirectly) refer to themselves */
+	private static final int MAX_NAME_DEPTH = 32;
+
+	private static final class FormulaNode {
+		final EvaluationCell _cell;
+		final long _key;
+		final List<Long> _cellPrecedents;
+		final List<AreaDependency> _areaPrecedents;
+		boolean _isVolatile;
+
+		public FormulaNode(EvaluationCell cell, long key) {
+			_cell = cell;
+			_key = key;
+			_cellPrecedents = new ArrayList<Long>();
+			_areaPrecedents = new ArrayList<AreaDependency>();
+		}
+	}
+
+	private static final class AreaDependency {
+		final int _sheetIndex;
+		final int _firstRow;
+		final int _firstColumn;
+		final int _lastRow;
+		final int _lastColumn;
+		final FormulaNode _dependent;
+
+		public AreaDependency(int sheetIndex, int firstRow, int firstColumn,
+				int lastRow, int lastColumn, FormulaNode dependent) {
+			_sheetIndex = sheetIndex;
+			_firstRow = firstRow;
+			_firstColumn = firstColumn;
+			_lastRow = lastRow;
+			_lastColumn = lastColumn;
+			_dependent = dependent;
+		}
+		public boolean containsCell(int rowIndex, int columnIndex) {
+			return _firstRow <= rowIndex && rowIndex <= _lastRow
+				&& _firstColumn <= columnIndex && columnIndex <= _lastColumn;
+		}
+	}
+
+	/**
+	 * Area references of one sheet, indexed by the bands of rows and columns they cover, so
+	 * that finding the areas containing a cell does not need to test every area of the sheet.
+	 * Areas spanning many bands in one direction (e.g. whole columns) are indexed by their
+	 * bands in the other direction only, and areas spanning many bands in both directions are
+	 * kept in a list which is always scanned.
+	 */
+	private static final class AreaIndex {
+		private static final int ROW_BAND_SHIFT = 8;
+		private static final int COLUMN_BAND_SHIFT = 4;
+		/** areas covering more bands than this are indexed along one direction only */
+		private static final int MAX_BANDS_PER_AREA = 16;
+		/** band number standing for all bands of a direction */
+		private static final int ALL_BANDS = -1;
+
+		private final Map<Long, List<AreaDependency>> _areasByBand;
+		private final List<AreaDependency> _largeAreas;
+
+		public AreaIndex() {
+			_areasByBand = new HashMap<Long, List<AreaDependency>>();
+			_largeAreas = new ArrayList<AreaDependency>();
+		}
+
+		private static Long getBandKey(int rowBand, int columnBand) {
+			return Long.valueOf(((long)rowBand << 32) | (columnBand & 0xFFFFFFFFL));
+		}
+
+		/**
+		 * @return the keys of the bands the area is indexed under, or <code>null</code> if
+		 * the area is too large to be indexed
+		 */
+		private static List<Long> getBandKeys(AreaDependency ad) {
+			int firstRowBand = ad._firstRow >> ROW_BAND_SHIFT;
+			int lastRowBand = ad._lastRow >> ROW_BAND_SHIFT;
+			int firstColumnBand = ad._firstColumn >> COLUMN_BAND_SHIFT;
+			int lastColumnBand = ad._lastColumn >> COLUMN_BAND_SHIFT;
+			int nRowBands = lastRowBand - firstRowBand + 1;
+			int nColumnBands = lastColumnBand - firstColumnBand + 1;
+
+			List<Long> result = new ArrayList<Long>();
+			if (nRowBands * nColumnBands <= MAX_BANDS_PER_AREA) {
+				for (int r = firstRowBand; r <= lastRowBand; r++) {
+					for (int c = firstColumnBand; c <= lastColumnBand; c++) {
+						result.add(getBandKey(r, c));
+					}
+				}
+			} else if (nColumnBands <= MAX_BANDS_PER_AREA) {
+				for (int c = firstColumnBand; c <= lastColumnBand; c++) {
+					result.add(getBandKey(ALL_BANDS, c));
+				}
+			} else if (nRowBands <= MAX_BANDS_PER_AREA) {
+				for (int r = firstRowBand; r <= lastRowBand; r++) {
+					result.add(getBandKey(r, ALL_BANDS));
+				}
+			} else {
+				return null;
+			}
+			return result;
+		}
+
+		public void add(AreaDependency ad) {
+			List<Long> bandKeys = getBandKeys(ad);
+			if (bandKeys == null) {
+				_largeAreas.add(ad);
+				return;
+			}
+			for (int i = 0; i < bandKeys.size(); i++) {
+				Long bandKey = bandKeys.get(i);
+				List<AreaDependency> areas = _areasByBand.get(bandKey);
+				if (areas == null) {
+					areas = new ArrayList<AreaDependency>(2);
+					_areasByBand.put(bandKey, areas);
+				}
+				areas.add(ad);
+			}
+		}
+
+		public void remove(AreaDependency ad) {
+			List<Long> bandKeys = getBandKeys(ad);
+			if (bandKeys == null) {
+				_largeAreas.remove(ad);
+				return;
+			}
+			for (int i = 0; i < bandKeys.size(); i++) {
+				Long bandKey = bandKeys.get(i);
+				List<AreaDependency> areas = _areasByBand.get(bandKey);
+				if (areas != null) {
+					areas.remove(ad);
+					if (areas.isEmpty()) {
+						_areasByBand.remove(bandKey);
+					}
+				}
+			}
+		}
+
+		public boolean isEmpty() {
+			return _areasByBand.isEmpty() && _largeAreas.isEmpty();
+		}
+
+		/**
+		 * Adds the formulas of all areas containing the specified cell to <tt>result</tt>
+		 */
+		public void addDependents(int rowIndex, int columnIndex, Set<FormulaNode> result) {
+			int rowBand = rowIndex >> ROW_BAND_SHIFT;
+			int columnBand = columnIndex >> COLUMN_BAND_SHIFT;
+			addDependents(_areasByBand.get(getBandKey(rowBand, columnBand)), rowIndex, columnIndex, result);
+			addDependents(_areasByBand.get(getBandKey(ALL_BANDS, columnBand)), rowIndex, columnIndex, result);
+			addDependents(_areasByBand.get(getBandKey(rowBand, ALL_BANDS)), rowIndex, columnIndex, result);
+			addDependents(_largeAreas, rowIndex, columnIndex, result);
+		}
+
+		private static void addDependents(List<AreaDependency> areas, int rowIndex, int columnIndex,
+				Set<FormulaNode> result) {
+			if (areas == null) {
+				return;
+			}
+			for (int i = 0, n = areas.size(); i < n; i++) {
+				AreaDependency ad = areas.get(i);
+				if (ad.containsCell(rowIndex, columnIndex)) {
+					result.add(ad._dependent);
+				}
+			}
+		}
+	}
+
+	private final EvaluationWorkbook _workbook;
+	/** all registered formula cells, keyed by location */
+	private final Map<Long, FormulaNode> _formulaNodes;
+	/** formula cells referring to a single cell, keyed by the location of the referenced cell */
+	private final Map<Long, List<FormulaNode>> _cellDependents;
+	/** area references, grouped by the sheet index of the referenced area */
+	private final Map<Integer, AreaIndex> _areaDependentsBySheet;
+	private final Set<FormulaNode> _volatileNodes;
+
+	public FormulaDependencyGraph(EvaluationWorkbook workbook) {
+		_workbook = workbook;
+		_formulaNodes = new HashMap<Long, FormulaNode>();
+		_cellDependents = new HashMap<Long, List<FormulaNode>>();
+		_areaDependentsBySheet = new HashMap<Integer, AreaIndex>();
+		_volatileNodes = new LinkedHashSet<FormulaNode>();
+	}
+
+	/* package */ static long getKey(int sheetIndex, int rowIndex, int columnIndex) {
+		return ((long)sheetIndex << 48) | ((long)rowIndex << 16) | columnIndex;
+	}
+
+	public int getFormulaCellCount() {
+		return _formulaNodes.size();
+	}
+
+	/**
+	 * Adds (or replaces) the precedents of the specified formula cell
+	 */
+	public void addFormulaCell(int sheetIndex, EvaluationCell cell) {
+		removeFormulaCell(sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
+
+		long key = getKey(sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
+		FormulaNode node = new FormulaNode(cell, key);
+		addPrecedents(node, sheetIndex, _workbook.getFormulaTokens(cell), 0);
+		_formulaNodes.put(Long.valueOf(key), node);
+
+		List<Long> cellPrecedents = node._cellPrecedents;
+		for (int i = 0; i < cellPrecedents.size(); i++) {
+			Long precedentKey = cellPrecedents.get(i);
+			List<FormulaNode> dependents = _cellDependents.get(precedentKey);
+			if (dependents == null) {
+				dependents = new ArrayList<FormulaNode>(2);
+				_cellDependents.put(precedentKey, dependents);
+			}
+			dependents.add(node);
+		}
+		List<AreaDependency> areaPrecedents = node._areaPrecedents;
+		for (int i = 0; i < areaPrecedents.size(); i++) {
+			AreaDependency ad = areaPrecedents.get(i);
+			Integer sheetKey = Integer.valueOf(ad._sheetIndex);
+			AreaIndex areas = _areaDependentsBySheet.get(sheetKey);
+			if (areas == null) {
+				areas = new AreaIndex();
+				_areaDependentsBySheet.put(sheetKey, areas);
+			}
+			areas.add(ad);
+		}
+		if (node._isVolatile) {
+			_volatileNodes.add(node);
+		}
+	}
+
+	/**
+	 * Removes the formula cell at the specified location (if any) from this graph
+	 */
+	public void removeFormulaCell(int sheetIndex, int rowIndex, int columnIndex) {
+		FormulaNode node = _formulaNodes.remove(Long.valueOf(getKey(sheetIndex, rowIndex, columnIndex)));
+		if (node == null) {
+			return;
+		}
+		List<Long> cellPrecedents = node._cellPrecedents;
+		for (int i = 0; i < cellPrecedents.size(); i++) {
+			Long precedentKey = cellPrecedents.get(i);
+			List<FormulaNode> dependents = _cellDependents.get(precedentKey);
+			if (dependents != null) {
+				dependents.remove(node);
+				if (dependents.isEmpty()) {
+					_cellDependents.remove(precedentKey);
+				}
+			}
+		}
+		List<AreaDependency> areaPrecedents = node._areaPrecedents;
+		for (int i = 0; i < areaPrecedents.size(); i++) {
+			AreaDependency ad = areaPrecedents.get(i);
+			Integer sheetKey = Integer.valueOf(ad._sheetIndex);
+			AreaIndex areas = _areaDependentsBySheet.get(sheetKey);
+			if (areas != null) {
+				areas.remove(ad);
+				if (areas.isEmpty()) {
+					_areaDependentsBySheet.remove(sheetKey);
+				}
+			}
+		}
+		_volatileNodes.remove(node);
+	}
+
+	private void addPrecedents(FormulaNode node, int sheetIndex, Ptg[] ptgs, int nameDepth) {
+		for (int i = 0; i < ptgs.length; i++) {
+			Ptg ptg = ptgs[i];
+			if (ptg instanceof Ref3DPtg) {
+				int refSheetIndex = getInternalSheetIndex(((Ref3DPtg)ptg).getExternSheetIndex());
+				if (refSheetIndex < 0) {
+					node._isVolatile = true;
+				} else {
+					RefPtgBase rptg = (RefPtgBase) ptg;
+					node._cellPrecedents.add(Long.valueOf(getKey(refSheetIndex, rptg.getRow(), rptg.getColumn())));
+				}
+			} else if (ptg instanceof RefPtgBase) {
+				RefPtgBase rptg = (RefPtgBase) ptg;
+				node._cellPrecedents.add(Long.valueOf(getKey(sheetIndex, rptg.getRow(), rptg.getColumn())));
+			} else if (ptg instanceof Area3DPtg) {
+				int refSheetIndex = getInternalSheetIndex(((Area3DPtg)ptg).getExternSheetIndex());
+				if (refSheetIndex < 0) {
+					node._isVolatile = true;
+				} else {
+					addAreaPrecedent(node, refSheetIndex, (AreaPtgBase) ptg);
+				}
+			} else if (ptg instanceof AreaPtgBase) {
+				addAreaPrecedent(node, sheetIndex, (AreaPtgBase) ptg);
+			} else if (ptg instanceof NamePtg) {
+				EvaluationName name = _workbook.getName((NamePtg) ptg);
+				if (name == null || name.isFunctionName() || !name.hasFormula()) {
+					continue;
+				}
+				if (nameDepth >= MAX_NAME_DEPTH) {
+					node._isVolatile = true;
+				} else {
+					addPrecedents(node, sheetIndex, name.getNameDefinition(), nameDepth + 1);
+				}
+			} else if (ptg instanceof NameXPtg) {
+				// external names and add-in functions - cannot be resolved statically
+				node._isVolatile = true;
+			} else if (ptg instanceof AbstractFunctionPtg) {
+				if (VOLATILE_FUNCTION_NAMES.contains(((AbstractFunctionPtg) ptg).getName())) {
+					node._isVolatile = true;
+				}
+			}
+		}
+	}
+
+	private void addAreaPrecedent(FormulaNode node, int sheetIndex, AreaPtgBase aptg) {
+		node._areaPrecedents.add(new AreaDependency(sheetIndex, aptg.getFirstRow(), aptg.getFirstColumn(),
+				aptg.getLastRow(), aptg.getLastColumn(), node));
+	}
+
+	/**
+	 * @return -1 if the extern sheet index refers to another workbook
+	 */
+	private int getInternalSheetIndex(int externSheetIndex) {
+		if (_workbook.getExternalSheet(externSheetIndex) != null) {
+			return -1;
+		}
+		return _workbook.convertFromExternSheetIndex(externSheetIndex);
+	}
+
+	private void addDirectDependents(int sheetIndex, int rowIndex, int columnIndex, Set<FormulaNode> result) {
+		List<FormulaNode> cellDependents = _cellDependents.get(Long.valueOf(getKey(sheetIndex, rowIndex, columnIndex)));
+		if (cellDependents != null) {
+			result.addAll(cellDependents);
+		}
+		AreaIndex areas = _areaDependentsBySheet.get(Integer.valueOf(sheetIndex));
+		if (areas != null) {
+			areas.addDependents(rowIndex, columnIndex, result);
+		}
+	}
+
+	/**
+	 * Finds all formula cells that (directly or indirectly) depend on any of the specified
+	 * cells, plus all volatile formula cells.  Changed cells that are themselves formulas are
+	 * included in the result.
+	 *
+	 * @param sheetIndexes sheet index of each changed cell
+	 * @return the affected formula cells, ordered so that each formula cell comes after all
+	 * affected formula cells it refers to.  Cells that are part of a circular reference are
+	 * appended at the end.
+	 */
+	public EvaluationCell[] getDependentCells(int[] sheetIndexes, EvaluationCell[] changedCells) {
+		// discover affected nodes (breadth first), remembering the edges between them
+		Map<FormulaNode, Set<FormulaNode>> dependentsByNode = new LinkedHashMap<FormulaNode, Set<FormulaNode>>();
+		List<FormulaNode> queue = new ArrayList<FormulaNode>();
+		Set<FormulaNode> initial = new LinkedHashSet<FormulaNode>();
+		for (int i = 0; i < changedCells.length; i++) {
+			EvaluationCell cell = changedCells[i];
+			FormulaNode node = _formulaNodes.get(Long.valueOf(getKey(sheetIndexes[i], cell.getRowIndex(), cell.getColumnIndex())));
+			if (node != null) {
+				initial.add(node);
+			}
+			addDirectDependents(sheetIndexes[i], cell.getRowIndex(), cell.getColumnIndex(), initial);
+		}
+		initial.addAll(_volatileNodes);
+		for (FormulaNode node : initial) {
+			if (!dependentsByNode.containsKey(node)) {
+				dependentsByNode.put(node, null);
+				queue.add(node);
+			}
+		}
+		for (int i = 0; i < queue.size(); i++) {
+			FormulaNode node = queue.get(i);
+			int nodeSheetIndex = (int) (node._key >>> 48);
+			Set<FormulaNode> dependents = new LinkedHashSet<FormulaNode>();
+			addDirectDependents(nodeSheetIndex, node._cell.getRowIndex(), node._cell.getColumnIndex(), dependents);
+			dependents.remove(node);
+			dependentsByNode.put(node, dependents);
+			for (FormulaNode dependent : dependents) {
+				if (!dependentsByNode.containsKey(dependent)) {
+					dependentsByNode.put(dependent, null);
+					queue.add(dependent);
+				}
+			}
+		}
+
+		// topological sort (Kahn's algorithm) of the affected sub-graph
+		Map<FormulaNode, int[]> inDegrees = new HashMap<FormulaNode, int[]>(queue.size() * 3 / 2 + 1);
+		for (int i = 0; i < queue.size(); i++) {
+			inDegrees.put(queue.get(i), new int[1]);
+		}
+		for (Set<FormulaNode> dependents : dependentsByNode.values()) {
+			for (FormulaNode dependent : dependents) {
+				inDegrees.get(dependent)[0]++;
+			}
+		}
+		List<FormulaNode> ordered = new ArrayList<FormulaNode>(queue.size());
+		for (int i = 0; i < queue.size(); i++) {
+			FormulaNode node = queue.get(i);
+			if (inDegrees.get(node)[0] == 0) {
+				ordered.add(node);
+			}
+		}
+		for (int i = 0; i < ordered.size(); i++) {
+			for (FormulaNode dependent : dependentsByNode.get(ordered.get(i))) {
+				if (--inDegrees.get(dependent)[0] == 0) {
+					ordered.add(dependent);
+				}
+			}
+		}
+		if (ordered.size() < queue.size()) {
+			// circular references - let the evaluator report those
+			for (int i = 0; i < queue.size(); i++) {
+				FormulaNode node = queue.get(i);
+				if (inDegrees.get(node)[0] > 0) {
+					ordered.add(node);
+				}
+			}
+		}
+
+		EvaluationCell[] result = new EvaluationCell[ordered.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ordered.get(i)._cell;
+		}
+		return result;
+	}
+
+	private static final Comparator<FormulaNode> ROW_COMPARATOR = new Comparator<FormulaNode>() {
+		public int compare(FormulaNode a, FormulaNode b) {
+			return a._cell.getRowIndex() - b._cell.getRowIndex();
+		}
+	};
+
+	/**
+	 * Splits the registered formula cells into groups which do not refer to each other
+	 * (directly or indirectly), so that each group can be evaluated independently of the
+	 * others.  Volatile formulas are grouped by their static references only, so a group
+	 * containing (for example) <tt>INDIRECT()</tt> may still read cells of other groups.
+	 *
+	 * @return the groups, largest first
+	 */
+	public List<EvaluationCell[]> getIndependentGroups() {
+		int nNodes = _formulaNodes.size();
+		FormulaNode[] nodes = new FormulaNode[nNodes];
+		_formulaNodes.values().toArray(nodes);
+		Map<FormulaNode, Integer> nodeIndexes = new HashMap<FormulaNode, Integer>(nNodes * 3 / 2 + 1);
+		// formula cells of each sheet, grouped by column and sorted by row
+		Map<Integer, SortedMap<Integer, List<FormulaNode>>> columnsBySheet
+				= new HashMap<Integer, SortedMap<Integer, List<FormulaNode>>>();
+		for (int i = 0; i < nNodes; i++) {
+			FormulaNode node = nodes[i];
+			nodeIndexes.put(node, Integer.valueOf(i));
+			Integer sheetKey = Integer.valueOf((int) (node._key >>> 48));
+			SortedMap<Integer, List<FormulaNode>> columns = columnsBySheet.get(sheetKey);
+			if (columns == null) {
+				columns = new TreeMap<Integer, List<FormulaNode>>();
+				columnsBySheet.put(sheetKey, columns);
+			}
+			Integer columnKey = Integer.valueOf(node._cell.getColumnIndex());
+			List<FormulaNode> column = columns.get(columnKey);
+			if (column == null) {
+				column = new ArrayList<FormulaNode>();
+				columns.put(columnKey, column);
+			}
+			column.add(node);
+		}
+		for (SortedMap<Integer, List<FormulaNode>> columns : columnsBySheet.values()) {
+			for (List<FormulaNode> column : columns.values()) {
+				Collections.sort(column, ROW_COMPARATOR);
+			}
+		}
+
+		// union-find over the formula cells, joining each formula with its formula precedents
+		int[] parents = new int[nNodes];
+		for (int i = 0; i < nNodes; i++) {
+			parents[i] = i;
+		}
+		for (int i = 0; i < nNodes; i++) {
+			FormulaNode node = nodes[i];
+			List<Long> cellPrecedents = node._cellPrecedents;
+			for (int j = 0; j < cellPrecedents.size(); j++) {
+				FormulaNode precedent = _formulaNodes.get(cellPrecedents.get(j));
+				if (precedent != null) {
+					union(parents, i, nodeIndexes.get(precedent).intValue());
+				}
+			}
+			List<AreaDependency> areaPrecedents = node._areaPrecedents;
+			for (int j = 0; j < areaPrecedents.size(); j++) {
+				AreaDependency ad = areaPrecedents.get(j);
+				SortedMap<Integer, List<FormulaNode>> columns = columnsBySheet.get(Integer.valueOf(ad._sheetIndex));
+				if (columns == null) {
+					continue;
+				}
+				SortedMap<Integer, List<FormulaNode>> areaColumns
+						= columns.subMap(Integer.valueOf(ad._firstColumn), Integer.valueOf(ad._lastColumn + 1));
+				for (List<FormulaNode> column : areaColumns.values()) {
+					for (int k = findFirstRow(column, ad._firstRow); k < column.size(); k++) {
+						FormulaNode precedent = column.get(k);
+						if (precedent._cell.getRowIndex() > ad._lastRow) {
+							break;
+						}
+						union(parents, i, nodeIndexes.get(precedent).intValue());
+					}
+				}
+			}
+		}
+
+		Map<Integer, List<EvaluationCell>> cellsByRoot = new LinkedHashMap<Integer, List<EvaluationCell>>();
+		for (int i = 0; i < nNodes; i++) {
+			Integer root = Integer.valueOf(find(parents, i));
+			List<EvaluationCell> group = cellsByRoot.get(root);
+			if (group == null) {
+				group = new ArrayList<EvaluationCell>();
+				cellsByRoot.put(root, group);
+			}
+			group.add(nodes[i]._cell);
+		}
+		List<EvaluationCell[]> result = new ArrayList<EvaluationCell[]>(cellsByRoot.size());
+		for (List<EvaluationCell> group : cellsByRoot.values()) {
+			EvaluationCell[] cells = new EvaluationCell[group.size()];
+			result.add(group.toArray(cells));
+		}
+		Collections.sort(result, new Comparator<EvaluationCell[]>() {
+			public int compare(EvaluationCell[] a, EvaluationCell[] b) {
+				return b.length - a.length;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return the index of the first formula in <tt>column</tt> at or below <tt>rowIndex</tt>
+	 */
+	private static int findFirstRow(List<FormulaNode> column, int rowIndex) {
+		int low = 0;
+		int high = column.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (column.get(mid)._cell.getRowIndex() < rowIndex) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static int find(int[] parents, int i) {
+		int root = i;
+		while (parents[root] != root) {
+			root = parents[root];
+		}
+		// path compression
+		while (parents[i] != root) {
+			int next = parents[i];
+			parents[i] = root;
+			i = next;
+		}
+		return root;
+	}
+
+	private static void union(int[] parents, int a, int b) {
+		int rootA = find(parents, a);
+		int rootB = find(parents, b);
+		if (rootA != rootB) {
+			parents[rootB] = rootA;
+		}
+	}
+}
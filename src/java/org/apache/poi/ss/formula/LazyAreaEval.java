@@ -28,7 +28,7 @@ import org.apache.poi.ss.util.CellReference;
  *
  * @author Josh Micich
  */
-final class LazyAreaEval extends AreaEvalBase {
+final class LazyAreaEval extends AreaEvalBase implements AreaIndexSource {
 
 	private final SheetRefEvaluator _evaluator;
 
@@ -51,6 +51,10 @@ final class LazyAreaEval extends AreaEvalBase {
 		return _evaluator.getEvalForCell(rowIx, colIx);
 	}
 
+	public <T> T getIndex(IndexFactory<T> factory) {
+		return _evaluator.getAreaIndex(factory, getFirstRow(), getFirstColumn(), getLastRow(), getLastColumn());
+	}
+
 	public AreaEval offset(int relFirstRowIx, int relLastRowIx, int relFirstColIx, int relLastColIx) {
 		AreaI area = new OffsetArea(getFirstRow(), getFirstColumn(),
 				relFirstRowIx, relLastRowIx, relFirstColIx, relLastColIx);
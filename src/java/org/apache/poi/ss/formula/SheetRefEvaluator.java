@@ -51,6 +51,12 @@ final class SheetRefEvaluator {
 		return _bookEvaluator.evaluateReference(getSheet(), _sheetIndex, rowIndex, columnIndex, _tracker);
 	}
 
+	public <T> T getAreaIndex(AreaIndexSource.IndexFactory<T> factory, int firstRowIndex,
+			int firstColumnIndex, int lastRowIndex, int lastColumnIndex) {
+		return _bookEvaluator.getAreaIndex(getSheet(), _sheetIndex, firstRowIndex, firstColumnIndex,
+				lastRowIndex, lastColumnIndex, factory, _tracker);
+	}
+
 	private EvaluationSheet getSheet() {
 		if (_sheet == null) {
 			_sheet = _bookEvaluator.getSheet(_sheetIndex);
@@ -18,6 +18,10 @@
 package org.apache.poi.ss.formula;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.poi.ss.formula.atp.AnalysisToolPak;
 import org.apache.poi.ss.formula.eval.*;
@@ -56,6 +60,7 @@ import org.apache.poi.ss.formula.udf.AggregatingUDFFinder;
 import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.ss.formula.CollaboratingWorkbooksEnvironment.WorkbookNotFoundException;
+import org.apache.poi.ss.formula.EvaluationCache.AreaIndexCacheEntry;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
@@ -76,6 +81,9 @@ public final class WorkbookEvaluator {
 	
 	private static final POILogger LOG = POILogFactory.getLogger(WorkbookEvaluator.class);
 
+	/** groups of independent formula cells are combined into tasks of at least this size */
+	private static final int MIN_CELLS_PER_PARALLEL_TASK = 512;
+
     private final EvaluationWorkbook _workbook;
 	private EvaluationCache _cache;
 	/** part of cache entry key (useful when evaluating multiple workbooks) */
@@ -87,6 +95,8 @@ public final class WorkbookEvaluator {
 	private CollaboratingWorkbooksEnvironment _collaboratingWorkbookEnvironment;
 	private final IStabilityClassifier _stabilityClassifier;
 	private final AggregatingUDFFinder _udfFinder;
+	/** <code>null</code> until the first call to {@link #registerFormulaCell(EvaluationCell)} */
+	private FormulaDependencyGraph _dependencyGraph;
 
     private boolean _ignoreMissingWorkbooks = false;
 
@@ -193,6 +203,7 @@ public final class WorkbookEvaluator {
 	public void clearAllCachedResultValues() {
 		_cache.clear();
 		_sheetIndexesBySheet.clear();
+		_dependencyGraph = null;
 	}
 
 	/**
@@ -202,6 +213,13 @@ public final class WorkbookEvaluator {
 	public void notifyUpdateCell(EvaluationCell cell) {
 		int sheetIndex = getSheetIndex(cell.getSheet());
 		_cache.notifyUpdateCell(_workbookIx, sheetIndex, cell);
+		if (_dependencyGraph != null) {
+			if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
+				_dependencyGraph.addFormulaCell(sheetIndex, cell);
+			} else {
+				_dependencyGraph.removeFormulaCell(sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
+			}
+		}
 	}
 	/**
 	 * Should be called to tell the cell value cache that the specified cell has just been
@@ -210,6 +228,52 @@ public final class WorkbookEvaluator {
 	public void notifyDeleteCell(EvaluationCell cell) {
 		int sheetIndex = getSheetIndex(cell.getSheet());
 		_cache.notifyDeleteCell(_workbookIx, sheetIndex, cell);
+		if (_dependencyGraph != null) {
+			_dependencyGraph.removeFormulaCell(sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if formula cells have been registered with
+	 * {@link #registerFormulaCell(EvaluationCell)} since the last call to
+	 * {@link #clearAllCachedResultValues()}
+	 */
+	public boolean hasDependencyGraph() {
+		return _dependencyGraph != null;
+	}
+
+	/**
+	 * Adds the precedents of the specified formula cell to the dependency graph used by
+	 * {@link #getDependentFormulaCells(EvaluationCell[])}.  Once the graph exists, it is kept up
+	 * to date by {@link #notifyUpdateCell(EvaluationCell)} and {@link #notifyDeleteCell(EvaluationCell)}.
+	 */
+	public void registerFormulaCell(EvaluationCell cell) {
+		if (cell.getCellType() != Cell.CELL_TYPE_FORMULA) {
+			throw new IllegalArgumentException("Not a formula cell");
+		}
+		if (_dependencyGraph == null) {
+			_dependencyGraph = new FormulaDependencyGraph(_workbook);
+		}
+		_dependencyGraph.addFormulaCell(getSheetIndex(cell.getSheet()), cell);
+	}
+
+	/**
+	 * Finds the registered formula cells that need recalculation after the specified cells
+	 * have changed (see {@link #registerFormulaCell(EvaluationCell)}).
+	 *
+	 * @return the (transitive) dependents of <tt>changedCells</tt> in calculation order, i.e.
+	 * every formula cell comes after the formula cells it refers to. Empty if no dependency
+	 * graph has been built.
+	 */
+	public EvaluationCell[] getDependentFormulaCells(EvaluationCell[] changedCells) {
+		if (_dependencyGraph == null) {
+			return new EvaluationCell[0];
+		}
+		int[] sheetIndexes = new int[changedCells.length];
+		for (int i = 0; i < changedCells.length; i++) {
+			sheetIndexes[i] = getSheetIndex(changedCells[i].getSheet());
+		}
+		return _dependencyGraph.getDependentCells(sheetIndexes, changedCells);
 	}
 	
 	private int getSheetIndex(EvaluationSheet sheet) {
@@ -230,6 +294,95 @@ public final class WorkbookEvaluator {
 		return evaluateAny(srcCell, sheetIndex, srcCell.getRowIndex(), srcCell.getColumnIndex(), new EvaluationTracker(_cache));
 	}
 
+	/**
+	 * Evaluates all formula cells registered with {@link #registerFormulaCell(EvaluationCell)},
+	 * using several threads.<p/>
+	 *
+	 * The formula cells are split into groups which do not depend on each other, and the
+	 * groups are evaluated concurrently on the supplied executor.  Each task uses its own
+	 * {@link WorkbookEvaluator} (and hence its own cache), so this evaluator is not touched by
+	 * other threads.  The workbook must not be modified while this method runs.  When this
+	 * evaluator is part of a {@link CollaboratingWorkbooksEnvironment} the cells are evaluated
+	 * sequentially on the calling thread.
+	 *
+	 * @return the evaluation result of each registered formula cell
+	 */
+	public Map<EvaluationCell, ValueEval> evaluateAllParallel(ExecutorService executor) {
+		if (_dependencyGraph == null) {
+			return Collections.emptyMap();
+		}
+		List<EvaluationCell[]> groups = _dependencyGraph.getIndependentGroups();
+		Map<EvaluationCell, ValueEval> result = new LinkedHashMap<EvaluationCell, ValueEval>(
+				_dependencyGraph.getFormulaCellCount() * 3 / 2 + 1);
+		if (_collaboratingWorkbookEnvironment != CollaboratingWorkbooksEnvironment.EMPTY) {
+			for (EvaluationCell[] group : groups) {
+				for (int i = 0; i < group.length; i++) {
+					result.put(group[i], evaluate(group[i]));
+				}
+			}
+			return result;
+		}
+
+		// combine small groups, so that the task overhead does not dominate
+		List<Future<ValueEval[]>> futures = new ArrayList<Future<ValueEval[]>>();
+		List<EvaluationCell[]> tasks = new ArrayList<EvaluationCell[]>();
+		List<EvaluationCell> pending = new ArrayList<EvaluationCell>();
+		for (EvaluationCell[] group : groups) {
+			pending.addAll(Arrays.asList(group));
+			if (pending.size() >= MIN_CELLS_PER_PARALLEL_TASK) {
+				tasks.add(pending.toArray(new EvaluationCell[pending.size()]));
+				pending.clear();
+			}
+		}
+		if (!pending.isEmpty()) {
+			tasks.add(pending.toArray(new EvaluationCell[pending.size()]));
+		}
+		for (final EvaluationCell[] cells : tasks) {
+			futures.add(executor.submit(new Callable<ValueEval[]>() {
+				public ValueEval[] call() {
+					WorkbookEvaluator evaluator = new WorkbookEvaluator(_workbook, null, _stabilityClassifier, null);
+					evaluator.setIgnoreMissingWorkbooks(_ignoreMissingWorkbooks);
+					ValueEval[] values = new ValueEval[cells.length];
+					for (int i = 0; i < cells.length; i++) {
+						values[i] = evaluator.evaluate(cells[i]);
+					}
+					return values;
+				}
+			}));
+		}
+		for (int i = 0; i < tasks.size(); i++) {
+			ValueEval[] values;
+			try {
+				values = futures.get(i).get();
+			} catch (InterruptedException e) {
+				cancelAll(futures);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				cancelAll(futures);
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+			EvaluationCell[] cells = tasks.get(i);
+			for (int j = 0; j < cells.length; j++) {
+				result.put(cells[j], values[j]);
+			}
+		}
+		return result;
+	}
+
+	private static void cancelAll(List<Future<ValueEval[]>> futures) {
+		for (Future<ValueEval[]> future : futures) {
+			future.cancel(true);
+		}
+	}
+
 	/**
 	 * Case-insensitive.
 	 * @return -1 if sheet with specified name does not exist
@@ -397,6 +550,25 @@ public final class WorkbookEvaluator {
 	// current indent level for evalution; negative value for no output
 	private int dbgEvaluationOutputIndent = -1;
 
+	/**
+	 * Operand stack shared by all (nested) calls to {@link #evaluateFormula(OperationEvaluationContext, Ptg[])}.
+	 * Each call uses the section above the size found on entry, so no stack is allocated per formula.
+	 */
+	private ValueEval[] _operandStack = new ValueEval[32];
+	private int _operandStackSize;
+
+	/**
+	 * Interprets the RPN tokens of a formula.<p/>
+	 *
+	 * Formulas are deliberately not compiled into an executable tree here. The tokens are
+	 * already a flat, pre-resolved program (functions are looked up by index, operands carry
+	 * their coordinates), and the lazy IF/CHOOSE/skip handling works by jumping over token
+	 * ranges, which a tree would have to re-implement per node type. For shared formulas the
+	 * tokens of every cell differ by the shift of their relative references, so a compiled form
+	 * could not be reused as is either. Instead, the master formula of a shared group is parsed
+	 * only once and its tokens are shifted for each cell (as HSSF does with the stored tokens of
+	 * a shared formula record), and evaluation itself allocates no operand stack.
+	 */
 	// visibility raised for testing
 	/* package */ ValueEval evaluateFormula(OperationEvaluationContext ec, Ptg[] ptgs) {
 
@@ -418,7 +590,36 @@ public final class WorkbookEvaluator {
 			dbgEvaluationOutputIndent++;
 		}
 
-		Stack<ValueEval> stack = new Stack<ValueEval>();
+		int stackBase = _operandStackSize;
+		ensureOperandStackCapacity(stackBase + ptgs.length);
+		ValueEval value;
+		try {
+			value = evaluateTokens(ec, ptgs, stackBase, dbgIndentStr);
+		} finally {
+			releaseOperandStack(stackBase);
+		}
+		ValueEval result = dereferenceResult(value, ec.getRowIndex(), ec.getColumnIndex());
+		if (dbgEvaluationOutputIndent > 0) {
+			EVAL_LOG.log(POILogger.INFO, dbgIndentStr + "finshed eval of "
+							+ new CellReference(ec.getRowIndex(), ec.getColumnIndex()).formatAsString()
+							+ ": " + result);
+			dbgEvaluationOutputIndent--;
+			if (dbgEvaluationOutputIndent == 1) {
+				// this evaluation is done, reset indent to stop logging
+				dbgEvaluationOutputIndent = -1;
+			}
+		} // if
+		return result;
+
+	}
+
+	/**
+	 * Executes the RPN tokens of a formula, using the section of the shared operand stack
+	 * above <tt>stackBase</tt>
+	 *
+	 * @return the single (not yet dereferenced) value left on the operand stack
+	 */
+	private ValueEval evaluateTokens(OperationEvaluationContext ec, Ptg[] ptgs, int stackBase, String dbgIndentStr) {
 		for (int i = 0, iSize = ptgs.length; i < iSize; i++) {
 
 			// since we don't know how to handle these yet :(
@@ -434,20 +635,20 @@ public final class WorkbookEvaluator {
 					ptg = FuncVarPtg.SUM;
 				}
 				if (attrPtg.isOptimizedChoose()) {
-					ValueEval arg0 = stack.pop();
+					ValueEval arg0 = popOperand(stackBase);
 					int[] jumpTable = attrPtg.getJumpTable();
 					int dist;
 					int nChoices = jumpTable.length;
 					try {
 						int switchIndex = Choose.evaluateFirstArg(arg0, ec.getRowIndex(), ec.getColumnIndex());
 						if (switchIndex<1 || switchIndex > nChoices) {
-							stack.push(ErrorEval.VALUE_INVALID);
+							pushOperand(ErrorEval.VALUE_INVALID);
 							dist = attrPtg.getChooseFuncOffset() + 4; // +4 for tFuncFar(CHOOSE)
 						} else {
 							dist = jumpTable[switchIndex-1];
 						}
 					} catch (EvaluationException e) {
-						stack.push(e.getErrorEval());
+						pushOperand(e.getErrorEval());
 						dist = attrPtg.getChooseFuncOffset() + 4; // +4 for tFuncFar(CHOOSE)
 					}
 					// Encoded dist for tAttrChoose includes size of jump table, but
@@ -457,12 +658,12 @@ public final class WorkbookEvaluator {
 					continue;
 				}
 				if (attrPtg.isOptimizedIf()) {
-					ValueEval arg0 = stack.pop();
+					ValueEval arg0 = popOperand(stackBase);
 					boolean evaluatedPredicate;
 					try {
 						evaluatedPredicate = IfFunc.evaluateFirstArg(arg0, ec.getRowIndex(), ec.getColumnIndex());
 					} catch (EvaluationException e) {
-						stack.push(e.getErrorEval());
+						pushOperand(e.getErrorEval());
 						int dist = attrPtg.getData();
 						i+= countTokensToBeSkipped(ptgs, i, dist);
 						attrPtg = (AttrPtg) ptgs[i];
@@ -479,7 +680,7 @@ public final class WorkbookEvaluator {
 						if (ptgs[i] instanceof AttrPtg && nextPtg instanceof FuncVarPtg) {
 							// this is an if statement without a false param (as opposed to MissingArgPtg as the false param)
 							i++;
-							stack.push(BoolEval.FALSE);
+							pushOperand(BoolEval.FALSE);
 						}
 					}
 					continue;
@@ -487,9 +688,9 @@ public final class WorkbookEvaluator {
 				if (attrPtg.isSkip()) {
 					int dist = attrPtg.getData()+1;
 					i+= countTokensToBeSkipped(ptgs, i, dist);
-					if (stack.peek() == MissingArgEval.instance) {
-						stack.pop();
-						stack.push(BlankEval.instance);
+					if (peekOperand(stackBase) == MissingArgEval.instance) {
+						popOperand(stackBase);
+						pushOperand(BlankEval.instance);
 					}
 					continue;
 				}
@@ -518,7 +719,7 @@ public final class WorkbookEvaluator {
 
 				// storing the ops in reverse order since they are popping
 				for (int j = numops - 1; j >= 0; j--) {
-					ValueEval p = stack.pop();
+					ValueEval p = popOperand(stackBase);
 					ops[j] = p;
 				}
 //				logDebug("invoke " + operation + " (nAgs=" + numops + ")");
@@ -530,29 +731,54 @@ public final class WorkbookEvaluator {
 				throw new RuntimeException("Evaluation result must not be null");
 			}
 //			logDebug("push " + opResult);
-			stack.push(opResult);
+			pushOperand(opResult);
 			if (dbgEvaluationOutputIndent > 0) {
 				EVAL_LOG.log(POILogger.INFO, dbgIndentStr + "    = " + opResult);
 			}
 		}
 
-		ValueEval value = stack.pop();
-		if (!stack.isEmpty()) {
+		ValueEval value = popOperand(stackBase);
+		if (_operandStackSize != stackBase) {
 			throw new IllegalStateException("evaluation stack not empty");
 		}
-		ValueEval result = dereferenceResult(value, ec.getRowIndex(), ec.getColumnIndex());
-		if (dbgEvaluationOutputIndent > 0) {
-			EVAL_LOG.log(POILogger.INFO, dbgIndentStr + "finshed eval of "
-							+ new CellReference(ec.getRowIndex(), ec.getColumnIndex()).formatAsString()
-							+ ": " + result);
-			dbgEvaluationOutputIndent--;
-			if (dbgEvaluationOutputIndent == 1) {
-				// this evaluation is done, reset indent to stop logging
-				dbgEvaluationOutputIndent = -1;
-			}
-		} // if
-		return result;
+		return value;
+	}
 
+	private void ensureOperandStackCapacity(int minCapacity) {
+		if (minCapacity > _operandStack.length) {
+			ValueEval[] newStack = new ValueEval[Math.max(minCapacity, _operandStack.length * 2)];
+			System.arraycopy(_operandStack, 0, newStack, 0, _operandStackSize);
+			_operandStack = newStack;
+		}
+	}
+	private void pushOperand(ValueEval value) {
+		if (_operandStackSize == _operandStack.length) {
+			ensureOperandStackCapacity(_operandStackSize + 1);
+		}
+		_operandStack[_operandStackSize++] = value;
+	}
+	private ValueEval popOperand(int stackBase) {
+		if (_operandStackSize <= stackBase) {
+			throw new EmptyStackException();
+		}
+		ValueEval result = _operandStack[--_operandStackSize];
+		_operandStack[_operandStackSize] = null;
+		return result;
+	}
+	private ValueEval peekOperand(int stackBase) {
+		if (_operandStackSize <= stackBase) {
+			throw new EmptyStackException();
+		}
+		return _operandStack[_operandStackSize - 1];
+	}
+	/**
+	 * Discards anything left above <tt>stackBase</tt> (e.g. after an exception)
+	 */
+	private void releaseOperandStack(int stackBase) {
+		for (int i = stackBase; i < _operandStackSize; i++) {
+			_operandStack[i] = null;
+		}
+		_operandStackSize = stackBase;
 	}
 
 	/**
@@ -612,6 +838,15 @@ public final class WorkbookEvaluator {
 	private ValueEval getEvalForPtg(Ptg ptg, OperationEvaluationContext ec) {
 		//  consider converting all these (ptg instanceof XxxPtg) expressions to (ptg.getClass() == XxxPtg.class)
 
+		// the most frequent operand tokens are checked first
+		if (ptg instanceof RefPtg) {
+			RefPtg rptg = (RefPtg) ptg;
+			return ec.getRefEval(rptg.getRow(), rptg.getColumn());
+		}
+		if (ptg instanceof AreaPtg) {
+			AreaPtg aptg = (AreaPtg) ptg;
+			return ec.getAreaEval(aptg.getFirstRow(), aptg.getFirstColumn(), aptg.getLastRow(), aptg.getLastColumn());
+		}
 		if (ptg instanceof NamePtg) {
 			// named ranges, macro functions
 			NamePtg namePtg = (NamePtg) ptg;
@@ -659,15 +894,6 @@ public final class WorkbookEvaluator {
 			Area3DPtg aptg = (Area3DPtg) ptg;
 			return ec.getArea3DEval(aptg.getFirstRow(), aptg.getFirstColumn(), aptg.getLastRow(), aptg.getLastColumn(), aptg.getExternSheetIndex());
 		}
-		if (ptg instanceof RefPtg) {
-			RefPtg rptg = (RefPtg) ptg;
-			return ec.getRefEval(rptg.getRow(), rptg.getColumn());
-		}
-		if (ptg instanceof AreaPtg) {
-			AreaPtg aptg = (AreaPtg) ptg;
-			return ec.getAreaEval(aptg.getFirstRow(), aptg.getFirstColumn(), aptg.getLastRow(), aptg.getLastColumn());
-		}
-
 		if (ptg instanceof UnknownPtg) {
 			// POI uses UnknownPtg when the encoded Ptg array seems to be corrupted.
 			// This seems to occur in very rare cases (e.g. unused name formulas in bug 44774, attachment 21790)
@@ -701,6 +927,61 @@ public final class WorkbookEvaluator {
 		EvaluationCell cell = sheet.getCell(rowIndex, columnIndex);
 		return evaluateAny(cell, sheetIndex, rowIndex, columnIndex, tracker);
 	}
+
+	/**
+	 * Used by the lazy area evals to share an index over the values of an area between formula
+	 * evaluations.  The index is registered as an input of the currently evaluating formula,
+	 * and is discarded (along with the cached results of all formulas that used it) as soon as
+	 * any of the area's cells change.
+	 *
+	 * @return <code>null</code> the first time a particular area is requested (a single lookup
+	 * is cheaper as a plain scan), or if a circular reference was encountered while reading the
+	 * area
+	 */
+	/* package */ <T> T getAreaIndex(EvaluationSheet sheet, int sheetIndex, int firstRowIndex,
+			int firstColumnIndex, int lastRowIndex, int lastColumnIndex,
+			AreaIndexSource.IndexFactory<T> factory, EvaluationTracker tracker) {
+
+		AreaIndexCacheEntry entry = _cache.getOrCreateAreaIndexEntry(_workbookIx, sheetIndex,
+				firstRowIndex, firstColumnIndex, lastRowIndex, lastColumnIndex, factory);
+		Object index = entry.getIndex();
+		if (index == null) {
+			if (entry.incrementRequestCount() < 2) {
+				return null;
+			}
+			FormulaCellCacheEntry fcce = entry.getFormulaEntry();
+			if (!tracker.startEvaluate(fcce)) {
+				return null;
+			}
+			try {
+				int width = lastColumnIndex - firstColumnIndex + 1;
+				int height = lastRowIndex - firstRowIndex + 1;
+				ValueEval[] values = new ValueEval[width * height];
+				int i = 0;
+				for (int rowIndex = firstRowIndex; rowIndex <= lastRowIndex; rowIndex++) {
+					for (int columnIndex = firstColumnIndex; columnIndex <= lastColumnIndex; columnIndex++) {
+						ValueEval value = evaluateReference(sheet, sheetIndex, rowIndex, columnIndex, tracker);
+						if (value == ErrorEval.CIRCULAR_REF_ERROR) {
+							// don't cache anything derived from a partially evaluated loop
+							return null;
+						}
+						values[i++] = value;
+					}
+				}
+				index = factory.createIndex(values, width, height);
+				entry.setIndex(index);
+				// the entry value only marks the index as valid
+				tracker.updateCacheResult(BlankEval.instance);
+			} finally {
+				tracker.endEvaluate(fcce);
+			}
+		}
+		tracker.acceptFormulaDependency(entry.getFormulaEntry());
+		@SuppressWarnings("unchecked")
+		T result = (T) index;
+		return result;
+	}
+
 	public FreeRefFunction findUserDefinedFunction(String functionName) {
 		return _udfFinder.findFunction(functionName);
 	}
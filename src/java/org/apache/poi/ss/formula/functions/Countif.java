@@ -164,6 +164,18 @@ public final class Countif extends Fixed2ArgFunction {
 		protected final boolean evaluate(boolean cmpResult) {
 			return _operator.evaluate(cmpResult);
 		}
+		/**
+		 * @return <code>true</code> for plain and '=' criteria
+		 */
+		protected final boolean isEquality() {
+			int code = _operator.getCode();
+			return code == CmpOp.NONE || code == CmpOp.EQ;
+		}
+		/**
+		 * @return the value that matching cells must be equal to (subject to the usual
+		 * COUNTIF coercions), or <code>null</code> if this is not a simple equality test
+		 */
+		protected abstract ValueEval getEqualityValue();
 		@Override
 		public final String toString() {
 			StringBuffer sb = new StringBuffer(64);
@@ -188,6 +200,10 @@ public final class Countif extends Fixed2ArgFunction {
 		protected String getValueText() {
 			return String.valueOf(_value);
 		}
+		@Override
+		protected ValueEval getEqualityValue() {
+			return isEquality() ? new NumberEval(_value) : null;
+		}
 
 		public boolean matches(ValueEval x) {
 			double testValue;
@@ -243,6 +259,10 @@ public final class Countif extends Fixed2ArgFunction {
 		protected String getValueText() {
 			return _value == 1 ? "TRUE" : "FALSE";
 		}
+		@Override
+		protected ValueEval getEqualityValue() {
+			return isEquality() ? BoolEval.valueOf(_value == 1) : null;
+		}
 
 		private static int boolToInt(boolean value) {
 			return value ? 1 : 0;
@@ -300,6 +320,10 @@ public final class Countif extends Fixed2ArgFunction {
 		protected String getValueText() {
 			return ErrorConstants.getText(_value);
 		}
+		@Override
+		protected ValueEval getEqualityValue() {
+			return isEquality() ? ErrorEval.valueOf(_value) : null;
+		}
 
 		public boolean matches(ValueEval x) {
 			if(x instanceof ErrorEval) {
@@ -335,6 +359,10 @@ public final class Countif extends Fixed2ArgFunction {
 			}
 			return _pattern.pattern();
 		}
+		@Override
+		protected ValueEval getEqualityValue() {
+			return isEquality() && _pattern == null ? new StringEval(_value) : null;
+		}
 
 		public boolean matches(ValueEval x) {
 			if (x instanceof BlankEval) {
@@ -448,12 +476,28 @@ public final class Countif extends Fixed2ArgFunction {
 		if (rangeArg instanceof RefEval) {
 			return CountUtils.countMatchingCell((RefEval) rangeArg, criteriaPredicate);
 		} else if (rangeArg instanceof TwoDEval) {
+			CriteriaRangeIndex index = CriteriaRangeIndex.getInstance((TwoDEval) rangeArg);
+			if (index != null) {
+				return index.countMatches(criteriaPredicate);
+			}
 			return CountUtils.countMatchingCellsInArea((TwoDEval) rangeArg, criteriaPredicate);
 		} else {
 			throw new IllegalArgumentException("Bad range arg type (" + rangeArg.getClass().getName() + ")");
 		}
 	}
 
+	/**
+	 * Used by {@link CriteriaRangeIndex} to narrow down the cells that need to be tested.
+	 * @return the value that cells matching the specified predicate must be equal to, or
+	 * <code>null</code> if the predicate is not a simple equality test (e.g. '&gt;5', 'a*')
+	 */
+	/* package */ static ValueEval getEqualityCriteriaValue(I_MatchPredicate criteriaPredicate) {
+		if (criteriaPredicate instanceof MatcherBase) {
+			return ((MatcherBase) criteriaPredicate).getEqualityValue();
+		}
+		return null;
+	}
+
 	/**
 	 * Creates a criteria predicate object for the supplied criteria arg
 	 * @return <code>null</code> if the arg evaluates to blank.
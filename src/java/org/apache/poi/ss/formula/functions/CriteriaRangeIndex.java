@@ -0,0 +1,318 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.AreaIndexSource;
+import org.apache.poi.ss.formula.TwoDEval;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.OperandResolver;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.CountUtils.I_MatchPredicate;
+
+/**
+ * Groups the cells of a criteria range (as used by COUNTIF, SUMIF and SUMIFS) by value, so that
+ * many formulas applying different criteria to the same range don't each have to test every
+ * cell.<p/>
+ *
+ * The criteria predicate is still the only judge of what matches: it is applied once to each
+ * distinct value rather than once per cell.  For plain equality criteria (e.g. <tt>"apples"</tt>
+ * or <tt>42</tt>) only the few distinct values that could possibly match are tested.
+ */
+final class CriteriaRangeIndex {
+
+	/** Areas smaller than this are cheaper to scan than to index */
+	private static final int MIN_INDEXED_SIZE = 16;
+
+	private static final AreaIndexSource.IndexFactory<CriteriaRangeIndex> FACTORY = new AreaIndexSource.IndexFactory<CriteriaRangeIndex>() {
+		public CriteriaRangeIndex createIndex(ValueEval[] values, int width, int height) {
+			return new CriteriaRangeIndex(values);
+		}
+	};
+
+	private static final Object BLANK_KEY = new Object();
+
+	/**
+	 * All cells having one particular value
+	 */
+	private static final class ValueGroup {
+		private final ValueEval _value;
+		private int[] _positions;
+		private int _count;
+
+		public ValueGroup(ValueEval value) {
+			_value = value;
+			_positions = new int[4];
+		}
+		public void add(int position) {
+			if (_count == _positions.length) {
+				int[] newPositions = new int[_count * 2];
+				System.arraycopy(_positions, 0, newPositions, 0, _count);
+				_positions = newPositions;
+			}
+			_positions[_count++] = position;
+		}
+		public ValueEval getValue() {
+			return _value;
+		}
+		public int getCount() {
+			return _count;
+		}
+		public void copyPositions(int[] dest, int destPos) {
+			System.arraycopy(_positions, 0, dest, destPos, _count);
+		}
+	}
+
+	/** keeps the folded strings apart from the exact strings used as group keys */
+	private static final class CaseInsensitiveKey {
+		private final String _value;
+
+		public CaseInsensitiveKey(String value) {
+			int len = value.length();
+			char[] chars = new char[len];
+			for (int i = 0; i < len; i++) {
+				// same folding as String.compareToIgnoreCase()
+				chars[i] = Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+			}
+			_value = new String(chars);
+		}
+		public int hashCode() {
+			return _value.hashCode();
+		}
+		public boolean equals(Object obj) {
+			return obj instanceof CaseInsensitiveKey && _value.equals(((CaseInsensitiveKey) obj)._value);
+		}
+	}
+
+	/** text cells that look like numbers can match numeric criteria */
+	private static final class NumericTextKey {
+		private final double _value;
+
+		public NumericTextKey(double value) {
+			// numeric text is compared with '==', so that -0.0 and 0.0 are equal
+			_value = value == 0.0 ? 0.0 : value;
+		}
+		public int hashCode() {
+			long bits = Double.doubleToLongBits(_value);
+			return (int) (bits ^ (bits >>> 32));
+		}
+		public boolean equals(Object obj) {
+			return obj instanceof NumericTextKey && _value == ((NumericTextKey) obj)._value;
+		}
+	}
+
+	private final int _size;
+	private final List<ValueGroup> _groups;
+	/** groups that might be equal to a criteria value, see {@link #getEqualityKeys(ValueEval)} */
+	private final Map<Object, List<ValueGroup>> _groupsByEqualityKey;
+
+	private CriteriaRangeIndex(ValueEval[] values) {
+		_size = values.length;
+		Map<Object, ValueGroup> groupsByValue = new HashMap<Object, ValueGroup>();
+		_groups = new ArrayList<ValueGroup>();
+		_groupsByEqualityKey = new HashMap<Object, List<ValueGroup>>();
+		for (int i = 0; i < values.length; i++) {
+			ValueEval value = values[i];
+			Object key = getValueKey(value);
+			ValueGroup group = groupsByValue.get(key);
+			if (group == null) {
+				group = new ValueGroup(value);
+				groupsByValue.put(key, group);
+				_groups.add(group);
+				Object[] equalityKeys = getEqualityKeys(value);
+				for (int j = 0; j < equalityKeys.length; j++) {
+					List<ValueGroup> groups = _groupsByEqualityKey.get(equalityKeys[j]);
+					if (groups == null) {
+						groups = new ArrayList<ValueGroup>(2);
+						_groupsByEqualityKey.put(equalityKeys[j], groups);
+					}
+					groups.add(group);
+				}
+			}
+			group.add(i);
+		}
+	}
+
+	/**
+	 * @return the shared index for the supplied area, or <code>null</code> if the area should be
+	 * scanned
+	 */
+	public static CriteriaRangeIndex getInstance(TwoDEval area) {
+		if (!(area instanceof AreaIndexSource)) {
+			return null;
+		}
+		if (area.getWidth() * area.getHeight() < MIN_INDEXED_SIZE) {
+			return null;
+		}
+		return ((AreaIndexSource) area).getIndex(FACTORY);
+	}
+
+	/**
+	 * @return a key identifying the exact value, so that all cells of a group are
+	 * indistinguishable to any criteria predicate
+	 */
+	private static Object getValueKey(ValueEval value) {
+		if (value instanceof NumberEval) {
+			return Double.valueOf(((NumberEval) value).getNumberValue());
+		}
+		if (value instanceof StringEval) {
+			return ((StringEval) value).getStringValue();
+		}
+		if (value instanceof BoolEval) {
+			return Boolean.valueOf(((BoolEval) value).getBooleanValue());
+		}
+		if (value instanceof ErrorEval) {
+			return Integer.valueOf(((ErrorEval) value).getErrorCode());
+		}
+		if (value == BlankEval.instance) {
+			return BLANK_KEY;
+		}
+		throw new IllegalArgumentException("Unexpected value type (" + value.getClass().getName() + ")");
+	}
+
+	/**
+	 * Keys shared by a cell value and any equality criteria value which might match it.  When
+	 * applied to the criteria value the result may contain extra keys, the predicate decides.
+	 */
+	private static Object[] getEqualityKeys(ValueEval value) {
+		if (value instanceof NumberEval) {
+			double d = ((NumberEval) value).getNumberValue();
+			return new Object[] { Double.valueOf(d), new NumericTextKey(d), };
+		}
+		if (value instanceof StringEval) {
+			String s = ((StringEval) value).getStringValue();
+			if (s.length() == 0) {
+				// empty string criteria can match blank cells
+				return new Object[] { new CaseInsensitiveKey(s), BLANK_KEY, };
+			}
+			Double d = OperandResolver.parseDouble(s);
+			if (d == null) {
+				return new Object[] { new CaseInsensitiveKey(s), };
+			}
+			return new Object[] { new CaseInsensitiveKey(s), new NumericTextKey(d.doubleValue()), };
+		}
+		return new Object[] { getValueKey(value), };
+	}
+
+	/**
+	 * @return the groups that match the supplied predicate
+	 */
+	private List<ValueGroup> getMatchingGroups(I_MatchPredicate criteriaPredicate) {
+		List<ValueGroup> candidates;
+		ValueEval equalityValue = Countif.getEqualityCriteriaValue(criteriaPredicate);
+		if (equalityValue == null) {
+			candidates = _groups;
+		} else {
+			candidates = new ArrayList<ValueGroup>();
+			Object[] keys = getEqualityKeys(equalityValue);
+			for (int i = 0; i < keys.length; i++) {
+				List<ValueGroup> groups = _groupsByEqualityKey.get(keys[i]);
+				if (groups != null) {
+					for (ValueGroup group : groups) {
+						if (!candidates.contains(group)) {
+							candidates.add(group);
+						}
+					}
+				}
+			}
+		}
+		List<ValueGroup> result = new ArrayList<ValueGroup>(candidates.size());
+		for (ValueGroup group : candidates) {
+			if (criteriaPredicate.matches(group.getValue())) {
+				result.add(group);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of cells in the range that match the specified criteria
+	 */
+	public int countMatches(I_MatchPredicate criteriaPredicate) {
+		int result = 0;
+		for (ValueGroup group : getMatchingGroups(criteriaPredicate)) {
+			result += group.getCount();
+		}
+		return result;
+	}
+
+	/**
+	 * @return ascending row-major positions (<tt>relRowIndex * width + relColumnIndex</tt>) of
+	 * the cells that match the specified criteria
+	 */
+	public int[] getMatchingPositions(I_MatchPredicate criteriaPredicate) {
+		List<ValueGroup> groups = getMatchingGroups(criteriaPredicate);
+		int count = 0;
+		for (ValueGroup group : groups) {
+			count += group.getCount();
+		}
+		int[] result = new int[count];
+		int pos = 0;
+		for (ValueGroup group : groups) {
+			group.copyPositions(result, pos);
+			pos += group.getCount();
+		}
+		if (groups.size() > 1) {
+			Arrays.sort(result);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of cells in the indexed range
+	 */
+	public int getSize() {
+		return _size;
+	}
+
+	/**
+	 * @return ascending positions present in both of the supplied (ascending) position arrays
+	 */
+	public static int[] intersect(int[] a, int[] b) {
+		int[] result = new int[Math.min(a.length, b.length)];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[count++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		if (count == result.length) {
+			return result;
+		}
+		int[] trimmed = new int[count];
+		System.arraycopy(result, 0, trimmed, 0, count);
+		return trimmed;
+	}
+}
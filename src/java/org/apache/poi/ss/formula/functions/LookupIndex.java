@@ -0,0 +1,310 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.AreaIndexSource;
+import org.apache.poi.ss.formula.TwoDEval;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+
+/**
+ * Index over a single row or column used by VLOOKUP, HLOOKUP and MATCH when the same lookup
+ * vector is searched repeatedly.<p/>
+ *
+ * The results are identical to the linear scans in {@link LookupUtils} and {@link Match}: only
+ * values of the same type as the lookup value are ever matched, and strings compare
+ * case-insensitively.  Exact matches are answered from a hash table, while the approximate
+ * MATCH modes use per-type sorted arrays (built on first use) so that unsorted lookup vectors
+ * still give the same answers as the scans.
+ */
+final class LookupIndex {
+
+	/** Areas smaller than this are cheaper to scan than to index */
+	private static final int MIN_INDEXED_SIZE = 16;
+
+	private static final AreaIndexSource.IndexFactory<LookupIndex> FACTORY = new AreaIndexSource.IndexFactory<LookupIndex>() {
+		public LookupIndex createIndex(ValueEval[] values, int width, int height) {
+			return new LookupIndex(values);
+		}
+	};
+
+	private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>() {
+		@SuppressWarnings("unchecked")
+		public int compare(Object a, Object b) {
+			return ((Comparable<Object>) a).compareTo(b);
+		}
+	};
+
+	private static final Comparator<Object> STRING_ORDER = new Comparator<Object>() {
+		public int compare(Object a, Object b) {
+			return String.CASE_INSENSITIVE_ORDER.compare((String) a, (String) b);
+		}
+	};
+
+	private final ValueEval[] _values;
+	/** first (lowest) index of each distinct value */
+	private final Map<Object, Integer> _firstIndexes;
+	private SortedValues _sortedNumbers;
+	private SortedValues _sortedStrings;
+	private SortedValues _sortedBooleans;
+
+	private LookupIndex(ValueEval[] values) {
+		_values = values;
+		_firstIndexes = new HashMap<Object, Integer>(values.length * 4 / 3 + 1);
+		for (int i = values.length - 1; i >= 0; i--) {
+			Object key = createKey(values[i]);
+			if (key != null) {
+				// backward iteration leaves the lowest index in the map
+				_firstIndexes.put(key, Integer.valueOf(i));
+			}
+		}
+	}
+
+	/**
+	 * @return the shared index for the supplied single row or column, or <code>null</code> if
+	 * the vector should be scanned
+	 */
+	public static LookupIndex getInstance(TwoDEval vector) {
+		if (!(vector instanceof AreaIndexSource)) {
+			return null;
+		}
+		if (vector.getWidth() * vector.getHeight() < MIN_INDEXED_SIZE) {
+			return null;
+		}
+		return ((AreaIndexSource) vector).getIndex(FACTORY);
+	}
+
+	/**
+	 * @return a key whose equality matches {@link LookupUtils.LookupValueComparer} equality,
+	 * or <code>null</code> for values which never match anything
+	 */
+	private static Object createKey(ValueEval value) {
+		if (value instanceof NumberEval) {
+			return Double.valueOf(((NumberEval) value).getNumberValue());
+		}
+		if (value instanceof StringEval) {
+			return toCaseInsensitiveKey(((StringEval) value).getStringValue());
+		}
+		if (value instanceof BoolEval) {
+			return Boolean.valueOf(((BoolEval) value).getBooleanValue());
+		}
+		return null;
+	}
+
+	/**
+	 * Folds case in the same way as {@link String#compareToIgnoreCase(String)}.  The result is
+	 * wrapped so that it cannot be confused with a raw string.
+	 */
+	private static Object toCaseInsensitiveKey(String value) {
+		int len = value.length();
+		char[] chars = new char[len];
+		for (int i = 0; i < len; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+		}
+		return new CaseInsensitiveKey(new String(chars));
+	}
+
+	private static final class CaseInsensitiveKey {
+		private final String _value;
+
+		public CaseInsensitiveKey(String value) {
+			_value = value;
+		}
+		public int hashCode() {
+			return _value.hashCode();
+		}
+		public boolean equals(Object obj) {
+			return obj instanceof CaseInsensitiveKey && _value.equals(((CaseInsensitiveKey) obj)._value);
+		}
+	}
+
+	/**
+	 * Blank lookup values behave like zero (see {@link LookupUtils#createLookupComparer(ValueEval)})
+	 */
+	private static ValueEval normaliseLookupValue(ValueEval lookupValue) {
+		return lookupValue == BlankEval.instance ? NumberEval.ZERO : lookupValue;
+	}
+
+	/**
+	 * @return zero based index of the first occurrence of <tt>lookupValue</tt>, -1 if not found
+	 */
+	public int indexOfExactValue(ValueEval lookupValue) {
+		Object key = createKey(normaliseLookupValue(lookupValue));
+		if (key == null) {
+			return -1;
+		}
+		Integer result = _firstIndexes.get(key);
+		return result == null ? -1 : result.intValue();
+	}
+
+	/**
+	 * Equivalent to the backward scan performed for MATCH with a positive match_type.
+	 * @return zero based index of the last value of the same type that is less than or equal to
+	 * <tt>lookupValue</tt>, -1 if there is none
+	 */
+	public int indexOfLastLessThanOrEqual(ValueEval lookupValue) {
+		ValueEval value = normaliseLookupValue(lookupValue);
+		SortedValues sortedValues = getSortedValues(value);
+		if (sortedValues == null) {
+			return -1;
+		}
+		return sortedValues.getMaxIndexOfLessThanOrEqual(getSortKey(value));
+	}
+
+	/**
+	 * Equivalent to the forward scan performed for MATCH with a negative match_type: finds the
+	 * first value of the same type that is less than or equal to <tt>lookupValue</tt>, and
+	 * returns its index if it is equal, or the index before it otherwise.
+	 * @return zero based index, -1 if there is no such value
+	 */
+	public int indexOfFirstLessThanOrEqual(ValueEval lookupValue) {
+		ValueEval value = normaliseLookupValue(lookupValue);
+		SortedValues sortedValues = getSortedValues(value);
+		if (sortedValues == null) {
+			return -1;
+		}
+		int index = sortedValues.getMinIndexOfLessThanOrEqual(getSortKey(value));
+		if (index < 0) {
+			return -1;
+		}
+		if (index == indexOfExactValue(value)) {
+			return index;
+		}
+		return index - 1;
+	}
+
+	private static Object getSortKey(ValueEval value) {
+		if (value instanceof StringEval) {
+			return ((StringEval) value).getStringValue();
+		}
+		if (value instanceof NumberEval) {
+			return Double.valueOf(((NumberEval) value).getNumberValue());
+		}
+		return Boolean.valueOf(((BoolEval) value).getBooleanValue());
+	}
+
+	private SortedValues getSortedValues(ValueEval value) {
+		if (value instanceof NumberEval) {
+			if (_sortedNumbers == null) {
+				_sortedNumbers = new SortedValues(_values, NumberEval.class, NATURAL_ORDER);
+			}
+			return _sortedNumbers;
+		}
+		if (value instanceof StringEval) {
+			if (_sortedStrings == null) {
+				_sortedStrings = new SortedValues(_values, StringEval.class, STRING_ORDER);
+			}
+			return _sortedStrings;
+		}
+		if (value instanceof BoolEval) {
+			if (_sortedBooleans == null) {
+				_sortedBooleans = new SortedValues(_values, BoolEval.class, NATURAL_ORDER);
+			}
+			return _sortedBooleans;
+		}
+		return null;
+	}
+
+	/**
+	 * The values of one type in sorted order, along with the lowest and highest original index
+	 * found in each prefix of the sorted order.
+	 */
+	private static final class SortedValues {
+		private final Object[] _keys;
+		private final Comparator<Object> _comparator;
+		private final int[] _prefixMinIndexes;
+		private final int[] _prefixMaxIndexes;
+
+		public SortedValues(ValueEval[] values, Class<? extends ValueEval> valueClass, Comparator<Object> comparator) {
+			int count = 0;
+			for (int i = 0; i < values.length; i++) {
+				if (values[i].getClass() == valueClass) {
+					count++;
+				}
+			}
+			final Object[] keys = new Object[count];
+			int[] indexes = new int[count];
+			Integer[] order = new Integer[count];
+			int j = 0;
+			for (int i = 0; i < values.length; i++) {
+				if (values[i].getClass() == valueClass) {
+					keys[j] = getSortKey(values[i]);
+					indexes[j] = i;
+					order[j] = Integer.valueOf(j);
+					j++;
+				}
+			}
+			final Comparator<Object> cmp = comparator;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return cmp.compare(keys[a.intValue()], keys[b.intValue()]);
+				}
+			});
+			_keys = new Object[count];
+			_prefixMinIndexes = new int[count];
+			_prefixMaxIndexes = new int[count];
+			int min = Integer.MAX_VALUE;
+			int max = -1;
+			for (int k = 0; k < count; k++) {
+				int p = order[k].intValue();
+				_keys[k] = keys[p];
+				min = Math.min(min, indexes[p]);
+				max = Math.max(max, indexes[p]);
+				_prefixMinIndexes[k] = min;
+				_prefixMaxIndexes[k] = max;
+			}
+			_comparator = comparator;
+		}
+
+		/**
+		 * @return position in the sorted order of the last key less than or equal to the
+		 * specified key, -1 if all keys are greater
+		 */
+		private int findLastLessThanOrEqual(Object key) {
+			int low = 0;
+			int high = _keys.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (_comparator.compare(_keys[mid], key) <= 0) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return high;
+		}
+
+		public int getMaxIndexOfLessThanOrEqual(Object key) {
+			int pos = findLastLessThanOrEqual(key);
+			return pos < 0 ? -1 : _prefixMaxIndexes[pos];
+		}
+
+		public int getMinIndexOfLessThanOrEqual(Object key) {
+			int pos = findLastLessThanOrEqual(key);
+			return pos < 0 ? -1 : _prefixMinIndexes[pos];
+		}
+	}
+}
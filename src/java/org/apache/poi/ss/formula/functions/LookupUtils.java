@@ -72,6 +72,9 @@ final class LookupUtils {
 		public int getSize() {
 			return _size;
 		}
+		public LookupIndex getLookupIndex() {
+			return LookupIndex.getInstance(_tableArray.getRow(_rowIndex));
+		}
 	}
 
 	private static final class ColumnVector implements ValueVector {
@@ -101,6 +104,9 @@ final class LookupUtils {
 		public int getSize() {
 			return _size;
 		}
+		public LookupIndex getLookupIndex() {
+			return LookupIndex.getInstance(_tableArray.getColumn(_columnIndex));
+		}
 	}
 
 	public static ValueVector createRowVector(TwoDEval tableArray, int relativeRowIndex) {
@@ -122,6 +128,20 @@ final class LookupUtils {
 		return null;
 	}
 
+	/**
+	 * @return the shared index over the specified vector, or <code>null</code> if the vector
+	 * should be scanned directly
+	 */
+	public static LookupIndex getLookupIndex(ValueVector vector) {
+		if (vector instanceof ColumnVector) {
+			return ((ColumnVector) vector).getLookupIndex();
+		}
+		if (vector instanceof RowVector) {
+			return ((RowVector) vector).getLookupIndex();
+		}
+		return null;
+	}
+
 	/**
 	 * Enumeration to support <b>4</b> valued comparison results.<p/>
 	 * Excel lookup functions have complex behaviour in the case where the lookup array has mixed
@@ -428,7 +448,12 @@ final class LookupUtils {
 		if(isRangeLookup) {
 			result = performBinarySearch(vector, lookupComparer);
 		} else {
-			result = lookupIndexOfExactValue(lookupComparer, vector);
+			LookupIndex index = getLookupIndex(vector);
+			if (index == null) {
+				result = lookupIndexOfExactValue(lookupComparer, vector);
+			} else {
+				result = index.indexOfExactValue(lookupValue);
+			}
 		}
 		if(result < 0) {
 			throw new EvaluationException(ErrorEval.NA);
@@ -189,6 +189,22 @@ public final class Match extends Var2or3ArgFunction {
 
 		LookupValueComparer lookupComparer = createLookupComparer(lookupValue, matchExact);
 
+		LookupIndex index = LookupUtils.getLookupIndex(lookupRange);
+		if (index != null) {
+			int result;
+			if (matchExact) {
+				result = index.indexOfExactValue(lookupValue);
+			} else if (findLargestLessThanOrEqual) {
+				result = index.indexOfLastLessThanOrEqual(lookupValue);
+			} else {
+				result = index.indexOfFirstLessThanOrEqual(lookupValue);
+			}
+			if (result < 0) {
+				throw new EvaluationException(ErrorEval.NA);
+			}
+			return result;
+		}
+
 		int size = lookupRange.getSize();
 		if(matchExact) {
 			for (int i = 0; i < size; i++) {
@@ -78,6 +78,15 @@ public final class Sumif extends Var2or3ArgFunction {
 		int width= aeRange.getWidth();
 
 		double result = 0.0;
+		CriteriaRangeIndex index = CriteriaRangeIndex.getInstance(aeRange);
+		if (index != null) {
+			int[] positions = index.getMatchingPositions(mp);
+			for (int i = 0; i < positions.length; i++) {
+				result += getAddend(aeSum, positions[i] / width, positions[i] % width);
+			}
+			return result;
+		}
+
 		for (int r=0; r<height; r++) {
 			for (int c=0; c<width; c++) {
 				result += accumulate(aeRange, mp, aeSum, r, c);
@@ -92,6 +101,10 @@ public final class Sumif extends Var2or3ArgFunction {
 		if (!mp.matches(aeRange.getRelativeValue(relRowIndex, relColIndex))) {
 			return 0.0;
 		}
+		return getAddend(aeSum, relRowIndex, relColIndex);
+	}
+
+	private static double getAddend(AreaEval aeSum, int relRowIndex, int relColIndex) {
 		ValueEval addend = aeSum.getRelativeValue(relRowIndex, relColIndex);
 		if (addend instanceof NumberEval) {
 			return ((NumberEval)addend).getNumberValue();
@@ -100,6 +100,18 @@ public final class Sumifs implements FreeRefFunction {
         int width = aeSum.getWidth();
 
         double result = 0.0;
+        boolean[] indexed = new boolean[ranges.length];
+        int[] positions = getIndexedMatchingPositions(ranges, predicates, indexed);
+        if (positions != null) {
+            for (int i = 0; i < positions.length; i++) {
+                int r = positions[i] / width;
+                int c = positions[i] % width;
+                if (matchesUnindexed(ranges, predicates, indexed, r, c)) {
+                    result += accumulate(aeSum, r, c);
+                }
+            }
+            return result;
+        }
         for (int r = 0; r < height; r++) {
             for (int c = 0; c < width; c++) {
 
@@ -123,6 +135,42 @@ public final class Sumifs implements FreeRefFunction {
         return result;
     }
 
+    /**
+     * Narrows down the candidate cells using the shared indexes of the criteria ranges.
+     *
+     * @param indexed receives <code>true</code> for each criteria range that was indexed
+     * @return ascending row-major positions matching the criteria of all indexed ranges
+     * (the remaining criteria still need to be checked), or <code>null</code> if none of the
+     * criteria ranges is indexed
+     */
+    private static int[] getIndexedMatchingPositions(AreaEval[] ranges, I_MatchPredicate[] predicates,
+            boolean[] indexed) {
+        int[] result = null;
+        for (int i = 0; i < ranges.length; i++) {
+            CriteriaRangeIndex index = CriteriaRangeIndex.getInstance(ranges[i]);
+            if (index == null) {
+                continue;
+            }
+            int[] positions = index.getMatchingPositions(predicates[i]);
+            result = result == null ? positions : CriteriaRangeIndex.intersect(result, positions);
+            indexed[i] = true;
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static boolean matchesUnindexed(AreaEval[] ranges, I_MatchPredicate[] predicates,
+            boolean[] indexed, int r, int c) {
+        for (int i = 0; i < ranges.length; i++) {
+            if (!indexed[i] && !predicates[i].matches(ranges[i].getRelativeValue(r, c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 	private static double accumulate(AreaEval aeSum, int relRowIndex,
 			int relColIndex) {
 
@@ -100,6 +100,13 @@ import org.apache.poi.ss.formula.eval.NotImplementedException;
  *  <li>simulate Excel's handling of a format string of all # when the value is 0.
  *   Excel will output "", <code>DataFormatter</code> will output "0".
  * </ul>
+ * <p>
+ * The Formats built for each format string are cached, as is the analysis of the
+ * format string, so each is only worked out once per DataFormatter (and so locale).
+ * For formatting a great many cells, e.g. to CSV, use the methods which append to a
+ * StringBuilder, such as {@link #formatCellValue(Cell, FormulaEvaluator, StringBuilder)}.
+ * A DataFormatter is not thread safe, use one per thread.
+ * </p>
  * @author James May (james dot may at fmr dot com)
  * @author Robert Kish
   *
@@ -167,6 +174,16 @@ public class DataFormatter {
      */
     private final Map<String,Format> formats;
 
+    /**
+     * A map to cache the sections of the format strings used for zero and
+     *  for other values, so they're only picked out once per format string.
+     */
+    private final Map<String,FormatSections> sections;
+
+    /** Reused by the methods which append to a StringBuilder */
+    private final StringBuffer formatBuffer = new StringBuffer();
+    private final FieldPosition fieldPosition = new FieldPosition(0);
+
     private boolean emulateCsv = false;
 
     /**
@@ -206,6 +223,7 @@ public class DataFormatter {
         generalDecimalNumFormat = new DecimalFormat("#.##########", decimalSymbols);
 
         formats = new HashMap<String,Format>();
+        sections = new HashMap<String,FormatSections>();
 
         // init built-in formats
 
@@ -252,6 +270,38 @@ public class DataFormatter {
     }
 
     private Format getFormat(double cellValue, int formatIndex, String formatStrIn) {
+        FormatSections formatSections = sections.get(formatStrIn);
+        if (formatSections == null) {
+            formatSections = new FormatSections(
+                    getFormatSection(formatStrIn, false), getFormatSection(formatStrIn, true));
+            sections.put(formatStrIn, formatSections);
+        }
+        String formatStr = cellValue == 0.0 ? formatSections.zero : formatSections.nonZero;
+
+        // See if we already have it cached
+        Format format = formats.get(formatStr);
+        if (format != null) {
+            return format;
+        }
+        
+        // Is it one of the special built in types, General or @?
+        if ("General".equalsIgnoreCase(formatStr) || "@".equals(formatStr)) {
+            if (isWholeNumber(cellValue)) {
+                return generalWholeNumFormat;
+            }
+            return generalDecimalNumFormat;
+        }
+        
+        // Build a formatter, and cache it
+        format = createFormat(cellValue, formatIndex, formatStr);
+        formats.put(formatStr, format);
+        return format;
+    }
+
+    /**
+     * Picks out the part of the format string used for zero, or for other values
+     */
+    private String getFormatSection(String formatStrIn, boolean zero) {
 //      // Might be better to separate out the n p and z formats, falling back to p when n and z are not set.
 //      // That however would require other code to be re factored.
 //      String[] formatBits = formatStrIn.split(";");
@@ -267,13 +317,13 @@ public class DataFormatter {
         if (firstAt != -1 && firstAt != lastAt) {
             final int secondAt = formatStr.indexOf(';', firstAt + 1);
             if (secondAt == lastAt) { // p;n;z
-                if (cellValue == 0.0) {
+                if (zero) {
                     formatStr = formatStr.substring(lastAt + 1);
                 } else {
                     formatStr = formatStr.substring(0, lastAt);
                 }
             } else {
-                if (cellValue == 0.0) { // p;n;z;s
+                if (zero) { // p;n;z;s
                     formatStr = formatStr.substring(secondAt + 1, lastAt);
                 } else {
                     formatStr = formatStr.substring(0, secondAt);
@@ -282,28 +332,10 @@ public class DataFormatter {
         }
 
        // Excel's # with value 0 will output empty where Java will output 0. This hack removes the # from the format.
-       if (emulateCsv && cellValue == 0.0 && formatStr.contains("#") && !formatStr.contains("0")) {
+       if (emulateCsv && zero && formatStr.contains("#") && !formatStr.contains("0")) {
            formatStr = formatStr.replaceAll("#", "");
        }
-       
-        // See if we already have it cached
-        Format format = formats.get(formatStr);
-        if (format != null) {
-            return format;
-        }
-        
-        // Is it one of the special built in types, General or @?
-        if ("General".equalsIgnoreCase(formatStr) || "@".equals(formatStr)) {
-            if (isWholeNumber(cellValue)) {
-                return generalWholeNumFormat;
-            }
-            return generalDecimalNumFormat;
-        }
-        
-        // Build a formatter, and cache it
-        format = createFormat(cellValue, formatIndex, formatStr);
-        formats.put(formatStr, format);
-        return format;
+       return formatStr;
     }
 
     /**
@@ -662,22 +694,37 @@ public class DataFormatter {
      * Performs Excel-style date formatting, using the
      *  supplied Date and format
      */
-    private String performDateFormatting(Date d, Format dateFormat) {
+    private void performDateFormatting(Date d, Format dateFormat, StringBuilder out) {
        if(dateFormat != null) {
-          return dateFormat.format(d);
+          formatBuffer.setLength(0);
+          dateFormat.format(d, formatBuffer, fieldPosition);
+          out.append(formatBuffer);
+          return;
       }
-      return d.toString();
+      out.append(d.toString());
     }
 
     /**
-     * Returns the formatted value of an Excel date as a <tt>String</tt> based
+     * Formats a number with the given format, without boxing it for
+     *  the usual NumberFormats
+     */
+    private void performNumberFormatting(double d, Format numberFormat) {
+        formatBuffer.setLength(0);
+        if (numberFormat instanceof NumberFormat) {
+            ((NumberFormat)numberFormat).format(d, formatBuffer, fieldPosition);
+        } else {
+            numberFormat.format(new Double(d), formatBuffer, fieldPosition);
+        }
+    }
+
+    /**
+     * Appends the formatted value of an Excel date based
      * on the cell's <code>DataFormat</code>. i.e. "Thursday, January 02, 2003"
      * , "01/02/2003" , "02-Jan" , etc.
      *
      * @param cell The cell
-     * @return a formatted date string
      */
-    private String getFormattedDateString(Cell cell) {
+    private void getFormattedDateString(Cell cell, StringBuilder out) {
         Format dateFormat = getFormat(cell);
         if(dateFormat instanceof ExcelStyleDateFormatter) {
            // Hint about the raw excel value
@@ -686,26 +733,27 @@ public class DataFormatter {
            );
         }
         Date d = cell.getDateCellValue();
-        return performDateFormatting(d, dateFormat);
+        performDateFormatting(d, dateFormat, out);
     }
 
     /**
-     * Returns the formatted value of an Excel number as a <tt>String</tt>
+     * Appends the formatted value of an Excel number
      * based on the cell's <code>DataFormat</code>. Supported formats include
      * currency, percents, decimals, phone number, SSN, etc.:
      * "61.54%", "$100.00", "(800) 555-1234".
      *
      * @param cell The cell
-     * @return a formatted number string
      */
-    private String getFormattedNumberString(Cell cell) {
+    private void getFormattedNumberString(Cell cell, StringBuilder out) {
 
         Format numberFormat = getFormat(cell);
         double d = cell.getNumericCellValue();
         if (numberFormat == null) {
-            return String.valueOf(d);
+            out.append(d);
+            return;
         }
-        return numberFormat.format(new Double(d));
+        performNumberFormatting(d, numberFormat);
+        out.append(formatBuffer);
     }
 
     /**
@@ -722,6 +770,20 @@ public class DataFormatter {
      * @see #formatCellValue(Cell)
      */
     public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+        StringBuilder out = new StringBuilder();
+        formatRawCellContents(value, formatIndex, formatString, use1904Windowing, out);
+        return out.toString();
+    }
+    /**
+     * Formats the given raw cell value, based on the supplied
+     *  format index and string, according to excel style rules, and
+     *  appends it to the given StringBuilder.  As the Formats are cached
+     *  and the working buffers reused, this creates next to no garbage
+     *  for the usual number formats.
+     * @see #formatRawCellContents(double, int, String, boolean)
+     */
+    public void formatRawCellContents(double value, int formatIndex, String formatString,
+            boolean use1904Windowing, StringBuilder out) {
         // Is it a date?
         if(DateUtil.isADateFormat(formatIndex,formatString)) {
             if(DateUtil.isValidExcelDate(value)) {
@@ -731,24 +793,28 @@ public class DataFormatter {
                    ((ExcelStyleDateFormatter)dateFormat).setDateToBeFormatted(value);
                 }
                 Date d = DateUtil.getJavaDate(value, use1904Windowing);
-                return performDateFormatting(d, dateFormat);
+                performDateFormatting(d, dateFormat, out);
+                return;
             }
              // RK: Invalid dates are 255 #s.
              if (emulateCsv) {
-                 return invalidDateTimeString;
+                 out.append(invalidDateTimeString);
+                 return;
              }
         }
         // else Number
             Format numberFormat = getFormat(value, formatIndex, formatString);
             if (numberFormat == null) {
-                return String.valueOf(value);
+                out.append(value);
+                return;
             }
+            performNumberFormatting(value, numberFormat);
             // RK: This hack handles scientific notation by adding the missing + back.
-            String result = numberFormat.format(new Double(value));
-            if (result.contains("E") && !result.contains("E-")) {
-                result = result.replaceFirst("E", "E+");
+            int exponent = formatBuffer.indexOf("E");
+            if (exponent != -1 && formatBuffer.indexOf("E-") == -1) {
+                formatBuffer.insert(exponent + 1, '+');
             }
-            return result;
+            out.append(formatBuffer);
     }
 
     /**
@@ -786,15 +852,41 @@ public class DataFormatter {
      * @return a string value of the cell
      */
     public String formatCellValue(Cell cell, FormulaEvaluator evaluator) {
-
         if (cell == null) {
             return "";
         }
+        StringBuilder out = new StringBuilder();
+        formatCellValue(cell, evaluator, out);
+        return out.toString();
+    }
+
+    /**
+     * <p>
+     * Appends the formatted value of a cell to the given StringBuilder, as
+     * {@link #formatCellValue(Cell, FormulaEvaluator)} returns it. Nothing
+     * is appended for a null or blank cell.
+     * </p>
+     * <p>
+     * As the Formats are cached and the working buffers reused, this creates
+     * next to no garbage for the usual number formats, making it the one to
+     * use when formatting a great many cells, e.g. for a CSV export.
+     * </p>
+     *
+     * @param cell The cell (can be null)
+     * @param evaluator The FormulaEvaluator (can be null)
+     * @param out The StringBuilder to append the value to
+     */
+    public void formatCellValue(Cell cell, FormulaEvaluator evaluator, StringBuilder out) {
+
+        if (cell == null) {
+            return;
+        }
 
         int cellType = cell.getCellType();
         if (cellType == Cell.CELL_TYPE_FORMULA) {
             if (evaluator == null) {
-                return cell.getCellFormula();
+                out.append(cell.getCellFormula());
+                return;
             }
             cellType = evaluator.evaluateFormulaCell(cell);
         }
@@ -802,17 +894,21 @@ public class DataFormatter {
             case Cell.CELL_TYPE_NUMERIC :
 
                 if (DateUtil.isCellDateFormatted(cell)) {
-                    return getFormattedDateString(cell);
+                    getFormattedDateString(cell, out);
+                } else {
+                    getFormattedNumberString(cell, out);
                 }
-                return getFormattedNumberString(cell);
+                return;
 
             case Cell.CELL_TYPE_STRING :
-                return cell.getRichStringCellValue().getString();
+                out.append(cell.getRichStringCellValue().getString());
+                return;
 
             case Cell.CELL_TYPE_BOOLEAN :
-                return String.valueOf(cell.getBooleanCellValue());
+                out.append(cell.getBooleanCellValue());
+                return;
             case Cell.CELL_TYPE_BLANK :
-                return "";
+                return;
         }
         throw new RuntimeException("Unexpected celltype (" + cellType + ")");
     }
@@ -909,6 +1005,18 @@ public class DataFormatter {
     }
 
     /**
+    * The sections of a format string used for zero and for other values
+    */
+   private static final class FormatSections {
+        final String nonZero;
+        final String zero;
+        FormatSections(String nonZero, String zero) {
+            this.nonZero = nonZero;
+            this.zero = zero;
+        }
+   }
+
+   /**
      * Format class for Excel's SSN format. This class mimics Excel's built-in
      * SSN formatting.
      *
@@ -21,7 +21,9 @@ package org.apache.poi.ss.usermodel;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -59,6 +61,14 @@ public class DateUtil {
     //  elapsed time patterns: [h],[m] and [s]
     private static final Pattern date_ptrn4 = Pattern.compile("^\\[([hH]+|[mM]+|[sS]+)\\]");
 
+    /**
+     * Whether each format string seen is a date format, as working it out takes
+     *  several regular expressions.  Shared by all threads, and cleared should it
+     *  ever get large.
+     */
+    private static final Map<String, Boolean> dateFormatCache = new ConcurrentHashMap<String, Boolean>();
+    private static final int MAX_CACHED_DATE_FORMATS = 1000;
+
     // only get this static info once (because operations are not really cheap)
     private static final TimeZone TIMEZONE_UTC = TimeZone.getTimeZone("UTC");
 
@@ -300,6 +310,19 @@ public class DateUtil {
             return false;
         }
 
+        Boolean cached = dateFormatCache.get(formatString);
+        if(cached != null) {
+            return cached.booleanValue();
+        }
+        boolean isDate = isADateFormatString(formatString);
+        if(dateFormatCache.size() >= MAX_CACHED_DATE_FORMATS) {
+            dateFormatCache.clear();
+        }
+        dateFormatCache.put(formatString, Boolean.valueOf(isDate));
+        return isDate;
+    }
+
+    private static boolean isADateFormatString(String formatString) {
         String fs = formatString;
         /*if (false) {
             // Normalize the format string. The code below is equivalent
@@ -104,7 +104,8 @@ public class ExcelStyleDateFormatter extends SimpleDateFormat {
     public StringBuffer format(Date date, StringBuffer paramStringBuffer,
                                FieldPosition paramFieldPosition) {
         // Do the normal format
-        String s = super.format(date, paramStringBuffer, paramFieldPosition).toString();
+        int start = paramStringBuffer.length();
+        String s = super.format(date, paramStringBuffer, paramFieldPosition).substring(start);
 
         // Now handle our special cases
         if (s.indexOf(MMMMM_START_SYMBOL) != -1) {
@@ -167,6 +168,8 @@ public class ExcelStyleDateFormatter extends SimpleDateFormat {
             );
         }
 
-        return new StringBuffer(s);
+        // Replace what we appended with the special cases handled
+        paramStringBuffer.setLength(start);
+        return paramStringBuffer.append(s);
     }
 }
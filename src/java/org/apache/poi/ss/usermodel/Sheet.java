@@ -852,6 +852,25 @@ public interface Sheet extends Iterable<Row> {
      */
     void autoSizeColumn(int column, boolean useMergedCells);
 
+    /**
+     * Adjusts the widths of the given columns to fit their contents, as
+     *  {@link #autoSizeColumn(int)} does for each of them, but walking the rows
+     *  of the sheet only once for all the columns.
+     *
+     * @param columns the column indexes
+     */
+    void autoSizeColumns(int... columns);
+
+    /**
+     * Adjusts the widths of the given columns to fit their contents, as
+     *  {@link #autoSizeColumn(int, boolean)} does for each of them, but walking
+     *  the rows of the sheet only once for all the columns.
+     *
+     * @param useMergedCells whether to use the contents of merged cells when calculating the widths of the columns
+     * @param columns the column indexes
+     */
+    void autoSizeColumns(boolean useMergedCells, int... columns);
+
     /**
      * Returns cell comment for the specified row and column
      *
@@ -17,6 +17,7 @@
 
 package org.apache.poi.ss.util;
 
+import java.nio.CharBuffer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,6 +49,18 @@ public class CellReference {
 	/** The character (') used to quote sheet names when they contain special characters */
 	private static final char SPECIAL_NAME_DELIMITER = '\'';
 
+	/** the most letters and digits accepted by {@link #parsePackedReference(CharSequence, int, int)} */
+	private static final int MAX_COLUMN_LETTERS = 6;
+	private static final int MAX_ROW_DIGITS = 9;
+	/** not a valid packed reference, as the row and column would both be -2 */
+	private static final long INVALID_REFERENCE = packReference(-2, -2);
+
+	/**
+	 * The longest reference written by {@link #appendCellReference(char[], int, int, int)},
+	 *  7 column letters and 10 row digits
+	 */
+	public static final int MAX_FORMATTED_LENGTH = 17;
+
 	/**
 	 * Matches a run of one or more letters followed by a run of one or more digits.
 	 * The run of letters is group 1 and the run of digits is group 2.
@@ -89,6 +102,29 @@ public class CellReference {
          throw new IllegalArgumentException("Cell reference invalid: " + cellRef);
       }
 
+		if (cellRef.indexOf(SHEET_NAME_DELIMITER) < 0 && cellRef.length() > 0) {
+			// the usual plain reference, parsed without any substrings
+			long packed;
+			try {
+				packed = parsePackedReference(cellRef, 0, cellRef.length());
+			} catch (IllegalArgumentException e) {
+				packed = INVALID_REFERENCE;
+			}
+			if (packed != INVALID_REFERENCE) {
+				_sheetName = null;
+				_rowIndex = getPackedRow(packed);
+				_colIndex = getPackedColumn(packed);
+				_isColAbs = cellRef.charAt(0) == ABSOLUTE_REFERENCE_MARKER;
+				int firstDigit = 0;
+				while (firstDigit < cellRef.length() && !Character.isDigit(cellRef.charAt(firstDigit))) {
+					firstDigit++;
+				}
+				_isRowAbs = firstDigit >= 2 && firstDigit < cellRef.length()
+						&& cellRef.charAt(firstDigit - 1) == ABSOLUTE_REFERENCE_MARKER;
+				return;
+			}
+		}
+
 		String[] parts = separateRefParts(cellRef);
 		_sheetName = parts[0];
 
@@ -171,25 +207,190 @@ public class CellReference {
 	 */
 	public static int convertColStringToIndex(String ref) {
 
-		int pos = 0;
 		int retval=0;
-		for (int k = ref.length()-1; k >= 0; k--) {
+		for (int k = 0; k < ref.length(); k++) {
 			char thechar = ref.charAt(k);
 			if (thechar == ABSOLUTE_REFERENCE_MARKER) {
 				if (k != 0) {
 					throw new IllegalArgumentException("Bad col ref format '" + ref + "'");
 				}
-				break;
+				continue;
 			}
 			// Character.getNumericValue() returns the values
 			//  10-35 for the letter A-Z
-			int shift = (int)Math.pow(26, pos);
-			retval += (Character.getNumericValue(thechar)-9) * shift;
-			pos++;
+			retval = retval * 26 + Character.getNumericValue(thechar)-9;
 		}
 		return retval-1;
 	}
 
+	/**
+	 * Parses a cell reference without a sheet name, such as "AB123" or "$AB$123", from
+	 *  the characters between <tt>start</tt> and <tt>end</tt>, without creating any objects.
+	 *  References of more than 6 letters or 9 digits are not accepted.
+	 *
+	 * @return the zero based row and column, packed into a long, see {@link #getPackedRow(long)}
+	 *  and {@link #getPackedColumn(long)}.  Either is -1 if missing, as in "AB" or "123"
+	 * @throws IllegalArgumentException if the characters are not a cell reference
+	 */
+	public static long parsePackedReference(CharSequence ref, int start, int end) {
+		int i = start;
+		if (i < end && ref.charAt(i) == ABSOLUTE_REFERENCE_MARKER) {
+			i++;
+		}
+		int col = 0;
+		int letters = 0;
+		for (; i < end; i++) {
+			int letter = getLetterValue(ref.charAt(i));
+			if (letter < 0) {
+				break;
+			}
+			col = col * 26 + letter;
+			letters++;
+		}
+		boolean rowMarker = i < end && letters > 0 && ref.charAt(i) == ABSOLUTE_REFERENCE_MARKER;
+		if (rowMarker) {
+			i++;
+		}
+		int row = 0;
+		int digits = 0;
+		for (; i < end; i++) {
+			int digit = ref.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				digits = -1;
+				break;
+			}
+			row = row * 10 + digit;
+			digits++;
+		}
+		long packed = packParsedReference(row, digits, col, letters, rowMarker);
+		if (packed == INVALID_REFERENCE) {
+			throw new IllegalArgumentException("Bad cell ref format '" + ref.subSequence(start, end) + "'");
+		}
+		return packed;
+	}
+
+	/**
+	 * Parses a cell reference without a sheet name from the characters between
+	 *  <tt>start</tt> and <tt>end</tt>, as {@link #parsePackedReference(CharSequence, int, int)}
+	 *  (the array is only wrapped, not copied)
+	 */
+	public static long parsePackedReference(char[] ref, int start, int end) {
+		return parsePackedReference(CharBuffer.wrap(ref), start, end);
+	}
+
+	private static int getLetterValue(char ch) {
+		if (ch >= 'A' && ch <= 'Z') {
+			return ch - 'A' + 1;
+		}
+		if (ch >= 'a' && ch <= 'z') {
+			return ch - 'a' + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param digits the number of digits of the row, -1 if followed by anything else
+	 */
+	private static long packParsedReference(int row, int digits, int col, int letters, boolean rowMarker) {
+		if (digits < 0 || digits > MAX_ROW_DIGITS || letters > MAX_COLUMN_LETTERS
+				|| (letters == 0 && digits == 0) || (rowMarker && digits == 0)) {
+			return INVALID_REFERENCE;
+		}
+		return packReference(digits == 0 ? -1 : row - 1, letters == 0 ? -1 : col - 1);
+	}
+
+	/**
+	 * Packs a zero based row and column into a long, as returned by
+	 *  {@link #parsePackedReference(CharSequence, int, int)}
+	 */
+	public static long packReference(int row, int col) {
+		return ((long)row << 32) | (col & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return the zero based row of a packed reference
+	 */
+	public static int getPackedRow(long packed) {
+		return (int)(packed >> 32);
+	}
+
+	/**
+	 * @return the zero based column of a packed reference
+	 */
+	public static int getPackedColumn(long packed) {
+		return (int)packed;
+	}
+
+	/**
+	 * Writes the reference of a cell, e.g. "AB123", into the buffer, without creating
+	 *  any objects.  A row or column of -1 is left out, as for whole column or row
+	 *  references.
+	 *
+	 * @param buf the buffer, which needs room for up to {@link #MAX_FORMATTED_LENGTH} chars
+	 * @return the offset after the reference
+	 */
+	public static int appendCellReference(char[] buf, int offset, int row, int col) {
+		if (col != -1) {
+			int length = getColumnLetterCount(col);
+			int pos = offset + length;
+			for (int n = col + 1; n > 0; n = (n - 1) / 26) {
+				buf[--pos] = (char)('A' + (n - 1) % 26);
+			}
+			offset += length;
+		}
+		if (row != -1) {
+			int length = 1;
+			for (int n = (row + 1) / 10; n > 0; n /= 10) {
+				length++;
+			}
+			int pos = offset + length;
+			for (int n = row + 1; pos > offset; n /= 10) {
+				buf[--pos] = (char)('0' + n % 10);
+			}
+			offset += length;
+		}
+		return offset;
+	}
+
+	/**
+	 * Appends the reference of a cell, e.g. "AB123", to the builder, without creating
+	 *  any objects
+	 */
+	public static void appendCellReference(StringBuilder sb, int row, int col) {
+		if (col != -1) {
+			appendColumnLetters(sb, col);
+		}
+		if (row != -1) {
+			sb.append(row + 1);
+		}
+	}
+
+	/**
+	 * @return the reference of a cell, e.g. "AB123", as {@link #formatAsString()} for
+	 *  a relative reference without a sheet name, but with a single allocation
+	 */
+	public static String formatCellReference(int row, int col) {
+		char[] buf = new char[MAX_FORMATTED_LENGTH];
+		return new String(buf, 0, appendCellReference(buf, 0, row, col));
+	}
+
+	private static int getColumnLetterCount(int col) {
+		int length = 0;
+		for (int n = col + 1; n > 0; n = (n - 1) / 26) {
+			length++;
+		}
+		return length;
+	}
+
+	private static void appendColumnLetters(StringBuilder sb, int col) {
+		int start = sb.length();
+		int pos = start + getColumnLetterCount(col);
+		sb.setLength(pos);
+		for (int n = col + 1; n > 0; n = (n - 1) / 26) {
+			sb.setCharAt(--pos, (char)('A' + (n - 1) % 26));
+		}
+	}
+
 	/**
 	 * Classifies an identifier as either a simple (2D) cell reference or a named range name
 	 * @return one of the values from <tt>NameType</tt>
@@ -418,22 +619,12 @@ public class CellReference {
 	public static String convertNumToColString(int col) {
 		// Excel counts column A as the 1st column, we
 		//  treat it as the 0th one
-		int excelColNum = col + 1;
-
-		String colRef = "";
-		int colRemain = excelColNum;
-
-		while(colRemain > 0) {
-			int thisPart = colRemain % 26;
-			if(thisPart == 0) { thisPart = 26; }
-			colRemain = (colRemain - thisPart) / 26;
-
-			// The letter A is at 65
-			char colChar = (char)(thisPart+64);
-			colRef = colChar + colRef;
+		if (col < 0) {
+			return "";
 		}
-
-		return colRef;
+		StringBuilder sb = new StringBuilder(MAX_COLUMN_LETTERS);
+		appendColumnLetters(sb, col);
+		return sb.toString();
 	}
 
 	/**
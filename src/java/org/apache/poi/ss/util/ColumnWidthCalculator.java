@@ -0,0 +1,237 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Computes the widths which {@link Sheet#autoSizeColumn(int, boolean)} gives to columns,
+ *  from the rows passed to {@link #addRow(Row)}, so that any number of columns can be
+ *  sized in a single pass over the rows, and rows can be measured as they are written.
+ * <p>
+ * Measuring text is by far the slowest part of sizing a column, so the widths of the
+ *  texts most recently measured are kept, by font and rotation, and repeated values are
+ *  only measured once.  The widths both ignoring and using merged cells are tracked, the
+ *  merged regions are taken from the sheet as each row is added.
+ * </p>
+ *
+ * @see SheetUtil#getColumnWidths(Sheet, int[], boolean)
+ */
+public final class ColumnWidthCalculator {
+    private static final int MAX_CACHED_TEXTS = 10000;
+
+    private final Sheet _sheet;
+    private final Workbook _workbook;
+    private final int[] _columns;
+    private final int _defaultCharWidth;
+    private final DataFormatter _formatter = new DataFormatter();
+
+    /** the widths ignoring and using merged cells, by column */
+    private double[] _widths = new double[0];
+    private double[] _mergedWidths = new double[0];
+
+    private final Map<TextKey, Double> _textWidths = new LinkedHashMap<TextKey, Double>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<TextKey, Double> eldest) {
+            return size() > MAX_CACHED_TEXTS;
+        }
+    };
+    private final TextKey _lookupKey = new TextKey();
+    private final List<CellRangeAddress> _rowRegions = new ArrayList<CellRangeAddress>();
+
+    /**
+     * Tracks all the columns of the sheet
+     */
+    public ColumnWidthCalculator(Sheet sheet) {
+        this(sheet, null);
+    }
+
+    /**
+     * @param columns the 0-based indexes of the columns to track, or <code>null</code> for all
+     */
+    public ColumnWidthCalculator(Sheet sheet, int[] columns) {
+        _sheet = sheet;
+        _workbook = sheet.getWorkbook();
+        _columns = columns == null ? null : columns.clone();
+        _defaultCharWidth = SheetUtil.getDefaultCharWidth(_workbook);
+    }
+
+    /**
+     * Measures the cells of the tracked columns of the given row of the sheet
+     */
+    public void addRow(Row row) {
+        int rowNum = row.getRowNum();
+        _rowRegions.clear();
+        for (int i = 0; i < _sheet.getNumMergedRegions(); i++) {
+            CellRangeAddress region = _sheet.getMergedRegion(i);
+            if (region.getFirstRow() <= rowNum && region.getLastRow() >= rowNum) {
+                _rowRegions.add(region);
+            }
+        }
+
+        if (_columns == null) {
+            for (Cell cell : row) {
+                addCell(row, cell);
+            }
+        } else {
+            for (int column : _columns) {
+                Cell cell = row.getCell(column);
+                if (cell != null) {
+                    addCell(row, cell);
+                }
+            }
+        }
+    }
+
+    private void addCell(Row row, Cell cell) {
+        int column = cell.getColumnIndex();
+
+        // The last region containing the cell counts, as for SheetUtil.getCellWidth
+        CellRangeAddress region = null;
+        for (int i = 0; i < _rowRegions.size(); i++) {
+            CellRangeAddress r = _rowRegions.get(i);
+            if (r.getFirstColumn() <= column && r.getLastColumn() >= column) {
+                region = r;
+            }
+        }
+
+        if (region == null) {
+            double width = getCellWidth(cell, 1);
+            _widths = update(_widths, column, width);
+            _mergedWidths = update(_mergedWidths, column, width);
+        } else {
+            Cell first = row.getCell(region.getFirstColumn());
+            if (first != null) {
+                int colspan = 1 + region.getLastColumn() - region.getFirstColumn();
+                _mergedWidths = update(_mergedWidths, column, getCellWidth(first, colspan));
+            }
+        }
+    }
+
+    private static double[] update(double[] widths, int column, double width) {
+        if (column >= widths.length) {
+            int length = Math.max(column + 1, widths.length * 2);
+            double[] grown = new double[length];
+            System.arraycopy(widths, 0, grown, 0, widths.length);
+            Arrays.fill(grown, widths.length, length, -1);
+            widths = grown;
+        }
+        widths[column] = Math.max(widths[column], width);
+        return widths;
+    }
+
+    private double getCellWidth(Cell cell, int colspan) {
+        CellStyle style = cell.getCellStyle();
+        int cellType = cell.getCellType();
+
+        // for formula cells we compute the cell width for the cached formula result
+        if (cellType == Cell.CELL_TYPE_FORMULA) cellType = cell.getCachedFormulaResultType();
+
+        String text = SheetUtil.getCellText(cell, cellType, _formatter);
+        if (text == null) {
+            return -1;
+        }
+
+        double width = -1;
+        if (cellType == Cell.CELL_TYPE_STRING && text.indexOf('\n') >= 0) {
+            String[] lines = text.split("\\n");
+            for (int i = 0; i < lines.length; i++) {
+                width = Math.max(width, getLineWidth(style, lines[i], colspan));
+            }
+        } else {
+            width = getLineWidth(style, text, colspan);
+        }
+        return width;
+    }
+
+    private double getLineWidth(CellStyle style, String line, int colspan) {
+        short fontIndex = style.getFontIndex();
+        short rotation = style.getRotation();
+
+        _lookupKey.set(fontIndex, rotation, line);
+        Double textWidth = _textWidths.get(_lookupKey);
+        if (textWidth == null) {
+            textWidth = Double.valueOf(SheetUtil.getTextWidth(_workbook.getFontAt(fontIndex), rotation, line + SheetUtil.defaultChar));
+            TextKey key = new TextKey();
+            key.set(fontIndex, rotation, line);
+            _textWidths.put(key, textWidth);
+        }
+        return ((textWidth.doubleValue() / colspan) / _defaultCharWidth) + style.getIndention();
+    }
+
+    /**
+     * @return whether the cells of the given column are measured
+     */
+    public boolean isTracked(int column) {
+        if (_columns == null) {
+            return true;
+        }
+        for (int c : _columns) {
+            if (c == column) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param column the 0-based index of the column
+     * @param useMergedCells whether to use the contents of merged cells
+     * @return the width of the column in default character widths, or -1 if
+     *  none of its cells were measured
+     */
+    public double getColumnWidth(int column, boolean useMergedCells) {
+        double[] widths = useMergedCells ? _mergedWidths : _widths;
+        return column < widths.length ? widths[column] : -1;
+    }
+
+    private static final class TextKey {
+        private short _fontIndex;
+        private short _rotation;
+        private String _text;
+
+        void set(short fontIndex, short rotation, String text) {
+            _fontIndex = fontIndex;
+            _rotation = rotation;
+            _text = text;
+        }
+
+        public int hashCode() {
+            return (_fontIndex * 31 + _rotation) * 31 + _text.hashCode();
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TextKey)) {
+                return false;
+            }
+            TextKey other = (TextKey) obj;
+            return _fontIndex == other._fontIndex && _rotation == other._rotation
+                    && _text.equals(other._text);
+        }
+    }
+}
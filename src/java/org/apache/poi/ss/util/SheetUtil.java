@@ -38,7 +38,7 @@ public class SheetUtil {
      * but the docs say nothing about what particular character is used.
      * '0' looks to be a good choice.
      */
-    private static final char defaultChar = '0';
+    static final char defaultChar = '0';
 
     /**
      * This is the multiple that the font height is scaled by when determining the
@@ -111,80 +111,87 @@ public class SheetUtil {
         // for formula cells we compute the cell width for the cached formula result
         if(cellType == Cell.CELL_TYPE_FORMULA) cellType = cell.getCachedFormulaResultType();
 
+        String text = getCellText(cell, cellType, formatter);
+        if (text == null) {
+            return -1;
+        }
         Font font = wb.getFontAt(style.getFontIndex());
 
-        AttributedString str;
-        TextLayout layout;
-
         double width = -1;
+        String[] lines = cellType == Cell.CELL_TYPE_STRING ? text.split("\\n") : new String[] { text };
+        for (int i = 0; i < lines.length; i++) {
+            double textWidth = getTextWidth(font, style.getRotation(), lines[i] + defaultChar);
+            width = Math.max(width, ((textWidth / colspan) / defaultCharWidth) + style.getIndention());
+        }
+        return width;
+    }
+
+    /**
+     * The text of a cell as it is measured, the formatted value for numbers
+     *
+     * @param cellType the type of the cell, of the cached result for formulas
+     * @return the text, or <code>null</code> if the cell has none to measure
+     */
+    static String getCellText(Cell cell, int cellType, DataFormatter formatter) {
         if (cellType == Cell.CELL_TYPE_STRING) {
             RichTextString rt = cell.getRichStringCellValue();
-            String[] lines = rt.getString().split("\\n");
-            for (int i = 0; i < lines.length; i++) {
-                String txt = lines[i] + defaultChar;
-
-                str = new AttributedString(txt);
-                copyAttributes(font, str, 0, txt.length());
-
-                if (rt.numFormattingRuns() > 0) {
-                    // TODO: support rich text fragments
-                }
-
-                layout = new TextLayout(str.getIterator(), fontRenderContext);
-                if(style.getRotation() != 0){
-                    /*
-                     * Transform the text using a scale so that it's height is increased by a multiple of the leading,
-                     * and then rotate the text before computing the bounds. The scale results in some whitespace around
-                     * the unrotated top and bottom of the text that normally wouldn't be present if unscaled, but
-                     * is added by the standard Excel autosize.
-                     */
-                    AffineTransform trans = new AffineTransform();
-                    trans.concatenate(AffineTransform.getRotateInstance(style.getRotation()*2.0*Math.PI/360.0));
-                    trans.concatenate(
-                    AffineTransform.getScaleInstance(1, fontHeightMultiple)
-                    );
-                    width = Math.max(width, ((layout.getOutline(trans).getBounds().getWidth() / colspan) / defaultCharWidth) + cell.getCellStyle().getIndention());
-                } else {
-                    width = Math.max(width, ((layout.getBounds().getWidth() / colspan) / defaultCharWidth) + cell.getCellStyle().getIndention());
-                }
+            if (rt.numFormattingRuns() > 0) {
+                // TODO: support rich text fragments
             }
-        } else {
-            String sval = null;
-            if (cellType == Cell.CELL_TYPE_NUMERIC) {
-                // Try to get it formatted to look the same as excel
-                try {
-                    sval = formatter.formatCellValue(cell, dummyEvaluator);
-                } catch (Exception e) {
-                    sval = String.valueOf(cell.getNumericCellValue());
-                }
-            } else if (cellType == Cell.CELL_TYPE_BOOLEAN) {
-                sval = String.valueOf(cell.getBooleanCellValue()).toUpperCase();
-            }
-            if(sval != null) {
-                String txt = sval + defaultChar;
-                str = new AttributedString(txt);
-                copyAttributes(font, str, 0, txt.length());
-
-                layout = new TextLayout(str.getIterator(), fontRenderContext);
-                if(style.getRotation() != 0){
-                    /*
-                     * Transform the text using a scale so that it's height is increased by a multiple of the leading,
-                     * and then rotate the text before computing the bounds. The scale results in some whitespace around
-                     * the unrotated top and bottom of the text that normally wouldn't be present if unscaled, but
-                     * is added by the standard Excel autosize.
-                     */
-                    AffineTransform trans = new AffineTransform();
-                    trans.concatenate(AffineTransform.getRotateInstance(style.getRotation()*2.0*Math.PI/360.0));
-                    trans.concatenate(
-                    AffineTransform.getScaleInstance(1, fontHeightMultiple)
-                    );
-                    width = Math.max(width, ((layout.getOutline(trans).getBounds().getWidth() / colspan) / defaultCharWidth) + cell.getCellStyle().getIndention());
-                } else {
-                    width = Math.max(width, ((layout.getBounds().getWidth() / colspan) / defaultCharWidth) + cell.getCellStyle().getIndention());
-                }
+            return rt.getString();
+        }
+        if (cellType == Cell.CELL_TYPE_NUMERIC) {
+            // Try to get it formatted to look the same as excel
+            try {
+                return formatter.formatCellValue(cell, dummyEvaluator);
+            } catch (Exception e) {
+                return String.valueOf(cell.getNumericCellValue());
             }
         }
-        return width;
+        if (cellType == Cell.CELL_TYPE_BOOLEAN) {
+            return String.valueOf(cell.getBooleanCellValue()).toUpperCase();
+        }
+        return null;
+    }
+
+    /**
+     * Measures a line of text in the given font
+     *
+     * @param rotation the rotation of the text in degrees, as for {@link CellStyle#getRotation()}
+     * @return the width of the bounds of the text, in pixels
+     */
+    static double getTextWidth(Font font, short rotation, String txt) {
+        AttributedString str = new AttributedString(txt);
+        copyAttributes(font, str, 0, txt.length());
+
+        TextLayout layout = new TextLayout(str.getIterator(), fontRenderContext);
+        if(rotation != 0){
+            /*
+             * Transform the text using a scale so that it's height is increased by a multiple of the leading,
+             * and then rotate the text before computing the bounds. The scale results in some whitespace around
+             * the unrotated top and bottom of the text that normally wouldn't be present if unscaled, but
+             * is added by the standard Excel autosize.
+             */
+            AffineTransform trans = new AffineTransform();
+            trans.concatenate(AffineTransform.getRotateInstance(rotation*2.0*Math.PI/360.0));
+            trans.concatenate(
+            AffineTransform.getScaleInstance(1, fontHeightMultiple)
+            );
+            return layout.getOutline(trans).getBounds().getWidth();
+        }
+        return layout.getBounds().getWidth();
+    }
+
+    /**
+     * The width of the default character in the default font of the workbook, in pixels
+     */
+    static int getDefaultCharWidth(Workbook wb) {
+        Font defaultFont = wb.getFontAt((short) 0);
+
+        AttributedString str = new AttributedString(String.valueOf(defaultChar));
+        copyAttributes(defaultFont, str, 0, 1);
+        TextLayout layout = new TextLayout(str.getIterator(), fontRenderContext);
+        return (int)layout.getAdvance();
     }
 
     /**
@@ -196,30 +203,11 @@ public class SheetUtil {
      * @return  the width in pixels
      */
     public static double getColumnWidth(Sheet sheet, int column, boolean useMergedCells){
-        AttributedString str;
-        TextLayout layout;
-
-        Workbook wb = sheet.getWorkbook();
-        DataFormatter formatter = new DataFormatter();
-        Font defaultFont = wb.getFontAt((short) 0);
-
-        str = new AttributedString(String.valueOf(defaultChar));
-        copyAttributes(defaultFont, str, 0, 1);
-        layout = new TextLayout(str.getIterator(), fontRenderContext);
-        int defaultCharWidth = (int)layout.getAdvance();
-
-        double width = -1;
+        ColumnWidthCalculator calculator = new ColumnWidthCalculator(sheet, new int[] { column });
         for (Row row : sheet) {
-            Cell cell = row.getCell(column);
-
-            if (cell == null) {
-                continue;
-            }
-
-            double cellWidth = getCellWidth(cell, defaultCharWidth, formatter, useMergedCells);
-            width = Math.max(width, cellWidth);
+            calculator.addRow(row);
         }
-        return width;
+        return calculator.getColumnWidth(column, useMergedCells);
     }
 
     /**
@@ -233,34 +221,54 @@ public class SheetUtil {
      * @return  the width in pixels
      */
     public static double getColumnWidth(Sheet sheet, int column, boolean useMergedCells, int firstRow, int lastRow){
-        AttributedString str;
-        TextLayout layout;
-
-        Workbook wb = sheet.getWorkbook();
-        DataFormatter formatter = new DataFormatter();
-        Font defaultFont = wb.getFontAt((short) 0);
+        return getColumnWidths(sheet, new int[] { column }, useMergedCells, firstRow, lastRow)[0];
+    }
 
-        str = new AttributedString(String.valueOf(defaultChar));
-        copyAttributes(defaultFont, str, 0, 1);
-        layout = new TextLayout(str.getIterator(), fontRenderContext);
-        int defaultCharWidth = (int)layout.getAdvance();
+    /**
+     * Compute the widths of several columns in a single pass over the rows, which is
+     *  much faster than computing them one column at a time on large sheets
+     *
+     * @param sheet the sheet to calculate
+     * @param columns   0-based indexes of the columns
+     * @param useMergedCells    whether to use merged cells
+     * @return  the widths of the columns, as for {@link #getColumnWidth(Sheet, int, boolean)}
+     */
+    public static double[] getColumnWidths(Sheet sheet, int[] columns, boolean useMergedCells){
+        ColumnWidthCalculator calculator = new ColumnWidthCalculator(sheet, columns);
+        for (Row row : sheet) {
+            calculator.addRow(row);
+        }
+        return getColumnWidths(calculator, columns, useMergedCells);
+    }
 
-        double width = -1;
+    /**
+     * Compute the widths of several columns based on a subset of the rows, e.g. a
+     *  sample of the first rows of a large sheet, in a single pass over the rows
+     *
+     * @param sheet the sheet to calculate
+     * @param columns   0-based indexes of the columns
+     * @param useMergedCells    whether to use merged cells
+     * @param firstRow  0-based index of the first row to consider (inclusive)
+     * @param lastRow   0-based index of the last row to consider (inclusive)
+     * @return  the widths of the columns, as for {@link #getColumnWidth(Sheet, int, boolean)}
+     */
+    public static double[] getColumnWidths(Sheet sheet, int[] columns, boolean useMergedCells, int firstRow, int lastRow){
+        ColumnWidthCalculator calculator = new ColumnWidthCalculator(sheet, columns);
         for (int rowIdx = firstRow; rowIdx <= lastRow; ++rowIdx) {
             Row row = sheet.getRow(rowIdx);
             if( row != null ) {
-
-                Cell cell = row.getCell(column);
-
-                if (cell == null) {
-                    continue;
-                }
-
-                double cellWidth = getCellWidth(cell, defaultCharWidth, formatter, useMergedCells);
-                width = Math.max(width, cellWidth);
+                calculator.addRow(row);
             }
         }
-        return width;
+        return getColumnWidths(calculator, columns, useMergedCells);
+    }
+
+    private static double[] getColumnWidths(ColumnWidthCalculator calculator, int[] columns, boolean useMergedCells) {
+        double[] widths = new double[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            widths[i] = calculator.getColumnWidth(columns[i], useMergedCells);
+        }
+        return widths;
     }
 
     /**
@@ -52,6 +52,8 @@ import org.apache.poi.openxml4j.opc.internal.marshallers.ZipPackagePropertiesMar
 import org.apache.poi.openxml4j.opc.internal.unmarshallers.PackagePropertiesUnmarshaller;
 import org.apache.poi.openxml4j.opc.internal.unmarshallers.UnmarshallContext;
 import org.apache.poi.openxml4j.util.Nullable;
+import org.apache.poi.openxml4j.util.TempFileZipEntrySource;
+import org.apache.poi.openxml4j.util.ZipEntrySource;
 import org.apache.poi.util.POILogger;
 import org.apache.poi.util.POILogFactory;
 
@@ -271,6 +273,56 @@ public abstract class OPCPackage implements RelationshipSource, Closeable {
 		return pack;
 	}
 
+	/**
+	 * Open a package.
+	 *
+	 * With <code>useTempFile</code> set, the stream is first copied to a
+	 * temporary file, and the parts are read from there as they are needed,
+	 * like {@link #open(String)} does, rather than all being read into memory
+	 * up front, as {@link #open(InputStream)} does. The temporary file is
+	 * deleted when the package is closed.
+	 *
+	 * @param in
+	 *            The InputStream to read the package from
+	 * @param useTempFile
+	 *            Whether to read the package through a temporary file
+	 * @return A PackageBase object
+	 */
+	public static OPCPackage open(InputStream in, boolean useTempFile)
+			throws InvalidFormatException, IOException {
+		if (!useTempFile) {
+			return open(in);
+		}
+		ZipEntrySource zipEntrySource = new TempFileZipEntrySource(in);
+		try {
+			return open(zipEntrySource);
+		} catch (InvalidFormatException e) {
+			zipEntrySource.close();
+			throw e;
+		} catch (RuntimeException e) {
+			zipEntrySource.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open a package from a zip source, such as a
+	 * {@link org.apache.poi.openxml4j.util.DataSourceZipEntrySource} over the
+	 * decrypted data of an encrypted document.
+	 *
+	 * @param zipEntrySource
+	 *            The zip source to read the package from, closed with the package
+	 * @return A PackageBase object
+	 */
+	public static OPCPackage open(ZipEntrySource zipEntrySource)
+			throws InvalidFormatException {
+		OPCPackage pack = new ZipPackage(zipEntrySource, PackageAccess.READ_WRITE);
+		if (pack.partList == null) {
+			pack.getParts();
+		}
+		return pack;
+	}
+
 	/**
 	 * Opens a package if it exists, else it creates one.
 	 *
@@ -389,6 +441,9 @@ public abstract class OPCPackage implements RelationshipSource, Closeable {
 	 * 
 	 * If your package is open read only, then you should call {@link #revert()}
 	 *  when finished with the package.
+	 * A package opened from a stream or a zip source has nowhere to be saved
+	 *  to, so closing it just releases what it was read from, e.g. the
+	 *  temporary file of {@link #open(InputStream, boolean)}.
 	 *
 	 * @throws IOException
 	 *             If an IO exception occur during the saving process.
@@ -419,6 +474,9 @@ public abstract class OPCPackage implements RelationshipSource, Closeable {
 			} else if (this.output != null) {
 				save(this.output);
 				output.close();
+			} else {
+				// Nowhere to save to, release the source of the package
+				revertImpl();
 			}
 		} finally {
 			l.writeLock().unlock();
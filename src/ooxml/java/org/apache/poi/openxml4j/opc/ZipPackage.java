@@ -85,6 +85,20 @@ public final class ZipPackage extends Package {
 		);
 	}
 
+   /**
+    * Constructor. Opens a Zip based Open XML document from an
+    *  already opened zip source.
+    *
+    * @param zipEntrySource
+    *            The zip source to read the parts from.
+    * @param access
+    *            The package access mode.
+    */
+   ZipPackage(ZipEntrySource zipEntrySource, PackageAccess access) {
+      super(access);
+      this.zipArchive = zipEntrySource;
+   }
+
    /**
     * Constructor. Opens a Zip based Open XML document.
     *
@@ -0,0 +1,241 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.poi.poifs.nio.DataSource;
+
+/**
+ * A ZipEntrySource which reads the zip file from a {@link DataSource}, like
+ *  a ZipFile does from a file, e.g. from the decrypted view of an encrypted
+ *  package given by {@link org.apache.poi.poifs.crypt.Decryptor#getDataSource}.
+ * <p>
+ * Only the central directory of the zip file is read up front, the entries are
+ *  read from the data source as their streams are read, so the zip file is never
+ *  held in memory.  Zip64 files are not supported.
+ * </p>
+ */
+public class DataSourceZipEntrySource implements ZipEntrySource {
+   private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+   private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+   private static final int CENTRAL_FILE_HEADER = 0x02014b50;
+   private static final int CENTRAL_FILE_HEADER_SIZE = 46;
+   private static final int LOCAL_FILE_HEADER = 0x04034b50;
+   private static final int LOCAL_FILE_HEADER_SIZE = 30;
+   private static final int MAX_COMMENT_SIZE = 0xFFFF;
+   private static final int BUFFER_SIZE = 4096;
+
+   private DataSource source;
+   private final List<DataSourceZipEntry> entries;
+
+   public DataSourceZipEntrySource(DataSource source) throws IOException {
+      this.source = source;
+      this.entries = readCentralDirectory();
+   }
+
+   private List<DataSourceZipEntry> readCentralDirectory() throws IOException {
+      long size = source.size();
+      int tailSize = (int)Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+      if(tailSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+         throw new IOException("Not a zip file, too short");
+      }
+      ByteBuffer tail = read(size - tailSize, tailSize);
+
+      int eocd = -1;
+      for(int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+         if(tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+            eocd = i;
+            break;
+         }
+      }
+      if(eocd == -1) {
+         throw new IOException("Not a zip file, no end of central directory found");
+      }
+      int count = tail.getShort(eocd + 10) & 0xFFFF;
+      long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+      long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+      if(count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+         throw new IOException("Zip64 files are not supported");
+      }
+      if(directoryOffset + directorySize > size) {
+         throw new IOException("Corrupt zip file, central directory past the end of the data");
+      }
+
+      ByteBuffer dir = read(directoryOffset, (int)directorySize);
+      List<DataSourceZipEntry> result = new ArrayList<DataSourceZipEntry>(count);
+      int pos = 0;
+      for(int i = 0; i < count; i++) {
+         if(pos + CENTRAL_FILE_HEADER_SIZE > dir.limit() || dir.getInt(pos) != CENTRAL_FILE_HEADER) {
+            throw new IOException("Corrupt zip file, bad central directory entry " + i);
+         }
+         int method = dir.getShort(pos + 10) & 0xFFFF;
+         long crc = dir.getInt(pos + 16) & 0xFFFFFFFFL;
+         long compressedSize = dir.getInt(pos + 20) & 0xFFFFFFFFL;
+         long uncompressedSize = dir.getInt(pos + 24) & 0xFFFFFFFFL;
+         int nameLength = dir.getShort(pos + 28) & 0xFFFF;
+         int extraLength = dir.getShort(pos + 30) & 0xFFFF;
+         int commentLength = dir.getShort(pos + 32) & 0xFFFF;
+         long localHeaderOffset = dir.getInt(pos + 42) & 0xFFFFFFFFL;
+         if(compressedSize == 0xFFFFFFFFL || uncompressedSize == 0xFFFFFFFFL
+               || localHeaderOffset == 0xFFFFFFFFL) {
+            throw new IOException("Zip64 files are not supported");
+         }
+
+         byte[] name = new byte[nameLength];
+         dir.position(pos + CENTRAL_FILE_HEADER_SIZE);
+         dir.get(name);
+
+         DataSourceZipEntry entry = new DataSourceZipEntry(new String(name, "UTF-8"), localHeaderOffset);
+         entry.setMethod(method);
+         entry.setCrc(crc);
+         entry.setCompressedSize(compressedSize);
+         entry.setSize(uncompressedSize);
+         result.add(entry);
+
+         pos += CENTRAL_FILE_HEADER_SIZE + nameLength + extraLength + commentLength;
+      }
+      return result;
+   }
+
+   private ByteBuffer read(long position, int length) throws IOException {
+      ByteBuffer buffer = source.read(length, position);
+      if(buffer.position() != 0 || buffer.remaining() != length) {
+         buffer = buffer.slice();
+      }
+      return buffer.order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   public void close() throws IOException {
+      if(source != null) {
+         source.close();
+      }
+      source = null;
+   }
+
+   public Enumeration<? extends ZipEntry> getEntries() {
+      if (source == null)
+         throw new IllegalStateException("Zip File is closed");
+
+      return Collections.enumeration(entries);
+   }
+
+   public InputStream getInputStream(ZipEntry zipEntry) throws IOException {
+      if (source == null)
+         throw new IllegalStateException("Zip File is closed");
+
+      DataSourceZipEntry entry = (DataSourceZipEntry)zipEntry;
+      ByteBuffer header = read(entry.localHeaderOffset, LOCAL_FILE_HEADER_SIZE);
+      if(header.getInt(0) != LOCAL_FILE_HEADER) {
+         throw new IOException("Corrupt zip file, bad local header for " + entry.getName());
+      }
+      int nameLength = header.getShort(26) & 0xFFFF;
+      int extraLength = header.getShort(28) & 0xFFFF;
+      long dataOffset = entry.localHeaderOffset + LOCAL_FILE_HEADER_SIZE + nameLength + extraLength;
+
+      InputStream data = new EntryInputStream(source, dataOffset, entry.getCompressedSize());
+      switch(entry.getMethod()) {
+         case ZipEntry.STORED:
+            return data;
+         case ZipEntry.DEFLATED:
+            return new InflaterInputStream(data, new Inflater(true), BUFFER_SIZE) {
+               public void close() throws IOException {
+                  super.close();
+                  inf.end();
+               }
+            };
+         default:
+            throw new IOException("Unsupported compression method " + entry.getMethod()
+                  + " for " + entry.getName());
+      }
+   }
+
+   /**
+    * A ZipEntry which knows where its data starts
+    */
+   private static final class DataSourceZipEntry extends ZipEntry {
+      private final long localHeaderOffset;
+
+      DataSourceZipEntry(String name, long localHeaderOffset) {
+         super(name);
+         this.localHeaderOffset = localHeaderOffset;
+      }
+   }
+
+   /**
+    * The raw data of an entry, read from the data source a buffer at a time
+    */
+   private static final class EntryInputStream extends InputStream {
+      private final DataSource source;
+      private final long end;
+      private long position;
+      private ByteBuffer buffer;
+
+      EntryInputStream(DataSource source, long position, long length) {
+         this.source = source;
+         this.position = position;
+         this.end = position + length;
+      }
+
+      public int read() throws IOException {
+         byte[] b = new byte[1];
+         return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+      }
+
+      public int read(byte[] b, int off, int len) throws IOException {
+         if(len == 0) {
+            return 0;
+         }
+         if(buffer == null || !buffer.hasRemaining()) {
+            if(position >= end) {
+               return -1;
+            }
+            buffer = source.read((int)Math.min(BUFFER_SIZE, end - position), position);
+            position += buffer.remaining();
+         }
+         int count = Math.min(len, buffer.remaining());
+         buffer.get(b, off, count);
+         return count;
+      }
+
+      public long skip(long n) throws IOException {
+         long skipped = 0;
+         if(buffer != null) {
+            skipped = Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + (int)skipped);
+         }
+         long more = Math.min(n - skipped, end - position);
+         position += more;
+         return skipped + more;
+      }
+
+      public int available() {
+         return (int)Math.min(Integer.MAX_VALUE, (buffer == null ? 0 : buffer.remaining()) + end - position);
+      }
+   }
+}
@@ -0,0 +1,650 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.openxml4j.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.util.TempFile;
+
+/**
+ * A ZipOutputStream which deflates its entries concurrently.
+ * <p>
+ * The data of every entry is collected (in memory, or in a temporary file for large entries),
+ * and compressed by a task on the supplied executor when the entry is closed.  The compressed
+ * entries are written to the underlying stream in the order they were added, as soon as all
+ * preceding entries have been written, so the resulting file is the same as a sequentially
+ * written one.  {@link #writeEntry(String, EntryContent)} additionally lets the task itself
+ * produce the data of an entry, e.g. render it from a temporary file, without collecting it
+ * first.
+ * </p>
+ * <p>
+ * The compression level can be chosen per entry name prefix, e.g. a low level for large
+ * worksheets and no compression for already compressed images.  All entries are deflated.
+ * Without an executor the stream behaves exactly like a {@link ZipOutputStream}, apart from
+ * the per entry compression levels.
+ * </p>
+ * <p>
+ * Pass the stream to {@link org.apache.poi.POIXMLDocument#write(OutputStream)} to compress
+ * the parts of a document concurrently:
+ * <pre>
+ * ExecutorService executor = Executors.newFixedThreadPool(4);
+ * ParallelZipOutputStream zos = new ParallelZipOutputStream(new FileOutputStream(file), executor);
+ * zos.setLevel("xl/worksheets/", 1);
+ * workbook.write(zos);
+ * </pre>
+ * </p>
+ */
+public class ParallelZipOutputStream extends ZipOutputStream {
+
+	/**
+	 * Produces the data of an entry, see {@link ParallelZipOutputStream#writeEntry(String, EntryContent)}
+	 */
+	public interface EntryContent {
+		/**
+		 * Writes the uncompressed data of the entry.  Called on a thread of the executor.
+		 */
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	/** entries up to this size are collected and compressed in memory */
+	private static final int MEMORY_THRESHOLD = 1024 * 1024;
+	/** the maximum number of compressed entries waiting for their predecessors */
+	private static final int MAX_PENDING_ENTRIES = 16;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+	private final ExecutorService _executor;
+	private final Map<String, Integer> _levels = new LinkedHashMap<String, Integer>();
+	private int _defaultLevel = Deflater.DEFAULT_COMPRESSION;
+
+	private final LinkedList<CompressTask> _pending = new LinkedList<CompressTask>();
+	private final List<CompressedEntry> _entries = new ArrayList<CompressedEntry>();
+	private long _position;
+	private String _entryName;
+	private long _entryTime;
+	private Spool _entryData;
+	private boolean _finished;
+	/** set when the pending entries are discarded, stops the running compressions */
+	private volatile boolean _aborted;
+
+	/**
+	 * @param out the stream to write the zip file to
+	 * @param executor the executor to compress the entries on, or <code>null</code> to compress
+	 *  them on the calling thread
+	 */
+	public ParallelZipOutputStream(OutputStream out, ExecutorService executor) {
+		super(out);
+		_executor = executor;
+	}
+
+	/**
+	 * Sets the compression level of the entries added afterwards whose names start with
+	 * the given prefix, e.g. <code>"xl/worksheets/"</code>.  The first matching prefix wins.
+	 *
+	 * @param entryNamePrefix the start of the entry names, without a leading slash
+	 * @param level the compression level (0-9)
+	 */
+	public void setLevel(String entryNamePrefix, int level) {
+		checkLevel(level);
+		_levels.put(entryNamePrefix, level);
+	}
+
+	/**
+	 * Sets the compression level of the entries without a level for their name prefix.
+	 */
+	public void setLevel(int level) {
+		checkLevel(level);
+		_defaultLevel = level;
+		super.setLevel(level);
+	}
+
+	private static void checkLevel(int level) {
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level");
+		}
+	}
+
+	private int getLevel(String entryName) {
+		for (Map.Entry<String, Integer> level : _levels.entrySet()) {
+			if (entryName.startsWith(level.getKey())) {
+				return level.getValue();
+			}
+		}
+		return _defaultLevel;
+	}
+
+	public void putNextEntry(ZipEntry e) throws IOException {
+		if (_executor == null) {
+			super.setLevel(getLevel(e.getName()));
+			super.putNextEntry(e);
+			return;
+		}
+		ensureOpen();
+		closeEntry();
+		_entryName = e.getName();
+		_entryTime = e.getTime() == -1 ? System.currentTimeMillis() : e.getTime();
+		_entryData = new Spool();
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (_executor == null) {
+			super.write(b, off, len);
+			return;
+		}
+		if (_entryData == null) {
+			throw new ZipException("no current ZIP entry");
+		}
+		_entryData.write(b, off, len);
+	}
+
+	public void closeEntry() throws IOException {
+		if (_executor == null) {
+			super.closeEntry();
+			return;
+		}
+		if (_entryData == null) {
+			return;
+		}
+		final Spool data = _entryData;
+		_entryData = null;
+		submit(_entryName, _entryTime, new EntryContent() {
+			public void writeTo(OutputStream out) throws IOException {
+				try {
+					data.copyTo(out);
+				} finally {
+					data.dispose();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Adds an entry whose data is written by <tt>content</tt>, on a thread of the executor if
+	 * there is one.  Any open entry is closed first.
+	 *
+	 * @param name the name of the entry
+	 * @param content writes the uncompressed data of the entry
+	 */
+	public void writeEntry(String name, EntryContent content) throws IOException {
+		if (_executor == null) {
+			super.setLevel(getLevel(name));
+			super.putNextEntry(new ZipEntry(name));
+			content.writeTo(new OutputStream() {
+				public void write(int b) throws IOException {
+					write(new byte[] { (byte)b }, 0, 1);
+				}
+				public void write(byte[] b, int off, int len) throws IOException {
+					writeDirect(b, off, len);
+				}
+			});
+			super.closeEntry();
+			return;
+		}
+		ensureOpen();
+		closeEntry();
+		submit(name, System.currentTimeMillis(), content);
+	}
+
+	private void writeDirect(byte[] b, int off, int len) throws IOException {
+		super.write(b, off, len);
+	}
+
+	public void finish() throws IOException {
+		if (_executor == null) {
+			super.finish();
+			return;
+		}
+		if (_finished) {
+			return;
+		}
+		closeEntry();
+		writeCompleted(true);
+		writeCentralDirectory();
+		out.flush();
+		_finished = true;
+	}
+
+	public void close() throws IOException {
+		if (_executor == null) {
+			super.close();
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			cancelAll();
+			def.end();
+			out.close();
+		}
+	}
+
+	/**
+	 * Gives up writing the zip file after a failure, instead of {@link #close()}.  Entries
+	 * not yet compressed are cancelled, the running compressions are stopped and waited for,
+	 * and the temporary files of all entries not yet written are deleted.  The zip file is
+	 * left incomplete, and the underlying stream open.
+	 */
+	public void abort() {
+		if (_executor != null) {
+			cancelAll();
+		}
+		def.end();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (_finished || _aborted) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	private void submit(String name, long time, EntryContent content) throws IOException {
+		CompressTask task = new CompressTask(name, time, getLevel(name), content);
+		_pending.add(task);
+		_executor.execute(task);
+		writeCompleted(false);
+	}
+
+	private CompressedEntry compress(String name, long time, int level, EntryContent content) throws IOException {
+		final CompressedEntry entry = new CompressedEntry(name, time);
+		final CRC32 crc = new CRC32();
+		Deflater deflater = new Deflater(level, true);
+		try {
+			final DeflaterOutputStream dos = new DeflaterOutputStream(entry._data, deflater, 64 * 1024);
+			content.writeTo(new OutputStream() {
+				public void write(int b) throws IOException {
+					write(new byte[] { (byte)b }, 0, 1);
+				}
+				public void write(byte[] b, int off, int len) throws IOException {
+					if (_aborted) {
+						throw new InterruptedIOException("Zip stream aborted");
+					}
+					crc.update(b, off, len);
+					entry._size += len;
+					dos.write(b, off, len);
+				}
+			});
+			dos.finish();
+		} catch (IOException e) {
+			entry._data.dispose();
+			throw e;
+		} catch (RuntimeException e) {
+			entry._data.dispose();
+			throw e;
+		} finally {
+			deflater.end();
+		}
+		entry._crc = crc.getValue();
+		entry._csize = entry._data.size();
+		return entry;
+	}
+
+	/**
+	 * Writes the compressed entries whose predecessors have been written
+	 *
+	 * @param all whether to wait for all entries, otherwise only waits if too many
+	 *  entries are pending
+	 */
+	private void writeCompleted(boolean all) throws IOException {
+		while (!_pending.isEmpty()) {
+			CompressTask next = _pending.getFirst();
+			if (!next.isDone() && !all && _pending.size() <= MAX_PENDING_ENTRIES) {
+				break;
+			}
+			CompressedEntry entry;
+			try {
+				entry = next.get();
+			} catch (InterruptedException e) {
+				cancelAll();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while compressing zip entries");
+			} catch (ExecutionException e) {
+				cancelAll();
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+			_pending.removeFirst();
+			writeLocalEntry(entry);
+		}
+	}
+
+	/**
+	 * Discards the pending entries.  The compressions already running are waited for, as
+	 * cancelling them would leave their temporary files behind.
+	 */
+	private void cancelAll() {
+		_aborted = true;
+		boolean interrupted = false;
+		for (CompressTask task : _pending) {
+			if (task.claim()) {
+				// never started, and never will
+				task.cancel(false);
+				continue;
+			}
+			while (true) {
+				try {
+					task.get()._data.dispose();
+					break;
+				} catch (InterruptedException e) {
+					// stops at its next write
+					interrupted = true;
+				} catch (ExecutionException e) {
+					// failed, cleaned up by compress
+					break;
+				}
+			}
+		}
+		_pending.clear();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (_entryData != null) {
+			_entryData.dispose();
+			_entryData = null;
+		}
+	}
+
+	private void writeLocalEntry(CompressedEntry entry) throws IOException {
+		entry._offset = _position;
+		boolean zip64 = entry.isZip64();
+		writeInt(0x04034b50L);
+		writeShort(zip64 ? 45 : 20);
+		writeShort(entry.getFlags());
+		writeShort(ZipEntry.DEFLATED);
+		writeInt(entry.getDosTime());
+		writeInt(entry._crc);
+		writeInt(zip64 ? ZIP64_MAGIC : entry._csize);
+		writeInt(zip64 ? ZIP64_MAGIC : entry._size);
+		byte[] name = entry.getNameBytes();
+		writeShort(name.length);
+		writeShort(zip64 ? 20 : 0);
+		writeBytes(name);
+		if (zip64) {
+			writeShort(0x0001);
+			writeShort(16);
+			writeLong(entry._size);
+			writeLong(entry._csize);
+		}
+		try {
+			entry._data.copyTo(out);
+		} finally {
+			entry._data.dispose();
+		}
+		_position += entry._csize;
+		_entries.add(entry);
+	}
+
+	private void writeCentralDirectory() throws IOException {
+		long start = _position;
+		for (CompressedEntry entry : _entries) {
+			boolean zip64 = entry.isZip64();
+			boolean offset64 = entry._offset >= ZIP64_MAGIC;
+			int extraLength = (zip64 ? 16 : 0) + (offset64 ? 8 : 0);
+			writeInt(0x02014b50L);
+			writeShort(zip64 || offset64 ? 45 : 20);
+			writeShort(zip64 || offset64 ? 45 : 20);
+			writeShort(entry.getFlags());
+			writeShort(ZipEntry.DEFLATED);
+			writeInt(entry.getDosTime());
+			writeInt(entry._crc);
+			writeInt(zip64 ? ZIP64_MAGIC : entry._csize);
+			writeInt(zip64 ? ZIP64_MAGIC : entry._size);
+			byte[] name = entry.getNameBytes();
+			writeShort(name.length);
+			writeShort(extraLength == 0 ? 0 : extraLength + 4);
+			writeShort(0); // comment
+			writeShort(0); // disk number
+			writeShort(0); // internal attributes
+			writeInt(0);   // external attributes
+			writeInt(offset64 ? ZIP64_MAGIC : entry._offset);
+			writeBytes(name);
+			if (extraLength != 0) {
+				writeShort(0x0001);
+				writeShort(extraLength);
+				if (zip64) {
+					writeLong(entry._size);
+					writeLong(entry._csize);
+				}
+				if (offset64) {
+					writeLong(entry._offset);
+				}
+			}
+		}
+		long size = _position - start;
+		int count = _entries.size();
+		if (count >= 0xFFFF || start >= ZIP64_MAGIC || size >= ZIP64_MAGIC) {
+			long end64 = _position;
+			writeInt(0x06064b50L);
+			writeLong(44);
+			writeShort(45);
+			writeShort(45);
+			writeInt(0);
+			writeInt(0);
+			writeLong(count);
+			writeLong(count);
+			writeLong(size);
+			writeLong(start);
+			writeInt(0x07064b50L);
+			writeInt(0);
+			writeLong(end64);
+			writeInt(1);
+		}
+		writeInt(0x06054b50L);
+		writeShort(0);
+		writeShort(0);
+		writeShort(Math.min(count, 0xFFFF));
+		writeShort(Math.min(count, 0xFFFF));
+		writeInt(Math.min(size, ZIP64_MAGIC));
+		writeInt(Math.min(start, ZIP64_MAGIC));
+		writeShort(0); // comment
+	}
+
+	private void writeShort(int v) throws IOException {
+		out.write(v & 0xFF);
+		out.write((v >>> 8) & 0xFF);
+		_position += 2;
+	}
+
+	private void writeInt(long v) throws IOException {
+		writeShort((int)(v & 0xFFFF));
+		writeShort((int)((v >>> 16) & 0xFFFF));
+	}
+
+	private void writeLong(long v) throws IOException {
+		writeInt(v & ZIP64_MAGIC);
+		writeInt(v >>> 32);
+	}
+
+	private void writeBytes(byte[] b) throws IOException {
+		out.write(b, 0, b.length);
+		_position += b.length;
+	}
+
+	/**
+	 * Compresses an entry on the executor, unless it is claimed by {@link #cancelAll()} first
+	 */
+	private final class CompressTask extends FutureTask<CompressedEntry> {
+		private final AtomicBoolean _claimed = new AtomicBoolean();
+
+		CompressTask(final String name, final long time, final int level, final EntryContent content) {
+			super(new Callable<CompressedEntry>() {
+				public CompressedEntry call() throws IOException {
+					return compress(name, time, level, content);
+				}
+			});
+		}
+
+		/**
+		 * @return whether the task was claimed by this call, i.e. has not started
+		 */
+		boolean claim() {
+			return _claimed.compareAndSet(false, true);
+		}
+
+		public void run() {
+			if (claim()) {
+				super.run();
+			}
+		}
+	}
+
+	/**
+	 * A compressed entry, and its position in the zip file once written
+	 */
+	private static final class CompressedEntry {
+		final String _name;
+		final long _time;
+		final Spool _data = new Spool();
+		long _crc;
+		long _size;
+		long _csize;
+		long _offset;
+
+		CompressedEntry(String name, long time) {
+			_name = name;
+			_time = time;
+		}
+
+		boolean isZip64() {
+			return _size >= ZIP64_MAGIC || _csize >= ZIP64_MAGIC;
+		}
+
+		byte[] getNameBytes() throws IOException {
+			return _name.getBytes("UTF-8");
+		}
+
+		/**
+		 * @return the language encoding flag for non-ASCII names, like {@link ZipOutputStream}
+		 */
+		int getFlags() {
+			for (int i = 0; i < _name.length(); i++) {
+				if (_name.charAt(i) > 0x7F) {
+					return 0x800;
+				}
+			}
+			return 0;
+		}
+
+		long getDosTime() {
+			Calendar c = Calendar.getInstance();
+			c.setTimeInMillis(_time);
+			int year = c.get(Calendar.YEAR);
+			if (year < 1980) {
+				return (1 << 21) | (1 << 16);
+			}
+			return ((long)(year - 1980) << 25) | ((c.get(Calendar.MONTH) + 1) << 21)
+					| (c.get(Calendar.DAY_OF_MONTH) << 16) | (c.get(Calendar.HOUR_OF_DAY) << 11)
+					| (c.get(Calendar.MINUTE) << 5) | (c.get(Calendar.SECOND) >> 1);
+		}
+	}
+
+	/**
+	 * Collects bytes in memory, or in a temporary file once there are too many of them
+	 */
+	private static final class Spool extends OutputStream {
+		private ByteArrayOutputStream _memory = new ByteArrayOutputStream();
+		private File _file;
+		private OutputStream _fileOut;
+		private long _size;
+
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (_file == null && _memory.size() + len > MEMORY_THRESHOLD) {
+				_file = TempFile.createTempFile("poi-zip-entry", ".tmp");
+				_fileOut = new BufferedOutputStream(new FileOutputStream(_file));
+				_memory.writeTo(_fileOut);
+				_memory = null;
+			}
+			if (_file == null) {
+				_memory.write(b, off, len);
+			} else {
+				_fileOut.write(b, off, len);
+			}
+			_size += len;
+		}
+
+		long size() {
+			return _size;
+		}
+
+		void copyTo(OutputStream out) throws IOException {
+			if (_file == null) {
+				_memory.writeTo(out);
+				return;
+			}
+			_fileOut.close();
+			InputStream in = new BufferedInputStream(new FileInputStream(_file));
+			try {
+				byte[] chunk = new byte[64 * 1024];
+				int count;
+				while ((count = in.read(chunk)) >= 0) {
+					out.write(chunk, 0, count);
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		void dispose() {
+			_memory = null;
+			if (_file != null) {
+				try {
+					_fileOut.close();
+				} catch (IOException e) {
+					// only deleting the file
+				}
+				_file.delete();
+			}
+		}
+	}
+}
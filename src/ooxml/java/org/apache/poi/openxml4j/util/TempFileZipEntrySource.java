@@ -0,0 +1,95 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipFile;
+
+import org.apache.poi.util.TempFile;
+
+/**
+ * A ZipEntrySource for a zip file read from a stream, which copies the
+ *  stream to a temporary file and reads the entries from there, as and
+ *  when they are needed.
+ * Unlike {@link ZipInputStreamZipEntrySource} this never holds the
+ *  uncompressed entries in memory, at the cost of writing the (compressed)
+ *  zip file to disk once.  The temporary file is deleted on close.
+ */
+public class TempFileZipEntrySource extends ZipFileZipEntrySource {
+   private File tempFile;
+
+   /**
+    * Reads the whole of the stream into a temporary file, and then opens
+    *  it as a zip file.  The stream is not closed.
+    */
+   public TempFileZipEntrySource(InputStream inp) throws IOException {
+      this(spool(inp));
+   }
+
+   private TempFileZipEntrySource(File tempFile) throws IOException {
+      super(openZipFile(tempFile));
+      this.tempFile = tempFile;
+   }
+
+   private static File spool(InputStream inp) throws IOException {
+      File file = TempFile.createTempFile("poi-zip-", ".tmp");
+      boolean ok = false;
+      try {
+         OutputStream out = new FileOutputStream(file);
+         try {
+            byte[] buf = new byte[8192];
+            int read;
+            while((read = inp.read(buf)) != -1) {
+               out.write(buf, 0, read);
+            }
+         } finally {
+            out.close();
+         }
+         ok = true;
+      } finally {
+         if(!ok) {
+            file.delete();
+         }
+      }
+      return file;
+   }
+
+   private static ZipFile openZipFile(File file) throws IOException {
+      try {
+         return new ZipFile(file);
+      } catch(IOException e) {
+         file.delete();
+         throw e;
+      }
+   }
+
+   public void close() throws IOException {
+      try {
+         super.close();
+      } finally {
+         if(tempFile != null) {
+            tempFile.delete();
+         }
+         tempFile = null;
+      }
+   }
+}
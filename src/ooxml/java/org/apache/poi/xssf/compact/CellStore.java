@@ -0,0 +1,602 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+
+/**
+ * Columnar storage for the rows and cells of a sheet.
+ * <p>
+ * Instead of one object per cell, every cell property is kept in a primitive array indexed
+ * by the position of the cell in row-major order: the column (<code>short</code>), the cell
+ * type (<code>byte</code>), the style index (<code>char</code>) and the value (<code>long</code>).
+ * Numbers are stored as their raw <code>double</code> bits, strings as an index into the
+ * shared strings table or into a de-duplicated list of strings local to this store, booleans
+ * and error codes as small integers.  Formula text is only allocated for formula cells.
+ * </p>
+ * Rows are kept the same way, each row recording the index of its first cell.
+ */
+final class CellStore {
+
+    private static final int TYPE_MASK = 0x07;
+    private static final int FORMULA_FLAG = 0x08;
+    private static final int LOCAL_STRING_FLAG = 0x10;
+
+    private static final int ROW_HIDDEN = 0x01;
+
+    private static final int NO_FORMULA = -1;
+
+    /**
+     * A formula applying to a range of cells: the master formula of a group of shared
+     * formulas, or an array formula
+     */
+    static final class FormulaGroup {
+        private final String _formula;
+        private final CellRangeAddress _range;
+
+        FormulaGroup(String formula, CellRangeAddress range) {
+            _formula = formula;
+            _range = range;
+        }
+        String getFormula() {
+            return _formula;
+        }
+        CellRangeAddress getRange() {
+            return _range;
+        }
+    }
+
+    private final ReadOnlySharedStringsTable _sharedStrings;
+    private final List<String> _localStrings;
+    private final List<String> _formulas;
+    /** shared by all stores of a sheet, a group may be used by cells stored in later stores */
+    private final Map<Integer, FormulaGroup> _sharedFormulas;
+    private final List<FormulaGroup> _arrayFormulas;
+    /** only used while loading, to de-duplicate local strings and formulas */
+    private Map<String, Integer> _localStringIndexes;
+    private Map<String, Integer> _formulaIndexes;
+
+    private int _rowCount;
+    private int[] _rowNums;
+    private int[] _rowStarts;
+    private short[] _rowHeights;
+    private int[] _rowStyles;
+    private byte[] _rowFlags;
+
+    private int _cellCount;
+    private short[] _columns;
+    private byte[] _types;
+    private char[] _styles;
+    private long[] _values;
+    /** index into {@link #_formulas}, or <tt>-2 - si</tt> for a shared formula; <code>null</code> until the first formula */
+    private int[] _formulaRefs;
+
+    /** <code>false</code> if rows or cells were added out of order */
+    private boolean _ordered;
+
+    CellStore(ReadOnlySharedStringsTable sharedStrings) {
+        this(sharedStrings, new HashMap<Integer, FormulaGroup>(), new ArrayList<FormulaGroup>());
+    }
+
+    /**
+     * Creates a store for the rows following the rows of the previous store of the same
+     * sheet, for reading a sheet in windows of rows.  Shared and array formulas defined by
+     * earlier stores remain visible.
+     */
+    CellStore(CellStore previous) {
+        this(previous._sharedStrings, previous._sharedFormulas, previous._arrayFormulas);
+    }
+
+    private CellStore(ReadOnlySharedStringsTable sharedStrings,
+            Map<Integer, FormulaGroup> sharedFormulas, List<FormulaGroup> arrayFormulas) {
+        _sharedStrings = sharedStrings;
+        _localStrings = new ArrayList<String>();
+        _formulas = new ArrayList<String>();
+        _sharedFormulas = sharedFormulas;
+        _arrayFormulas = arrayFormulas;
+        _localStringIndexes = new HashMap<String, Integer>();
+        _formulaIndexes = new HashMap<String, Integer>();
+        _rowNums = new int[16];
+        _rowStarts = new int[17];
+        _rowHeights = new short[16];
+        _rowStyles = new int[16];
+        _rowFlags = new byte[16];
+        _columns = new short[64];
+        _types = new byte[64];
+        _styles = new char[64];
+        _values = new long[64];
+        _ordered = true;
+    }
+
+    //
+    // loading
+    //
+
+    /**
+     * Starts a new row, all cells added until the next call belong to it.
+     *
+     * @param height the row height in twips, or <code>-1</code> for the sheet default
+     * @param style the row style index, or <code>-1</code> if the row is not formatted
+     */
+    void addRow(int rowNum, short height, int style, boolean hidden) {
+        if (_rowCount == _rowNums.length) {
+            int newSize = _rowCount * 2;
+            _rowNums = grow(_rowNums, newSize);
+            _rowStarts = grow(_rowStarts, newSize + 1);
+            short[] heights = new short[newSize];
+            System.arraycopy(_rowHeights, 0, heights, 0, _rowCount);
+            _rowHeights = heights;
+            _rowStyles = grow(_rowStyles, newSize);
+            byte[] flags = new byte[newSize];
+            System.arraycopy(_rowFlags, 0, flags, 0, _rowCount);
+            _rowFlags = flags;
+        }
+        if (_rowCount > 0 && rowNum <= _rowNums[_rowCount - 1]) {
+            _ordered = false;
+        }
+        _rowNums[_rowCount] = rowNum;
+        _rowStarts[_rowCount] = _cellCount;
+        _rowHeights[_rowCount] = height;
+        _rowStyles[_rowCount] = style;
+        _rowFlags[_rowCount] = (byte)(hidden ? ROW_HIDDEN : 0);
+        _rowCount++;
+        _rowStarts[_rowCount] = _cellCount;
+    }
+
+    /**
+     * @return the row number of the most recently added row, <code>-1</code> if there is none
+     */
+    int getLastAddedRowNum() {
+        return _rowCount == 0 ? -1 : _rowNums[_rowCount - 1];
+    }
+
+    int addBlankCell(int column, int style) {
+        return addCell(column, style, Cell.CELL_TYPE_BLANK, 0L);
+    }
+
+    int addNumericCell(int column, int style, double value) {
+        return addCell(column, style, Cell.CELL_TYPE_NUMERIC, Double.doubleToRawLongBits(value));
+    }
+
+    int addBooleanCell(int column, int style, boolean value) {
+        return addCell(column, style, Cell.CELL_TYPE_BOOLEAN, value ? 1L : 0L);
+    }
+
+    int addErrorCell(int column, int style, byte errorCode) {
+        return addCell(column, style, Cell.CELL_TYPE_ERROR, errorCode);
+    }
+
+    /**
+     * @param sstIndex index into the shared strings table
+     */
+    int addSharedStringCell(int column, int style, int sstIndex) {
+        return addCell(column, style, Cell.CELL_TYPE_STRING, sstIndex);
+    }
+
+    /**
+     * Adds an inline string, or the cached string result of a formula
+     */
+    int addLocalStringCell(int column, int style, String value) {
+        int cellIndex = addCell(column, style, Cell.CELL_TYPE_STRING, getIndex(value, _localStrings, _localStringIndexes));
+        _types[cellIndex] |= LOCAL_STRING_FLAG;
+        return cellIndex;
+    }
+
+    private int addCell(int column, int style, int type, long value) {
+        if (_rowCount == 0) {
+            throw new IllegalStateException("No row has been added yet");
+        }
+        if (_cellCount == _columns.length) {
+            int newSize = _cellCount * 2;
+            short[] columns = new short[newSize];
+            System.arraycopy(_columns, 0, columns, 0, _cellCount);
+            _columns = columns;
+            byte[] types = new byte[newSize];
+            System.arraycopy(_types, 0, types, 0, _cellCount);
+            _types = types;
+            char[] styles = new char[newSize];
+            System.arraycopy(_styles, 0, styles, 0, _cellCount);
+            _styles = styles;
+            long[] values = new long[newSize];
+            System.arraycopy(_values, 0, values, 0, _cellCount);
+            _values = values;
+            if (_formulaRefs != null) {
+                _formulaRefs = growFormulaRefs(_formulaRefs, newSize);
+            }
+        }
+        int rowStart = _rowStarts[_rowCount - 1];
+        if (_cellCount > rowStart && column <= _columns[_cellCount - 1]) {
+            _ordered = false;
+        }
+        int cellIndex = _cellCount++;
+        _columns[cellIndex] = (short)column;
+        _types[cellIndex] = (byte)type;
+        _styles[cellIndex] = (char)style;
+        _values[cellIndex] = value;
+        if (_formulaRefs != null) {
+            _formulaRefs[cellIndex] = NO_FORMULA;
+        }
+        _rowStarts[_rowCount] = _cellCount;
+        return cellIndex;
+    }
+
+    /**
+     * Marks the specified cell as a formula cell, its value being the cached formula result
+     */
+    void setFormula(int cellIndex, String formula) {
+        setFormulaRef(cellIndex, getIndex(formula, _formulas, _formulaIndexes));
+    }
+
+    /**
+     * Marks the specified cell as a member of a shared formula group
+     */
+    void setSharedFormula(int cellIndex, int sharedGroupIndex) {
+        setFormulaRef(cellIndex, -2 - sharedGroupIndex);
+    }
+
+    void addSharedFormulaGroup(int sharedGroupIndex, String formula, CellRangeAddress range) {
+        _sharedFormulas.put(Integer.valueOf(sharedGroupIndex), new FormulaGroup(formula, range));
+    }
+
+    void addArrayFormula(String formula, CellRangeAddress range) {
+        _arrayFormulas.add(new FormulaGroup(formula, range));
+    }
+
+    private void setFormulaRef(int cellIndex, int formulaRef) {
+        if (_formulaRefs == null) {
+            _formulaRefs = growFormulaRefs(new int[0], _columns.length);
+        }
+        _formulaRefs[cellIndex] = formulaRef;
+        _types[cellIndex] |= FORMULA_FLAG;
+    }
+
+    /**
+     * Sorts rows and cells that were added out of order and releases unused capacity.  Must
+     * be called once all rows and cells have been added.
+     */
+    void finish() {
+        if (!_ordered) {
+            sort();
+        }
+        _rowNums = grow(_rowNums, _rowCount);
+        _rowStarts = grow(_rowStarts, _rowCount + 1);
+        short[] heights = new short[_rowCount];
+        System.arraycopy(_rowHeights, 0, heights, 0, _rowCount);
+        _rowHeights = heights;
+        _rowStyles = grow(_rowStyles, _rowCount);
+        byte[] flags = new byte[_rowCount];
+        System.arraycopy(_rowFlags, 0, flags, 0, _rowCount);
+        _rowFlags = flags;
+
+        short[] columns = new short[_cellCount];
+        System.arraycopy(_columns, 0, columns, 0, _cellCount);
+        _columns = columns;
+        byte[] types = new byte[_cellCount];
+        System.arraycopy(_types, 0, types, 0, _cellCount);
+        _types = types;
+        char[] styles = new char[_cellCount];
+        System.arraycopy(_styles, 0, styles, 0, _cellCount);
+        _styles = styles;
+        long[] values = new long[_cellCount];
+        System.arraycopy(_values, 0, values, 0, _cellCount);
+        _values = values;
+        if (_formulaRefs != null) {
+            _formulaRefs = grow(_formulaRefs, _cellCount);
+        }
+        _localStringIndexes = null;
+        _formulaIndexes = null;
+    }
+
+    /**
+     * Puts rows in ascending row number order and the cells of each row in ascending column
+     * order.  As with XSSFSheet, a row or cell that is defined more than once keeps the last
+     * definition.
+     */
+    private void sort() {
+        int[] rowOrder = sortedOrder(_rowNums, 0, _rowCount);
+        int[] rowNums = new int[_rowCount];
+        int[] rowStarts = new int[_rowCount + 1];
+        short[] rowHeights = new short[_rowCount];
+        int[] rowStyles = new int[_rowCount];
+        byte[] rowFlags = new byte[_rowCount];
+        short[] columns = new short[_cellCount];
+        byte[] types = new byte[_cellCount];
+        char[] styles = new char[_cellCount];
+        long[] values = new long[_cellCount];
+        int[] formulaRefs = _formulaRefs == null ? null : new int[_cellCount];
+
+        int rowCount = 0;
+        int cellCount = 0;
+        for (int i = 0; i < rowOrder.length; i++) {
+            int r = rowOrder[i];
+            rowNums[rowCount] = _rowNums[r];
+            rowStarts[rowCount] = cellCount;
+            rowHeights[rowCount] = _rowHeights[r];
+            rowStyles[rowCount] = _rowStyles[r];
+            rowFlags[rowCount] = _rowFlags[r];
+            int start = _rowStarts[r];
+            int end = _rowStarts[r + 1];
+            int[] cellOrder = sortedOrder(_columns, start, end);
+            for (int j = 0; j < cellOrder.length; j++) {
+                int c = cellOrder[j];
+                columns[cellCount] = _columns[c];
+                types[cellCount] = _types[c];
+                styles[cellCount] = _styles[c];
+                values[cellCount] = _values[c];
+                if (formulaRefs != null) {
+                    formulaRefs[cellCount] = _formulaRefs[c];
+                }
+                cellCount++;
+            }
+            rowCount++;
+        }
+        rowStarts[rowCount] = cellCount;
+        _rowNums = rowNums;
+        _rowStarts = rowStarts;
+        _rowHeights = rowHeights;
+        _rowStyles = rowStyles;
+        _rowFlags = rowFlags;
+        _rowCount = rowCount;
+        _columns = columns;
+        _types = types;
+        _styles = styles;
+        _values = values;
+        _formulaRefs = formulaRefs;
+        _cellCount = cellCount;
+        _ordered = true;
+    }
+
+    /**
+     * @return the indexes (between <tt>start</tt> and <tt>end</tt>) of the supplied keys in
+     * ascending key order, keeping only the last index of each distinct key
+     */
+    private static int[] sortedOrder(int[] keys, int start, int end) {
+        long[] entries = new long[end - start];
+        for (int i = start; i < end; i++) {
+            entries[i - start] = ((long)keys[i] << 32) | i;
+        }
+        return lastOfEachKey(entries);
+    }
+
+    private static int[] sortedOrder(short[] keys, int start, int end) {
+        long[] entries = new long[end - start];
+        for (int i = start; i < end; i++) {
+            entries[i - start] = ((long)keys[i] << 32) | i;
+        }
+        return lastOfEachKey(entries);
+    }
+
+    private static int[] lastOfEachKey(long[] entries) {
+        Arrays.sort(entries);
+        int[] result = new int[entries.length];
+        int count = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (i + 1 < entries.length && (entries[i + 1] >>> 32) == (entries[i] >>> 32)) {
+                continue;
+            }
+            result[count++] = (int)entries[i];
+        }
+        return grow(result, count);
+    }
+
+    private static int getIndex(String value, List<String> values, Map<String, Integer> indexes) {
+        Integer index = indexes.get(value);
+        if (index == null) {
+            index = Integer.valueOf(values.size());
+            values.add(value);
+            indexes.put(value, index);
+        }
+        return index.intValue();
+    }
+
+    private static int[] grow(int[] array, int newSize) {
+        int[] result = new int[newSize];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, newSize));
+        return result;
+    }
+
+    private static int[] growFormulaRefs(int[] array, int newSize) {
+        int[] result = grow(array, newSize);
+        Arrays.fill(result, array.length, newSize, NO_FORMULA);
+        return result;
+    }
+
+    //
+    // rows
+    //
+
+    int getRowCount() {
+        return _rowCount;
+    }
+
+    int getCellCount() {
+        return _cellCount;
+    }
+
+    int getRowNum(int rowIndex) {
+        return _rowNums[rowIndex];
+    }
+
+    /**
+     * @return the index of the row with the specified row number, or <code>-1</code>
+     */
+    int findRow(int rowNum) {
+        int low = 0;
+        int high = _rowCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midRowNum = _rowNums[mid];
+            if (midRowNum < rowNum) {
+                low = mid + 1;
+            } else if (midRowNum > rowNum) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the first cell of the specified row
+     */
+    int getFirstCellIndex(int rowIndex) {
+        return _rowStarts[rowIndex];
+    }
+
+    /**
+     * @return the index after the last cell of the specified row
+     */
+    int getEndCellIndex(int rowIndex) {
+        return _rowStarts[rowIndex + 1];
+    }
+
+    /**
+     * @return the row height in twips, or <code>-1</code> if the row uses the default height
+     */
+    short getRowHeight(int rowIndex) {
+        return _rowHeights[rowIndex];
+    }
+
+    /**
+     * @return the row style index, or <code>-1</code> if the row is not formatted
+     */
+    int getRowStyle(int rowIndex) {
+        return _rowStyles[rowIndex];
+    }
+
+    boolean isRowHidden(int rowIndex) {
+        return (_rowFlags[rowIndex] & ROW_HIDDEN) != 0;
+    }
+
+    //
+    // cells
+    //
+
+    /**
+     * @return the index of the cell in the specified row and column, or <code>-1</code>
+     */
+    int findCell(int rowIndex, int column) {
+        int low = _rowStarts[rowIndex];
+        int high = _rowStarts[rowIndex + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midColumn = _columns[mid];
+            if (midColumn < column) {
+                low = mid + 1;
+            } else if (midColumn > column) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    int getColumn(int cellIndex) {
+        return _columns[cellIndex];
+    }
+
+    int getStyle(int cellIndex) {
+        return _styles[cellIndex];
+    }
+
+    boolean isFormula(int cellIndex) {
+        return (_types[cellIndex] & FORMULA_FLAG) != 0;
+    }
+
+    /**
+     * @return the type of the cell value, for formula cells the type of the cached result
+     */
+    int getValueType(int cellIndex) {
+        return _types[cellIndex] & TYPE_MASK;
+    }
+
+    double getNumericValue(int cellIndex) {
+        return Double.longBitsToDouble(_values[cellIndex]);
+    }
+
+    boolean getBooleanValue(int cellIndex) {
+        return _values[cellIndex] != 0L;
+    }
+
+    byte getErrorValue(int cellIndex) {
+        return (byte)_values[cellIndex];
+    }
+
+    String getStringValue(int cellIndex) {
+        int index = (int)_values[cellIndex];
+        if ((_types[cellIndex] & LOCAL_STRING_FLAG) != 0) {
+            return _localStrings.get(index);
+        }
+        return _sharedStrings.getEntryAt(index);
+    }
+
+    /**
+     * @return the formula text, or <code>null</code> if the cell has no formula or is a
+     * (non-master) member of a shared formula group
+     */
+    String getFormula(int cellIndex) {
+        if (_formulaRefs == null) {
+            return null;
+        }
+        int formulaRef = _formulaRefs[cellIndex];
+        return formulaRef < 0 ? null : _formulas.get(formulaRef);
+    }
+
+    /**
+     * @return the shared formula group the cell belongs to, or <code>null</code> if the cell
+     * defines its own formula
+     */
+    FormulaGroup getSharedFormula(int cellIndex) {
+        if (_formulaRefs == null) {
+            return null;
+        }
+        int formulaRef = _formulaRefs[cellIndex];
+        if (formulaRef >= NO_FORMULA) {
+            return null;
+        }
+        FormulaGroup result = _sharedFormulas.get(Integer.valueOf(-2 - formulaRef));
+        if (result == null) {
+            throw new IllegalStateException("Master cell of a shared formula with sid="
+                    + (-2 - formulaRef) + " was not found");
+        }
+        return result;
+    }
+
+    /**
+     * @return the array formula whose range contains the specified cell, or <code>null</code>
+     */
+    FormulaGroup getArrayFormula(int rowNum, int column) {
+        for (int i = 0; i < _arrayFormulas.size(); i++) {
+            FormulaGroup arrayFormula = _arrayFormulas.get(i);
+            if (arrayFormula.getRange().isInRange(rowNum, column)) {
+                return arrayFormula;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,422 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+
+/**
+ * A read-only view of a cell of a {@link CompactSheet}.  The cell values are read from the
+ * sheet's cell storage on every call, following the same rules as XSSFCell.
+ */
+public class CompactCell implements Cell {
+
+    private final CompactRow _row;
+    private final CellStore _store;
+    /** position in the cell storage, or <code>-1</code> for a blank cell not present in the sheet */
+    private final int _cellIndex;
+    private final int _columnIndex;
+
+    CompactCell(CompactRow row, int cellIndex, int columnIndex) {
+        _row = row;
+        _store = row.getCellStore();
+        _cellIndex = cellIndex;
+        _columnIndex = columnIndex;
+    }
+
+    public int getColumnIndex() {
+        return _columnIndex;
+    }
+
+    public int getRowIndex() {
+        return _row.getRowNum();
+    }
+
+    public CompactSheet getSheet() {
+        return _row.getSheet();
+    }
+
+    public CompactRow getRow() {
+        return _row;
+    }
+
+    public void setCellType(int cellType) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Return the cell type.
+     *
+     * @return the cell type
+     * @see Cell#CELL_TYPE_BLANK
+     * @see Cell#CELL_TYPE_NUMERIC
+     * @see Cell#CELL_TYPE_STRING
+     * @see Cell#CELL_TYPE_FORMULA
+     * @see Cell#CELL_TYPE_BOOLEAN
+     * @see Cell#CELL_TYPE_ERROR
+     */
+    public int getCellType() {
+        if (isFormulaCell() || isPartOfArrayFormulaGroup()) {
+            return CELL_TYPE_FORMULA;
+        }
+        return getBaseCellType();
+    }
+
+    /**
+     * Only valid for formula cells
+     * @return one of ({@link #CELL_TYPE_NUMERIC}, {@link #CELL_TYPE_STRING},
+     *     {@link #CELL_TYPE_BOOLEAN}, {@link #CELL_TYPE_ERROR}) depending
+     * on the cached value of the formula
+     */
+    public int getCachedFormulaResultType() {
+        if (!isFormulaCell()) {
+            throw new IllegalStateException("Only formula cells have cached results");
+        }
+        return getBaseCellType();
+    }
+
+    private boolean isFormulaCell() {
+        return _cellIndex != -1 && _store.isFormula(_cellIndex);
+    }
+
+    private int getBaseCellType() {
+        return _cellIndex == -1 ? CELL_TYPE_BLANK : _store.getValueType(_cellIndex);
+    }
+
+    public void setCellValue(double value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setCellValue(Date value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setCellValue(Calendar value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setCellValue(RichTextString value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setCellValue(String value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setCellFormula(String formula) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Return a formula for the cell, for example, <code>SUM(C4:E4)</code>
+     *
+     * @return a formula for the cell
+     * @throws IllegalStateException if the cell type returned by {@link #getCellType()} is not CELL_TYPE_FORMULA
+     */
+    public String getCellFormula() {
+        int cellType = getCellType();
+        if (cellType != CELL_TYPE_FORMULA) throw typeMismatch(CELL_TYPE_FORMULA, cellType, false);
+
+        if (!isFormulaCell()) {
+            // a member of an array formula group
+            return _store.getArrayFormula(getRowIndex(), _columnIndex).getFormula();
+        }
+        CellStore.FormulaGroup group = _store.getSharedFormula(_cellIndex);
+        if (group != null) {
+            return getSheet().convertSharedFormula(group, getRowIndex(), _columnIndex);
+        }
+        return _store.getFormula(_cellIndex);
+    }
+
+    /**
+     * Get the value of the cell as a number.
+     * <p>
+     * For strings we throw an exception. For blank cells we return a 0.
+     * For formulas or error cells we return the precalculated value;
+     * </p>
+     * @return the value of the cell as a number
+     * @throws IllegalStateException if the cell type returned by {@link #getCellType()} is CELL_TYPE_STRING
+     */
+    public double getNumericCellValue() {
+        int cellType = getCellType();
+        switch (cellType) {
+            case CELL_TYPE_BLANK:
+                return 0.0;
+            case CELL_TYPE_FORMULA:
+            case CELL_TYPE_NUMERIC:
+                int valueType = getBaseCellType();
+                if (valueType == CELL_TYPE_NUMERIC) {
+                    return _store.getNumericValue(_cellIndex);
+                }
+                if (valueType == CELL_TYPE_BLANK) {
+                    return 0.0;
+                }
+                throw typeMismatch(CELL_TYPE_NUMERIC, valueType, true);
+            default:
+                throw typeMismatch(CELL_TYPE_NUMERIC, cellType, false);
+        }
+    }
+
+    /**
+     * Get the value of the cell as a date.
+     * <p>
+     * For strings we throw an exception. For blank cells we return a null.
+     * </p>
+     * @return the value of the cell as a date
+     * @throws IllegalStateException if the cell type returned by {@link #getCellType()} is CELL_TYPE_STRING
+     */
+    public Date getDateCellValue() {
+        int cellType = getCellType();
+        if (cellType == CELL_TYPE_BLANK) {
+            return null;
+        }
+
+        double value = getNumericCellValue();
+        boolean date1904 = getSheet().getWorkbook().isDate1904();
+        return DateUtil.getJavaDate(value, date1904);
+    }
+
+    /**
+     * Get the value of the cell as a XSSFRichTextString
+     * <p>
+     * For numeric cells we throw an exception. For blank cells we return an empty string.
+     * For formula cells we return the pre-calculated value if a string, otherwise an exception
+     * </p>
+     * @return the value of the cell as a XSSFRichTextString
+     */
+    public XSSFRichTextString getRichStringCellValue() {
+        int cellType = getCellType();
+        XSSFRichTextString rt;
+        switch (cellType) {
+            case CELL_TYPE_BLANK:
+                rt = new XSSFRichTextString("");
+                break;
+            case CELL_TYPE_STRING:
+                rt = new XSSFRichTextString(_store.getStringValue(_cellIndex));
+                break;
+            case CELL_TYPE_FORMULA:
+                int valueType = getBaseCellType();
+                if (valueType == CELL_TYPE_BLANK) {
+                    rt = new XSSFRichTextString("");
+                    break;
+                }
+                if (valueType != CELL_TYPE_STRING) {
+                    throw typeMismatch(CELL_TYPE_STRING, valueType, true);
+                }
+                rt = new XSSFRichTextString(_store.getStringValue(_cellIndex));
+                break;
+            default:
+                throw typeMismatch(CELL_TYPE_STRING, cellType, false);
+        }
+        return rt;
+    }
+
+    /**
+     * Get the value of the cell as a string
+     * <p>
+     * For numeric cells we throw an exception. For blank cells we return an empty string.
+     * For formulaCells that are not string Formulas, we throw an exception
+     * </p>
+     * @return the value of the cell as a string
+     */
+    public String getStringCellValue() {
+        return getRichStringCellValue().getString();
+    }
+
+    public void setCellValue(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setCellErrorValue(byte value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Get the value of the cell as a boolean.
+     * <p>
+     * For strings, numbers, and errors, we throw an exception. For blank cells we return a false.
+     * </p>
+     * @return the value of the cell as a boolean
+     * @throws IllegalStateException if the cell type returned by {@link #getCellType()}
+     *   is not CELL_TYPE_BOOLEAN, CELL_TYPE_BLANK or CELL_TYPE_FORMULA
+     */
+    public boolean getBooleanCellValue() {
+        int cellType = getCellType();
+        switch (cellType) {
+            case CELL_TYPE_BLANK:
+                return false;
+            case CELL_TYPE_BOOLEAN:
+                return _store.getBooleanValue(_cellIndex);
+            case CELL_TYPE_FORMULA:
+                return getBaseCellType() == CELL_TYPE_BOOLEAN && _store.getBooleanValue(_cellIndex);
+            default:
+                throw typeMismatch(CELL_TYPE_BOOLEAN, cellType, false);
+        }
+    }
+
+    /**
+     * Get the value of the cell as an error code.
+     * <p>
+     * For strings, numbers, and booleans, we throw an exception.
+     * </p>
+     *
+     * @return the value of the cell as an error code
+     * @throws IllegalStateException if the cached value of the cell isn't an error
+     * @see org.apache.poi.ss.usermodel.FormulaError
+     */
+    public byte getErrorCellValue() {
+        int cellType = getBaseCellType();
+        if (cellType != CELL_TYPE_ERROR) throw typeMismatch(CELL_TYPE_ERROR, cellType, false);
+
+        return _store.getErrorValue(_cellIndex);
+    }
+
+    public void setCellStyle(CellStyle style) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Return the cell's style.
+     *
+     * @return the cell's style, or <code>null</code> if the workbook defines no styles
+     */
+    public XSSFCellStyle getCellStyle() {
+        CompactWorkbook workbook = getSheet().getWorkbook();
+        if (workbook.getNumCellStyles() == 0) {
+            return null;
+        }
+        return workbook.getCellStyleAt(_cellIndex == -1 ? 0 : _store.getStyle(_cellIndex));
+    }
+
+    public void setAsActiveCell() {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setCellComment(Comment comment) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Comments are not loaded by compact workbooks
+     *
+     * @return <code>null</code>
+     */
+    public Comment getCellComment() {
+        return null;
+    }
+
+    public void removeCellComment() {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Hyperlinks are not loaded by compact workbooks
+     *
+     * @return <code>null</code>
+     */
+    public Hyperlink getHyperlink() {
+        return null;
+    }
+
+    public void setHyperlink(Hyperlink link) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public CellRangeAddress getArrayFormulaRange() {
+        CellStore.FormulaGroup arrayFormula = _store.getArrayFormula(getRowIndex(), _columnIndex);
+        if (arrayFormula == null) {
+            throw new IllegalStateException("Cell " + new CellReference(this).formatAsString()
+                    + " is not part of an array formula.");
+        }
+        return arrayFormula.getRange();
+    }
+
+    public boolean isPartOfArrayFormulaGroup() {
+        return _store.getArrayFormula(getRowIndex(), _columnIndex) != null;
+    }
+
+    /**
+     * Returns a string representation of the cell
+     * <p>
+     * Formula cells return the formula string, rather than the formula result.
+     * Dates are displayed in dd-MMM-yyyy format
+     * Errors are displayed as #ERR&lt;errIdx&gt;
+     * </p>
+     */
+    public String toString() {
+        switch (getCellType()) {
+            case CELL_TYPE_BLANK:
+                return "";
+            case CELL_TYPE_BOOLEAN:
+                return getBooleanCellValue() ? "TRUE" : "FALSE";
+            case CELL_TYPE_ERROR:
+                return ErrorEval.getText(getErrorCellValue());
+            case CELL_TYPE_FORMULA:
+                return getCellFormula();
+            case CELL_TYPE_NUMERIC:
+                if (DateUtil.isCellDateFormatted(this)) {
+                    DateFormat sdf = new SimpleDateFormat("dd-MMM-yyyy");
+                    return sdf.format(getDateCellValue());
+                }
+                return getNumericCellValue() + "";
+            case CELL_TYPE_STRING:
+                return getRichStringCellValue().toString();
+            default:
+                return "Unknown Cell Type: " + getCellType();
+        }
+    }
+
+    /**
+     * Used to help format error messages
+     */
+    private static String getCellTypeName(int cellTypeCode) {
+        switch (cellTypeCode) {
+            case CELL_TYPE_BLANK:   return "blank";
+            case CELL_TYPE_STRING:  return "text";
+            case CELL_TYPE_BOOLEAN: return "boolean";
+            case CELL_TYPE_ERROR:   return "error";
+            case CELL_TYPE_NUMERIC: return "numeric";
+            case CELL_TYPE_FORMULA: return "formula";
+        }
+        return "#unknown cell type (" + cellTypeCode + ")#";
+    }
+
+    /**
+     * Used to help format error messages
+     */
+    private static RuntimeException typeMismatch(int expectedTypeCode, int actualTypeCode, boolean isFormulaCell) {
+        String msg = "Cannot get a "
+            + getCellTypeName(expectedTypeCode) + " value from a "
+            + getCellTypeName(actualTypeCode) + " " + (isFormulaCell ? "formula " : "") + "cell";
+        return new IllegalStateException(msg);
+    }
+}
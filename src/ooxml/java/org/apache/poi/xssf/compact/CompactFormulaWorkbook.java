@@ -0,0 +1,125 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.EvaluationName;
+import org.apache.poi.ss.formula.EvaluationWorkbook.ExternalSheet;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaParsingWorkbook;
+import org.apache.poi.ss.formula.FormulaRenderingWorkbook;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+
+/**
+ * Internal POI use only - lets the formula parser and renderer resolve the sheets and names
+ * of a {@link CompactWorkbook}, e.g. to derive the formulas of shared formula cells.  Like
+ * XSSF, sheet indexes and external sheet indexes are the same.
+ */
+final class CompactFormulaWorkbook implements FormulaParsingWorkbook, FormulaRenderingWorkbook {
+
+    private final CompactWorkbook _workbook;
+
+    CompactFormulaWorkbook(CompactWorkbook workbook) {
+        _workbook = workbook;
+    }
+
+    public EvaluationName getName(String name, int sheetIndex) {
+        for (int i = 0; i < _workbook.getNumberOfNames(); i++) {
+            CompactName nm = (CompactName)_workbook.getNameAt(i);
+            if (name.equalsIgnoreCase(nm.getNameName()) && nm.getSheetIndex() == sheetIndex) {
+                return new Name(nm, i, this);
+            }
+        }
+        return sheetIndex == -1 ? null : getName(name, -1);
+    }
+
+    /**
+     * User defined functions are not supported
+     */
+    public NameXPtg getNameXPtg(String name) {
+        return null;
+    }
+
+    public int getExternalSheetIndex(String sheetName) {
+        return _workbook.getSheetIndex(sheetName);
+    }
+
+    public int getExternalSheetIndex(String workbookName, String sheetName) {
+        throw new RuntimeException("not implemented yet");
+    }
+
+    public SpreadsheetVersion getSpreadsheetVersion() {
+        return SpreadsheetVersion.EXCEL2007;
+    }
+
+    public ExternalSheet getExternalSheet(int externSheetIndex) {
+        return null;
+    }
+
+    public String getSheetNameByExternSheet(int externSheetIndex) {
+        return _workbook.getSheetName(externSheetIndex);
+    }
+
+    public String resolveNameXText(NameXPtg nameXPtg) {
+        throw new RuntimeException("not implemented yet");
+    }
+
+    public String getNameText(NamePtg namePtg) {
+        return _workbook.getNameAt(namePtg.getIndex()).getNameName();
+    }
+
+    private static final class Name implements EvaluationName {
+
+        private final CompactName _name;
+        private final int _index;
+        private final FormulaParsingWorkbook _fpBook;
+
+        public Name(CompactName name, int index, FormulaParsingWorkbook fpBook) {
+            _name = name;
+            _index = index;
+            _fpBook = fpBook;
+        }
+
+        public Ptg[] getNameDefinition() {
+            return FormulaParser.parse(_name.getRefersToFormula(), _fpBook, FormulaType.NAMEDRANGE, _name.getSheetIndex());
+        }
+
+        public String getNameText() {
+            return _name.getNameName();
+        }
+
+        public boolean hasFormula() {
+            return !_name.isFunctionName() && _name.getRefersToFormula() != null;
+        }
+
+        public boolean isFunctionName() {
+            return _name.isFunctionName();
+        }
+
+        public boolean isRange() {
+            return hasFormula();
+        }
+
+        public NamePtg createPtg() {
+            return new NamePtg(_index);
+        }
+    }
+}
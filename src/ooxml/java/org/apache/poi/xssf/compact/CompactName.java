@@ -0,0 +1,105 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.util.AreaReference;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDefinedName;
+
+/**
+ * A read-only defined name of a {@link CompactWorkbook}
+ */
+final class CompactName implements Name {
+
+    private final CompactWorkbook _workbook;
+    private final String _name;
+    private final String _refersToFormula;
+    private final int _sheetIndex;
+    private final boolean _function;
+    private final String _comment;
+
+    CompactName(CTDefinedName name, CompactWorkbook workbook) {
+        _workbook = workbook;
+        _name = name.getName();
+        String formula = name.getStringValue();
+        _refersToFormula = formula == null || formula.length() < 1 ? null : formula;
+        _sheetIndex = name.isSetLocalSheetId() ? (int)name.getLocalSheetId() : -1;
+        _function = name.getFunction();
+        _comment = name.getComment();
+    }
+
+    public String getSheetName() {
+        if (_sheetIndex != -1) {
+            return _workbook.getSheetName(_sheetIndex);
+        }
+        AreaReference areaRef = new AreaReference(_refersToFormula);
+        return areaRef.getFirstCell().getSheetName();
+    }
+
+    public String getNameName() {
+        return _name;
+    }
+
+    public void setNameName(String name) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public String getRefersToFormula() {
+        return _refersToFormula;
+    }
+
+    public void setRefersToFormula(String formulaText) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isFunctionName() {
+        return _function;
+    }
+
+    public boolean isDeleted() {
+        if (_refersToFormula == null) {
+            return false;
+        }
+        Ptg[] ptgs = FormulaParser.parse(_refersToFormula, _workbook.getFormulaWorkbook(),
+                FormulaType.NAMEDRANGE, _sheetIndex);
+        return Ptg.doesFormulaReferToDeletedCell(ptgs);
+    }
+
+    public void setSheetIndex(int sheetId) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public int getSheetIndex() {
+        return _sheetIndex;
+    }
+
+    public String getComment() {
+        return _comment;
+    }
+
+    public void setComment(String comment) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setFunction(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+}
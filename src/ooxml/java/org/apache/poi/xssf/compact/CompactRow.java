@@ -0,0 +1,225 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+/**
+ * A read-only view of a row of a {@link CompactSheet}.  Holds no cell data itself, only the
+ * position of the row in the sheet's cell storage.
+ */
+public class CompactRow implements Row {
+
+    private final CompactSheet _sheet;
+    private final CellStore _store;
+    private final int _rowIndex;
+
+    CompactRow(CompactSheet sheet, CellStore store, int rowIndex) {
+        _sheet = sheet;
+        _store = store;
+        _rowIndex = rowIndex;
+    }
+
+    public Cell createCell(int column) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public Cell createCell(int column, int type) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void removeCell(Cell cell) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setRowNum(int rowNum) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public int getRowNum() {
+        return _store.getRowNum(_rowIndex);
+    }
+
+    /**
+     * Returns the cell at the given (0 based) index,
+     *  with the {@link org.apache.poi.ss.usermodel.Row.MissingCellPolicy} from the parent Workbook.
+     *
+     * @return the cell at the given (0 based) index
+     */
+    public CompactCell getCell(int cellnum) {
+        return getCell(cellnum, _sheet.getWorkbook().getMissingCellPolicy());
+    }
+
+    /**
+     * Returns the cell at the given (0 based) index, with the specified {@link org.apache.poi.ss.usermodel.Row.MissingCellPolicy}
+     *
+     * @return the cell at the given (0 based) index
+     * @throws IllegalArgumentException if cellnum < 0 or the specified MissingCellPolicy is invalid
+     * @see Row#RETURN_NULL_AND_BLANK
+     * @see Row#RETURN_BLANK_AS_NULL
+     * @see Row#CREATE_NULL_AS_BLANK
+     */
+    public CompactCell getCell(int cellnum, MissingCellPolicy policy) {
+        if (cellnum < 0) throw new IllegalArgumentException("Cell index must be >= 0");
+
+        int cellIndex = _store.findCell(_rowIndex, cellnum);
+        if (policy == RETURN_NULL_AND_BLANK) {
+            return cellIndex == -1 ? null : new CompactCell(this, cellIndex, cellnum);
+        }
+        if (policy == RETURN_BLANK_AS_NULL) {
+            if (cellIndex == -1) return null;
+            CompactCell cell = new CompactCell(this, cellIndex, cellnum);
+            return cell.getCellType() == Cell.CELL_TYPE_BLANK ? null : cell;
+        }
+        if (policy == CREATE_NULL_AS_BLANK) {
+            // the cell can not be created, hand out a blank cell that is not part of the row
+            return new CompactCell(this, cellIndex, cellnum);
+        }
+        throw new IllegalArgumentException("Illegal policy " + policy + " (" + policy.id + ")");
+    }
+
+    /**
+     * Get the number of the first cell contained in this row.
+     *
+     * @return short representing the first logical cell in the row,
+     *  or -1 if the row does not contain any cells.
+     */
+    public short getFirstCellNum() {
+        int first = _store.getFirstCellIndex(_rowIndex);
+        return (short)(first == _store.getEndCellIndex(_rowIndex) ? -1 : _store.getColumn(first));
+    }
+
+    /**
+     * Gets the index of the last cell contained in this row <b>PLUS ONE</b>. The result also
+     * happens to be the 1-based column number of the last cell.  This value can be used as a
+     * standard upper bound when iterating over cells.
+     *
+     * @return short representing the last logical cell in the row <b>PLUS ONE</b>,
+     *   or -1 if the row does not contain any cells.
+     */
+    public short getLastCellNum() {
+        int end = _store.getEndCellIndex(_rowIndex);
+        return (short)(_store.getFirstCellIndex(_rowIndex) == end ? -1 : _store.getColumn(end - 1) + 1);
+    }
+
+    public int getPhysicalNumberOfCells() {
+        return _store.getEndCellIndex(_rowIndex) - _store.getFirstCellIndex(_rowIndex);
+    }
+
+    public void setHeight(short height) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setZeroHeight(boolean zHeight) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean getZeroHeight() {
+        return _store.isRowHidden(_rowIndex);
+    }
+
+    public void setHeightInPoints(float height) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Get the row's height measured in twips (1/20th of a point). If the height is not set, the default worksheet value is returned,
+     * See {@link org.apache.poi.ss.usermodel.Sheet#getDefaultRowHeightInPoints()}
+     *
+     * @return row height measured in twips (1/20th of a point)
+     */
+    public short getHeight() {
+        return (short)(getHeightInPoints() * 20);
+    }
+
+    /**
+     * Returns row height measured in point size. If the height is not set, the default worksheet value is returned,
+     * See {@link org.apache.poi.ss.usermodel.Sheet#getDefaultRowHeightInPoints()}
+     *
+     * @return row height measured in point size
+     */
+    public float getHeightInPoints() {
+        short height = _store.getRowHeight(_rowIndex);
+        return height == -1 ? _sheet.getDefaultRowHeightInPoints() : height / 20f;
+    }
+
+    public boolean isFormatted() {
+        return _store.getRowStyle(_rowIndex) != -1;
+    }
+
+    /**
+     * Returns the whole-row cell style. Most rows won't
+     *  have one of these, so will return null. Call
+     *  {@link #isFormatted()} to check first.
+     */
+    public XSSFCellStyle getRowStyle() {
+        int style = _store.getRowStyle(_rowIndex);
+        return style == -1 ? null : _sheet.getWorkbook().getCellStyleAt(style);
+    }
+
+    public void setRowStyle(CellStyle style) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * @return an iterator over the physical cells of the row, in ascending column order
+     */
+    public Iterator<Cell> cellIterator() {
+        return new Iterator<Cell>() {
+            private int _next = _store.getFirstCellIndex(_rowIndex);
+            private final int _end = _store.getEndCellIndex(_rowIndex);
+
+            public boolean hasNext() {
+                return _next < _end;
+            }
+
+            public Cell next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int cellIndex = _next++;
+                return new CompactCell(CompactRow.this, cellIndex, _store.getColumn(cellIndex));
+            }
+
+            public void remove() {
+                throw CompactWorkbook.readOnly();
+            }
+        };
+    }
+
+    /**
+     * Alias for {@link #cellIterator()} to allow foreach loops
+     */
+    public Iterator<Cell> iterator() {
+        return cellIterator();
+    }
+
+    public CompactSheet getSheet() {
+        return _sheet;
+    }
+
+    CellStore getCellStore() {
+        return _store;
+    }
+}
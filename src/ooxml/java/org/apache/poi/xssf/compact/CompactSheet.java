@@ -0,0 +1,852 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.poi.POIXMLException;
+import org.apache.poi.hssf.util.PaneInformation;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.SharedFormula;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.AutoFilter;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellRange;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DataValidation;
+import org.apache.poi.ss.usermodel.DataValidationHelper;
+import org.apache.poi.ss.usermodel.Drawing;
+import org.apache.poi.ss.usermodel.Footer;
+import org.apache.poi.ss.usermodel.Header;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.PrintSetup;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.SheetConditionalFormatting;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFName;
+
+/**
+ * A read-only sheet of a {@link CompactWorkbook}.  Rows are created on demand from the
+ * sheet's columnar cell storage.
+ * <p>
+ * A streaming sheet holds no rows, it reads them from the worksheet part as they are accessed
+ * and keeps only a window of rows at a time.  Row iteration reads the worksheet once, and
+ * {@link #getRow(int)} is efficient for ascending row numbers but starts reading the worksheet
+ * again for a row before the current window.  Merged regions, page breaks, print options and
+ * the row count are stored after the cells, asking for them reads through the worksheet
+ * without keeping any cells.
+ * </p>
+ */
+public class CompactSheet implements Sheet {
+
+    private final CompactWorkbook _workbook;
+    private final String _sheetName;
+    private final int _state;
+
+    /** all rows of the sheet, <code>null</code> if the rows are streamed from {@link #_part} */
+    private final CellStore _store;
+    private final PackagePart _part;
+    private final int _rowAccessWindowSize;
+    /** complete once the whole worksheet has been read, <code>null</code> until first needed */
+    private SheetProperties _properties;
+    /** the stream and window serving {@link #getRow(int)} */
+    private SheetDataReader _rowReader;
+    private CellStore _rowWindow;
+    private boolean _firstRowWindow;
+
+    /**
+     * Creates a sheet holding all of its rows
+     */
+    CompactSheet(CompactWorkbook workbook, String sheetName, int state, CellStore store, SheetProperties properties) {
+        _workbook = workbook;
+        _sheetName = sheetName;
+        _state = state;
+        _store = store;
+        _part = null;
+        _rowAccessWindowSize = -1;
+        _properties = properties;
+    }
+
+    /**
+     * Creates a sheet reading its rows from the worksheet part whenever they are accessed,
+     * keeping at most <code>rowAccessWindowSize</code> rows at a time
+     */
+    CompactSheet(CompactWorkbook workbook, String sheetName, int state, PackagePart part, int rowAccessWindowSize) {
+        _workbook = workbook;
+        _sheetName = sheetName;
+        _state = state;
+        _store = null;
+        _part = part;
+        _rowAccessWindowSize = rowAccessWindowSize;
+    }
+
+    /**
+     * @return one of the <tt>STSheetState</tt> <tt>INT_</tt> constants
+     */
+    int getState() {
+        return _state;
+    }
+
+    /**
+     * @return <code>true</code> if the rows of this sheet are read from the worksheet part
+     * as they are accessed
+     */
+    public boolean isStreaming() {
+        return _store == null;
+    }
+
+    /**
+     * Starts reading the worksheet part, up to the first row
+     */
+    private SheetDataReader openReader() {
+        try {
+            SheetDataReader reader = new SheetDataReader(_part.getInputStream());
+            reader.readHeader();
+            if (_properties == null) {
+                _properties = reader.getProperties();
+            }
+            return reader;
+        } catch (IOException e) {
+            throw new POIXMLException(e);
+        }
+    }
+
+    /**
+     * Reads the next window of rows
+     *
+     * @param previous the previous window of the same reader, <code>null</code> for the first window
+     * @return the window, empty if the end of the sheet has been reached
+     */
+    private CellStore readWindow(SheetDataReader reader, CellStore previous) {
+        CellStore window = previous == null
+                ? new CellStore(_workbook.getSharedStrings()) : new CellStore(previous);
+        try {
+            reader.readRows(window, _rowAccessWindowSize);
+        } catch (IOException e) {
+            throw new POIXMLException(e);
+        }
+        if (reader.isDone() && !_properties.isComplete()) {
+            _properties = reader.getProperties();
+        }
+        return window;
+    }
+
+    /**
+     * @return the sheet properties, of which those defined after the cells in the worksheet
+     * XML may not be known yet when streaming
+     */
+    private SheetProperties getProperties() {
+        if (_properties == null) {
+            closeReader(openReader());
+        }
+        return _properties;
+    }
+
+    /**
+     * @return the sheet properties, reading through the whole worksheet part if needed
+     */
+    private SheetProperties getCompleteProperties() {
+        if (_properties == null || !_properties.isComplete()) {
+            SheetDataReader reader = openReader();
+            try {
+                reader.readAll(null);
+            } catch (IOException e) {
+                throw new POIXMLException(e);
+            }
+            _properties = reader.getProperties();
+        }
+        return _properties;
+    }
+
+    private static void closeReader(SheetDataReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new POIXMLException(e);
+        }
+    }
+
+    /**
+     * Releases the worksheet stream used by {@link #getRow(int)}, if any
+     */
+    void close() {
+        if (_rowReader != null) {
+            closeReader(_rowReader);
+            _rowReader = null;
+            _rowWindow = null;
+        }
+    }
+
+    /**
+     * Creates a non shared formula from the shared formula counterpart
+     *
+     * @return non shared formula created for the given shared formula and cell
+     */
+    String convertSharedFormula(CellStore.FormulaGroup group, int rowIndex, int columnIndex) {
+        CellRangeAddress ref = group.getRange();
+
+        int sheetIndex = _workbook.getSheetIndex(this);
+        CompactFormulaWorkbook fpb = _workbook.getFormulaWorkbook();
+        SharedFormula sf = new SharedFormula(SpreadsheetVersion.EXCEL2007);
+
+        Ptg[] ptgs = FormulaParser.parse(group.getFormula(), fpb, FormulaType.CELL, sheetIndex);
+        Ptg[] fmla = sf.convertSharedFormulas(ptgs,
+                rowIndex - ref.getFirstRow(), columnIndex - ref.getFirstColumn());
+        return FormulaRenderer.toFormulaString(fpb, fmla);
+    }
+
+    private static int[] toIntArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).intValue();
+        }
+        return result;
+    }
+
+    public CompactWorkbook getWorkbook() {
+        return _workbook;
+    }
+
+    public String getSheetName() {
+        return _sheetName;
+    }
+
+    public Row createRow(int rownum) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void removeRow(Row row) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Returns the logical row (0-based).  If you ask for a row that is not
+     * defined you get a null.  This is to say row 4 represents the fifth row on a sheet.
+     *
+     * @param rownum  row to get (0-based)
+     * @return a view of the row, or <code>null</code> if the row is not defined on the sheet
+     */
+    public CompactRow getRow(int rownum) {
+        if (_store != null) {
+            int rowIndex = _store.findRow(rownum);
+            return rowIndex == -1 ? null : new CompactRow(this, _store, rowIndex);
+        }
+        if (_rowReader != null && !_firstRowWindow && _rowWindow.getRowCount() > 0
+                && rownum < _rowWindow.getRowNum(0)) {
+            // behind the current window, start reading the sheet again
+            close();
+        }
+        if (_rowReader == null) {
+            _rowReader = openReader();
+            _rowWindow = null;
+        }
+        while (true) {
+            if (_rowWindow != null) {
+                int rowIndex = _rowWindow.findRow(rownum);
+                if (rowIndex != -1) {
+                    return new CompactRow(this, _rowWindow, rowIndex);
+                }
+                int rowCount = _rowWindow.getRowCount();
+                if (rowCount > 0 && rownum < _rowWindow.getRowNum(rowCount - 1)) {
+                    return null;
+                }
+            }
+            if (_rowReader.isDone()) {
+                return null;
+            }
+            _firstRowWindow = _rowWindow == null;
+            _rowWindow = readWindow(_rowReader, _rowWindow);
+        }
+    }
+
+    /**
+     * When streaming, the number of rows is only known once the whole worksheet has been read
+     */
+    public int getPhysicalNumberOfRows() {
+        if (_store == null) {
+            return getCompleteProperties()._physicalRowCount;
+        }
+        return _store.getRowCount();
+    }
+
+    public int getFirstRowNum() {
+        if (_store == null) {
+            return Math.max(getCompleteProperties()._firstRowNum, 0);
+        }
+        return _store.getRowCount() == 0 ? 0 : _store.getRowNum(0);
+    }
+
+    public int getLastRowNum() {
+        if (_store == null) {
+            return Math.max(getCompleteProperties()._lastRowNum, 0);
+        }
+        return _store.getRowCount() == 0 ? 0 : _store.getRowNum(_store.getRowCount() - 1);
+    }
+
+    /**
+     * Returns an iterator of the physical rows, in ascending row number order.
+     * <p>
+     * When streaming, every iterator reads the worksheet part from its start, keeping only
+     * the current window of rows.  Rows returned earlier remain usable, but are not kept by
+     * the sheet.
+     * </p>
+     */
+    public Iterator<Row> rowIterator() {
+        if (_store == null) {
+            return new StreamingRowIterator();
+        }
+        return new Iterator<Row>() {
+            private int _next;
+
+            public boolean hasNext() {
+                return _next < _store.getRowCount();
+            }
+
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new CompactRow(CompactSheet.this, _store, _next++);
+            }
+
+            public void remove() {
+                throw CompactWorkbook.readOnly();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the rows of a streamed sheet, one window at a time
+     */
+    private final class StreamingRowIterator implements Iterator<Row> {
+        private final SheetDataReader _reader = openReader();
+        private CellStore _window;
+        private int _next;
+
+        public boolean hasNext() {
+            while (_window == null || _next == _window.getRowCount()) {
+                if (_reader.isDone()) {
+                    return false;
+                }
+                _window = readWindow(_reader, _window);
+                _next = 0;
+            }
+            return true;
+        }
+
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return new CompactRow(CompactSheet.this, _window, _next++);
+        }
+
+        public void remove() {
+            throw CompactWorkbook.readOnly();
+        }
+    }
+
+    /**
+     * Alias for {@link #rowIterator()} to allow foreach loops
+     */
+    public Iterator<Row> iterator() {
+        return rowIterator();
+    }
+
+    public void setColumnHidden(int columnIndex, boolean hidden) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isColumnHidden(int columnIndex) {
+        SheetProperties.ColumnInfo col = getProperties().getColumnInfo(columnIndex);
+        return col != null && col._hidden;
+    }
+
+    public void setRightToLeft(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isRightToLeft() {
+        return getProperties()._rightToLeft;
+    }
+
+    public void setColumnWidth(int columnIndex, int width) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public int getColumnWidth(int columnIndex) {
+        SheetProperties.ColumnInfo col = getProperties().getColumnInfo(columnIndex);
+        double width = col == null || col._width < 0 ? getDefaultColumnWidth() : col._width;
+        return (int)(width * 256);
+    }
+
+    public void setDefaultColumnWidth(int width) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public int getDefaultColumnWidth() {
+        return getProperties()._baseColumnWidth;
+    }
+
+    public short getDefaultRowHeight() {
+        return (short)(getDefaultRowHeightInPoints() * 20);
+    }
+
+    public float getDefaultRowHeightInPoints() {
+        return (float)getProperties()._defaultRowHeight;
+    }
+
+    public void setDefaultRowHeight(short height) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setDefaultRowHeightInPoints(float height) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public CellStyle getColumnStyle(int column) {
+        SheetProperties.ColumnInfo col = getProperties().getColumnInfo(column);
+        int idx = col == null ? -1 : col._style;
+        return _workbook.getCellStyleAt(idx == -1 ? 0 : idx);
+    }
+
+    public int addMergedRegion(CellRangeAddress region) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setVerticallyCenter(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setHorizontallyCenter(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean getHorizontallyCenter() {
+        return getCompleteProperties()._horizontallyCenter;
+    }
+
+    public boolean getVerticallyCenter() {
+        return getCompleteProperties()._verticallyCenter;
+    }
+
+    public void removeMergedRegion(int index) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public int getNumMergedRegions() {
+        return getCompleteProperties()._mergedRegions.size();
+    }
+
+    public CellRangeAddress getMergedRegion(int index) {
+        return getCompleteProperties()._mergedRegions.get(index);
+    }
+
+    public void setForceFormulaRecalculation(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean getForceFormulaRecalculation() {
+        return getCompleteProperties()._forceFormulaRecalculation;
+    }
+
+    public void setAutobreaks(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setDisplayGuts(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setDisplayZeros(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isDisplayZeros() {
+        return getProperties()._displayZeros;
+    }
+
+    public void setFitToPage(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setRowSumsBelow(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setRowSumsRight(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean getAutobreaks() {
+        return getProperties()._autobreaks;
+    }
+
+    public boolean getDisplayGuts() {
+        return getProperties()._displayGuts;
+    }
+
+    public boolean getFitToPage() {
+        return getProperties()._fitToPage;
+    }
+
+    public boolean getRowSumsBelow() {
+        return getProperties()._rowSumsBelow;
+    }
+
+    public boolean getRowSumsRight() {
+        return getProperties()._rowSumsRight;
+    }
+
+    public boolean isPrintGridlines() {
+        return getCompleteProperties()._printGridlines;
+    }
+
+    public void setPrintGridlines(boolean show) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Page setup is not loaded by compact workbooks
+     */
+    public PrintSetup getPrintSetup() {
+        throw new UnsupportedOperationException("Page setup is not loaded by compact workbooks");
+    }
+
+    /**
+     * Headers are not loaded by compact workbooks
+     */
+    public Header getHeader() {
+        throw new UnsupportedOperationException("Headers are not loaded by compact workbooks");
+    }
+
+    /**
+     * Footers are not loaded by compact workbooks
+     */
+    public Footer getFooter() {
+        throw new UnsupportedOperationException("Footers are not loaded by compact workbooks");
+    }
+
+    public void setSelected(boolean value) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public double getMargin(short margin) {
+        double[] margins = getCompleteProperties()._margins;
+        if (margins == null) return 0;
+
+        switch (margin) {
+            case LeftMargin:
+                return margins[0];
+            case RightMargin:
+                return margins[1];
+            case TopMargin:
+                return margins[2];
+            case BottomMargin:
+                return margins[3];
+            case HeaderMargin:
+                return margins[4];
+            case FooterMargin:
+                return margins[5];
+            default :
+                throw new IllegalArgumentException("Unknown margin constant:  " + margin);
+        }
+    }
+
+    public void setMargin(short margin, double size) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean getProtect() {
+        return getCompleteProperties()._protect;
+    }
+
+    public void protectSheet(String password) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean getScenarioProtect() {
+        return getCompleteProperties()._scenarioProtect;
+    }
+
+    public void setZoom(int numerator, int denominator) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public short getTopRow() {
+        String topLeftCell = getProperties()._topLeftCell;
+        return topLeftCell == null ? 0 : (short)new CellReference(topLeftCell).getRow();
+    }
+
+    public short getLeftCol() {
+        String topLeftCell = getProperties()._topLeftCell;
+        return topLeftCell == null ? 0 : new CellReference(topLeftCell).getCol();
+    }
+
+    public void showInPane(short toprow, short leftcol) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void shiftRows(int startRow, int endRow, int n) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void shiftRows(int startRow, int endRow, int n, boolean copyRowHeight, boolean resetOriginalRowHeight) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void createFreezePane(int colSplit, int rowSplit, int leftmostColumn, int topRow) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void createFreezePane(int colSplit, int rowSplit) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void createSplitPane(int xSplitPos, int ySplitPos, int leftmostColumn, int topRow, int activePane) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public PaneInformation getPaneInformation() {
+        // no pane configured
+        String[] pane = getProperties()._pane;
+        if (pane == null) return null;
+
+        short xSplit = pane[0] == null ? 0 : (short)Double.parseDouble(pane[0]);
+        short ySplit = pane[1] == null ? 0 : (short)Double.parseDouble(pane[1]);
+        CellReference cellRef = pane[2] == null ? null : new CellReference(pane[2]);
+        byte activePane = 0;
+        if ("topRight".equals(pane[3])) {
+            activePane = PANE_UPPER_RIGHT;
+        } else if ("bottomLeft".equals(pane[3])) {
+            activePane = PANE_LOWER_LEFT;
+        } else if ("topLeft".equals(pane[3])) {
+            activePane = PANE_UPPER_LEFT;
+        }
+        return new PaneInformation(xSplit, ySplit,
+                (short)(cellRef == null ? 0 : cellRef.getRow()), (cellRef == null ? 0 : cellRef.getCol()),
+                activePane, "frozen".equals(pane[4]));
+    }
+
+    public void setDisplayGridlines(boolean show) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isDisplayGridlines() {
+        return getProperties()._displayGridlines;
+    }
+
+    public void setDisplayFormulas(boolean show) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isDisplayFormulas() {
+        return getProperties()._displayFormulas;
+    }
+
+    public void setDisplayRowColHeadings(boolean show) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isDisplayRowColHeadings() {
+        return getProperties()._displayRowColHeadings;
+    }
+
+    public void setRowBreak(int row) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isRowBroken(int row) {
+        return getCompleteProperties()._rowBreaks.contains(Integer.valueOf(row));
+    }
+
+    public void removeRowBreak(int row) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public int[] getRowBreaks() {
+        return toIntArray(getCompleteProperties()._rowBreaks);
+    }
+
+    public int[] getColumnBreaks() {
+        return toIntArray(getCompleteProperties()._columnBreaks);
+    }
+
+    public void setColumnBreak(int column) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isColumnBroken(int column) {
+        return getCompleteProperties()._columnBreaks.contains(Integer.valueOf(column));
+    }
+
+    public void removeColumnBreak(int column) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setColumnGroupCollapsed(int columnNumber, boolean collapsed) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void groupColumn(int fromColumn, int toColumn) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void ungroupColumn(int fromColumn, int toColumn) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void groupRow(int fromRow, int toRow) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void ungroupRow(int fromRow, int toRow) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setRowGroupCollapsed(int row, boolean collapse) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setDefaultColumnStyle(int column, CellStyle style) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void autoSizeColumn(int column) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void autoSizeColumn(int column, boolean useMergedCells) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void autoSizeColumns(int... columns) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void autoSizeColumns(boolean useMergedCells, int... columns) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Comments are not loaded by compact workbooks
+     *
+     * @return <code>null</code>
+     */
+    public Comment getCellComment(int row, int column) {
+        return null;
+    }
+
+    public Drawing createDrawingPatriarch() {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public boolean isSelected() {
+        return getProperties()._selected;
+    }
+
+    public CellRange<? extends Cell> setArrayFormula(String formula, CellRangeAddress range) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public CellRange<? extends Cell> removeArrayFormula(Cell cell) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public DataValidationHelper getDataValidationHelper() {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void addValidationData(DataValidation dataValidation) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public AutoFilter setAutoFilter(CellRangeAddress range) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Conditional formatting is not loaded by compact workbooks
+     */
+    public SheetConditionalFormatting getSheetConditionalFormatting() {
+        throw new UnsupportedOperationException("Conditional formatting is not loaded by compact workbooks");
+    }
+
+    public CellRangeAddress getRepeatingRows() {
+        return getRepeatingRowsOrColumns(true);
+    }
+
+    public CellRangeAddress getRepeatingColumns() {
+        return getRepeatingRowsOrColumns(false);
+    }
+
+    public void setRepeatingRows(CellRangeAddress rowRangeRef) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    public void setRepeatingColumns(CellRangeAddress columnRangeRef) {
+        throw CompactWorkbook.readOnly();
+    }
+
+    /**
+     * Same as XSSFSheet, the repeating rows and columns are stored in the built-in
+     * <tt>_xlnm.Print_Titles</tt> name of the sheet.
+     */
+    private CellRangeAddress getRepeatingRowsOrColumns(boolean rows) {
+        int sheetIndex = _workbook.getSheetIndex(this);
+        for (int i = 0; i < _workbook.getNumberOfNames(); i++) {
+            Name name = _workbook.getNameAt(i);
+            if (!name.getNameName().equalsIgnoreCase(XSSFName.BUILTIN_PRINT_TITLE)
+                    || name.getSheetIndex() != sheetIndex) {
+                continue;
+            }
+            String refStr = name.getRefersToFormula();
+            if (refStr == null) {
+                return null;
+            }
+            int maxRowIndex = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+            int maxColIndex = SpreadsheetVersion.EXCEL2007.getLastColumnIndex();
+            for (String part : refStr.split(",")) {
+                CellRangeAddress range = CellRangeAddress.valueOf(part);
+                if ((range.getFirstColumn() == 0 && range.getLastColumn() == maxColIndex)
+                        || (range.getFirstColumn() == -1 && range.getLastColumn() == -1)) {
+                    if (rows) {
+                        return range;
+                    }
+                } else if ((range.getFirstRow() == 0 && range.getLastRow() == maxRowIndex)
+                        || (range.getFirstRow() == -1 && range.getLastRow() == -1)) {
+                    if (!rows) {
+                        return range;
+                    }
+                }
+            }
+            return null;
+        }
+        return null;
+    }
+}
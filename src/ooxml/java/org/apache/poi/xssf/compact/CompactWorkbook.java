@@ -0,0 +1,635 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagePartName;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.ss.formula.udf.UDFFinder;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.PictureData;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFName;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.xmlbeans.XmlException;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBookView;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCalcPr;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDefinedName;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STSheetState;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STVisibility;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.SAXException;
+
+/**
+ * A read-only, memory efficient {@link Workbook} for .xlsx files.
+ * <p>
+ * {@link org.apache.poi.xssf.usermodel.XSSFWorkbook} keeps every cell as an XMLBeans
+ * <tt>CTCell</tt> wrapped in an <tt>XSSFCell</tt>, which costs several hundred bytes per cell.
+ * This workbook instead parses the sheets with a pull parser into primitive, columnar arrays
+ * (about 13 bytes per cell plus the text of the strings), see <tt>CellStore</tt>.  {@link Row}
+ * and {@link org.apache.poi.ss.usermodel.Cell} objects are lightweight views which are created
+ * on demand, so two calls to <tt>getCell()</tt> don't return the same object.
+ * </p>
+ * <p>
+ * For files too large even for that, a row access window can be given: the sheets then read
+ * their rows from the package as they are accessed, holding at most that many rows each (see
+ * {@link CompactSheet}).  Such a workbook keeps the package open until {@link #close()}.
+ * </p>
+ * <p>
+ * Cell values, cached formula results, formulas (including shared and array formulas), styles,
+ * row heights, column widths, merged regions, defined names and the common sheet view and
+ * print options are available.  Rich text formatting, comments, hyperlinks, drawings,
+ * pictures, page setup, headers and footers are not loaded.  All methods that would modify
+ * the workbook throw an <code>UnsupportedOperationException</code>.
+ * </p>
+ */
+public class CompactWorkbook implements Workbook {
+
+    private final OPCPackage _pkg;
+    private final boolean _closePackage;
+    private final int _rowAccessWindowSize;
+    private final List<CompactSheet> _sheets = new ArrayList<CompactSheet>();
+    private final List<CompactName> _names = new ArrayList<CompactName>();
+    private final StylesTable _stylesSource;
+    private final ReadOnlySharedStringsTable _sharedStrings;
+    private XSSFCellStyle[] _styles;
+    private final boolean _date1904;
+    private final int _activeSheetIndex;
+    private final int _firstVisibleTab;
+    private final boolean _hidden;
+    private final boolean _forceFormulaRecalculation;
+
+    private MissingCellPolicy _missingCellPolicy = Row.RETURN_NULL_AND_BLANK;
+    private CompactFormulaWorkbook _formulaWorkbook;
+    private CreationHelper _creationHelper;
+
+    /**
+     * Reads all sheets of the supplied package.  The package is not used once the constructor
+     * returns, so the caller may close it.
+     *
+     * @param pkg the package of an .xlsx file
+     */
+    public CompactWorkbook(OPCPackage pkg) throws IOException {
+        this(pkg, false, -1);
+    }
+
+    /**
+     * Reads the workbook from the supplied stream.  The stream is buffered internally, there
+     * is no need to wrap it in a <code>BufferedInputStream</code>.
+     */
+    public CompactWorkbook(InputStream is) throws IOException {
+        this(openPackage(is), true, -1);
+    }
+
+    /**
+     * Reads the workbook from the specified file, which is closed again once it has been read.
+     */
+    public CompactWorkbook(String path) throws IOException {
+        this(openPackage(path), true, -1);
+    }
+
+    /**
+     * Opens the supplied package, reading the rows of the sheets as they are accessed.  The
+     * package must stay open as long as the workbook is used.
+     *
+     * @param pkg the package of an .xlsx file
+     * @param rowAccessWindowSize the number of rows each sheet keeps in memory, or
+     *  <code>-1</code> to read all rows up front
+     */
+    public CompactWorkbook(OPCPackage pkg, int rowAccessWindowSize) throws IOException {
+        this(pkg, false, rowAccessWindowSize);
+    }
+
+    /**
+     * Opens the specified file, reading the rows of the sheets as they are accessed.  The file
+     * stays open until {@link #close()} is called.
+     *
+     * @param rowAccessWindowSize the number of rows each sheet keeps in memory, or
+     *  <code>-1</code> to read all rows up front
+     */
+    public CompactWorkbook(String path, int rowAccessWindowSize) throws IOException {
+        this(openPackage(path), true, rowAccessWindowSize);
+    }
+
+    @SuppressWarnings("deprecation") // getXYZArray() array accessors are deprecated
+    private CompactWorkbook(OPCPackage pkg, boolean closePackage, int rowAccessWindowSize) throws IOException {
+        if (rowAccessWindowSize == 0 || rowAccessWindowSize < -1) {
+            throw new IllegalArgumentException("rowAccessWindowSize must be greater than 0 or -1");
+        }
+        _pkg = pkg;
+        _closePackage = closePackage;
+        _rowAccessWindowSize = rowAccessWindowSize;
+        boolean loaded = false;
+        try {
+            PackageRelationship coreDocRelationship = pkg.getRelationshipsByType(
+                    PackageRelationshipTypes.CORE_DOCUMENT).getRelationship(0);
+            PackagePart workbookPart = pkg.getPart(coreDocRelationship);
+            CTWorkbook workbook = WorkbookDocument.Factory.parse(workbookPart.getInputStream()).getWorkbook();
+
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable stylesSource = reader.getStylesTable();
+            _stylesSource = stylesSource == null ? new StylesTable() : stylesSource;
+            _sharedStrings = new ReadOnlySharedStringsTable(pkg);
+
+            _date1904 = workbook.isSetWorkbookPr() && workbook.getWorkbookPr().getDate1904();
+            CTBookView bookView = workbook.isSetBookViews() && workbook.getBookViews().sizeOfWorkbookViewArray() > 0
+                    ? workbook.getBookViews().getWorkbookViewArray(0) : null;
+            _activeSheetIndex = bookView == null ? 0 : (int)bookView.getActiveTab();
+            _firstVisibleTab = bookView == null ? 0 : (int)bookView.getFirstSheet();
+            _hidden = bookView != null && bookView.getVisibility() == STVisibility.HIDDEN;
+            CTCalcPr calcPr = workbook.getCalcPr();
+            _forceFormulaRecalculation = calcPr != null && calcPr.getCalcId() != 0;
+
+            for (CTSheet ctSheet : workbook.getSheets().getSheetArray()) {
+                _sheets.add(readSheet(workbookPart, ctSheet));
+            }
+            if (workbook.isSetDefinedNames()) {
+                for (CTDefinedName ctName : workbook.getDefinedNames().getDefinedNameArray()) {
+                    _names.add(new CompactName(ctName, this));
+                }
+            }
+            loaded = true;
+        } catch (OpenXML4JException e) {
+            throw new POIXMLException(e);
+        } catch (XmlException e) {
+            throw new POIXMLException(e);
+        } catch (SAXException e) {
+            throw new POIXMLException(e);
+        } finally {
+            if (closePackage && (rowAccessWindowSize == -1 || !loaded)) {
+                pkg.revert();
+            }
+        }
+    }
+
+    private static OPCPackage openPackage(InputStream is) throws IOException {
+        try {
+            return OPCPackage.open(is);
+        } catch (InvalidFormatException e) {
+            throw new POIXMLException(e);
+        }
+    }
+
+    private static OPCPackage openPackage(String path) throws IOException {
+        try {
+            return OPCPackage.open(path, PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException(e.toString());
+        }
+    }
+
+    private CompactSheet readSheet(PackagePart workbookPart, CTSheet ctSheet)
+            throws IOException, InvalidFormatException {
+        int state = ctSheet.getState() == null ? STSheetState.INT_VISIBLE : ctSheet.getState().intValue();
+        PackageRelationship rel = workbookPart.getRelationship(ctSheet.getId());
+        if (rel == null) {
+            throw new POIXMLException("No sheet found with r:id " + ctSheet.getId());
+        }
+        CellStore store = new CellStore(_sharedStrings);
+        // chart sheets have no cells
+        if (!rel.getRelationshipType().equals(XSSFRelation.WORKSHEET.getRelation())) {
+            store.finish();
+            SheetProperties properties = new SheetProperties();
+            properties.setComplete();
+            return new CompactSheet(this, ctSheet.getName(), state, store, properties);
+        }
+        PackagePartName partName = PackagingURIHelper.createPartName(rel.getTargetURI());
+        PackagePart sheetPart = workbookPart.getPackage().getPart(partName);
+        if (sheetPart == null) {
+            throw new POIXMLException("No data found for sheet with r:id " + ctSheet.getId());
+        }
+        if (_rowAccessWindowSize != -1) {
+            return new CompactSheet(this, ctSheet.getName(), state, sheetPart, _rowAccessWindowSize);
+        }
+        SheetDataReader sheetReader = new SheetDataReader(sheetPart.getInputStream());
+        sheetReader.readAll(store);
+        return new CompactSheet(this, ctSheet.getName(), state, store, sheetReader.getProperties());
+    }
+
+    /**
+     * Releases the worksheet streams of the sheets and, if the workbook opened the package
+     * itself, the package.  Only needed when rows are read as they are accessed.
+     */
+    public void close() {
+        for (CompactSheet sheet : _sheets) {
+            sheet.close();
+        }
+        if (_closePackage && _rowAccessWindowSize != -1) {
+            _pkg.revert();
+        }
+    }
+
+    ReadOnlySharedStringsTable getSharedStrings() {
+        return _sharedStrings;
+    }
+
+    /**
+     * @return the exception thrown by all methods that would modify a compact workbook
+     */
+    static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Compact workbooks are read-only");
+    }
+
+    CompactFormulaWorkbook getFormulaWorkbook() {
+        if (_formulaWorkbook == null) {
+            _formulaWorkbook = new CompactFormulaWorkbook(this);
+        }
+        return _formulaWorkbook;
+    }
+
+    /**
+     * @return the styles of this workbook
+     */
+    public StylesTable getStylesSource() {
+        return _stylesSource;
+    }
+
+    /**
+     * @return <code>true</code> if dates in this workbook use the 1904 date system
+     */
+    public boolean isDate1904() {
+        return _date1904;
+    }
+
+    private void validateSheetIndex(int index) {
+        int lastSheetIx = _sheets.size() - 1;
+        if (index < 0 || index > lastSheetIx) {
+            throw new IllegalArgumentException("Sheet index ("
+                    + index +") is out of range (0.." + lastSheetIx + ")");
+        }
+    }
+
+    public int getActiveSheetIndex() {
+        return _activeSheetIndex;
+    }
+
+    public void setActiveSheet(int sheetIndex) {
+        throw readOnly();
+    }
+
+    public int getFirstVisibleTab() {
+        return _firstVisibleTab;
+    }
+
+    public void setFirstVisibleTab(int sheetIndex) {
+        throw readOnly();
+    }
+
+    public void setSheetOrder(String sheetname, int pos) {
+        throw readOnly();
+    }
+
+    public void setSelectedTab(int index) {
+        throw readOnly();
+    }
+
+    public void setSheetName(int sheet, String name) {
+        throw readOnly();
+    }
+
+    public String getSheetName(int sheet) {
+        validateSheetIndex(sheet);
+        return _sheets.get(sheet).getSheetName();
+    }
+
+    public int getSheetIndex(String name) {
+        for (int i = 0; i < _sheets.size(); i++) {
+            if (name.equalsIgnoreCase(_sheets.get(i).getSheetName())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getSheetIndex(Sheet sheet) {
+        for (int i = 0; i < _sheets.size(); i++) {
+            if (_sheets.get(i) == sheet) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public CompactSheet createSheet() {
+        throw readOnly();
+    }
+
+    public CompactSheet createSheet(String sheetname) {
+        throw readOnly();
+    }
+
+    public CompactSheet cloneSheet(int sheetNum) {
+        throw readOnly();
+    }
+
+    public int getNumberOfSheets() {
+        return _sheets.size();
+    }
+
+    public CompactSheet getSheetAt(int index) {
+        validateSheetIndex(index);
+        return _sheets.get(index);
+    }
+
+    public CompactSheet getSheet(String name) {
+        int index = getSheetIndex(name);
+        return index == -1 ? null : _sheets.get(index);
+    }
+
+    public void removeSheetAt(int index) {
+        throw readOnly();
+    }
+
+    /**
+     * @deprecated use {@link CompactSheet#setRepeatingRows(org.apache.poi.ss.util.CellRangeAddress)}
+     *        or {@link CompactSheet#setRepeatingColumns(org.apache.poi.ss.util.CellRangeAddress)}
+     */
+    public void setRepeatingRowsAndColumns(int sheetIndex, int startColumn, int endColumn, int startRow, int endRow) {
+        throw readOnly();
+    }
+
+    public XSSFFont createFont() {
+        throw readOnly();
+    }
+
+    public XSSFFont findFont(short boldWeight, short color, short fontHeight, String name, boolean italic,
+            boolean strikeout, short typeOffset, byte underline) {
+        return _stylesSource.findFont(boldWeight, color, fontHeight, name, italic, strikeout, typeOffset, underline);
+    }
+
+    public short getNumberOfFonts() {
+        return (short)_stylesSource.getFonts().size();
+    }
+
+    public XSSFFont getFontAt(short idx) {
+        return _stylesSource.getFontAt(idx);
+    }
+
+    public XSSFCellStyle createCellStyle() {
+        throw readOnly();
+    }
+
+    public short getNumCellStyles() {
+        return (short)_stylesSource.getNumCellStyles();
+    }
+
+    /**
+     * Styles are created once and shared by all cells using them
+     */
+    public XSSFCellStyle getCellStyleAt(short idx) {
+        return getCellStyleAt(idx & 0xFFFF);
+    }
+
+    XSSFCellStyle getCellStyleAt(int idx) {
+        if (_styles == null) {
+            _styles = new XSSFCellStyle[_stylesSource.getNumCellStyles()];
+        }
+        if (idx >= _styles.length) {
+            return _stylesSource.getStyleAt(idx);
+        }
+        XSSFCellStyle style = _styles[idx];
+        if (style == null) {
+            style = _stylesSource.getStyleAt(idx);
+            _styles[idx] = style;
+        }
+        return style;
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        throw readOnly();
+    }
+
+    public int getNumberOfNames() {
+        return _names.size();
+    }
+
+    public Name getName(String name) {
+        int nameIndex = getNameIndex(name);
+        if (nameIndex < 0) {
+            return null;
+        }
+        return _names.get(nameIndex);
+    }
+
+    public Name getNameAt(int nameIndex) {
+        int nNames = _names.size();
+        if (nNames < 1) {
+            throw new IllegalStateException("There are no defined names in this workbook");
+        }
+        if (nameIndex < 0 || nameIndex >= nNames) {
+            throw new IllegalArgumentException("Specified name index " + nameIndex
+                    + " is outside the allowable range (0.." + (nNames-1) + ").");
+        }
+        return _names.get(nameIndex);
+    }
+
+    public Name createName() {
+        throw readOnly();
+    }
+
+    public int getNameIndex(String name) {
+        for (int i = 0; i < _names.size(); i++) {
+            if (_names.get(i).getNameName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void removeName(int index) {
+        throw readOnly();
+    }
+
+    public void removeName(String name) {
+        throw readOnly();
+    }
+
+    public void setPrintArea(int sheetIndex, String reference) {
+        throw readOnly();
+    }
+
+    public void setPrintArea(int sheetIndex, int startColumn, int endColumn, int startRow, int endRow) {
+        throw readOnly();
+    }
+
+    public String getPrintArea(int sheetIndex) {
+        for (CompactName name : _names) {
+            if (name.getNameName().equalsIgnoreCase(XSSFName.BUILTIN_PRINT_AREA)
+                    && name.getSheetIndex() == sheetIndex) {
+                return name.getRefersToFormula();
+            }
+        }
+        return null;
+    }
+
+    public void removePrintArea(int sheetIndex) {
+        throw readOnly();
+    }
+
+    public MissingCellPolicy getMissingCellPolicy() {
+        return _missingCellPolicy;
+    }
+
+    /**
+     * Sets the policy on what to do when getting missing or blank cells from a row.  Missing
+     * cells returned for {@link Row#CREATE_NULL_AS_BLANK} are blank cells that are not added
+     * to the row.
+     */
+    public void setMissingCellPolicy(MissingCellPolicy missingCellPolicy) {
+        _missingCellPolicy = missingCellPolicy;
+    }
+
+    public DataFormat createDataFormat() {
+        return new DataFormat() {
+            public short getFormat(String format) {
+                int idx = BuiltinFormats.getBuiltinFormat(format);
+                if (idx == -1) {
+                    for (Map.Entry<Integer, String> entry : _stylesSource.getNumberFormats().entrySet()) {
+                        if (entry.getValue().equals(format)) {
+                            return entry.getKey().shortValue();
+                        }
+                    }
+                    throw readOnly();
+                }
+                return (short)idx;
+            }
+
+            public String getFormat(short index) {
+                String fmt = _stylesSource.getNumberFormatAt(index);
+                if (fmt == null) fmt = BuiltinFormats.getBuiltinFormat(index);
+                return fmt;
+            }
+        };
+    }
+
+    public int addPicture(byte[] pictureData, int format) {
+        throw readOnly();
+    }
+
+    /**
+     * Pictures are not loaded by compact workbooks
+     *
+     * @return an empty list
+     */
+    public List<? extends PictureData> getAllPictures() {
+        return Collections.emptyList();
+    }
+
+    public CreationHelper getCreationHelper() {
+        if (_creationHelper == null) {
+            _creationHelper = new CreationHelper() {
+                public RichTextString createRichTextString(String text) {
+                    return new XSSFRichTextString(text);
+                }
+
+                public DataFormat createDataFormat() {
+                    return CompactWorkbook.this.createDataFormat();
+                }
+
+                public Hyperlink createHyperlink(int type) {
+                    throw readOnly();
+                }
+
+                /**
+                 * Compact workbooks cannot be evaluated, the cached formula results are
+                 * available from the cells
+                 */
+                public FormulaEvaluator createFormulaEvaluator() {
+                    throw new UnsupportedOperationException("Compact workbooks cannot be evaluated");
+                }
+
+                public ClientAnchor createClientAnchor() {
+                    return new XSSFClientAnchor();
+                }
+            };
+        }
+        return _creationHelper;
+    }
+
+    public boolean isHidden() {
+        return _hidden;
+    }
+
+    public void setHidden(boolean hiddenFlag) {
+        throw readOnly();
+    }
+
+    public boolean isSheetHidden(int sheetIx) {
+        validateSheetIndex(sheetIx);
+        return _sheets.get(sheetIx).getState() == STSheetState.INT_HIDDEN;
+    }
+
+    public boolean isSheetVeryHidden(int sheetIx) {
+        validateSheetIndex(sheetIx);
+        return _sheets.get(sheetIx).getState() == STSheetState.INT_VERY_HIDDEN;
+    }
+
+    public void setSheetHidden(int sheetIx, boolean hidden) {
+        throw readOnly();
+    }
+
+    public void setSheetHidden(int sheetIx, int hidden) {
+        throw readOnly();
+    }
+
+    public void addToolPack(UDFFinder toopack) {
+        throw readOnly();
+    }
+
+    public void setForceFormulaRecalculation(boolean value) {
+        throw readOnly();
+    }
+
+    public boolean getForceFormulaRecalculation() {
+        return _forceFormulaRecalculation;
+    }
+}
@@ -0,0 +1,433 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.POIXMLException;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * Reads a worksheet part with a StAX pull parser, putting the cells into {@link CellStore}s
+ * and the sheet level properties that the compact sheet model exposes (merged regions,
+ * column widths, sheet view and print options) into a {@link SheetProperties}.  Everything
+ * else in the worksheet is skipped.
+ * <p>
+ * Being pull based, the reader can stop after any row and carry on later, which lets a
+ * sheet be read in windows of rows without ever holding all of its cells.
+ * </p>
+ */
+final class SheetDataReader {
+
+    private static XMLInputFactory _factory;
+
+    private final InputStream _is;
+    private final XMLStreamReader _xml;
+    private final SheetProperties _properties = new SheetProperties();
+    /** the store receiving the cells, <code>null</code> while cells are skipped */
+    private CellStore _store;
+    private boolean _headerRead;
+    private boolean _done;
+
+    // parsing state
+    private int _sheetViewCount;
+    private boolean _inRowBreaks;
+    private boolean _inColumnBreaks;
+    private int _rowNum = -1;
+    private int _column;
+    private String _cellType;
+    private int _cellStyle;
+    private boolean _hasValue;
+    private boolean _hasFormula;
+    private String _formulaType;
+    private String _formulaRef;
+    private String _formulaSharedIndex;
+    private boolean _vIsOpen;
+    private boolean _fIsOpen;
+    private boolean _isIsOpen;
+    private boolean _tIsOpen;
+    private int _phoneticDepth;
+    private final StringBuilder _value = new StringBuilder(64);
+    private final StringBuilder _formula = new StringBuilder(64);
+
+    SheetDataReader(InputStream is) throws IOException {
+        _is = is;
+        try {
+            _xml = getFactory().createXMLStreamReader(is);
+        } catch (XMLStreamException e) {
+            is.close();
+            throw new POIXMLException(e);
+        }
+    }
+
+    private static synchronized XMLInputFactory getFactory() {
+        if (_factory == null) {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            _factory = factory;
+        }
+        return _factory;
+    }
+
+    SheetProperties getProperties() {
+        return _properties;
+    }
+
+    /**
+     * @return <code>true</code> once the end of the worksheet has been reached
+     */
+    boolean isDone() {
+        return _done;
+    }
+
+    /**
+     * Reads the worksheet up to its cells, so that the column and view properties are known.
+     */
+    void readHeader() throws IOException {
+        while (!_headerRead) {
+            next();
+        }
+    }
+
+    /**
+     * Reads the whole (remaining) worksheet and finishes the store.
+     *
+     * @param store the store receiving the cells, <code>null</code> to skip them
+     */
+    void readAll(CellStore store) throws IOException {
+        readRows(store, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads up to the specified number of rows into the store and finishes it.
+     *
+     * @param store the store receiving the cells, <code>null</code> to skip them
+     * @return the number of rows read, <code>0</code> once the end of the worksheet is reached
+     */
+    int readRows(CellStore store, int maxRows) throws IOException {
+        _store = store;
+        int startCount = _properties._physicalRowCount;
+        while (!_done && _properties._physicalRowCount - startCount < maxRows) {
+            next();
+        }
+        if (store != null) {
+            store.finish();
+        }
+        _store = null;
+        return _properties._physicalRowCount - startCount;
+    }
+
+    /**
+     * Processes the next parse event
+     */
+    private void next() throws IOException {
+        try {
+            switch (_xml.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    startElement(_xml.getLocalName());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    endElement(_xml.getLocalName());
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    characters();
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    _headerRead = true;
+                    _done = true;
+                    _properties.setComplete();
+                    close();
+                    break;
+            }
+        } catch (XMLStreamException e) {
+            close();
+            throw new POIXMLException(e);
+        }
+    }
+
+    /**
+     * Releases the worksheet stream.  Only needed if the worksheet is not read to its end.
+     */
+    void close() throws IOException {
+        try {
+            _xml.close();
+        } catch (XMLStreamException e) {
+            throw new POIXMLException(e);
+        } finally {
+            _is.close();
+        }
+    }
+
+    private void startElement(String localName) {
+        if ("c".equals(localName)) {
+            startCell();
+        } else if ("v".equals(localName)) {
+            _vIsOpen = true;
+            _hasValue = true;
+            _value.setLength(0);
+        } else if ("f".equals(localName)) {
+            _fIsOpen = true;
+            _hasFormula = true;
+            _formula.setLength(0);
+            _formulaType = getAttribute("t");
+            _formulaRef = getAttribute("ref");
+            _formulaSharedIndex = getAttribute("si");
+        } else if ("is".equals(localName)) {
+            _isIsOpen = true;
+            _hasValue = true;
+            _value.setLength(0);
+        } else if ("t".equals(localName)) {
+            _tIsOpen = _isIsOpen;
+        } else if ("rPh".equals(localName)) {
+            _phoneticDepth++;
+        } else if ("row".equals(localName)) {
+            startRow();
+        } else if ("sheetData".equals(localName)) {
+            _headerRead = true;
+        } else if ("col".equals(localName)) {
+            _properties._columns.add(new SheetProperties.ColumnInfo(getInt("min", 1) - 1, getInt("max", 1) - 1,
+                    getDouble("width", -1), getBoolean("hidden", false), getInt("style", -1)));
+        } else if ("mergeCell".equals(localName)) {
+            String ref = getAttribute("ref");
+            if (ref != null) {
+                _properties._mergedRegions.add(CellRangeAddress.valueOf(ref));
+            }
+        } else if ("sheetView".equals(localName)) {
+            if (_sheetViewCount++ == 0) {
+                _properties._selected = getBoolean("tabSelected", false);
+                _properties._rightToLeft = getBoolean("rightToLeft", false);
+                _properties._displayGridlines = getBoolean("showGridLines", true);
+                _properties._displayZeros = getBoolean("showZeros", true);
+                _properties._displayFormulas = getBoolean("showFormulas", false);
+                _properties._displayRowColHeadings = getBoolean("showRowColHeaders", true);
+                _properties._topLeftCell = getAttribute("topLeftCell");
+            }
+        } else if ("pane".equals(localName)) {
+            if (_sheetViewCount == 1) {
+                _properties._pane = new String[] {
+                        getAttribute("xSplit"), getAttribute("ySplit"), getAttribute("topLeftCell"),
+                        getAttribute("activePane"), getAttribute("state"),
+                };
+            }
+        } else if ("sheetFormatPr".equals(localName)) {
+            _properties._defaultRowHeight = getDouble("defaultRowHeight", 0);
+            _properties._baseColumnWidth = getInt("baseColWidth", 8);
+        } else if ("outlinePr".equals(localName)) {
+            _properties._displayGuts = getBoolean("showOutlineSymbols", true);
+            _properties._rowSumsBelow = getBoolean("summaryBelow", true);
+            _properties._rowSumsRight = getBoolean("summaryRight", true);
+        } else if ("pageSetUpPr".equals(localName)) {
+            _properties._autobreaks = getBoolean("autoPageBreaks", true);
+            _properties._fitToPage = getBoolean("fitToPage", false);
+        } else if ("sheetCalcPr".equals(localName)) {
+            _properties._forceFormulaRecalculation = getBoolean("fullCalcOnLoad", false);
+        } else if ("sheetProtection".equals(localName)) {
+            _properties._protect = getBoolean("sheet", false);
+            _properties._scenarioProtect = getBoolean("scenarios", false);
+        } else if ("printOptions".equals(localName)) {
+            _properties._printGridlines = getBoolean("gridLines", false);
+            _properties._horizontallyCenter = getBoolean("horizontalCentered", false);
+            _properties._verticallyCenter = getBoolean("verticalCentered", false);
+        } else if ("pageMargins".equals(localName)) {
+            _properties._margins = new double[] {
+                    getDouble("left", 0), getDouble("right", 0), getDouble("top", 0),
+                    getDouble("bottom", 0), getDouble("header", 0), getDouble("footer", 0),
+            };
+        } else if ("rowBreaks".equals(localName)) {
+            _inRowBreaks = true;
+        } else if ("colBreaks".equals(localName)) {
+            _inColumnBreaks = true;
+        } else if ("brk".equals(localName)) {
+            Integer id = Integer.valueOf(getInt("id", 0));
+            if (_inRowBreaks) {
+                _properties._rowBreaks.add(id);
+            } else if (_inColumnBreaks) {
+                _properties._columnBreaks.add(id);
+            }
+        }
+    }
+
+    private void endElement(String localName) {
+        if ("c".equals(localName)) {
+            if (_store != null) {
+                endCell();
+            }
+        } else if ("v".equals(localName)) {
+            _vIsOpen = false;
+        } else if ("f".equals(localName)) {
+            _fIsOpen = false;
+        } else if ("is".equals(localName)) {
+            _isIsOpen = false;
+        } else if ("t".equals(localName)) {
+            _tIsOpen = false;
+        } else if ("rPh".equals(localName)) {
+            _phoneticDepth--;
+        } else if ("row".equals(localName)) {
+            _properties._physicalRowCount++;
+        } else if ("rowBreaks".equals(localName)) {
+            _inRowBreaks = false;
+        } else if ("colBreaks".equals(localName)) {
+            _inColumnBreaks = false;
+        }
+    }
+
+    private void characters() {
+        if (_store == null) {
+            return;
+        }
+        if (_vIsOpen || (_tIsOpen && _phoneticDepth == 0)) {
+            _value.append(_xml.getTextCharacters(), _xml.getTextStart(), _xml.getTextLength());
+        } else if (_fIsOpen) {
+            _formula.append(_xml.getTextCharacters(), _xml.getTextStart(), _xml.getTextLength());
+        }
+    }
+
+    private void startRow() {
+        String r = getAttribute("r");
+        _rowNum = r == null ? _rowNum + 1 : Integer.parseInt(r) - 1;
+        if (_properties._firstRowNum == -1) {
+            _properties._firstRowNum = _rowNum;
+        }
+        _properties._lastRowNum = Math.max(_properties._lastRowNum, _rowNum);
+        if (_store != null) {
+            String ht = getAttribute("ht");
+            short height = ht == null ? -1 : (short)(Double.parseDouble(ht) * 20);
+            _store.addRow(_rowNum, height, getInt("s", -1), getBoolean("hidden", false));
+        }
+        _column = -1;
+    }
+
+    private void startCell() {
+        if (_store == null) {
+            return;
+        }
+        String r = getAttribute("r");
+        _column = r == null ? _column + 1 : getColumnIndex(r);
+        _cellType = getAttribute("t");
+        _cellStyle = getInt("s", 0);
+        _hasValue = false;
+        _hasFormula = false;
+        _value.setLength(0);
+    }
+
+    private void endCell() {
+        int cellIndex = addCellValue();
+        if (!_hasFormula) {
+            return;
+        }
+        String formula = _formula.toString();
+        if ("shared".equals(_formulaType) && _formulaSharedIndex != null) {
+            int si = Integer.parseInt(_formulaSharedIndex);
+            if (_formulaRef != null && formula.length() > 0) {
+                _store.addSharedFormulaGroup(si, formula, CellRangeAddress.valueOf(_formulaRef));
+                _store.setFormula(cellIndex, formula);
+            } else {
+                _store.setSharedFormula(cellIndex, si);
+            }
+            return;
+        }
+        if ("array".equals(_formulaType) && _formulaRef != null) {
+            _store.addArrayFormula(formula, CellRangeAddress.valueOf(_formulaRef));
+        }
+        _store.setFormula(cellIndex, formula);
+    }
+
+    /**
+     * Adds the cell with its value, or with the cached result for formula cells
+     */
+    private int addCellValue() {
+        String value = _value.toString();
+        if ("s".equals(_cellType)) {
+            if (!_hasValue) {
+                return _store.addLocalStringCell(_column, _cellStyle, "");
+            }
+            return _store.addSharedStringCell(_column, _cellStyle, Integer.parseInt(value.trim()));
+        }
+        if ("inlineStr".equals(_cellType) || "str".equals(_cellType) || "d".equals(_cellType)) {
+            return _store.addLocalStringCell(_column, _cellStyle, value);
+        }
+        if ("b".equals(_cellType)) {
+            boolean bool = _hasValue && ("1".equals(value.trim()) || "true".equalsIgnoreCase(value.trim()));
+            return _store.addBooleanCell(_column, _cellStyle, bool);
+        }
+        if ("e".equals(_cellType)) {
+            byte errorCode = _hasValue && value.length() > 0 ? FormulaError.forString(value).getCode() : 0;
+            return _store.addErrorCell(_column, _cellStyle, errorCode);
+        }
+        if (!_hasValue || value.length() == 0) {
+            // ooxml encodes blank cells as numeric cells without a value, formulas without
+            // a cached value are treated as having a numeric zero result
+            if (_hasFormula) {
+                return _store.addNumericCell(_column, _cellStyle, 0.0);
+            }
+            return _store.addBlankCell(_column, _cellStyle);
+        }
+        return _store.addNumericCell(_column, _cellStyle, Double.parseDouble(value));
+    }
+
+    /**
+     * @return the zero-based column index of an A1 style cell reference, without creating
+     * any objects
+     */
+    static int getColumnIndex(String cellRef) {
+        int result = 0;
+        for (int i = 0; i < cellRef.length(); i++) {
+            char ch = cellRef.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                result = result * 26 + (ch - 'A' + 1);
+            } else if (ch >= 'a' && ch <= 'z') {
+                result = result * 26 + (ch - 'a' + 1);
+            } else if (ch != '$') {
+                break;
+            }
+        }
+        return result - 1;
+    }
+
+    private String getAttribute(String name) {
+        return _xml.getAttributeValue(null, name);
+    }
+
+    private boolean getBoolean(String name, boolean defaultValue) {
+        String value = getAttribute(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        return "1".equals(value) || "true".equals(value);
+    }
+
+    private int getInt(String name, int defaultValue) {
+        String value = getAttribute(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private double getDouble(String name, double defaultValue) {
+        String value = getAttribute(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
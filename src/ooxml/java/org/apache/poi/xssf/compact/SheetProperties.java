@@ -0,0 +1,121 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * The sheet level properties of a worksheet exposed by the compact sheet model, as read by
+ * {@link SheetDataReader}.
+ * <p>
+ * The worksheet XML defines the column and view properties before the cells, and the merged
+ * regions, page breaks and print options after them.  A sheet read in windows of rows only
+ * knows the latter once the whole worksheet has been read, see {@link #isComplete()}.
+ * </p>
+ */
+final class SheetProperties {
+
+    /**
+     * The properties of a range of columns, as given by a <tt>col</tt> element
+     */
+    static final class ColumnInfo {
+        final int _firstColumn;
+        final int _lastColumn;
+        /** in characters, negative if not set */
+        final double _width;
+        final boolean _hidden;
+        /** negative if not set */
+        final int _style;
+
+        ColumnInfo(int firstColumn, int lastColumn, double width, boolean hidden, int style) {
+            _firstColumn = firstColumn;
+            _lastColumn = lastColumn;
+            _width = width;
+            _hidden = hidden;
+            _style = style;
+        }
+        boolean contains(int column) {
+            return _firstColumn <= column && column <= _lastColumn;
+        }
+    }
+
+    final List<CellRangeAddress> _mergedRegions = new ArrayList<CellRangeAddress>();
+    final List<ColumnInfo> _columns = new ArrayList<ColumnInfo>();
+    final List<Integer> _rowBreaks = new ArrayList<Integer>();
+    final List<Integer> _columnBreaks = new ArrayList<Integer>();
+
+    double _defaultRowHeight;
+    int _baseColumnWidth = 8;
+
+    boolean _selected;
+    boolean _rightToLeft;
+    boolean _displayGridlines = true;
+    boolean _displayZeros = true;
+    boolean _displayFormulas;
+    boolean _displayRowColHeadings = true;
+    String _topLeftCell;
+    /** xSplit, ySplit, topLeftCell, activePane and state of the pane, or <code>null</code> */
+    String[] _pane;
+
+    boolean _autobreaks = true;
+    boolean _fitToPage;
+    boolean _displayGuts = true;
+    boolean _rowSumsBelow = true;
+    boolean _rowSumsRight = true;
+    boolean _forceFormulaRecalculation;
+
+    boolean _protect;
+    boolean _scenarioProtect;
+
+    boolean _printGridlines;
+    boolean _horizontallyCenter;
+    boolean _verticallyCenter;
+    /** left, right, top, bottom, header and footer, or <code>null</code> */
+    double[] _margins;
+
+    /** the number of <tt>row</tt> elements, and the first and last row number (<code>-1</code> if there is none) */
+    int _physicalRowCount;
+    int _firstRowNum = -1;
+    int _lastRowNum = -1;
+
+    private boolean _complete;
+
+    /**
+     * @return <code>true</code> once the whole worksheet has been read
+     */
+    boolean isComplete() {
+        return _complete;
+    }
+
+    void setComplete() {
+        _complete = true;
+    }
+
+    ColumnInfo getColumnInfo(int columnIndex) {
+        for (int i = 0; i < _columns.size(); i++) {
+            ColumnInfo col = _columns.get(i);
+            if (col.contains(columnIndex)) {
+                return col;
+            }
+        }
+        return null;
+    }
+}
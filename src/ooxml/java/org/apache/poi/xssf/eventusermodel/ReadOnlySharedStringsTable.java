@@ -18,6 +18,7 @@ package org.apache.poi.xssf.eventusermodel;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,6 +30,7 @@ import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.openxml4j.opc.PackageRelationship;
 import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.util.FileBackedStringTable;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
@@ -74,6 +76,9 @@ import org.xml.sax.helpers.DefaultHandler;
  &lt;/si>
 &lt;/sst>
 * </pre>
+ * <p>For workbooks with millions of unique strings, the strings can be kept in a
+ *  memory mapped temporary file instead of on the heap, see
+ *  {@link #ReadOnlySharedStringsTable(OPCPackage, boolean)}.
  *
  */
 public class ReadOnlySharedStringsTable extends DefaultHandler {
@@ -95,6 +100,16 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      */
     private List<String> strings;
 
+    /**
+     * Whether the strings are kept in {@link #fileStrings} rather than on the heap.
+     */
+    private final boolean fileBacked;
+
+    /**
+     * The file backed shared strings table, or <code>null</code>.
+     */
+    private FileBackedStringTable fileStrings;
+
     /**
      * @param pkg
      * @throws IOException
@@ -103,6 +118,19 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      */
     public ReadOnlySharedStringsTable(OPCPackage pkg)
             throws IOException, SAXException {
+        this(pkg, false);
+    }
+
+    /**
+     * @param pkg
+     * @param fileBacked whether to keep the strings in a temporary file instead of on the heap,
+     *  call {@link #close()} to delete the file when done
+     * @throws IOException
+     * @throws SAXException
+     */
+    public ReadOnlySharedStringsTable(OPCPackage pkg, boolean fileBacked)
+            throws IOException, SAXException {
+        this.fileBacked = fileBacked;
         ArrayList<PackagePart> parts =
                 pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
 
@@ -122,6 +150,21 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      */
     public ReadOnlySharedStringsTable(PackagePart part, PackageRelationship rel_ignored)
             throws IOException, SAXException {
+        this(part, rel_ignored, false);
+    }
+
+    /**
+     * Like POIXMLDocumentPart constructor
+     *
+     * @param part
+     * @param rel_ignored
+     * @param fileBacked whether to keep the strings in a temporary file instead of on the heap,
+     *  call {@link #close()} to delete the file when done
+     * @throws IOException
+     */
+    public ReadOnlySharedStringsTable(PackagePart part, PackageRelationship rel_ignored, boolean fileBacked)
+            throws IOException, SAXException {
+        this.fileBacked = fileBacked;
         readFrom(part.getInputStream());
     }
 
@@ -175,6 +218,9 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      * @return the item at the specified position in this Shared String table.
      */
     public String getEntryAt(int idx) {
+        if (fileStrings != null) {
+            return fileStrings.getEntryAt(idx);
+        }
         return strings.get(idx);
     }
 
@@ -182,6 +228,17 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
         return strings;
     }
 
+    /**
+     * Deletes the temporary file of a file backed table. The table can not be
+     * used afterwards.
+     */
+    public void close() throws IOException {
+        if (fileStrings != null) {
+            fileStrings.close();
+            fileStrings = null;
+        }
+    }
+
     //// ContentHandler methods ////
 
     private StringBuffer characters;
@@ -195,7 +252,24 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
             String uniqueCount = attributes.getValue("uniqueCount");
             if(uniqueCount != null) this.uniqueCount = Integer.parseInt(uniqueCount);
 
-            this.strings = new ArrayList<String>(this.uniqueCount);
+            if (fileBacked) {
+                try {
+                    close();
+                    fileStrings = new FileBackedStringTable(false);
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+                this.strings = new AbstractList<String>() {
+                    public String get(int index) {
+                        return fileStrings.getEntryAt(index);
+                    }
+                    public int size() {
+                        return fileStrings.size();
+                    }
+                };
+            } else {
+                this.strings = new ArrayList<String>(this.uniqueCount);
+            }
 
             characters = new StringBuffer();
         } else if ("si".equals(name)) {
@@ -208,7 +282,11 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
     public void endElement(String uri, String localName, String name)
             throws SAXException {
         if ("si".equals(name)) {
-            strings.add(characters.toString());
+            if (fileStrings != null) {
+                fileStrings.append(characters.toString());
+            } else {
+                strings.add(characters.toString());
+            }
         } else if ("t".equals(name)) {
            tIsOpen = false;
         }
@@ -21,7 +21,15 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.poi.POIXMLException;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
@@ -33,6 +41,8 @@ import org.apache.poi.openxml4j.opc.PackageRelationship;
 import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
 import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
 import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
 import org.apache.poi.xssf.model.CommentsTable;
 import org.apache.poi.xssf.model.SharedStringsTable;
 import org.apache.poi.xssf.model.StylesTable;
@@ -42,6 +52,9 @@ import org.apache.xmlbeans.XmlException;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheet;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 /**
  * This class makes it easy to get at individual parts
@@ -160,6 +173,97 @@ public class XSSFReader {
         return new SheetIterator(workbookPart);
     }
 
+    /**
+     * Parses all the sheets concurrently, passing the rows and cells of
+     *  each to the {@link SheetContentsHandler} the factory creates for it.
+     * <p>
+     * Every sheet is parsed by a task on the supplied executor, with a
+     *  SAX parser and a {@link DataFormatter} of its own. The styles and
+     *  shared strings tables are only read while parsing, so one of each is
+     *  shared by all the tasks. The events of any one sheet arrive in order
+     *  on one thread, but the sheets are parsed at the same time, so a
+     *  handler returned for more than one sheet must be thread-safe.
+     * </p>
+     *
+     * @param styles the styles of the workbook, see {@link #getStylesTable()}
+     * @param strings the shared strings of the workbook
+     * @param handlers creates the handler for each sheet, called on the
+     *  calling thread in sheet order
+     * @param formulasNotResults whether to output the formulas of formula
+     *  cells rather than their cached results
+     * @param executor runs the tasks parsing the sheets
+     */
+    public void processSheets(final StylesTable styles, final ReadOnlySharedStringsTable strings,
+            SheetContentsHandlerFactory handlers, final boolean formulasNotResults,
+            ExecutorService executor) throws IOException, SAXException, InvalidFormatException {
+        SheetIterator iter = new SheetIterator(workbookPart);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; iter.hasNext(); i++) {
+            final PackagePart sheetPart = iter.nextSheetPart();
+            final SheetContentsHandler handler = handlers.createHandler(i, iter.getSheetName());
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws IOException, SAXException {
+                    InputStream stream = sheetPart.getInputStream();
+                    try {
+                        XMLReader sheetParser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+                        sheetParser.setContentHandler(new XSSFSheetXMLHandler(
+                                styles, strings, handler, new DataFormatter(), formulasNotResults));
+                        sheetParser.parse(new InputSource(stream));
+                    } catch (ParserConfigurationException e) {
+                        throw new RuntimeException("SAX parser appears to be broken - " + e.getMessage());
+                    } finally {
+                        stream.close();
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                cancelAll(futures);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                cancelAll(futures);
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof SAXException) {
+                    throw (SAXException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    private static void cancelAll(List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Creates the handlers for the sheets parsed by
+     *  {@link XSSFReader#processSheets(StylesTable, ReadOnlySharedStringsTable, SheetContentsHandlerFactory, boolean, ExecutorService)}
+     */
+    public interface SheetContentsHandlerFactory {
+        /**
+         * @param sheetIndex the (zero based) index of the sheet, in workbook order
+         * @param sheetName the name of the sheet
+         * @return the handler for the rows and cells of the sheet
+         */
+        public SheetContentsHandler createHandler(int sheetIndex, String sheetName);
+    }
+
     /**
      * Iterator over sheet data.
      */
@@ -228,17 +332,21 @@ public class XSSFReader {
          * @return input stream of the next sheet in the iteration
          */
         public InputStream next() {
-            ctSheet = sheetIterator.next();
-
-            String sheetId = ctSheet.getId();
             try {
-                PackagePart sheetPkg = sheetMap.get(sheetId);
-                return sheetPkg.getInputStream();
+                return nextSheetPart().getInputStream();
             } catch(IOException e) {
                 throw new POIXMLException(e);
             }
         }
 
+        /**
+         * Moves on to the next sheet without opening it
+         */
+        PackagePart nextSheetPart() {
+            ctSheet = sheetIterator.next();
+            return sheetMap.get(ctSheet.getId());
+        }
+
         /**
          * Returns name of the current sheet
          *
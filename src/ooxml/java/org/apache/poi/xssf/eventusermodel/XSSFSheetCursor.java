@@ -0,0 +1,959 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.xssf.eventusermodel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.apache.poi.POIXMLException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+/**
+ * A pull based reader of the rows and cells of a sheet#.xml worksheet part
+ *  of a XSSF .xlsx file, for the fastest possible reading of cell values.
+ * <p>
+ * Rather than going through a SAX or StAX parser, the cursor scans the bytes
+ *  of the part itself, and only looks at the elements and attributes needed
+ *  for the cells, so reading a cell creates no objects. The row and column
+ *  of the current cell, its style index, its type, a numeric value and the
+ *  index of a shared string are all available as primitives. Only text
+ *  values, formulas and error codes are turned into Strings, and only
+ *  when they are fetched. Numbers are parsed from the bytes when fetched,
+ *  without an intermediate String for all but unusually precise values.
+ * </p>
+ * <p>
+ * Example:
+ * <pre>
+ * XSSFSheetCursor cursor = new XSSFSheetCursor(sheetInputStream, null);
+ * while (cursor.nextRow()) {
+ *     while (cursor.nextCell()) {
+ *         if (cursor.getCellType() == Cell.CELL_TYPE_NUMERIC) {
+ *             total += cursor.getNumericCellValue();
+ *         }
+ *     }
+ * }
+ * cursor.close();
+ * </pre>
+ * </p>
+ * <p>
+ * The worksheet is expected to be UTF-8 encoded, as Excel writes it, but
+ *  UTF-16 with a byte order mark is converted first.
+ * </p>
+ */
+public final class XSSFSheetCursor implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // the elements of interest
+    private static final int OTHER = 0;
+    private static final int SHEET_DATA = 1;
+    private static final int ROW = 2;
+    private static final int CELL = 3;
+    private static final int VALUE = 4;
+    private static final int FORMULA = 5;
+    private static final int INLINE_STRING = 6;
+    private static final int TEXT = 7;
+    private static final int PHONETIC_RUN = 8;
+
+    // the cell types, from the t attribute
+    private static final int TYPE_NUMBER = 0;
+    private static final int TYPE_SHARED_STRING = 1;
+    private static final int TYPE_INLINE_STRING = 2;
+    private static final int TYPE_STRING = 3;
+    private static final int TYPE_BOOLEAN = 4;
+    private static final int TYPE_ERROR = 5;
+    private static final int TYPE_DATE = 6;
+
+    // where text is captured
+    private static final int CAPTURE_NONE = 0;
+    private static final int CAPTURE_VALUE = 1;
+    private static final int CAPTURE_FORMULA = 2;
+
+    /** the powers of ten which are exact doubles */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+    /** doubles hold integers of up to 15 decimal digits exactly */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private static final byte[] AMP = { '&', 'a', 'm', 'p', ';' };
+    private static final byte[] LT = { '&', 'l', 't', ';' };
+
+    private final InputStream _is;
+    private final ReadOnlySharedStringsTable _strings;
+    private byte[] _buf = new byte[BUFFER_SIZE];
+    private int _pos;
+    private int _limit;
+    private boolean _eof;
+
+    // the tag just read
+    private final byte[] _name = new byte[16];
+    private int _element;
+    private boolean _endTag;
+    private boolean _emptyTag;
+    private byte[] _attributeValue = new byte[32];
+    private int _attributeValueLength;
+    private int _capture = CAPTURE_NONE;
+    private final byte[] _single = new byte[1];
+
+    // the current row and cell
+    private boolean _done;
+    private boolean _rowOpen;
+    private int _rowNum = -1;
+    private int _refRowNum;
+    private int _column = -1;
+    private int _refColumn;
+    private int _style;
+    private int _type;
+    private boolean _hasValue;
+    private boolean _hasFormula;
+    private boolean _inInlineString;
+    private int _phoneticDepth;
+    private byte[] _value = new byte[64];
+    private int _valueLength;
+    private byte[] _formula = new byte[64];
+    private int _formulaLength;
+
+    /**
+     * @param is the worksheet part, as from {@link XSSFReader#getSheet(String)}
+     * @param strings the shared strings of the workbook, used to fetch the text of
+     *  shared string cells, or <code>null</code> to only use their indexes
+     */
+    public XSSFSheetCursor(InputStream is, ReadOnlySharedStringsTable strings) throws IOException {
+        _is = is;
+        _strings = strings;
+        if (fill() && _limit >= 2 && ((_buf[0] == (byte)0xFE && _buf[1] == (byte)0xFF)
+                || (_buf[0] == (byte)0xFF && _buf[1] == (byte)0xFE))) {
+            convertFromUTF16();
+        }
+    }
+
+    private void convertFromUTF16() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        do {
+            bytes.write(_buf, _pos, _limit - _pos);
+        } while (fill());
+        _buf = new String(bytes.toByteArray(), "UTF-16").getBytes("UTF-8");
+        _pos = 0;
+        _limit = _buf.length;
+    }
+
+    /**
+     * Releases the worksheet stream
+     */
+    public void close() throws IOException {
+        _done = true;
+        _rowOpen = false;
+        _is.close();
+    }
+
+    /**
+     * Moves on to the next row, skipping any cells of the current row not read.
+     *
+     * @return <code>false</code> once there are no more rows
+     */
+    public boolean nextRow() throws IOException {
+        _capture = CAPTURE_NONE;
+        while (!_done && nextTag()) {
+            if (_element == ROW) {
+                if (_endTag) {
+                    _rowOpen = false;
+                } else {
+                    _rowOpen = !_emptyTag;
+                    return true;
+                }
+            } else if (_element == SHEET_DATA && (_endTag || _emptyTag)) {
+                _done = true;
+            }
+        }
+        _done = true;
+        _rowOpen = false;
+        return false;
+    }
+
+    /**
+     * Moves on to the next cell of the current row.
+     *
+     * @return <code>false</code> once there are no more cells in the row
+     */
+    public boolean nextCell() throws IOException {
+        _capture = CAPTURE_NONE;
+        while (_rowOpen && nextTag()) {
+            if (_element == ROW && _endTag) {
+                _rowOpen = false;
+            } else if (_element == CELL && !_endTag) {
+                if (!_emptyTag) {
+                    readCellContents();
+                }
+                return true;
+            }
+        }
+        _rowOpen = false;
+        return false;
+    }
+
+    private void readCellContents() throws IOException {
+        while (nextTag()) {
+            switch (_element) {
+                case VALUE:
+                    if (!_endTag) {
+                        _hasValue = true;
+                        _valueLength = 0;
+                    }
+                    _capture = _endTag || _emptyTag ? CAPTURE_NONE : CAPTURE_VALUE;
+                    break;
+                case FORMULA:
+                    if (!_endTag) {
+                        _hasFormula = true;
+                        _formulaLength = 0;
+                    }
+                    _capture = _endTag || _emptyTag ? CAPTURE_NONE : CAPTURE_FORMULA;
+                    break;
+                case INLINE_STRING:
+                    if (!_endTag) {
+                        _hasValue = true;
+                        _valueLength = 0;
+                    }
+                    _inInlineString = !_endTag && !_emptyTag;
+                    break;
+                case TEXT:
+                    // the runs of a rich inline string, without any phonetic text
+                    _capture = _inInlineString && _phoneticDepth == 0 && !_endTag && !_emptyTag
+                            ? CAPTURE_VALUE : CAPTURE_NONE;
+                    break;
+                case PHONETIC_RUN:
+                    if (!_emptyTag) {
+                        _phoneticDepth += _endTag ? -1 : 1;
+                    }
+                    break;
+                case CELL:
+                    if (_endTag) {
+                        _capture = CAPTURE_NONE;
+                        return;
+                    }
+                    break;
+            }
+        }
+        throw new POIXMLException("Unexpected end of the worksheet in cell " + _column + " of row " + _rowNum);
+    }
+
+    /**
+     * @return the (zero based) row number of the current row
+     */
+    public int getRowNum() {
+        return _rowNum;
+    }
+
+    /**
+     * @return the (zero based) column index of the current cell
+     */
+    public int getColumnIndex() {
+        return _column;
+    }
+
+    /**
+     * @return the index of the style of the current cell, <code>0</code> for the default style
+     */
+    public int getStyleIndex() {
+        return _style;
+    }
+
+    /**
+     * @return the type of the current cell, {@link Cell#CELL_TYPE_FORMULA} for formulas,
+     *  whose result type is given by {@link #getCachedFormulaResultType()}
+     */
+    public int getCellType() {
+        return _hasFormula ? Cell.CELL_TYPE_FORMULA : getValueType();
+    }
+
+    /**
+     * @return the type of the cached result of the current formula cell
+     */
+    public int getCachedFormulaResultType() {
+        if (!_hasFormula) {
+            throw new IllegalStateException("Only formula cells have cached results");
+        }
+        return getValueType();
+    }
+
+    private int getValueType() {
+        switch (_type) {
+            case TYPE_SHARED_STRING:
+            case TYPE_INLINE_STRING:
+            case TYPE_STRING:
+            case TYPE_DATE:
+                return Cell.CELL_TYPE_STRING;
+            case TYPE_BOOLEAN:
+                return Cell.CELL_TYPE_BOOLEAN;
+            case TYPE_ERROR:
+                return Cell.CELL_TYPE_ERROR;
+        }
+        if (_hasValue && _valueLength > 0) {
+            return Cell.CELL_TYPE_NUMERIC;
+        }
+        // formulas without a cached value are taken to have a numeric zero result
+        return _hasFormula ? Cell.CELL_TYPE_NUMERIC : Cell.CELL_TYPE_BLANK;
+    }
+
+    /**
+     * @return whether the current cell refers to a string in the shared strings table
+     */
+    public boolean isSharedString() {
+        return _type == TYPE_SHARED_STRING && _hasValue;
+    }
+
+    /**
+     * @return the index into the shared strings table of the current shared string cell
+     */
+    public int getSharedStringIndex() {
+        if (!isSharedString()) {
+            throw new IllegalStateException("Not a shared string cell");
+        }
+        int result = 0;
+        for (int i = 0; i < _valueLength; i++) {
+            int digit = _value[i] - '0';
+            if (digit < 0 || digit > 9 || result > (Integer.MAX_VALUE - 9) / 10) {
+                return Integer.parseInt(getValueString().trim());
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * @return the value of the current numeric cell, or the cached result of a formula cell
+     */
+    public double getNumericCellValue() {
+        switch (getValueType()) {
+            case Cell.CELL_TYPE_BLANK:
+                return 0.0;
+            case Cell.CELL_TYPE_NUMERIC:
+                if (!_hasValue || _valueLength == 0) {
+                    return 0.0;
+                }
+                return parseNumber();
+        }
+        throw new IllegalStateException("Cannot get a numeric value from a non-numeric cell");
+    }
+
+    /**
+     * @return the text of the current string cell. The text of shared strings can only be
+     *  fetched if a shared strings table was given
+     */
+    public String getStringCellValue() {
+        switch (_type) {
+            case TYPE_SHARED_STRING:
+                if (!_hasValue) {
+                    return "";
+                }
+                if (_strings == null) {
+                    throw new IllegalStateException("No shared strings table, use getSharedStringIndex()");
+                }
+                return _strings.getEntryAt(getSharedStringIndex());
+            case TYPE_INLINE_STRING:
+            case TYPE_STRING:
+            case TYPE_DATE:
+                return getValueString();
+        }
+        if (getValueType() == Cell.CELL_TYPE_BLANK) {
+            return "";
+        }
+        throw new IllegalStateException("Cannot get a text value from a non-string cell");
+    }
+
+    public boolean getBooleanCellValue() {
+        if (_type != TYPE_BOOLEAN) {
+            throw new IllegalStateException("Cannot get a boolean value from a non-boolean cell");
+        }
+        if (_valueLength == 1) {
+            return _value[0] == '1';
+        }
+        String value = getValueString().trim();
+        return "1".equals(value) || "true".equalsIgnoreCase(value);
+    }
+
+    /**
+     * @return the error code of the current error cell, as in {@link FormulaError}
+     */
+    public byte getErrorCellValue() {
+        if (_type != TYPE_ERROR) {
+            throw new IllegalStateException("Cannot get an error value from a non-error cell");
+        }
+        if (!_hasValue || _valueLength == 0) {
+            return 0;
+        }
+        return FormulaError.forString(getValueString()).getCode();
+    }
+
+    /**
+     * @return whether the current cell has a formula
+     */
+    public boolean isFormula() {
+        return _hasFormula;
+    }
+
+    /**
+     * @return the formula of the current cell, <code>null</code> if it has none. Cells of
+     *  a shared formula other than the first have an empty formula
+     */
+    public String getCellFormula() {
+        return _hasFormula ? decode(_formula, _formulaLength) : null;
+    }
+
+    private String getValueString() {
+        return decode(_value, _valueLength);
+    }
+
+    /**
+     * Parses the value as a double. Values of up to 15 digits with a small
+     *  exponent are exactly the quotient or product of two doubles, and hence
+     *  correctly rounded by a single division or multiplication, the rest are
+     *  left to {@link Double#parseDouble(String)}.
+     */
+    private double parseNumber() {
+        byte[] b = _value;
+        int i = 0;
+        int end = _valueLength;
+        boolean negative = false;
+        if (b[i] == '-' || b[i] == '+') {
+            negative = b[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        for (; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+            anyDigits = true;
+            mantissa = mantissa * 10 + (b[i] - '0');
+            if (mantissa != 0 && ++digits > MAX_EXACT_DIGITS) {
+                return Double.parseDouble(getValueString());
+            }
+        }
+        if (i < end && b[i] == '.') {
+            for (i++; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+                anyDigits = true;
+                mantissa = mantissa * 10 + (b[i] - '0');
+                exponent--;
+                if (mantissa != 0 && ++digits > MAX_EXACT_DIGITS) {
+                    return Double.parseDouble(getValueString());
+                }
+            }
+        }
+        if (anyDigits && i < end && (b[i] == 'e' || b[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (b[i] == '-' || b[i] == '+')) {
+                negativeExponent = b[i] == '-';
+                i++;
+            }
+            int e = 0;
+            boolean anyExponentDigits = false;
+            for (; i < end && b[i] >= '0' && b[i] <= '9' && e < 1000; i++) {
+                anyExponentDigits = true;
+                e = e * 10 + (b[i] - '0');
+            }
+            if (!anyExponentDigits) {
+                return Double.parseDouble(getValueString());
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!anyDigits || i != end) {
+            // whitespace, entities or something unusual
+            return Double.parseDouble(getValueString().trim());
+        }
+        double result;
+        if (mantissa == 0) {
+            result = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            result = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            result = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.parseDouble(getValueString());
+        }
+        return negative ? -result : result;
+    }
+
+    //// Scanning ////
+
+    private boolean fill() throws IOException {
+        if (_eof) {
+            return false;
+        }
+        int count;
+        do {
+            count = _is.read(_buf, 0, _buf.length);
+        } while (count == 0);
+        if (count < 0) {
+            _eof = true;
+            _pos = _limit = 0;
+            return false;
+        }
+        _pos = 0;
+        _limit = count;
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (_pos >= _limit && !fill()) {
+            return -1;
+        }
+        return _buf[_pos++] & 0xFF;
+    }
+
+    /**
+     * Reads up to and including the next start or end tag, capturing the text before it
+     *  if wanted.
+     *
+     * @return <code>false</code> at the end of the worksheet
+     */
+    private boolean nextTag() throws IOException {
+        while (true) {
+            while (true) {
+                byte[] buf = _buf;
+                int start = _pos;
+                int p = start;
+                int limit = _limit;
+                while (p < limit && buf[p] != '<') {
+                    p++;
+                }
+                if (_capture != CAPTURE_NONE && p > start) {
+                    capture(buf, start, p - start);
+                }
+                if (p < limit) {
+                    _pos = p + 1;
+                    break;
+                }
+                _pos = p;
+                if (!fill()) {
+                    return false;
+                }
+            }
+
+            int b = read();
+            if (b == '/') {
+                _endTag = true;
+                _emptyTag = false;
+                b = readElementName(read());
+                while (b != '>') {
+                    if (b == -1) {
+                        throw unexpectedEnd();
+                    }
+                    b = read();
+                }
+                return true;
+            }
+            if (b == '?') {
+                skipPast('?', 1);
+            } else if (b == '!') {
+                readDeclaration();
+            } else {
+                _endTag = false;
+                b = readElementName(b);
+                startElement();
+                readAttributes(b);
+                if (_element == ROW) {
+                    _rowNum = _refRowNum >= 0 ? _refRowNum : _rowNum + 1;
+                    _column = -1;
+                } else if (_element == CELL) {
+                    _column = _refColumn >= 0 ? _refColumn : _column + 1;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads the name of an element, without any namespace prefix
+     *
+     * @return the byte after the name
+     */
+    private int readElementName(int b) throws IOException {
+        int length = 0;
+        while (b > ' ' && b != '/' && b != '>') {
+            if (b == ':') {
+                length = 0;
+            } else {
+                if (length < _name.length) {
+                    _name[length] = (byte)b;
+                }
+                length++;
+            }
+            b = read();
+        }
+        _element = getElement(length);
+        return b;
+    }
+
+    private int getElement(int length) {
+        byte[] n = _name;
+        switch (length) {
+            case 1:
+                switch (n[0]) {
+                    case 'c': return CELL;
+                    case 'v': return VALUE;
+                    case 'f': return FORMULA;
+                    case 't': return TEXT;
+                }
+                break;
+            case 2:
+                if (n[0] == 'i' && n[1] == 's') {
+                    return INLINE_STRING;
+                }
+                break;
+            case 3:
+                if (n[0] == 'r' && n[1] == 'o' && n[2] == 'w') {
+                    return ROW;
+                }
+                if (n[0] == 'r' && n[1] == 'P' && n[2] == 'h') {
+                    return PHONETIC_RUN;
+                }
+                break;
+            case 9:
+                if (matches(n, "sheetData")) {
+                    return SHEET_DATA;
+                }
+                break;
+        }
+        return OTHER;
+    }
+
+    private static boolean matches(byte[] bytes, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (bytes[i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startElement() {
+        if (_element == ROW) {
+            _refRowNum = -1;
+        } else if (_element == CELL) {
+            _refColumn = -1;
+            _style = 0;
+            _type = TYPE_NUMBER;
+            _hasValue = false;
+            _hasFormula = false;
+            _inInlineString = false;
+            _phoneticDepth = 0;
+            _valueLength = 0;
+            _formulaLength = 0;
+        }
+    }
+
+    private void readAttributes(int b) throws IOException {
+        while (true) {
+            while (b != -1 && b <= ' ') {
+                b = read();
+            }
+            if (b == '>') {
+                _emptyTag = false;
+                return;
+            }
+            if (b == '/') {
+                if (read() != '>') {
+                    throw malformed();
+                }
+                _emptyTag = true;
+                return;
+            }
+            if (b == -1) {
+                throw unexpectedEnd();
+            }
+
+            // the name, of interest only if a single character
+            int name = 0;
+            int length = 0;
+            while (b > ' ' && b != '=') {
+                if (b == ':') {
+                    length = 0;
+                } else {
+                    name = b;
+                    length++;
+                }
+                b = read();
+            }
+            while (b != -1 && b <= ' ') {
+                b = read();
+            }
+            if (b != '=') {
+                throw malformed();
+            }
+            do {
+                b = read();
+            } while (b != -1 && b <= ' ');
+            if (b != '"' && b != '\'') {
+                throw malformed();
+            }
+            int quote = b;
+            boolean wanted = length == 1 && isWantedAttribute(name);
+            _attributeValueLength = 0;
+            while ((b = read()) != quote) {
+                if (b == -1) {
+                    throw unexpectedEnd();
+                }
+                if (wanted) {
+                    if (_attributeValueLength == _attributeValue.length) {
+                        _attributeValue = grow(_attributeValue, _attributeValueLength + 1);
+                    }
+                    _attributeValue[_attributeValueLength++] = (byte)b;
+                }
+            }
+            if (wanted) {
+                attribute(name);
+            }
+            b = read();
+        }
+    }
+
+    private boolean isWantedAttribute(int name) {
+        if (_endTag) {
+            return false;
+        }
+        if (_element == ROW) {
+            return name == 'r';
+        }
+        if (_element == CELL) {
+            return name == 'r' || name == 's' || name == 't';
+        }
+        return false;
+    }
+
+    private void attribute(int name) {
+        byte[] v = _attributeValue;
+        int length = _attributeValueLength;
+        if (_element == ROW) {
+            _refRowNum = parseAttributeInt() - 1;
+        } else if (name == 'r') {
+            // the column letters of the cell reference
+            int column = 0;
+            for (int i = 0; i < length; i++) {
+                int ch = v[i];
+                if (ch >= 'A' && ch <= 'Z') {
+                    column = column * 26 + (ch - 'A' + 1);
+                } else if (ch >= 'a' && ch <= 'z') {
+                    column = column * 26 + (ch - 'a' + 1);
+                } else if (ch != '$') {
+                    break;
+                }
+            }
+            _refColumn = column - 1;
+        } else if (name == 's') {
+            _style = parseAttributeInt();
+        } else if (name == 't') {
+            _type = getType(v, length);
+        }
+    }
+
+    private static int getType(byte[] v, int length) {
+        switch (length) {
+            case 1:
+                switch (v[0]) {
+                    case 's': return TYPE_SHARED_STRING;
+                    case 'b': return TYPE_BOOLEAN;
+                    case 'e': return TYPE_ERROR;
+                    case 'd': return TYPE_DATE;
+                }
+                break;
+            case 3:
+                if (matches(v, "str")) {
+                    return TYPE_STRING;
+                }
+                break;
+            case 9:
+                if (matches(v, "inlineStr")) {
+                    return TYPE_INLINE_STRING;
+                }
+                break;
+        }
+        return TYPE_NUMBER;
+    }
+
+    private int parseAttributeInt() {
+        int result = 0;
+        for (int i = 0; i < _attributeValueLength; i++) {
+            int digit = _attributeValue[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(decode(_attributeValue, _attributeValueLength).trim());
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Reads a comment, CDATA section or document type declaration, after the &lt;!
+     */
+    private void readDeclaration() throws IOException {
+        int b = read();
+        if (b == '-') {
+            skipPast('-', 2);
+        } else if (b == '[') {
+            // [CDATA[ ... ]]>, captured with the markup escaped like other text
+            for (int i = 0; i < 6; i++) {
+                read();
+            }
+            int brackets = 0;
+            while (true) {
+                b = read();
+                if (b == -1) {
+                    throw unexpectedEnd();
+                }
+                if (b == '>' && brackets >= 2) {
+                    if (_capture == CAPTURE_VALUE) {
+                        _valueLength -= 2;
+                    } else if (_capture == CAPTURE_FORMULA) {
+                        _formulaLength -= 2;
+                    }
+                    return;
+                }
+                brackets = b == ']' ? brackets + 1 : 0;
+                if (_capture != CAPTURE_NONE) {
+                    if (b == '&') {
+                        capture(AMP, 0, AMP.length);
+                    } else if (b == '<') {
+                        capture(LT, 0, LT.length);
+                    } else {
+                        _single[0] = (byte)b;
+                        capture(_single, 0, 1);
+                    }
+                }
+            }
+        } else {
+            int depth = 0;
+            while (b != '>' || depth > 0) {
+                if (b == -1) {
+                    throw unexpectedEnd();
+                }
+                if (b == '[') {
+                    depth++;
+                } else if (b == ']') {
+                    depth--;
+                }
+                b = read();
+            }
+        }
+    }
+
+    /**
+     * Skips up to and including a &gt; following at least the given number of the given character
+     */
+    private void skipPast(int ch, int count) throws IOException {
+        int run = 0;
+        while (true) {
+            int b = read();
+            if (b == -1) {
+                throw unexpectedEnd();
+            }
+            if (b == '>' && run >= count) {
+                return;
+            }
+            run = b == ch ? run + 1 : 0;
+        }
+    }
+
+    private void capture(byte[] src, int offset, int length) {
+        if (_capture == CAPTURE_VALUE) {
+            if (_valueLength + length > _value.length) {
+                _value = grow(_value, _valueLength + length);
+            }
+            System.arraycopy(src, offset, _value, _valueLength, length);
+            _valueLength += length;
+        } else {
+            if (_formulaLength + length > _formula.length) {
+                _formula = grow(_formula, _formulaLength + length);
+            }
+            System.arraycopy(src, offset, _formula, _formulaLength, length);
+            _formulaLength += length;
+        }
+    }
+
+    private static byte[] grow(byte[] bytes, int minLength) {
+        byte[] result = new byte[Math.max(minLength, bytes.length * 2)];
+        System.arraycopy(bytes, 0, result, 0, bytes.length);
+        return result;
+    }
+
+    /**
+     * Decodes UTF-8 text, replacing entity and character references and normalizing
+     *  line ends as an XML parser would.
+     */
+    private static String decode(byte[] bytes, int length) {
+        String text;
+        try {
+            text = new String(bytes, 0, length, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        if (text.indexOf('&') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '\r') {
+                if (i + 1 >= text.length() || text.charAt(i + 1) != '\n') {
+                    result.append('\n');
+                }
+            } else if (ch == '&') {
+                int end = text.indexOf(';', i);
+                if (end < 0) {
+                    result.append(ch);
+                    continue;
+                }
+                String entity = text.substring(i + 1, end);
+                if ("lt".equals(entity)) {
+                    result.append('<');
+                } else if ("gt".equals(entity)) {
+                    result.append('>');
+                } else if ("amp".equals(entity)) {
+                    result.append('&');
+                } else if ("quot".equals(entity)) {
+                    result.append('"');
+                } else if ("apos".equals(entity)) {
+                    result.append('\'');
+                } else if (entity.startsWith("#x")) {
+                    result.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                } else if (entity.startsWith("#")) {
+                    result.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                } else {
+                    result.append(ch);
+                    continue;
+                }
+                i = end;
+            } else {
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    private static POIXMLException unexpectedEnd() {
+        return new POIXMLException("Unexpected end of the worksheet");
+    }
+
+    private static POIXMLException malformed() {
+        return new POIXMLException("Malformed worksheet XML");
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder;
 import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
 import org.apache.poi.POIXMLDocumentPart;
+import org.apache.poi.util.Internal;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlOptions;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorder;
@@ -68,6 +69,39 @@ public class StylesTable extends POIXMLDocumentPart {
 
 	private final List<CTDxf> dxfs = new ArrayList<CTDxf>();
 
+	/**
+	 * Indexes of the fonts, fills, borders and cell xfs by their value, so
+	 *  that equal entries are found without comparing against every entry
+	 */
+	private final StyleIndex<XSSFFont> fontIndex = new StyleIndex<XSSFFont>() {
+		Object keyOf(XSSFFont font) {
+			return font.getCTFont().toString();
+		}
+	};
+	private final StyleIndex<XSSFCellFill> fillIndex = new StyleIndex<XSSFCellFill>() {
+		Object keyOf(XSSFCellFill fill) {
+			return fill.getCTFill().toString();
+		}
+	};
+	private final StyleIndex<XSSFCellBorder> borderIndex = new StyleIndex<XSSFCellBorder>() {
+		Object keyOf(XSSFCellBorder border) {
+			return border.getCTBorder().toString();
+		}
+	};
+	private final StyleIndex<CTXf> xfIndex = new StyleIndex<CTXf>() {
+		Object keyOf(CTXf xf) {
+			return xf.toString();
+		}
+	};
+	/**
+	 * Index of the cell xfs themselves, XMLBeans objects compare by identity
+	 */
+	private final StyleIndex<CTXf> xfIdentityIndex = new StyleIndex<CTXf>(false) {
+		Object keyOf(CTXf xf) {
+			return xf;
+		}
+	};
+
 	/**
 	 * The first style id available for use as a custom style
 	 */
@@ -136,6 +170,7 @@ public class StylesTable extends POIXMLDocumentPart {
 				for (CTFont font : ctfonts.getFontArray()) {
 				   // Create the font and save it. Themes Table supplied later
 					XSSFFont f = new XSSFFont(font, idx);
+					f.setStylesSource(this);
 					fonts.add(f);
 					idx++;
 				}
@@ -143,14 +178,18 @@ public class StylesTable extends POIXMLDocumentPart {
             CTFills ctfills = styleSheet.getFills();
             if(ctfills != null){
                 for (CTFill fill : ctfills.getFillArray()) {
-                    fills.add(new XSSFCellFill(fill));
+                    XSSFCellFill f = new XSSFCellFill(fill);
+                    f.setStylesSource(this);
+                    fills.add(f);
                 }
             }
 
             CTBorders ctborders = styleSheet.getBorders();
             if(ctborders != null) {
                 for (CTBorder border : ctborders.getBorderArray()) {
-                    borders.add(new XSSFCellBorder(border));
+                    XSSFCellBorder b = new XSSFCellBorder(border);
+                    b.setStylesSource(this);
+                    borders.add(b);
                 }
             }
 
@@ -213,7 +252,7 @@ public class StylesTable extends POIXMLDocumentPart {
 	public int putFont(XSSFFont font, boolean forceRegistration) {
 		int idx = -1;
 		if(!forceRegistration) {
-			idx = fonts.indexOf(font);
+			idx = fontIndex.indexOf(fonts, font);
 		}
 
 		if (idx != -1) {
@@ -221,6 +260,7 @@ public class StylesTable extends POIXMLDocumentPart {
 		}
 		
 		idx = fonts.size();
+		font.setStylesSource(this);
 		fonts.add(font);
 		return idx;
 	}
@@ -241,10 +281,37 @@ public class StylesTable extends POIXMLDocumentPart {
 	public int putStyle(XSSFCellStyle style) {
 		CTXf mainXF = style.getCoreXf();
 
-		if(! xfs.contains(mainXF)) {
+		int idx = xfIdentityIndex.indexOf(xfs, mainXF);
+		if(idx == -1) {
+			idx = xfs.size();
 			xfs.add(mainXF);
 		}
-		return xfs.indexOf(mainXF);
+		return idx;
+	}
+
+	/**
+	 * Returns the cell style with the same number format, font, fill, border,
+	 *  alignment and protection as the given one, registering the given style
+	 *  if there is none yet.
+	 * Styles looked up this way are shared rather than duplicated, so a style
+	 *  can be built up with {@link XSSFCellStyle#XSSFCellStyle(StylesTable)}
+	 *  and its setters for every cell, and only the distinct ones are written.
+	 * Styles are matched by their current values, change a style returned by
+	 *  this method only if every cell using it should change too.
+	 *
+	 * @param style a style of this table, which need not be registered yet
+	 * @return the first registered style equal to the given one
+	 */
+	public XSSFCellStyle getOrCreateStyle(XSSFCellStyle style) {
+		style.verifyBelongsToStylesSource(this);
+		CTXf mainXF = style.getCoreXf();
+
+		int idx = xfIndex.indexOf(xfs, mainXF);
+		if(idx == -1) {
+			idx = putStyle(style);
+			xfIndex.add(mainXF.toString(), idx);
+		}
+		return getStyleAt(idx);
 	}
 
 	public XSSFCellBorder getBorderAt(int idx) {
@@ -252,10 +319,11 @@ public class StylesTable extends POIXMLDocumentPart {
 	}
 
 	public int putBorder(XSSFCellBorder border) {
-		int idx = borders.indexOf(border);
+		int idx = borderIndex.indexOf(borders, border);
 		if (idx != -1) {
 			return idx;
 		}
+		border.setStylesSource(this);
 		borders.add(border);
 		border.setThemesTable(theme);
 		return borders.size() - 1;
@@ -282,10 +350,11 @@ public class StylesTable extends POIXMLDocumentPart {
 	}
 
 	public int putFill(XSSFCellFill fill) {
-		int idx = fills.indexOf(fill);
+		int idx = fillIndex.indexOf(fills, fill);
 		if (idx != -1) {
 			return idx;
 		}
+		fill.setStylesSource(this);
 		fills.add(fill);
 		return fills.size() - 1;
 	}
@@ -299,6 +368,8 @@ public class StylesTable extends POIXMLDocumentPart {
 	}
    public void replaceCellXfAt(int idx, CTXf cellXf) {
       xfs.set(idx, cellXf);
+      xfIndex.clear();
+      xfIdentityIndex.clear();
    }
 
 	public CTXf getCellStyleXfAt(int idx) {
@@ -447,14 +518,20 @@ public class StylesTable extends POIXMLDocumentPart {
 	private void initialize() {
 		//CTFont ctFont = createDefaultFont();
 		XSSFFont xssfFont = createDefaultFont();
+		xssfFont.setStylesSource(this);
 		fonts.add(xssfFont);
 
 		CTFill[] ctFill = createDefaultFills();
-		fills.add(new XSSFCellFill(ctFill[0]));
-		fills.add(new XSSFCellFill(ctFill[1]));
+		for (int i = 0; i < ctFill.length; i++) {
+			XSSFCellFill fill = new XSSFCellFill(ctFill[i]);
+			fill.setStylesSource(this);
+			fills.add(fill);
+		}
 
 		CTBorder ctBorder = createDefaultBorder();
-		borders.add(new XSSFCellBorder(ctBorder));
+		XSSFCellBorder border = new XSSFCellBorder(ctBorder);
+		border.setStylesSource(this);
+		borders.add(border);
 
 		CTXf styleXf = createDefaultXf();
 		styleXfs.add(styleXf);
@@ -500,6 +577,50 @@ public class StylesTable extends POIXMLDocumentPart {
 		return xssfFont;
 	}
 
+	/**
+	 * Called by a font of this table when it is changed in place, so that
+	 *  it is found by its new value
+	 */
+	@Internal
+	public void onFontChanged() {
+		fontIndex.entryChanged();
+	}
+
+	/**
+	 * Called by a fill of this table when it is changed in place
+	 */
+	@Internal
+	public void onFillChanged() {
+		fillIndex.entryChanged();
+	}
+
+	/**
+	 * Called by a border of this table when it is changed in place
+	 */
+	@Internal
+	public void onBorderChanged() {
+		borderIndex.entryChanged();
+	}
+
+	/**
+	 * Called by a cell style when its xf is changed in place, which only
+	 *  matters if the xf is one of the cell xfs of this table
+	 */
+	@Internal
+	public void onCellXfChanged(CTXf xf) {
+		if(xfIdentityIndex.indexOf(xfs, xf) != -1) {
+			xfIndex.entryChanged();
+		}
+	}
+
+	/**
+	 * @return how often the indexes of the fonts, fills, borders and cell xfs
+	 *  have been rebuilt from scratch
+	 */
+	/* package */ int getIndexRebuildCount() {
+		return fontIndex.rebuilds + fillIndex.rebuilds + borderIndex.rebuilds + xfIndex.rebuilds;
+	}
+
 	public CTDxf getDxfAt(int idx) {
 		return dxfs.get(idx);
 	}
@@ -540,4 +661,92 @@ public class StylesTable extends POIXMLDocumentPart {
 		}
 		return null;
 	}
+
+	/**
+	 * Finds entries of one of the style lists by a key, in constant time.
+	 * <p>
+	 * Entries are indexed as they are appended to the list, under the key they
+	 *  have at that time, and only the first entry with a key is kept.  Entries
+	 *  changed in place report it through {@link #entryChanged()}, and the whole
+	 *  list is indexed again with the current keys on the next lookup.  A match
+	 *  is also checked against the current key of the entry, in case it was
+	 *  changed without notice, e.g. through its XMLBeans object.  A miss is
+	 *  trusted, at worst it adds a duplicate entry.
+	 * </p>
+	 */
+	private static abstract class StyleIndex<T> {
+		private final Map<Object, Integer> indexes = new HashMap<Object, Integer>();
+		private final boolean mutableKeys;
+		private int indexed;
+		private int modCount;
+		private int indexedModCount;
+		/** visible for testing */
+		int rebuilds;
+
+		StyleIndex() {
+			this(true);
+		}
+
+		/**
+		 * @param mutableKeys false if the key of an entry never changes, as
+		 *  when entries are keyed by identity
+		 */
+		StyleIndex(boolean mutableKeys) {
+			this.mutableKeys = mutableKeys;
+		}
+
+		abstract Object keyOf(T value);
+
+		/**
+		 * @return the index of the first entry with the same key as the value, or -1
+		 */
+		int indexOf(List<T> values, T value) {
+			Object key = keyOf(value);
+			if(indexedModCount != modCount) {
+				rebuild();
+			}
+			update(values);
+			Integer idx = indexes.get(key);
+			if(idx != null && mutableKeys && !key.equals(keyOf(values.get(idx)))) {
+				rebuild();
+				update(values);
+				idx = indexes.get(key);
+			}
+			return idx == null ? -1 : idx;
+		}
+
+		void add(Object key, int idx) {
+			if(!indexes.containsKey(key)) {
+				indexes.put(key, idx);
+			}
+		}
+
+		/**
+		 * An entry was changed in place, its key may have changed
+		 */
+		void entryChanged() {
+			modCount++;
+		}
+
+		void clear() {
+			indexes.clear();
+			indexed = 0;
+			indexedModCount = modCount;
+		}
+
+		private void rebuild() {
+			clear();
+			rebuilds++;
+		}
+
+		private void update(List<T> values) {
+			if(indexed > values.size()) {
+				// Entries were removed, the indexes have moved
+				clear();
+			}
+			for(; indexed < values.size(); indexed++) {
+				add(keyOf(values.get(indexed)), indexed);
+			}
+		}
+	}
 }
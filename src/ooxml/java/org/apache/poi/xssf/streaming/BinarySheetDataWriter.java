@@ -0,0 +1,417 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.CharArrayWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * Sheet writer that spools the flushed rows in a compact binary encoding instead of XML.
+ * <p>
+ * Every row is a row tag, followed by the row number and attributes and a tagged record per
+ * cell, holding the column, the style index and the value.  Row and column numbers and
+ * indexes are written as variable length integers and numeric values as 8 byte doubles, so a
+ * typical numeric cell takes about 12 bytes instead of 40 bytes of XML.
+ * The <tt>sheetData</tt> XML is rendered only once, row by row, while
+ * {@link #getWorksheetXMLInputStream()} is copied into the workbook file.
+ * </p>
+ */
+public class BinarySheetDataWriter extends SheetDataWriter {
+
+    private static final int ROW = 1;
+    private static final int CELL = 2;
+    private static final int END_ROW = 3;
+
+    private static final int ROW_CUSTOM_HEIGHT = 1;
+    private static final int ROW_HIDDEN = 2;
+    private static final int ROW_FORMATTED = 4;
+    private static final int ROW_OUTLINE = 8;
+
+    // cell value types, combined with CELL_STYLED
+    private static final int CELL_BLANK = 0;
+    private static final int CELL_NUMERIC = 1;
+    private static final int CELL_INLINE_STRING = 2;
+    private static final int CELL_SHARED_STRING = 3;
+    private static final int CELL_BOOLEAN = 4;
+    private static final int CELL_ERROR = 5;
+    private static final int CELL_FORMULA = 6;
+    private static final int CELL_FORMULA_NUMERIC = 7;
+    private static final int CELL_STYLED = 0x10;
+
+    private final boolean _compress;
+    private final DataOutputStream _data;
+
+    public BinarySheetDataWriter() throws IOException {
+        this(null, false);
+    }
+
+    /**
+     * @param sharedStrings the table to add string cell values to, or <code>null</code>
+     *  to write them as inline strings
+     * @param compress whether to gzip the temp file
+     */
+    BinarySheetDataWriter(SharedStringsWriter sharedStrings, boolean compress) throws IOException {
+        super(sharedStrings, false);
+        _compress = compress;
+        _data = new DataOutputStream(createOutputStream(getTempFile()));
+    }
+
+    /**
+     * @return temp file to write sheet data
+     */
+    public File createTempFile() throws IOException {
+        return File.createTempFile("poi-sxssf-sheet", ".bin");
+    }
+
+    /**
+     * Create the stream to write the binary sheet data to.
+     *
+     * @param  fd the file to write to
+     */
+    public OutputStream createOutputStream(File fd) throws IOException {
+        OutputStream out = new FileOutputStream(fd);
+        if (_compress) {
+            out = new GZIPOutputStream(out);
+        }
+        return new BufferedOutputStream(out);
+    }
+
+    public void close() throws IOException {
+        _data.close();
+    }
+
+    /**
+     * @return a stream rendering the sheet data XML from the binary temp file
+     */
+    public InputStream getWorksheetXMLInputStream() throws IOException {
+        InputStream in = new FileInputStream(getTempFile());
+        if (_compress) {
+            in = new GZIPInputStream(in);
+        }
+        return new XMLRenderingInputStream(new DataInputStream(new BufferedInputStream(in)));
+    }
+
+    public void writeRow(int rownum, SXSSFRow row) throws IOException {
+        countRow(rownum, row);
+
+        int flags = 0;
+        if (row.hasCustomHeight()) flags |= ROW_CUSTOM_HEIGHT;
+        if (row.getZeroHeight()) flags |= ROW_HIDDEN;
+        if (row.isFormatted()) flags |= ROW_FORMATTED;
+        if (row.getOutlineLevel() != 0) flags |= ROW_OUTLINE;
+        _data.writeByte(ROW);
+        writeVarInt(rownum);
+        _data.writeByte(flags);
+        if ((flags & ROW_CUSTOM_HEIGHT) != 0) _data.writeFloat(row.getHeightInPoints());
+        if ((flags & ROW_FORMATTED) != 0) writeVarInt(row._style);
+        if ((flags & ROW_OUTLINE) != 0) writeVarInt(row.getOutlineLevel());
+
+        Iterator<Cell> cells = row.allCellsIterator();
+        int columnIndex = 0;
+        while (cells.hasNext()) {
+            Cell cell = cells.next();
+            if (cell != null) {
+                writeCell(columnIndex, cell);
+            }
+            columnIndex++;
+        }
+        _data.writeByte(END_ROW);
+    }
+
+    public void writeCell(int columnIndex, Cell cell) throws IOException {
+        if (cell == null) {
+            return;
+        }
+        int style = cell.getCellStyle().getIndex() & 0xFFFF;
+        int type;
+        switch (cell.getCellType()) {
+            case Cell.CELL_TYPE_BLANK:
+                type = CELL_BLANK;
+                break;
+            case Cell.CELL_TYPE_FORMULA:
+                type = cell.getCachedFormulaResultType() == Cell.CELL_TYPE_NUMERIC
+                        && !Double.isNaN(cell.getNumericCellValue()) ? CELL_FORMULA_NUMERIC : CELL_FORMULA;
+                break;
+            case Cell.CELL_TYPE_STRING:
+                type = getSharedStrings() == null ? CELL_INLINE_STRING : CELL_SHARED_STRING;
+                break;
+            case Cell.CELL_TYPE_NUMERIC:
+                type = CELL_NUMERIC;
+                break;
+            case Cell.CELL_TYPE_BOOLEAN:
+                type = CELL_BOOLEAN;
+                break;
+            case Cell.CELL_TYPE_ERROR:
+                type = CELL_ERROR;
+                break;
+            default:
+                throw new RuntimeException("Huh?");
+        }
+        _data.writeByte(CELL);
+        _data.writeByte(style == 0 ? type : type | CELL_STYLED);
+        writeVarInt(columnIndex);
+        if (style != 0) writeVarInt(style);
+        switch (type) {
+            case CELL_NUMERIC:
+                _data.writeDouble(cell.getNumericCellValue());
+                break;
+            case CELL_INLINE_STRING:
+                writeString(cell.getStringCellValue());
+                break;
+            case CELL_SHARED_STRING:
+                writeVarInt(getSharedStrings().addEntry(cell.getStringCellValue()));
+                break;
+            case CELL_BOOLEAN:
+                _data.writeByte(cell.getBooleanCellValue() ? 1 : 0);
+                break;
+            case CELL_ERROR:
+                _data.writeByte(cell.getErrorCellValue());
+                break;
+            case CELL_FORMULA:
+                writeString(cell.getCellFormula());
+                break;
+            case CELL_FORMULA_NUMERIC:
+                writeString(cell.getCellFormula());
+                _data.writeDouble(cell.getNumericCellValue());
+                break;
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            _data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        _data.writeByte(value);
+    }
+
+    private void writeString(String value) throws IOException {
+        int length = value.length();
+        writeVarInt(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c != 0 && c < 0x80) {
+                _data.writeByte(c);
+            } else {
+                // a zero byte starts a 2 byte character
+                _data.writeByte(0);
+                _data.writeChar(c);
+            }
+        }
+    }
+
+    boolean dispose() {
+        try {
+            _data.close();
+        } catch (IOException e) {
+            return false;
+        }
+        return getTempFile().delete();
+    }
+
+    /**
+     * Decodes the binary sheet data and renders the XML, one row at a time
+     */
+    private static final class XMLRenderingInputStream extends InputStream {
+        private final DataInputStream _in;
+        private final CharArrayWriter _xml = new CharArrayWriter(4096);
+        private final char[] _ref = new char[CellReference.MAX_FORMATTED_LENGTH];
+        private byte[] _buf = new byte[4096];
+        private int _pos;
+        private int _limit;
+        private boolean _eof;
+
+        XMLRenderingInputStream(DataInputStream in) {
+            _in = in;
+        }
+
+        public int read() throws IOException {
+            if (_pos == _limit && !fill()) {
+                return -1;
+            }
+            return _buf[_pos++] & 0xFF;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (_pos == _limit && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, _limit - _pos);
+            System.arraycopy(_buf, _pos, b, off, n);
+            _pos += n;
+            return n;
+        }
+
+        public void close() throws IOException {
+            _in.close();
+        }
+
+        private boolean fill() throws IOException {
+            if (_eof) {
+                return false;
+            }
+            int tag;
+            try {
+                tag = _in.readUnsignedByte();
+            } catch (EOFException e) {
+                _eof = true;
+                return false;
+            }
+            if (tag != ROW) {
+                throw new IOException("Corrupt sheet data, unexpected tag " + tag);
+            }
+            _xml.reset();
+            renderRow();
+            // the rendered XML is plain ASCII, non-ASCII characters are written as references
+            int size = _xml.size();
+            if (size > _buf.length) {
+                _buf = new byte[Math.max(size, _buf.length * 2)];
+            }
+            char[] chars = _xml.toCharArray();
+            for (int i = 0; i < size; i++) {
+                _buf[i] = (byte)chars[i];
+            }
+            _pos = 0;
+            _limit = size;
+            return true;
+        }
+
+        private void renderRow() throws IOException {
+            int rownum = readVarInt();
+            int flags = _in.readUnsignedByte();
+            _xml.write("<row r=\"" + (rownum + 1) + "\"");
+            if ((flags & ROW_CUSTOM_HEIGHT) != 0)
+                _xml.write(" customHeight=\"true\"  ht=\"" + _in.readFloat() + "\"");
+            if ((flags & ROW_HIDDEN) != 0)
+                _xml.write(" hidden=\"true\"");
+            if ((flags & ROW_FORMATTED) != 0) {
+                _xml.write(" s=\"" + readVarInt() + "\"");
+                _xml.write(" customFormat=\"1\"");
+            }
+            if ((flags & ROW_OUTLINE) != 0) {
+                _xml.write(" outlineLevel=\"" + readVarInt() + "\"");
+            }
+            _xml.write(">\n");
+            int tag;
+            while ((tag = _in.readUnsignedByte()) == CELL) {
+                renderCell(rownum);
+            }
+            if (tag != END_ROW) {
+                throw new IOException("Corrupt sheet data, unexpected tag " + tag);
+            }
+            _xml.write("</row>\n");
+        }
+
+        private void renderCell(int rownum) throws IOException {
+            int type = _in.readUnsignedByte();
+            int columnIndex = readVarInt();
+            _xml.write("<c r=\"");
+            _xml.write(_ref, 0, CellReference.appendCellReference(_ref, 0, rownum, columnIndex));
+            _xml.write('"');
+            if ((type & CELL_STYLED) != 0) _xml.write(" s=\"" + readVarInt() + "\"");
+            switch (type & ~CELL_STYLED) {
+                case CELL_BLANK:
+                    _xml.write(">");
+                    break;
+                case CELL_FORMULA:
+                case CELL_FORMULA_NUMERIC:
+                    _xml.write(">");
+                    _xml.write("<f>");
+                    outputQuotedString(_xml, readString());
+                    _xml.write("</f>");
+                    if ((type & ~CELL_STYLED) == CELL_FORMULA_NUMERIC) {
+                        _xml.write("<v>" + _in.readDouble() + "</v>");
+                    }
+                    break;
+                case CELL_INLINE_STRING:
+                    String value = readString();
+                    _xml.write(" t=\"inlineStr\">");
+                    _xml.write("<is><t");
+                    if (hasLeadingTrailingSpaces(value)) {
+                        _xml.write(" xml:space=\"preserve\"");
+                    }
+                    _xml.write(">");
+                    outputQuotedString(_xml, value);
+                    _xml.write("</t></is>");
+                    break;
+                case CELL_SHARED_STRING:
+                    _xml.write(" t=\"s\">");
+                    _xml.write("<v>" + readVarInt() + "</v>");
+                    break;
+                case CELL_NUMERIC:
+                    _xml.write(" t=\"n\">");
+                    _xml.write("<v>" + _in.readDouble() + "</v>");
+                    break;
+                case CELL_BOOLEAN:
+                    _xml.write(" t=\"b\">");
+                    _xml.write("<v>" + (_in.readByte() != 0 ? "1" : "0") + "</v>");
+                    break;
+                case CELL_ERROR:
+                    FormulaError error = FormulaError.forInt(_in.readByte());
+                    _xml.write(" t=\"e\">");
+                    _xml.write("<v>" + error.getString() + "</v>");
+                    break;
+                default:
+                    throw new IOException("Corrupt sheet data, unexpected cell type " + type);
+            }
+            _xml.write("</c>");
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = _in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private String readString() throws IOException {
+            int length = readVarInt();
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                int b = _in.readUnsignedByte();
+                chars[i] = b == 0 ? _in.readChar() : (char)b;
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -32,6 +32,10 @@ public class GZIPSheetDataWriter extends SheetDataWriter {
         super();
     }
 
+    GZIPSheetDataWriter(SharedStringsWriter sharedStrings) throws IOException {
+        super(sharedStrings);
+    }
+
     /**
      * @return temp file to write sheet data
      */
@@ -41,6 +41,7 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.SheetConditionalFormatting;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.ColumnWidthCalculator;
 import org.apache.poi.ss.util.SheetUtil;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetFormatPr;
@@ -59,6 +60,8 @@ public class SXSSFSheet implements Sheet, Cloneable
     SheetDataWriter _writer;
     int _randomAccessWindowSize = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
     int outlineLevelRow = 0;
+    /** measures the tracked columns of the rows as they are flushed */
+    private ColumnWidthCalculator _flushedWidths;
 
     public SXSSFSheet(SXSSFWorkbook workbook, XSSFSheet xSheet) throws IOException
     {
@@ -1164,7 +1167,80 @@ public class SXSSFSheet implements Sheet, Cloneable
     public void autoSizeColumn(int column, boolean useMergedCells)
     {
         double width = SheetUtil.getColumnWidth(this, column, useMergedCells);
+        setAutoSizedColumnWidth(column, Math.max(width, getFlushedWidth(column, useMergedCells)));
+    }
+
+    /**
+     * Adjusts the widths of the given columns to fit their contents, walking
+     *  the rows only once for all the columns.
+     * <p>
+     * Only the rows which have not been flushed yet are measured, unless the
+     *  columns are tracked, see {@link #trackColumnsForAutoSizing(int...)}.
+     * </p>
+     *
+     * @param columns the column indexes
+     */
+    public void autoSizeColumns(int... columns)
+    {
+        autoSizeColumns(false, columns);
+    }
+
+    /**
+     * Adjusts the widths of the given columns to fit their contents, walking
+     *  the rows only once for all the columns.
+     * <p>
+     * Only the rows which have not been flushed yet are measured, unless the
+     *  columns are tracked, see {@link #trackColumnsForAutoSizing(int...)}.
+     * </p>
+     *
+     * @param useMergedCells whether to use the contents of merged cells when calculating the widths of the columns
+     * @param columns the column indexes
+     */
+    public void autoSizeColumns(boolean useMergedCells, int... columns)
+    {
+        double[] widths = SheetUtil.getColumnWidths(this, columns, useMergedCells);
+        for (int i = 0; i < columns.length; i++) {
+            double width = Math.max(widths[i], getFlushedWidth(columns[i], useMergedCells));
+            setAutoSizedColumnWidth(columns[i], width);
+        }
+    }
+
+    /**
+     * Measures the given columns of the rows as they are flushed, so that
+     *  {@link #autoSizeColumn(int)} and {@link #autoSizeColumns(int...)} take
+     *  the rows which are no longer in memory into account.
+     * <p>
+     * Call this before the rows are written, the rows flushed earlier are not
+     *  measured.  Tracking replaces the columns tracked by any earlier call.
+     * </p>
+     *
+     * @param columns the column indexes
+     */
+    public void trackColumnsForAutoSizing(int... columns)
+    {
+        _flushedWidths = new ColumnWidthCalculator(this, columns);
+    }
 
+    /**
+     * Measures all the columns of the rows as they are flushed
+     *
+     * @see #trackColumnsForAutoSizing(int...)
+     */
+    public void trackAllColumnsForAutoSizing()
+    {
+        _flushedWidths = new ColumnWidthCalculator(this);
+    }
+
+    private double getFlushedWidth(int column, boolean useMergedCells)
+    {
+        if (_flushedWidths == null || !_flushedWidths.isTracked(column)) {
+            return -1;
+        }
+        return _flushedWidths.getColumnWidth(column, useMergedCells);
+    }
+
+    private void setAutoSizedColumnWidth(int column, double width)
+    {
         if (width != -1) {
             width *= 256;
             int maxColumnWidth = 255*256; // The maximum column width for an individual cell is 255 characters
@@ -1343,6 +1419,9 @@ public class SXSSFSheet implements Sheet, Cloneable
         if (firstRowNum!=null) {
             int rowIndex = firstRowNum.intValue();
             SXSSFRow row = _rows.get(firstRowNum);
+            if (_flushedWidths != null) {
+                _flushedWidths.addRow(row);
+            }
             _writer.writeRow(rowIndex, row);
             _rows.remove(firstRowNum);
         }
@@ -28,18 +28,18 @@ import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.FileOutputStream;
-import java.io.File;
 import java.util.*;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.ZipEntry;
 
+import org.apache.poi.openxml4j.util.ParallelZipOutputStream;
 import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
 import org.apache.poi.ss.util.CellRangeAddress;
@@ -72,6 +72,26 @@ public class SXSSFWorkbook implements Workbook
      */
     private boolean _compressTmpFiles = false;
 
+    /**
+     * whether temp files hold binary encoded rows rather than XML.
+     */
+    private boolean _binaryTmpFiles = false;
+
+    /**
+     * executor to compress the parts of the written workbook on, or <code>null</code>.
+     */
+    private ExecutorService _compressionExecutor;
+
+    /**
+     * compression levels by part name prefix.
+     */
+    private final Map<String, Integer> _compressionLevels = new LinkedHashMap<String, Integer>();
+
+    /**
+     * shared strings of the string cells, or <code>null</code> to write inline strings.
+     */
+    private final SharedStringsWriter _sharedStrings;
+
     /**
      * Construct a new workbook
      */
@@ -165,6 +185,40 @@ public class SXSSFWorkbook implements Workbook
      * @param compressTmpFiles whether to use gzip compression for temporary files
      */
     public SXSSFWorkbook(XSSFWorkbook workbook, int rowAccessWindowSize, boolean compressTmpFiles){
+    	this(workbook, rowAccessWindowSize, compressTmpFiles, false);
+    }
+
+    /**
+     * Constructs an workbook from an existing workbook.
+     * <p>
+     * When a new node is created via createRow() and the total number
+     * of unflushed records would exceed the specified value, then the
+     * row with the lowest index value is flushed and cannot be accessed
+     * via getRow() anymore.
+     * </p>
+     * <p>
+     * A value of -1 indicates unlimited access. In this case all
+     * records that have not been flushed by a call to flush() are available
+     * for random access.
+     * <p>
+     * <p></p>
+     * A value of 0 is not allowed because it would flush any newly created row
+     * without having a chance to specify any cells.
+     * </p>
+     * <p>
+     * By default string cells are written as inline strings, repeating the text for every cell.
+     * If <code>useSharedStringsTable</code> is <code>true</code> the strings are added to the
+     * shared strings table instead, and every distinct string is written only once.  This makes
+     * the output smaller and faster to compress if the same values appear in many cells.
+     * The table keeps the strings in a temporary file, see {@link #dispose()}.  The shared
+     * strings of the template workbook must not change afterwards.
+     * </p>
+     *
+     * @param rowAccessWindowSize
+     * @param compressTmpFiles whether to use gzip compression for temporary files
+     * @param useSharedStringsTable whether to write string cells to the shared strings table
+     */
+    public SXSSFWorkbook(XSSFWorkbook workbook, int rowAccessWindowSize, boolean compressTmpFiles, boolean useSharedStringsTable){
     	setRandomAccessWindowSize(rowAccessWindowSize);
     	setCompressTempFiles(compressTmpFiles);
     	if (workbook == null)
@@ -174,6 +228,24 @@ public class SXSSFWorkbook implements Workbook
     	else
     	{
     		_wb=workbook;
+    	}
+    	if (useSharedStringsTable)
+    	{
+    		try
+    		{
+    			_sharedStrings = new SharedStringsWriter(_wb.getSharedStringSource());
+    		}
+    		catch (IOException e)
+    		{
+    			throw new RuntimeException(e);
+    		}
+    	}
+    	else
+    	{
+    		_sharedStrings = null;
+    	}
+    	if (workbook != null)
+    	{
             for ( int i = 0; i < _wb.getNumberOfSheets(); i++ )
             {
                 XSSFSheet sheet = _wb.getSheetAt( i );
@@ -234,11 +306,64 @@ public class SXSSFWorkbook implements Workbook
         _compressTmpFiles = compress;
     }
 
+    /**
+     * Set whether temp files should hold the rows in a compact binary encoding.
+     * <p>
+     *   By default the flushed rows are written to the temporary files as sheet XML.
+     *   If the "binary" flag is set to <code>true</code> they are written in a compact
+     *   binary encoding instead, and the XML is only rendered when the workbook is written.
+     *   This makes the temp files several times smaller and saves parsing and
+     *   formatting work when the temp files are also compressed.
+     * </p>
+     * <p>
+     *   The flag applies to the sheets created afterwards.
+     * </p>
+     * @param binary whether to write binary temp files
+     * @see BinarySheetDataWriter
+     */
+    public void setBinaryTempFiles(boolean binary){
+        _binaryTmpFiles = binary;
+    }
+
+    /**
+     * Set the executor to compress the parts of the workbook on when it is written.
+     * <p>
+     *   By default the parts of the workbook, including the possibly very large sheet data,
+     *   are compressed one after another on the thread calling {@link #write(OutputStream)}.
+     *   With an executor the sheets and the shared strings are rendered and compressed
+     *   concurrently, and the other parts are compressed concurrently to them.
+     *   The workbook file is the same.
+     * </p>
+     * @param executor the executor to compress on, or <code>null</code> to compress on the
+     *  calling thread
+     * @see ParallelZipOutputStream
+     */
+    public void setCompressionExecutor(ExecutorService executor){
+        _compressionExecutor = executor;
+    }
+
+    /**
+     * Set the compression level of the parts whose names start with a prefix,
+     * e.g. a low level for <code>"xl/worksheets/"</code> to trade file size for speed,
+     * or 0 for already compressed images in <code>"xl/media/"</code>.
+     *
+     * @param partNamePrefix the start of the part names, without a leading slash
+     * @param level the compression level (0-9)
+     */
+    public void setCompressionLevel(String partNamePrefix, int level){
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("invalid compression level");
+        }
+        _compressionLevels.put(partNamePrefix, level);
+    }
+
     SheetDataWriter createSheetDataWriter() throws IOException {
-        if(_compressTmpFiles) {
-            return new GZIPSheetDataWriter();
+        if(_binaryTmpFiles) {
+            return new BinarySheetDataWriter(_sharedStrings, _compressTmpFiles);
+        } else if(_compressTmpFiles) {
+            return new GZIPSheetDataWriter(_sharedStrings);
         } else {
-            return new SheetDataWriter();
+            return new SheetDataWriter(_sharedStrings);
         }
     }
 
@@ -273,50 +398,89 @@ public class SXSSFWorkbook implements Workbook
         }
         return null;
     }
-    private void injectData(File zipfile, OutputStream out) throws IOException 
+    private boolean isSharedStringsZipEntryName(String name)
     {
-        ZipFile zip = new ZipFile(zipfile);
-        try
+        return name.equals(_wb.getSharedStringSource().getPackagePart().getPartName().getName().substring(1));
+    }
+    /**
+     * Zip stream the template workbook is saved to.  Passes all entries through to the
+     * output, except for the worksheets of the streamed sheets and the shared strings,
+     * which are buffered (they hold no cell data of the streamed sheets) and written with
+     * the generated sheet data and strings injected when the entry is closed.  With a
+     * compression executor, the injected entries are rendered and compressed concurrently.
+     */
+    private final class InjectingZipOutputStream extends ParallelZipOutputStream
+    {
+        private String _entryName;
+        private ByteArrayOutputStream _template;
+
+        InjectingZipOutputStream(OutputStream out)
         {
-            ZipOutputStream zos = new ZipOutputStream(out);
-            try
+            super(out, _compressionExecutor);
+            for (Map.Entry<String, Integer> level : _compressionLevels.entrySet())
+            {
+                setLevel(level.getKey(), level.getValue());
+            }
+        }
+
+        public void putNextEntry(ZipEntry e) throws IOException
+        {
+            String name = e.getName();
+            if(getSheetFromZipEntryName(name)!=null || (_sharedStrings!=null && isSharedStringsZipEntryName(name)))
+            {
+                _entryName = name;
+                _template = new ByteArrayOutputStream();
+            }
+            else
+            {
+                super.putNextEntry(e);
+            }
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if(_template!=null)
+            {
+                _template.write(b, off, len);
+            }
+            else
             {
-                @SuppressWarnings("unchecked")
-                Enumeration<ZipEntry> en = (Enumeration<ZipEntry>) zip.entries();
-                while (en.hasMoreElements()) 
+                super.write(b, off, len);
+            }
+        }
+
+        public void closeEntry() throws IOException
+        {
+            if(_template==null)
+            {
+                super.closeEntry();
+                return;
+            }
+            final byte[] template = _template.toByteArray();
+            _template = null;
+            final XSSFSheet xSheet=getSheetFromZipEntryName(_entryName);
+            writeEntry(_entryName, new EntryContent()
+            {
+                public void writeTo(OutputStream out) throws IOException
                 {
-                    ZipEntry ze = en.nextElement();
-                    zos.putNextEntry(new ZipEntry(ze.getName()));
-                    InputStream is = zip.getInputStream(ze);
-                    XSSFSheet xSheet=getSheetFromZipEntryName(ze.getName());
-                    if(xSheet!=null)
+                    InputStream is = new ByteArrayInputStream(template);
+                    if(xSheet==null)
                     {
-                        SXSSFSheet sxSheet=getSXSSFSheet(xSheet);
-                        InputStream xis = sxSheet.getWorksheetXMLInputStream();
-                        try
-                        {
-                            copyStreamAndInjectWorksheet(is,zos,xis);
-                        }
-                        finally
-                        {
-                            xis.close();
-                        }
+                        _sharedStrings.write(is, out);
+                        return;
                     }
-                    else
+                    SXSSFSheet sxSheet=getSXSSFSheet(xSheet);
+                    InputStream xis = sxSheet.getWorksheetXMLInputStream();
+                    try
                     {
-                        copyStream(is, zos);
+                        copyStreamAndInjectWorksheet(is,out,xis);
+                    }
+                    finally
+                    {
+                        xis.close();
                     }
-                    is.close();
                 }
-            }
-            finally
-            {
-                zos.close();
-            }
-        }
-        finally
-        {
-            zip.close();
+            });
         }
     }
     private static void copyStream(InputStream in, OutputStream out) throws IOException {
@@ -758,26 +922,22 @@ public class SXSSFWorkbook implements Workbook
     		sheet.flushRows();
     	}
     	
-        //Save the template
-        File tmplFile = File.createTempFile("poi-sxssf-template", ".xlsx");
+        //Save the template, injecting the generated sheet data files on the fly
+        InjectingZipOutputStream zos = new InjectingZipOutputStream(stream);
         try
         {
-            FileOutputStream os = new FileOutputStream(tmplFile);
-            try
-            {
-                _wb.write(os);
-            }
-            finally
-            {
-                os.close();
-            }
-
-            //Substitute the template entries with the generated sheet data files
-            injectData(tmplFile, stream);
+            _wb.write(zos);
+        }
+        catch (IOException e)
+        {
+            // stop the compressions still running and delete their temporary files
+            zos.abort();
+            throw e;
         }
-        finally
+        catch (RuntimeException e)
         {
-            tmplFile.delete();
+            zos.abort();
+            throw e;
         }
     }
     
@@ -793,6 +953,17 @@ public class SXSSFWorkbook implements Workbook
         {
             success = sheet.dispose() && success;
         }
+        if (_sharedStrings != null)
+        {
+            try
+            {
+                _sharedStrings.close();
+            }
+            catch (IOException e)
+            {
+                success = false;
+            }
+        }
         return success;
     }
 
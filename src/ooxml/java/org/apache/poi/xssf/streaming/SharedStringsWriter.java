@@ -0,0 +1,148 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.util.FileBackedStringTable;
+
+/**
+ * The shared strings of the string cells written by a {@link SXSSFWorkbook}.
+ * <p>
+ * The strings are kept de-duplicated in a {@link FileBackedStringTable}, so only their
+ * file offsets and hash codes take up heap space.  The strings of the template workbook
+ * remain in its {@link SharedStringsTable}, the new strings are numbered after them
+ * and appended to its XML when the workbook is written.  The template's strings must
+ * therefore not change once the streaming workbook has been created.
+ * </p>
+ */
+class SharedStringsWriter {
+
+    private static final Pattern COUNT = Pattern.compile("(\\s)(count|uniqueCount)=\"\\d*\"");
+
+    private final FileBackedStringTable _strings;
+    /** the number of strings of the template workbook */
+    private final int _templateUniqueCount;
+    private final int _templateCount;
+    /** the number of string cells written */
+    private int _count;
+
+    SharedStringsWriter(SharedStringsTable template) throws IOException {
+        _strings = new FileBackedStringTable(true);
+        _templateUniqueCount = template.getItems().size();
+        _templateCount = template.getCount();
+    }
+
+    /**
+     * Adds the value of a string cell
+     *
+     * @return the index of the string in the shared strings table
+     */
+    int addEntry(String value) {
+        _count++;
+        return _templateUniqueCount + _strings.addEntry(value);
+    }
+
+    int getCount() {
+        return _templateCount + _count;
+    }
+
+    int getUniqueCount() {
+        return _templateUniqueCount + _strings.size();
+    }
+
+    /**
+     * Writes the shared strings part, i.e. the template's <tt>sst</tt> document with the
+     * new strings appended.
+     *
+     * @param template the shared strings part of the template workbook
+     */
+    void write(InputStream template, OutputStream out) throws IOException {
+        // the template part only holds the strings XSSF keeps in memory anyway
+        StringBuilder sb = new StringBuilder();
+        Reader reader = new InputStreamReader(template, "UTF-8");
+        char[] chunk = new char[1024];
+        int count;
+        while ((count = reader.read(chunk)) >= 0) {
+            sb.append(chunk, 0, count);
+        }
+        String xml = sb.toString();
+
+        // the root element is the first one after the xml declaration
+        int rootStart = xml.indexOf('<');
+        while (xml.charAt(rootStart + 1) == '?' || xml.charAt(rootStart + 1) == '!') {
+            rootStart = xml.indexOf('<', rootStart + 1);
+        }
+        int rootEnd = xml.indexOf('>', rootStart);
+        boolean empty = xml.charAt(rootEnd - 1) == '/';
+        String startTag = xml.substring(rootStart, empty ? rootEnd - 1 : rootEnd);
+        Matcher m = COUNT.matcher(startTag);
+        StringBuffer tag = new StringBuffer();
+        while (m.find()) {
+            int value = "count".equals(m.group(2)) ? getCount() : getUniqueCount();
+            m.appendReplacement(tag, m.group(1) + m.group(2) + "=\"" + value + "\"");
+        }
+        m.appendTail(tag);
+        int nameEnd = 1;
+        while (nameEnd < startTag.length() && !Character.isWhitespace(startTag.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        String rootName = startTag.substring(1, nameEnd);
+        // the new elements use the same namespace prefix as the root element, if any
+        String prefix = rootName.substring(0, rootName.indexOf(':') + 1);
+        int bodyEnd = empty ? rootEnd + 1 : xml.lastIndexOf("</");
+        String endTag = empty ? "</" + rootName + ">" : xml.substring(bodyEnd);
+
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        w.write(xml, 0, rootStart);
+        w.write(tag.toString());
+        w.write(">");
+        if (!empty) {
+            w.write(xml, rootEnd + 1, bodyEnd - rootEnd - 1);
+        }
+        for (int i = 0; i < _strings.size(); i++) {
+            String value = _strings.getEntryAt(i);
+            w.write("<" + prefix + "si><" + prefix + "t");
+            if (SheetDataWriter.hasLeadingTrailingSpaces(value)) {
+                w.write(" xml:space=\"preserve\"");
+            }
+            w.write(">");
+            SheetDataWriter.outputQuotedString(w, value);
+            w.write("</" + prefix + "t></" + prefix + "si>");
+        }
+        w.write(endTag);
+        w.flush();
+    }
+
+    /**
+     * Deletes the file backing the strings.
+     */
+    void close() throws IOException {
+        _strings.close();
+    }
+}
@@ -41,13 +41,33 @@ public class SheetDataWriter {
     private final Writer _out;
     private int _rownum;
     private boolean _rowContainedNullCells = false;
+    private final char[] _ref = new char[CellReference.MAX_FORMATTED_LENGTH];
     int _numberOfFlushedRows;
     int _lowestIndexOfFlushedRows; // meaningful only of _numberOfFlushedRows>0
     int _numberOfCellsOfLastFlushedRow; // meaningful only of _numberOfFlushedRows>0
+    private final SharedStringsWriter _sharedStrings; // null if strings are written inline
 
     public SheetDataWriter() throws IOException {
+        this(null);
+    }
+
+    /**
+     * @param sharedStrings the table to add string cell values to, or <code>null</code>
+     *  to write them as inline strings
+     */
+    SheetDataWriter(SharedStringsWriter sharedStrings) throws IOException {
+        this(sharedStrings, true);
+    }
+
+    /**
+     * @param xml whether rows are written as XML to the writer returned by
+     *  {@link #createWriter(File)}, subclasses passing <code>false</code> must override
+     *  {@link #writeRow(int, SXSSFRow)}, {@link #close()} and {@link #dispose()}
+     */
+    SheetDataWriter(SharedStringsWriter sharedStrings, boolean xml) throws IOException {
         _fd = createTempFile();
-        _out = createWriter(_fd);
+        _out = xml ? createWriter(_fd) : null;
+        _sharedStrings = sharedStrings;
     }
 
     /**
@@ -116,10 +136,7 @@ public class SheetDataWriter {
      * @param row    a row
      */
     public void writeRow(int rownum, SXSSFRow row) throws IOException {
-        if (_numberOfFlushedRows == 0)
-            _lowestIndexOfFlushedRows = rownum;
-        _numberOfCellsOfLastFlushedRow = row.getLastCellNum();
-        _numberOfFlushedRows++;
+        countRow(rownum, row);
         beginRow(rownum, row);
         Iterator<Cell> cells = row.allCellsIterator();
         int columnIndex = 0;
@@ -129,6 +146,17 @@ public class SheetDataWriter {
         endRow();
     }
 
+    void countRow(int rownum, SXSSFRow row) {
+        if (_numberOfFlushedRows == 0)
+            _lowestIndexOfFlushedRows = rownum;
+        _numberOfCellsOfLastFlushedRow = row.getLastCellNum();
+        _numberOfFlushedRows++;
+    }
+
+    SharedStringsWriter getSharedStrings() {
+        return _sharedStrings;
+    }
+
     void beginRow(int rownum, SXSSFRow row) throws IOException {
         _out.write("<row r=\"" + (rownum + 1) + "\"");
         if (row.hasCustomHeight())
@@ -156,8 +184,9 @@ public class SheetDataWriter {
             _rowContainedNullCells = true;
             return;
         }
-        String ref = new CellReference(_rownum, columnIndex).formatAsString();
-        _out.write("<c r=\"" + ref + "\"");
+        _out.write("<c r=\"");
+        _out.write(_ref, 0, CellReference.appendCellReference(_ref, 0, _rownum, columnIndex));
+        _out.write('"');
         CellStyle cellStyle = cell.getCellStyle();
         if (cellStyle.getIndex() != 0) _out.write(" s=\"" + cellStyle.getIndex() + "\"");
         int cellType = cell.getCellType();
@@ -182,6 +211,12 @@ public class SheetDataWriter {
                 break;
             }
             case Cell.CELL_TYPE_STRING: {
+                if (_sharedStrings != null) {
+                    int sRef = _sharedStrings.addEntry(cell.getStringCellValue());
+                    _out.write(" t=\"s\">");
+                    _out.write("<v>" + sRef + "</v>");
+                    break;
+                }
                 _out.write(" t=\"inlineStr\">");
                 _out.write("<is><t");
                 if(hasLeadingTrailingSpaces(cell.getStringCellValue())) {
@@ -221,7 +256,7 @@ public class SheetDataWriter {
      * @return  whether the string has leading / trailing spaces that
      *  need to be preserved with the xml:space=\"preserve\" attribute
      */
-    boolean hasLeadingTrailingSpaces(String str) {
+    static boolean hasLeadingTrailingSpaces(String str) {
         if (str != null && str.length() > 0) {
             char firstChar = str.charAt(0);
             char lastChar  = str.charAt(str.length() - 1);
@@ -232,6 +267,10 @@ public class SheetDataWriter {
 
     //Taken from jdk1.3/src/javax/swing/text/html/HTMLWriter.java
     protected void outputQuotedString(String s) throws IOException {
+        outputQuotedString(_out, s);
+    }
+
+    static void outputQuotedString(Writer _out, String s) throws IOException {
         if (s == null || s.length() == 0) {
             return;
         }
@@ -102,8 +102,14 @@ public final class XSSFCell implements Cell {
     protected XSSFCell(XSSFRow row, CTCell cell) {
         _cell = cell;
         _row = row;
-        if (cell.getR() != null) {
-            _cellNum = new CellReference(cell.getR()).getCol();
+        String r = cell.getR();
+        if (r != null) {
+            try {
+                _cellNum = CellReference.getPackedColumn(CellReference.parsePackedReference(r, 0, r.length()));
+            } catch (IllegalArgumentException e) {
+                // not a plain reference, leave it to the full parser
+                _cellNum = new CellReference(r).getCol();
+            }
         }
         _sharedStringSource = row.getSheet().getWorkbook().getSharedStringSource();
         _stylesSource = row.getSheet().getWorkbook().getStylesSource();
@@ -707,8 +713,7 @@ public final class XSSFCell implements Cell {
     protected void setCellNum(int num) {
         checkBounds(num);
         _cellNum = num;
-        String ref = new CellReference(getRowIndex(), getColumnIndex()).formatAsString();
-        _cell.setR(ref);
+        _cell.setR(CellReference.formatCellReference(getRowIndex(), getColumnIndex()));
     }
 
     /**
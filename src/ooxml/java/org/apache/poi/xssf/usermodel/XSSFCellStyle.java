@@ -140,6 +140,7 @@ public class XSSFCellStyle implements CellStyle {
                // Nice and easy
                _cellXf.set(src.getCoreXf());
                _cellStyleXf.set(src.getStyleXf());
+               _stylesSource.onCellXfChanged(_cellXf);
             } else {
                // Copy the style
                try {
@@ -744,6 +745,7 @@ public class XSSFCellStyle implements CellStyle {
      */
     public void setAlignment(short align) {
         getCellAlignment().setHorizontal(HorizontalAlignment.values()[align]);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -785,6 +787,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setBorderId(idx);
         _cellXf.setApplyBorder(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -825,6 +828,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setBorderId(idx);
         _cellXf.setApplyBorder(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
      /**
@@ -865,6 +869,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setBorderId(idx);
         _cellXf.setApplyBorder(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
      /**
@@ -905,6 +910,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setBorderId(idx);
         _cellXf.setApplyBorder(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -944,6 +950,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setBorderId(idx);
         _cellXf.setApplyBorder(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -954,6 +961,7 @@ public class XSSFCellStyle implements CellStyle {
     public void setDataFormat(short fmt) {
         _cellXf.setApplyNumberFormat(true);
         _cellXf.setNumFmtId(fmt);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -995,6 +1003,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setFillId(idx);
         _cellXf.setApplyFill(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1051,6 +1060,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setFillId(idx);
         _cellXf.setApplyFill(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1134,6 +1144,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setFillId(idx);
         _cellXf.setApplyFill(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1164,6 +1175,7 @@ public class XSSFCellStyle implements CellStyle {
         } else {
             this._cellXf.setApplyFont(false);
         }
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1176,6 +1188,7 @@ public class XSSFCellStyle implements CellStyle {
              _cellXf.addNewProtection();
          }
         _cellXf.getProtection().setHidden(hidden);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1185,6 +1198,7 @@ public class XSSFCellStyle implements CellStyle {
      */
     public void setIndention(short indent) {
         getCellAlignment().setIndent(indent);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1216,6 +1230,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setBorderId(idx);
         _cellXf.setApplyBorder(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1228,6 +1243,7 @@ public class XSSFCellStyle implements CellStyle {
              _cellXf.addNewProtection();
          }
         _cellXf.getProtection().setLocked(locked);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1259,6 +1275,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setBorderId(idx);
         _cellXf.setApplyBorder(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1277,6 +1294,7 @@ public class XSSFCellStyle implements CellStyle {
      */
     public void setRotation(short rotation) {
         getCellAlignment().setTextRotation(rotation);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
 
@@ -1309,6 +1327,7 @@ public class XSSFCellStyle implements CellStyle {
 
         _cellXf.setBorderId(idx);
         _cellXf.setApplyBorder(true);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1323,6 +1342,7 @@ public class XSSFCellStyle implements CellStyle {
      */
     public void setVerticalAlignment(short align) {
         getCellAlignment().setVertical(VerticalAlignment.values()[align]);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1332,6 +1352,7 @@ public class XSSFCellStyle implements CellStyle {
      */
     public void setVerticalAlignment(VerticalAlignment align) {
         getCellAlignment().setVertical(align);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -1345,6 +1366,7 @@ public class XSSFCellStyle implements CellStyle {
      */
     public void setWrapText(boolean wrapped) {
         getCellAlignment().setWrapText(wrapped);
+        _stylesSource.onCellXfChanged(_cellXf);
     }
 
     /**
@@ -17,6 +17,9 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.poi.ss.formula.functions.FreeRefFunction;
 import org.apache.poi.ss.formula.ptg.NamePtg;
 import org.apache.poi.ss.formula.ptg.NameXPtg;
@@ -30,9 +33,13 @@ import org.apache.poi.ss.formula.FormulaParser;
 import org.apache.poi.ss.formula.FormulaParsingWorkbook;
 import org.apache.poi.ss.formula.FormulaRenderingWorkbook;
 import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.SharedFormula;
 import org.apache.poi.ss.formula.udf.UDFFinder;
+import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.xssf.model.IndexedUDFFinder;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDefinedName;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellFormulaType;
 
 /**
  * Internal POI use only
@@ -42,6 +49,12 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDefinedName;
 public final class XSSFEvaluationWorkbook implements FormulaRenderingWorkbook, EvaluationWorkbook, FormulaParsingWorkbook {
 
 	private final XSSFWorkbook _uBook;
+	private final SharedFormula _sharedFormula;
+	/**
+	 * Parsed master formulas of shared formula groups, keyed by sheet, range and formula text.
+	 * May be read by several evaluation threads.
+	 */
+	private final Map<String, SharedFormulaTokens> _sharedFormulaTokens;
 
 	public static XSSFEvaluationWorkbook create(XSSFWorkbook book) {
 		if (book == null) {
@@ -52,6 +65,8 @@ public final class XSSFEvaluationWorkbook implements FormulaRenderingWorkbook, E
 
 	private XSSFEvaluationWorkbook(XSSFWorkbook book) {
 		_uBook = book;
+		_sharedFormula = new SharedFormula(SpreadsheetVersion.EXCEL2007);
+		_sharedFormulaTokens = new ConcurrentHashMap<String, SharedFormulaTokens>();
 	}
 
 	private int convertFromExternalSheetIndex(int externSheetIndex) {
@@ -144,8 +159,44 @@ public final class XSSFEvaluationWorkbook implements FormulaRenderingWorkbook, E
 	}
 	public Ptg[] getFormulaTokens(EvaluationCell evalCell) {
 		XSSFCell cell = ((XSSFEvaluationCell)evalCell).getXSSFCell();
-		XSSFEvaluationWorkbook frBook = XSSFEvaluationWorkbook.create(_uBook);
-		return FormulaParser.parse(cell.getCellFormula(), frBook, FormulaType.CELL, _uBook.getSheetIndex(cell.getSheet()));
+		int sheetIndex = _uBook.getSheetIndex(cell.getSheet());
+		CTCellFormula f = cell.getCTCell().getF();
+		if (f != null && f.getT() == STCellFormulaType.SHARED) {
+			CTCellFormula master = cell.getSheet().getSharedFormula((int)f.getSi());
+			if (master != null) {
+				return getSharedFormulaTokens(master, sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
+			}
+		}
+		return FormulaParser.parse(cell.getCellFormula(), this, FormulaType.CELL, sheetIndex);
+	}
+
+	/**
+	 * Shared formulas are parsed once per group (rather than once per cell) and the tokens
+	 * of each cell are derived by shifting the relative references of the master formula.
+	 */
+	private Ptg[] getSharedFormulaTokens(CTCellFormula master, int sheetIndex, int rowIndex, int columnIndex) {
+		String formula = master.getStringValue();
+		String key = sheetIndex + "!" + master.getRef() + "=" + formula;
+		SharedFormulaTokens sft = _sharedFormulaTokens.get(key);
+		if (sft == null) {
+			Ptg[] ptgs = FormulaParser.parse(formula, this, FormulaType.CELL, sheetIndex);
+			sft = new SharedFormulaTokens(ptgs, CellRangeAddress.valueOf(master.getRef()));
+			_sharedFormulaTokens.put(key, sft);
+		}
+		return _sharedFormula.convertSharedFormulas(sft._ptgs,
+				rowIndex - sft._firstRow, columnIndex - sft._firstColumn);
+	}
+
+	private static final class SharedFormulaTokens {
+		final Ptg[] _ptgs;
+		final int _firstRow;
+		final int _firstColumn;
+
+		public SharedFormulaTokens(Ptg[] ptgs, CellRangeAddress range) {
+			_ptgs = ptgs;
+			_firstRow = range.getFirstRow();
+			_firstColumn = range.getFirstColumn();
+		}
 	}
 
     public UDFFinder getUDFFinder(){
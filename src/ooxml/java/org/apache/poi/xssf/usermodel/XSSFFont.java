@@ -63,6 +63,8 @@ public class XSSFFont implements Font {
     private ThemesTable _themes;
     private CTFont _ctFont;
     private short _index;
+    /** the styles table this font is registered in, if any */
+    private StylesTable _stylesSource;
 
     /**
      * Create a new XSSFFont
@@ -277,6 +279,7 @@ public class XSSFFont implements Font {
         } else {
             _ctFont.setBArray(null);
         }
+        fontChanged();
     }
 
     public void setBoldweight(short boldweight)
@@ -339,6 +342,7 @@ public class XSSFFont implements Font {
        // We know that FontCharset only has valid entries in it,
        //  so we can just set the int value from it
        charsetProperty.setVal( charSet.getValue() );
+        fontChanged();
     }
 
     /**
@@ -362,6 +366,7 @@ public class XSSFFont implements Font {
             default:
                 ctColor.setIndexed(color);
         }
+        fontChanged();
     }
 
     /**
@@ -375,6 +380,7 @@ public class XSSFFont implements Font {
             CTColor ctColor = _ctFont.sizeOfColorArray() == 0 ? _ctFont.addNewColor() : _ctFont.getColorArray(0);
             ctColor.setRgb(color.getRgb());
         }
+        fontChanged();
     }
 
     /**
@@ -394,6 +400,7 @@ public class XSSFFont implements Font {
     public void setFontHeight(double height) {
         CTFontSize fontSize = _ctFont.sizeOfSzArray() == 0 ? _ctFont.addNewSz() : _ctFont.getSzArray(0);
         fontSize.setVal(height);
+        fontChanged();
     }
 
     /**
@@ -413,6 +420,7 @@ public class XSSFFont implements Font {
     public void setThemeColor(short theme) {
         CTColor ctColor = _ctFont.sizeOfColorArray() == 0 ? _ctFont.addNewColor() : _ctFont.getColorArray(0);
         ctColor.setTheme(theme);
+        fontChanged();
     }
 
     /**
@@ -429,6 +437,7 @@ public class XSSFFont implements Font {
     public void setFontName(String name) {
         CTFontName fontName = _ctFont.sizeOfNameArray() == 0 ? _ctFont.addNewName() : _ctFont.getNameArray(0);
         fontName.setVal(name == null ? DEFAULT_FONT_NAME : name);
+        fontChanged();
     }
 
 
@@ -445,6 +454,7 @@ public class XSSFFont implements Font {
         } else {
             _ctFont.setIArray(null);
         }
+        fontChanged();
     }
 
 
@@ -460,6 +470,7 @@ public class XSSFFont implements Font {
             CTBooleanProperty strike = _ctFont.sizeOfStrikeArray() == 0 ? _ctFont.addNewStrike() : _ctFont.getStrikeArray(0);
             strike.setVal(strikeout);
         }
+        fontChanged();
     }
 
     /**
@@ -489,6 +500,7 @@ public class XSSFFont implements Font {
                     break;
             }
         }
+        fontChanged();
     }
 
     /**
@@ -517,6 +529,7 @@ public class XSSFFont implements Font {
             STUnderlineValues.Enum val = STUnderlineValues.Enum.forInt(underline.getValue());
             ctUnderline.setVal(val);
         }
+        fontChanged();
     }
 
 
@@ -544,6 +557,21 @@ public class XSSFFont implements Font {
        this._themes = themes;
     }
 
+    /**
+     * Records the styles table this font is registered in, which
+     *  is told when the font is changed
+     */
+    @Internal
+    public void setStylesSource(StylesTable stylesSource) {
+       this._stylesSource = stylesSource;
+    }
+
+    private void fontChanged() {
+       if(_stylesSource != null) {
+          _stylesSource.onFontChanged();
+       }
+    }
+
     /**
      * get the font scheme property.
      * is used only in StylesTable to create the default instance of font
@@ -566,6 +594,7 @@ public class XSSFFont implements Font {
         CTFontScheme ctFontScheme = _ctFont.sizeOfSchemeArray() == 0 ? _ctFont.addNewScheme() : _ctFont.getSchemeArray(0);
         STFontScheme.Enum val = STFontScheme.Enum.forInt(scheme.getValue());
         ctFontScheme.setVal(val);
+        fontChanged();
     }
 
     /**
@@ -590,6 +619,7 @@ public class XSSFFont implements Font {
     public void setFamily(int value) {
         CTIntProperty family = _ctFont.sizeOfFamilyArray() == 0 ? _ctFont.addNewFamily() : _ctFont.getFamilyArray(0);
         family.setVal(value);
+        fontChanged();
     }
 
     /**
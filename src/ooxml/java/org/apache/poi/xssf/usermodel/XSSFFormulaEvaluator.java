@@ -17,7 +17,11 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
 import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.ss.formula.EvaluationCell;
 import org.apache.poi.ss.formula.IStabilityClassifier;
 import org.apache.poi.ss.formula.WorkbookEvaluator;
 import org.apache.poi.ss.formula.eval.BoolEval;
@@ -29,6 +33,7 @@ import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Workbook;
 
 /**
@@ -252,6 +257,67 @@ public class XSSFFormulaEvaluator implements FormulaEvaluator {
       HSSFFormulaEvaluator.evaluateAllFormulaCells(_book);
    }
 
+   /**
+    * Re-evaluates only the formula cells affected by changes to the specified cells.
+    * The affected formulas are found from a dependency graph of all formula cells in
+    *  the workbook, which is built on the first call and then kept up to date by the
+    *  notify~ methods. The formulas are evaluated in dependency order, and the results
+    *  are saved as by {@link #evaluateFormulaCell(Cell)}.
+    * The supplied cells do not need to be passed to {@link #notifyUpdateCell(Cell)} first.
+    *
+    * @param changedCells the (value or formula) cells that have been modified
+    */
+   public void evaluateDependents(Cell[] changedCells) {
+      registerAllFormulaCells();
+      EvaluationCell[] evalCells = new EvaluationCell[changedCells.length];
+      for (int i = 0; i < changedCells.length; i++) {
+         evalCells[i] = new XSSFEvaluationCell((XSSFCell)changedCells[i]);
+         _bookEvaluator.notifyUpdateCell(evalCells[i]);
+      }
+      EvaluationCell[] dependents = _bookEvaluator.getDependentFormulaCells(evalCells);
+      for (int i = 0; i < dependents.length; i++) {
+         evaluateFormulaCell(((XSSFEvaluationCell)dependents[i]).getXSSFCell());
+      }
+   }
+
+   /**
+    * Evaluates all formula cells of the workbook using several threads, and saves the
+    *  results as by {@link #evaluateFormulaCell(Cell)}.
+    * The formula cells are split into groups that do not depend on each other, which
+    *  are evaluated concurrently on the supplied executor (for example a
+    *  <code>ThreadPoolExecutor</code> sized to the number of cores). The results are
+    *  saved on the calling thread once all groups have been evaluated.
+    * The workbook must not be modified while this method runs.
+    *
+    * @param executor runs the evaluation tasks
+    */
+   public void evaluateAllParallel(ExecutorService executor) {
+      registerAllFormulaCells();
+      Map<EvaluationCell, ValueEval> results = _bookEvaluator.evaluateAllParallel(executor);
+      for (Map.Entry<EvaluationCell, ValueEval> entry : results.entrySet()) {
+         Cell cell = ((XSSFEvaluationCell)entry.getKey()).getXSSFCell();
+         setCellValue(cell, toCellValue(entry.getValue()));
+      }
+   }
+
+   /**
+    * Builds the dependency graph of all formula cells, unless already done
+    */
+   private void registerAllFormulaCells() {
+      if (_bookEvaluator.hasDependencyGraph()) {
+         return;
+      }
+      for(int i=0; i<_book.getNumberOfSheets(); i++) {
+         for(Row r : _book.getSheetAt(i)) {
+            for (Cell c : r) {
+               if (c.getCellType() == XSSFCell.CELL_TYPE_FORMULA) {
+                  _bookEvaluator.registerFormulaCell(new XSSFEvaluationCell((XSSFCell)c));
+               }
+            }
+         }
+      }
+   }
+
 	/**
 	 * Returns a CellValue wrapper around the supplied ValueEval instance.
 	 */
@@ -262,6 +328,10 @@ public class XSSFFormulaEvaluator implements FormulaEvaluator {
         }
 
 		ValueEval eval = _bookEvaluator.evaluate(new XSSFEvaluationCell((XSSFCell) cell));
+		return toCellValue(eval);
+	}
+
+	private static CellValue toCellValue(ValueEval eval) {
 		if (eval instanceof NumberEval) {
 			NumberEval ne = (NumberEval) eval;
 			return new CellValue(ne.getNumberValue());
@@ -497,8 +497,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
             if(calcChain != null) calcChain.removeItem(sheetId, cell.getReference());
 
             CTCell ctCell = cell.getCTCell();
-            String r = new CellReference(rownum, cell.getColumnIndex()).formatAsString();
-            ctCell.setR(r);
+            ctCell.setR(CellReference.formatCellReference(rownum, cell.getColumnIndex()));
         }
         setRowNum(rownum);
     }
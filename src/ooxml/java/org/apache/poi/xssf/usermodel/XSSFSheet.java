@@ -334,8 +334,36 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
      * @param useMergedCells whether to use the contents of merged cells when calculating the width of the column
      */
     public void autoSizeColumn(int column, boolean useMergedCells) {
-        double width = SheetUtil.getColumnWidth(this, column, useMergedCells);
+        setAutoSizedColumnWidth(column, SheetUtil.getColumnWidth(this, column, useMergedCells));
+    }
+
+    /**
+     * Adjusts the widths of the given columns to fit their contents, walking
+     *  the rows of the sheet only once for all the columns.
+     *
+     * @param columns the column indexes
+     * @see #autoSizeColumn(int)
+     */
+    public void autoSizeColumns(int... columns) {
+        autoSizeColumns(false, columns);
+    }
+
+    /**
+     * Adjusts the widths of the given columns to fit their contents, walking
+     *  the rows of the sheet only once for all the columns.
+     *
+     * @param useMergedCells whether to use the contents of merged cells when calculating the widths of the columns
+     * @param columns the column indexes
+     * @see #autoSizeColumn(int, boolean)
+     */
+    public void autoSizeColumns(boolean useMergedCells, int... columns) {
+        double[] widths = SheetUtil.getColumnWidths(this, columns, useMergedCells);
+        for (int i = 0; i < columns.length; i++) {
+            setAutoSizedColumnWidth(columns[i], widths[i]);
+        }
+    }
 
+    private void setAutoSizedColumnWidth(int column, double width) {
         if (width != -1) {
             width *= 256;
             int maxColumnWidth = 255*256; // The maximum column width for an individual cell is 255 characters
@@ -18,6 +18,7 @@ package org.apache.poi.xssf.usermodel.extensions;
 
 
 import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.model.ThemesTable;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.util.Internal;
@@ -33,6 +34,8 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.STBorderStyle;
 public class XSSFCellBorder {
     private ThemesTable _theme;
     private CTBorder border;
+    /** the styles table this border is registered in, if any */
+    private StylesTable _stylesSource;
 
     /**
      * Creates a Cell Border from the supplied XML definition
@@ -65,6 +68,21 @@ public class XSSFCellBorder {
     public void setThemesTable(ThemesTable themes) {
        this._theme = themes;
     }
+
+    /**
+     * Records the styles table this border is registered in, which
+     *  is told when the border is changed
+     */
+    @Internal
+    public void setStylesSource(StylesTable stylesSource) {
+       this._stylesSource = stylesSource;
+    }
+
+    private void borderChanged() {
+       if(_stylesSource != null) {
+          _stylesSource.onBorderChanged();
+       }
+    }
     
     /**
      * The enumeration value indicating the side being used for a cell border.
@@ -105,6 +123,7 @@ public class XSSFCellBorder {
      */
     public void setBorderStyle(BorderSide side, BorderStyle style) {
         getBorder(side, true).setStyle(STBorderStyle.Enum.forInt(style.ordinal() + 1));
+        borderChanged();
     }
 
     /**
@@ -139,6 +158,7 @@ public class XSSFCellBorder {
         if (color == null) borderPr.unsetColor();
         else
             borderPr.setColor(color.getCTColor());
+        borderChanged();
     }
 
     private CTBorderPr getBorder(BorderSide side) {
@@ -22,6 +22,7 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTPatternFill;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.STPatternType;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.util.Internal;
+import org.apache.poi.xssf.model.StylesTable;
 
 /**
  * This element specifies fill formatting.
@@ -30,6 +31,8 @@ import org.apache.poi.util.Internal;
 public final class XSSFCellFill {
 
     private CTFill _fill;
+    /** the styles table this fill is registered in, if any */
+    private StylesTable _stylesSource;
 
     /**
      * Creates a CellFill from the supplied parts
@@ -69,6 +72,7 @@ public final class XSSFCellFill {
         CTPatternFill ptrn = ensureCTPatternFill();
         CTColor ctColor = ptrn.isSetBgColor() ? ptrn.getBgColor() : ptrn.addNewBgColor();
         ctColor.setIndexed(index);
+        fillChanged();
     }
 
     /**
@@ -79,6 +83,7 @@ public final class XSSFCellFill {
     public void setFillBackgroundColor(XSSFColor color) {
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setBgColor(color.getCTColor());
+        fillChanged();
     }
 
     /**
@@ -103,6 +108,7 @@ public final class XSSFCellFill {
         CTPatternFill ptrn = ensureCTPatternFill();
         CTColor ctColor = ptrn.isSetFgColor() ? ptrn.getFgColor() : ptrn.addNewFgColor();
         ctColor.setIndexed(index);
+        fillChanged();
     }
 
     /**
@@ -113,6 +119,7 @@ public final class XSSFCellFill {
     public void setFillForegroundColor(XSSFColor color) {
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setFgColor(color.getCTColor());
+        fillChanged();
     }
 
     /**
@@ -133,6 +140,22 @@ public final class XSSFCellFill {
     public void setPatternType(STPatternType.Enum patternType) {
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setPatternType(patternType);
+        fillChanged();
+    }
+
+    /**
+     * Records the styles table this fill is registered in, which
+     *  is told when the fill is changed
+     */
+    @Internal
+    public void setStylesSource(StylesTable stylesSource) {
+        _stylesSource = stylesSource;
+    }
+
+    private void fillChanged() {
+        if (_stylesSource != null) {
+            _stylesSource.onFillChanged();
+        }
     }
 
     private CTPatternFill ensureCTPatternFill() {
@@ -0,0 +1,278 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.poi.util.TempFile;
+
+/**
+ * An append-only table of strings kept in a temporary file instead of on the heap, for shared
+ * strings tables with millions of entries.
+ * <p>
+ * The strings are written UTF-8 encoded to the file, the heap only holds the file offset
+ * of every entry (8 bytes per string).  Completed 64MB segments of the file are memory
+ * mapped for reading, so looking up an entry does not copy it more than once.  Optionally
+ * the table de-duplicates the strings added with {@link #addEntry(String)}, using an open
+ * addressing hash index of entry numbers and string hash codes (another 12 bytes per string
+ * on average), only reading an entry back from the file when the hash codes match.
+ * </p>
+ * <p>
+ * Reading entries is safe from several threads once all strings have been added, adding
+ * strings is not thread safe.  Call {@link #close()} to delete the file.
+ * </p>
+ */
+public class FileBackedStringTable {
+
+    private static final int SEGMENT_SHIFT = 26;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final File _file;
+    private final RandomAccessFile _raf;
+    private final FileChannel _channel;
+    private final ByteBuffer _writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    /** the number of bytes written to the file, excluding {@link #_writeBuffer} */
+    private long _flushedLength;
+    private MappedByteBuffer[] _segments = new MappedByteBuffer[0];
+
+    private int _size;
+    /** start offset of every entry, followed by the end offset of the last one */
+    private long[] _offsets = new long[1025];
+
+    /** <code>null</code> if strings are not de-duplicated */
+    private int[] _hashCodes;
+    /** entry number + 1 of every slot, 0 for an empty slot */
+    private int[] _slots;
+
+    /**
+     * @param deduplicate whether {@link #addEntry(String)} should look for an equal existing entry
+     */
+    public FileBackedStringTable(boolean deduplicate) throws IOException {
+        _file = TempFile.createTempFile("poi-strings", ".bin");
+        _raf = new RandomAccessFile(_file, "rw");
+        _channel = _raf.getChannel();
+        if (deduplicate) {
+            _hashCodes = new int[1024];
+            _slots = new int[2048];
+        }
+    }
+
+    /**
+     * @return the number of entries in the table
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Adds a string, re-using an equal entry if the table de-duplicates its strings.
+     *
+     * @return the entry number of the string
+     */
+    public int addEntry(String value) {
+        if (_hashCodes == null) {
+            return append(value);
+        }
+        int hash = value.hashCode();
+        int mask = _slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (_slots[slot] != 0) {
+            int idx = _slots[slot] - 1;
+            if (_hashCodes[idx] == hash && value.equals(getEntryAt(idx))) {
+                return idx;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return append(value);
+    }
+
+    /**
+     * Adds a string as a new entry, even if an equal entry exists, e.g. to mirror the entry
+     * numbers of an existing shared strings table.  {@link #addEntry(String)} returns the first
+     * of several equal entries.
+     *
+     * @return the entry number of the string
+     */
+    public int append(String value) {
+        byte[] bytes;
+        try {
+            bytes = value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            if (bytes.length > _writeBuffer.remaining()) {
+                flush();
+            }
+            if (bytes.length > _writeBuffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+            } else {
+                _writeBuffer.put(bytes);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write string table file " + _file, e);
+        }
+        if (_size + 1 == _offsets.length) {
+            long[] offsets = new long[_offsets.length * 2];
+            System.arraycopy(_offsets, 0, offsets, 0, _offsets.length);
+            _offsets = offsets;
+        }
+        int idx = _size++;
+        _offsets[_size] = _offsets[idx] + bytes.length;
+        if (_hashCodes != null) {
+            index(idx, value.hashCode());
+        }
+        return idx;
+    }
+
+    private void index(int idx, int hash) {
+        if (idx == _hashCodes.length) {
+            int[] hashCodes = new int[idx * 2];
+            System.arraycopy(_hashCodes, 0, hashCodes, 0, idx);
+            _hashCodes = hashCodes;
+        }
+        _hashCodes[idx] = hash;
+        if (_size * 2 > _slots.length) {
+            rehash();
+        } else {
+            int mask = _slots.length - 1;
+            int slot = mix(hash) & mask;
+            while (_slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            _slots[slot] = idx + 1;
+        }
+    }
+
+    /**
+     * Returns the string of the specified entry
+     *
+     * @param idx the entry number, as returned when the string was added
+     */
+    public String getEntryAt(int idx) {
+        if (idx < 0 || idx >= _size) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + _size);
+        }
+        long start = _offsets[idx];
+        int length = (int)(_offsets[idx + 1] - start);
+        byte[] bytes = new byte[length];
+        if (start >= _flushedLength) {
+            // still in the write buffer
+            int pos = (int)(start - _flushedLength);
+            for (int i = 0; i < length; i++) {
+                bytes[i] = _writeBuffer.get(pos + i);
+            }
+        } else {
+            read(start, bytes);
+        }
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void read(long start, byte[] bytes) {
+        int segment = (int)(start >>> SEGMENT_SHIFT);
+        int pos = (int)(start & (SEGMENT_SIZE - 1));
+        MappedByteBuffer[] segments = _segments;
+        if (segment < segments.length && pos + bytes.length <= SEGMENT_SIZE) {
+            ByteBuffer buffer = segments[segment].duplicate();
+            buffer.position(pos);
+            buffer.get(bytes);
+            return;
+        }
+        // in the last, still growing segment or crossing a segment boundary
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long position = start;
+            while (buffer.hasRemaining()) {
+                int n = _channel.read(buffer, position);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of string table file");
+                }
+                position += n;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read string table file " + _file, e);
+        }
+    }
+
+    /**
+     * Writes the buffered strings to the file, and maps the segments of the file that have
+     * been completed since
+     */
+    private void flush() throws IOException {
+        _writeBuffer.flip();
+        writeFully(_writeBuffer);
+        _writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            _flushedLength += _channel.write(buffer, _flushedLength);
+        }
+        int completeSegments = (int)(_flushedLength >>> SEGMENT_SHIFT);
+        if (completeSegments > _segments.length) {
+            MappedByteBuffer[] segments = new MappedByteBuffer[completeSegments];
+            System.arraycopy(_segments, 0, segments, 0, _segments.length);
+            for (int i = _segments.length; i < completeSegments; i++) {
+                segments[i] = _channel.map(FileChannel.MapMode.READ_ONLY, (long)i << SEGMENT_SHIFT, SEGMENT_SIZE);
+            }
+            _segments = segments;
+        }
+    }
+
+    private void rehash() {
+        int[] slots = new int[_slots.length * 2];
+        int mask = slots.length - 1;
+        for (int idx = 0; idx < _size; idx++) {
+            int slot = mix(_hashCodes[idx]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = idx + 1;
+        }
+        _slots = slots;
+    }
+
+    /**
+     * Spreads the bits of <tt>String.hashCode()</tt>, which clusters for short strings
+     */
+    private static int mix(int hash) {
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+    /**
+     * Closes and deletes the file.  The table can not be used afterwards.
+     */
+    public void close() throws IOException {
+        _segments = new MappedByteBuffer[0];
+        _channel.close();
+        _raf.close();
+        _file.delete();
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.InvalidOperationException;
 import org.apache.poi.openxml4j.opc.internal.ContentTypeManager;
 import org.apache.poi.openxml4j.opc.internal.FileHelper;
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.TempFile;
 import org.apache.poi.util.POILogger;
 import org.apache.poi.util.POILogFactory;
@@ -326,6 +327,62 @@ public final class TestPackage extends TestCase {
 		assertTrue(p.containPart(PackagingURIHelper.createPartName("/_rels/.rels")));
 	}
 
+	/**
+	 * Checks that a package opened from an InputStream through a
+	 *  temporary file reads the same, and that the file goes on close
+	 */
+	public void testOpenFromInputStreamWithTempFile() throws Exception {
+		String originalFile = OpenXML4JTestDataSamples.getSampleFileName("TestPackageCommon.docx");
+		File tempDir = new File(System.getProperty("java.io.tmpdir"), "poifiles");
+		int tempFiles = countZipTempFiles(tempDir);
+
+		FileInputStream finp = new FileInputStream(originalFile);
+		OPCPackage p = OPCPackage.open(finp, true);
+		finp.close();
+		assertEquals(tempFiles + 1, countZipTempFiles(tempDir));
+
+		assertNotNull(p.getRelationships());
+		assertEquals(12, p.getParts().size());
+		assertTrue(p.containPart(PackagingURIHelper.createPartName("/_rels/.rels")));
+
+		OPCPackage expected = OPCPackage.open(originalFile, PackageAccess.READ);
+		PackagePartName name = PackagingURIHelper.createPartName("/word/document.xml");
+		assertTrue(Arrays.equals(
+				IOUtils.toByteArray(expected.getPart(name).getInputStream()),
+				IOUtils.toByteArray(p.getPart(name).getInputStream())));
+		expected.revert();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		p.save(out);
+		OPCPackage saved = OPCPackage.open(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(12, saved.getParts().size());
+
+		p.revert();
+		assertEquals(tempFiles, countZipTempFiles(tempDir));
+
+		// Closing the package deletes the file too
+		finp = new FileInputStream(originalFile);
+		p = OPCPackage.open(finp, true);
+		finp.close();
+		assertEquals(tempFiles + 1, countZipTempFiles(tempDir));
+		assertEquals(12, p.getParts().size());
+		p.close();
+		assertEquals(tempFiles, countZipTempFiles(tempDir));
+	}
+
+	private static int countZipTempFiles(File dir) {
+		String[] names = dir.list();
+		int count = 0;
+		if (names != null) {
+			for (String name : names) {
+				if (name.startsWith("poi-zip-")) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
     /**
      * TODO: fix and enable
      */
@@ -0,0 +1,124 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.POIDataSamples;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.poifs.crypt.Decryptor;
+import org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.poifs.nio.ByteArrayBackedDataSource;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+public final class TestDataSourceZipEntrySource extends TestCase {
+
+	private static Decryptor decryptor(POIFSFileSystem fs) throws Exception {
+		Decryptor d = Decryptor.getInstance(new EncryptionInfo(fs));
+		assertTrue(d.verifyPassword(Decryptor.DEFAULT_PASSWORD));
+		return d;
+	}
+
+	private static POIFSFileSystem open(String file) throws IOException {
+		return new POIFSFileSystem(POIDataSamples.getPOIFSInstance().openResourceAsStream(file));
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] chunk = new byte[1000];
+		int read;
+		while ((read = in.read(chunk)) != -1) {
+			out.write(chunk, 0, read);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+	public void testEntries() throws Exception {
+		checkEntries("protect.xlsx");
+		checkEntries("protected_agile.docx");
+	}
+
+	private void checkEntries(String file) throws Exception {
+		POIFSFileSystem fs = open(file);
+		Decryptor d = decryptor(fs);
+
+		Map<String, byte[]> expected = new HashMap<String, byte[]>();
+		ZipInputStream zin = new ZipInputStream(d.getDataStream(fs));
+		ZipEntry ze;
+		while ((ze = zin.getNextEntry()) != null) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] chunk = new byte[1000];
+			int read;
+			while ((read = zin.read(chunk)) != -1) {
+				out.write(chunk, 0, read);
+			}
+			expected.put(ze.getName(), out.toByteArray());
+		}
+		assertTrue(expected.size() > 0);
+
+		DataSourceZipEntrySource zip = new DataSourceZipEntrySource(d.getDataSource(fs.getRoot()));
+		int count = 0;
+		Enumeration<? extends ZipEntry> entries = zip.getEntries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			byte[] data = read(zip.getInputStream(entry));
+			assertTrue(entry.getName(), expected.containsKey(entry.getName()));
+			assertEquals(entry.getName(), expected.get(entry.getName()).length, data.length);
+			assertEquals(entry.getName(), entry.getSize(), data.length);
+			assertTrue(entry.getName(), Arrays.equals(expected.get(entry.getName()), data));
+			count++;
+		}
+		assertEquals(expected.size(), count);
+		zip.close();
+	}
+
+	public void testOpenPackage() throws Exception {
+		POIFSFileSystem fs = open("protect.xlsx");
+		Decryptor d = decryptor(fs);
+
+		OPCPackage pkg = OPCPackage.open(new DataSourceZipEntrySource(d.getDataSource(fs.getRoot())));
+		XSSFWorkbook wb = new XSSFWorkbook(pkg);
+		XSSFWorkbook expected = new XSSFWorkbook(d.getDataStream(fs));
+		assertEquals(expected.getNumberOfSheets(), wb.getNumberOfSheets());
+		assertEquals(expected.getSheetAt(0).getLastRowNum(), wb.getSheetAt(0).getLastRowNum());
+		assertEquals(expected.getSheetName(0), wb.getSheetName(0));
+		assertEquals(expected.getSheetAt(0).getPhysicalNumberOfRows(),
+				wb.getSheetAt(0).getPhysicalNumberOfRows());
+	}
+
+	public void testNotZip() throws Exception {
+		try {
+			new DataSourceZipEntrySource(new ByteArrayBackedDataSource(new byte[100]));
+			fail("Not a zip file");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
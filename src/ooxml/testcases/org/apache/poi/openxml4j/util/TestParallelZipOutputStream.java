@@ -0,0 +1,232 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.openxml4j.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+public final class TestParallelZipOutputStream extends TestCase {
+	private ExecutorService executor;
+
+	protected void setUp() {
+		executor = Executors.newFixedThreadPool(3);
+	}
+
+	protected void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static byte[] content(int size, int seed) {
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte)("<row r=\"" + (i / 20 + seed) + "\"/>").charAt(i % 10);
+		}
+		return data;
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] chunk = new byte[4096];
+		int count;
+		while ((count = in.read(chunk)) >= 0) {
+			out.write(chunk, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeEntries(ParallelZipOutputStream zos) throws IOException {
+		zos.setLevel("media/", 0);
+		for (int i = 0; i < 40; i++) {
+			zos.putNextEntry(new ZipEntry("xl/part" + i + ".xml"));
+			zos.write(content(i * 997, i));
+			zos.closeEntry();
+		}
+		// spills to a temporary file
+		zos.putNextEntry(new ZipEntry("xl/large.xml"));
+		zos.write(content(3 * 1024 * 1024, 1));
+		zos.write('!');
+		zos.putNextEntry(new ZipEntry("media/imageä.bin"));
+		zos.write(content(10000, 2));
+		zos.writeEntry("xl/rendered.xml", new ParallelZipOutputStream.EntryContent() {
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(content(50000, 3));
+			}
+		});
+		zos.close();
+	}
+
+	private static void assertEntries(File file) throws IOException {
+		ZipFile zip = new ZipFile(file);
+		try {
+			assertEquals(43, zip.size());
+			for (int i = 0; i < 40; i++) {
+				ZipEntry entry = zip.getEntry("xl/part" + i + ".xml");
+				assertNotNull(entry);
+				assertTrue(java.util.Arrays.equals(content(i * 997, i), read(zip.getInputStream(entry))));
+			}
+			byte[] large = read(zip.getInputStream(zip.getEntry("xl/large.xml")));
+			assertEquals(3 * 1024 * 1024 + 1, large.length);
+			assertEquals('!', large[large.length - 1]);
+			ZipEntry image = zip.getEntry("media/imageä.bin");
+			assertTrue(java.util.Arrays.equals(content(10000, 2), read(zip.getInputStream(image))));
+			// stored with level 0
+			assertTrue(image.getCompressedSize() >= image.getSize());
+			assertTrue(java.util.Arrays.equals(content(50000, 3),
+					read(zip.getInputStream(zip.getEntry("xl/rendered.xml")))));
+
+			// same order as written
+			Enumeration<? extends ZipEntry> en = zip.entries();
+			assertEquals("xl/part0.xml", en.nextElement().getName());
+			assertEquals("xl/part1.xml", en.nextElement().getName());
+		} finally {
+			zip.close();
+		}
+	}
+
+	public void testParallel() throws IOException {
+		File file = TempFile.createTempFile("parallel", ".zip");
+		writeEntries(new ParallelZipOutputStream(new FileOutputStream(file), executor));
+		assertEntries(file);
+
+		// also readable as a stream
+		ZipInputStream zis = new ZipInputStream(new java.io.FileInputStream(file));
+		int count = 0;
+		while (zis.getNextEntry() != null) {
+			read(zis);
+			count++;
+		}
+		zis.close();
+		assertEquals(43, count);
+		file.delete();
+	}
+
+	public void testSequential() throws IOException {
+		File file = TempFile.createTempFile("sequential", ".zip");
+		writeEntries(new ParallelZipOutputStream(new FileOutputStream(file), null));
+		assertEntries(file);
+		file.delete();
+	}
+
+	public void testFailingEntry() throws IOException {
+		ParallelZipOutputStream zos = new ParallelZipOutputStream(new ByteArrayOutputStream(), executor);
+		zos.writeEntry("broken.xml", new ParallelZipOutputStream.EntryContent() {
+			public void writeTo(OutputStream out) throws IOException {
+				throw new IOException("broken");
+			}
+		});
+		try {
+			zos.close();
+			fail("expected IOException");
+		} catch (IOException e) {
+			assertEquals("broken", e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the number of temporary files holding entry data
+	 */
+	public static int countSpoolFiles() {
+		File marker = TempFile.createTempFile("marker", ".tmp");
+		marker.delete();
+		return marker.getParentFile().list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("poi-zip-entry");
+			}
+		}).length;
+	}
+
+	public void testAbort() throws Exception {
+		int spooled = countSpoolFiles();
+		ParallelZipOutputStream zos = new ParallelZipOutputStream(new ByteArrayOutputStream(), executor);
+		zos.setLevel("media/", 0);
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicBoolean stopped = new AtomicBoolean();
+		zos.writeEntry("slow.xml", new ParallelZipOutputStream.EntryContent() {
+			public void writeTo(OutputStream out) throws IOException {
+				started.countDown();
+				try {
+					for (int i = 0; i < 10000; i++) {
+						out.write(content(1024, i));
+						Thread.sleep(1);
+					}
+				} catch (InterruptedIOException e) {
+					stopped.set(true);
+					throw e;
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+		});
+		zos.writeEntry("broken.xml", new ParallelZipOutputStream.EntryContent() {
+			public void writeTo(OutputStream out) throws IOException {
+				throw new IOException("broken");
+			}
+		});
+		// both spill to temporary files, compressed or not
+		zos.putNextEntry(new ZipEntry("media/stored.bin"));
+		zos.write(content(3 * 1024 * 1024, 1));
+		zos.putNextEntry(new ZipEntry("xl/open.xml"));
+		zos.write(content(3 * 1024 * 1024, 2));
+		assertTrue(countSpoolFiles() > spooled);
+
+		started.await();
+		zos.abort();
+		assertTrue(stopped.get());
+		assertEquals(spooled, countSpoolFiles());
+		try {
+			zos.putNextEntry(new ZipEntry("xl/late.xml"));
+			fail("expected IOException");
+		} catch (IOException e) {
+			assertEquals("Stream closed", e.getMessage());
+		}
+	}
+
+	public void testWorkbook() throws IOException {
+		XSSFWorkbook wb = XSSFTestDataSamples.openSampleWorkbook("WithMoreVariousData.xlsx");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParallelZipOutputStream zos = new ParallelZipOutputStream(out, executor);
+		zos.setLevel("xl/worksheets/", 1);
+		wb.write(zos);
+
+		XSSFWorkbook read = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(wb.getNumberOfSheets(), read.getNumberOfSheets());
+		for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+			assertEquals(wb.getSheetAt(i).getLastRowNum(), read.getSheetAt(i).getLastRowNum());
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.compact;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Compares the content of {@link CompactWorkbook}s with {@link XSSFWorkbook}s loaded from the
+ * same files.
+ */
+public final class TestCompactWorkbook extends TestCase {
+
+    private static CompactWorkbook openSample(String sampleName) throws IOException {
+        return new CompactWorkbook(HSSFTestDataSamples.openSampleFileStream(sampleName));
+    }
+
+    private static void assertSameContent(String sampleName) throws IOException {
+        XSSFWorkbook expected = XSSFTestDataSamples.openSampleWorkbook(sampleName);
+        CompactWorkbook actual = openSample(sampleName);
+        assertSameContent(expected, actual);
+    }
+
+    private static void assertSameContent(Workbook expected, Workbook actual) {
+        assertEquals(expected.getNumberOfSheets(), actual.getNumberOfSheets());
+        assertEquals(expected.getNumberOfNames(), actual.getNumberOfNames());
+        assertEquals(expected.getActiveSheetIndex(), actual.getActiveSheetIndex());
+        for (int i = 0; i < expected.getNumberOfSheets(); i++) {
+            assertEquals(expected.getSheetName(i), actual.getSheetName(i));
+            assertEquals(expected.isSheetHidden(i), actual.isSheetHidden(i));
+            assertEquals(expected.isSheetVeryHidden(i), actual.isSheetVeryHidden(i));
+            assertSameContent(expected.getSheetAt(i), actual.getSheetAt(i));
+        }
+    }
+
+    private static void assertSameContent(Sheet expected, Sheet actual) {
+        String sheetName = expected.getSheetName();
+        assertEquals(sheetName, expected.getPhysicalNumberOfRows(), actual.getPhysicalNumberOfRows());
+        assertEquals(sheetName, expected.getFirstRowNum(), actual.getFirstRowNum());
+        assertEquals(sheetName, expected.getLastRowNum(), actual.getLastRowNum());
+        assertEquals(sheetName, expected.getNumMergedRegions(), actual.getNumMergedRegions());
+        for (int i = 0; i < expected.getNumMergedRegions(); i++) {
+            assertEquals(expected.getMergedRegion(i).formatAsString(), actual.getMergedRegion(i).formatAsString());
+        }
+        assertEquals(sheetName, expected.getDefaultColumnWidth(), actual.getDefaultColumnWidth());
+        assertEquals(sheetName, expected.isDisplayGridlines(), actual.isDisplayGridlines());
+        assertEquals(sheetName, expected.isSelected(), actual.isSelected());
+        for (int col = 0; col < 20; col++) {
+            assertEquals(sheetName, expected.getColumnWidth(col), actual.getColumnWidth(col));
+            assertEquals(sheetName, expected.isColumnHidden(col), actual.isColumnHidden(col));
+        }
+
+        Iterator<Row> it = actual.rowIterator();
+        for (Row expectedRow : expected) {
+            assertTrue(it.hasNext());
+            Row actualRow = it.next();
+            assertEquals(expectedRow.getRowNum(), actualRow.getRowNum());
+            assertSame(actualRow.getRowNum() + "", actual.getRow(actualRow.getRowNum()).getSheet(), actual);
+            assertEquals(expectedRow.getFirstCellNum(), actualRow.getFirstCellNum());
+            assertEquals(expectedRow.getLastCellNum(), actualRow.getLastCellNum());
+            assertEquals(expectedRow.getPhysicalNumberOfCells(), actualRow.getPhysicalNumberOfCells());
+            assertEquals(expectedRow.getHeight(), actualRow.getHeight());
+            assertEquals(expectedRow.getZeroHeight(), actualRow.getZeroHeight());
+            assertEquals(expectedRow.isFormatted(), actualRow.isFormatted());
+
+            Iterator<Cell> cells = actualRow.cellIterator();
+            for (Cell expectedCell : expectedRow) {
+                assertTrue(cells.hasNext());
+                assertSameContent(expectedCell, cells.next());
+            }
+            assertFalse(cells.hasNext());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    private static void assertSameContent(Cell expected, Cell actual) {
+        String ref = expected.getSheet().getSheetName() + "!" + expected.getRowIndex() + "," + expected.getColumnIndex();
+        assertEquals(ref, expected.getColumnIndex(), actual.getColumnIndex());
+        assertEquals(ref, expected.getRowIndex(), actual.getRowIndex());
+        assertEquals(ref, expected.getCellType(), actual.getCellType());
+        assertEquals(ref, expected.getCellStyle().getIndex(), actual.getCellStyle().getIndex());
+        assertEquals(ref, expected.isPartOfArrayFormulaGroup(), actual.isPartOfArrayFormulaGroup());
+
+        int type = expected.getCellType();
+        if (type == Cell.CELL_TYPE_FORMULA) {
+            assertEquals(ref, expected.getCellFormula(), actual.getCellFormula());
+            if (!expected.isPartOfArrayFormulaGroup()) {
+                type = expected.getCachedFormulaResultType();
+                assertEquals(ref, type, actual.getCachedFormulaResultType());
+            }
+        }
+        switch (type) {
+            case Cell.CELL_TYPE_NUMERIC:
+                assertEquals(ref, expected.getNumericCellValue(), actual.getNumericCellValue(), 0.0);
+                break;
+            case Cell.CELL_TYPE_STRING:
+                assertEquals(ref, expected.getStringCellValue(), actual.getStringCellValue());
+                break;
+            case Cell.CELL_TYPE_BOOLEAN:
+                assertEquals(ref, expected.getBooleanCellValue(), actual.getBooleanCellValue());
+                break;
+            case Cell.CELL_TYPE_ERROR:
+                assertEquals(ref, expected.getErrorCellValue(), actual.getErrorCellValue());
+                break;
+        }
+    }
+
+    private static final String[] SAMPLES = {
+                "sample.xlsx",
+                "SampleSS.xlsx",
+                "Booleans.xlsx",
+                "InlineStrings.xlsx",
+                "WithMoreVariousData.xlsx",
+                "TwoSheetsOneHidden.xlsx",
+                "WithChartSheet.xlsx",
+                "RepeatingRowsCols.xlsx",
+                "FormulaEvalTestData_Copy.xlsx",
+                "shared_formulas.xlsx",
+                "48703.xlsx",
+                "49783.xlsx",
+    };
+
+    public void testSameContentAsXSSF() throws IOException {
+        for (String sampleName : SAMPLES) {
+            assertSameContent(sampleName);
+        }
+    }
+
+    public void testStreamingSameContentAsXSSF() throws IOException {
+        for (String sampleName : SAMPLES) {
+            XSSFWorkbook expected = XSSFTestDataSamples.openSampleWorkbook(sampleName);
+            CompactWorkbook actual = new CompactWorkbook(XSSFTestDataSamples.openSamplePackage(sampleName), 3);
+            assertSameContent(expected, actual);
+            actual.close();
+        }
+    }
+
+    public void testStreamingGetRow() throws IOException {
+        XSSFWorkbook expected = XSSFTestDataSamples.openSampleWorkbook("FormulaEvalTestData_Copy.xlsx");
+        CompactWorkbook actual = new CompactWorkbook(
+                XSSFTestDataSamples.openSamplePackage("FormulaEvalTestData_Copy.xlsx"), 10);
+        Sheet expectedSheet = expected.getSheetAt(0);
+        CompactSheet actualSheet = actual.getSheetAt(0);
+        assertTrue(actualSheet.isStreaming());
+
+        // backwards, every row before the current window restarts the stream
+        for (int rownum = expectedSheet.getLastRowNum() + 5; rownum >= 0; rownum -= 7) {
+            Row expectedRow = expectedSheet.getRow(rownum);
+            CompactRow actualRow = actualSheet.getRow(rownum);
+            if (expectedRow == null) {
+                assertNull(actualRow);
+                continue;
+            }
+            assertEquals(rownum, actualRow.getRowNum());
+            assertEquals(expectedRow.getPhysicalNumberOfCells(), actualRow.getPhysicalNumberOfCells());
+        }
+
+        // rows stay valid once the window has moved on
+        CompactRow first = actualSheet.getRow(actualSheet.getFirstRowNum());
+        actualSheet.getRow(actualSheet.getLastRowNum());
+        Row expectedFirst = expectedSheet.getRow(expectedSheet.getFirstRowNum());
+        assertEquals(expectedFirst.getCell(expectedFirst.getFirstCellNum()).toString(),
+                first.getCell(first.getFirstCellNum()).toString());
+        actual.close();
+    }
+
+    public void testInvalidRowAccessWindow() throws IOException {
+        try {
+            new CompactWorkbook(XSSFTestDataSamples.openSamplePackage("sample.xlsx"), 0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testSharedFormulas() throws IOException {
+        CompactWorkbook wb = openSample("shared_formulas.xlsx");
+        CompactSheet sheet = wb.getSheetAt(0);
+
+        // A2 is the master of the shared formula, the other cells are derived from it
+        assertEquals("B2", sheet.getRow(1).getCell(0).getCellFormula());
+        assertEquals("B3", sheet.getRow(2).getCell(0).getCellFormula());
+        assertEquals("B4", sheet.getRow(3).getCell(0).getCellFormula());
+        assertEquals("B13", sheet.getRow(12).getCell(0).getCellFormula());
+    }
+
+    public void testMissingCellPolicy() throws IOException {
+        CompactWorkbook wb = openSample("sample.xlsx");
+        CompactRow row = wb.getSheetAt(0).getRow(0);
+
+        assertNull(row.getCell(200));
+        assertNull(row.getCell(200, Row.RETURN_BLANK_AS_NULL));
+        CompactCell cell = row.getCell(200, Row.CREATE_NULL_AS_BLANK);
+        assertEquals(Cell.CELL_TYPE_BLANK, cell.getCellType());
+        assertEquals(200, cell.getColumnIndex());
+        assertEquals("", cell.getStringCellValue());
+        assertEquals(0.0, cell.getNumericCellValue(), 0.0);
+        assertNull(wb.getSheetAt(0).getRow(100000));
+    }
+
+    public void testReadOnly() throws IOException {
+        CompactWorkbook wb = openSample("sample.xlsx");
+        try {
+            wb.createSheet();
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            wb.getSheetAt(0).createRow(0);
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            wb.getSheetAt(0).getRow(0).getCell(0).setCellValue(1.0);
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testGetNameAt() throws IOException {
+        XSSFWorkbook expected = XSSFTestDataSamples.openSampleWorkbook("RepeatingRowsCols.xlsx");
+        CompactWorkbook actual = openSample("RepeatingRowsCols.xlsx");
+        int nNames = actual.getNumberOfNames();
+        assertTrue(nNames > 0);
+        for (int i = 0; i < nNames; i++) {
+            assertEquals(expected.getNameAt(i).getNameName(), actual.getNameAt(i).getNameName());
+        }
+        try {
+            actual.getNameAt(nNames);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRepeatingRowsAndColumns() throws IOException {
+        XSSFWorkbook expected = XSSFTestDataSamples.openSampleWorkbook("RepeatingRowsCols.xlsx");
+        CompactWorkbook actual = openSample("RepeatingRowsCols.xlsx");
+        for (int i = 0; i < expected.getNumberOfSheets(); i++) {
+            assertEquals(String.valueOf(expected.getSheetAt(i).getRepeatingRows()),
+                    String.valueOf(actual.getSheetAt(i).getRepeatingRows()));
+            assertEquals(String.valueOf(expected.getSheetAt(i).getRepeatingColumns()),
+                    String.valueOf(actual.getSheetAt(i).getRepeatingColumns()));
+        }
+    }
+}
@@ -55,4 +55,20 @@ public final class TestReadOnlySharedStringsTable extends TestCase {
         }
 
 	}
+
+    public void testParseFileBacked() throws Exception {
+        OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("SampleSS.xlsx"));
+        List<PackagePart> parts = pkg.getPartsByName(Pattern.compile("/xl/sharedStrings.xml"));
+
+        ReadOnlySharedStringsTable expected = new ReadOnlySharedStringsTable(parts.get(0), null);
+        ReadOnlySharedStringsTable actual = new ReadOnlySharedStringsTable(parts.get(0), null, true);
+
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getUniqueCount(), actual.getUniqueCount());
+        assertEquals(expected.getItems(), actual.getItems());
+        for (int i = 0; i < expected.getUniqueCount(); i++) {
+            assertEquals(expected.getEntryAt(i), actual.getEntryAt(i));
+        }
+        actual.close();
+    }
 }
@@ -18,16 +18,26 @@
 package org.apache.poi.xssf.eventusermodel;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.parsers.SAXParserFactory;
 
 import junit.framework.TestCase;
 
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
 import org.apache.poi.xssf.model.CommentsTable;
+import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.apache.poi.POIDataSamples;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
 /**
  * Tests for {@link XSSFReader}
@@ -164,4 +174,71 @@ public final class TestXSSFReader extends TestCase {
           stream.close();
       }
    }
+
+   /**
+    * Parsing the sheets concurrently gives each sheet's handler the same
+    *  events as parsing them one at a time
+    */
+   public void testProcessSheetsParallel() throws Exception {
+      String[] files = { "FormulaEvalTestData_Copy.xlsx", "reordered_sheets.xlsx", "WithChartSheet.xlsx", "SampleSS.xlsx" };
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         for (String file : files) {
+            OPCPackage pkg = XSSFTestDataSamples.openSamplePackage(file);
+            XSSFReader r = new XSSFReader(pkg);
+            StylesTable styles = r.getStylesTable();
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+
+            List<String> expected = new ArrayList<String>();
+            XSSFReader.SheetIterator it = (XSSFReader.SheetIterator)r.getSheetsData();
+            while (it.hasNext()) {
+               InputStream stream = it.next();
+               RecordingHandler handler = new RecordingHandler(it.getSheetName());
+               XMLReader parser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+               parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, handler, false));
+               parser.parse(new InputSource(stream));
+               stream.close();
+               expected.addAll(handler.events);
+            }
+
+            final List<RecordingHandler> handlers = new ArrayList<RecordingHandler>();
+            r.processSheets(styles, strings, new XSSFReader.SheetContentsHandlerFactory() {
+               public SheetContentsHandler createHandler(int sheetIndex, String sheetName) {
+                  assertEquals(handlers.size(), sheetIndex);
+                  RecordingHandler handler = new RecordingHandler(sheetName);
+                  handlers.add(handler);
+                  return handler;
+               }
+            }, false, executor);
+            List<String> actual = new ArrayList<String>();
+            for (RecordingHandler handler : handlers) {
+               actual.addAll(handler.events);
+            }
+            assertTrue(file, actual.size() > 0);
+            assertEquals(file, expected, actual);
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   private static final class RecordingHandler implements SheetContentsHandler {
+      final List<String> events = new ArrayList<String>();
+
+      RecordingHandler(String sheetName) {
+         events.add("sheet " + sheetName);
+      }
+      public void startRow(int rowNum) {
+         events.add("row " + rowNum);
+      }
+      public void endRow() {
+         events.add("end row");
+      }
+      public void cell(String cellReference, String formattedValue) {
+         events.add(cellReference + "=" + formattedValue);
+      }
+      public void headerFooter(String text, boolean isHeader, String tagName) {
+         events.add(tagName + "=" + text);
+      }
+   }
 }
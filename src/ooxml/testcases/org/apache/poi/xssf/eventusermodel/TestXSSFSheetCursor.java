@@ -0,0 +1,236 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.xssf.eventusermodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+
+/**
+ * Tests for {@link XSSFSheetCursor}
+ */
+public final class TestXSSFSheetCursor extends TestCase {
+
+    /**
+     * The cursor gives the same cells as the user model
+     */
+    public void testSameAsUserModel() throws Exception {
+        String[] files = {
+                "SampleSS.xlsx", "FormulaEvalTestData_Copy.xlsx", "InlineStrings.xlsx",
+                "Booleans.xlsx", "WithMoreVariousData.xlsx", "reordered_sheets.xlsx",
+        };
+        for (String file : files) {
+            XSSFWorkbook wb = XSSFTestDataSamples.openSampleWorkbook(file);
+            OPCPackage pkg = XSSFTestDataSamples.openSamplePackage(file);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = new XSSFReader(pkg).getSheetsData();
+            int cellCount = 0;
+            for (int i = 0; sheets.hasNext(); i++) {
+                XSSFSheet sheet = wb.getSheetAt(i);
+                XSSFSheetCursor cursor = new XSSFSheetCursor(sheets.next(), strings);
+                Iterator<Row> rows = sheet.rowIterator();
+                while (cursor.nextRow()) {
+                    Row row = rows.next();
+                    assertEquals(file, row.getRowNum(), cursor.getRowNum());
+                    Iterator<Cell> cells = row.cellIterator();
+                    while (cursor.nextCell()) {
+                        assertSameCell(file, (XSSFCell)cells.next(), cursor);
+                        cellCount++;
+                    }
+                    assertFalse(file, cells.hasNext());
+                }
+                assertFalse(file, rows.hasNext());
+                assertFalse(cursor.nextCell());
+                cursor.close();
+            }
+            assertTrue(file, cellCount > 0);
+        }
+    }
+
+    private static void assertSameCell(String file, XSSFCell cell, XSSFSheetCursor cursor) {
+        String msg = file + " " + cell.getReference();
+        CTCell ctCell = cell.getCTCell();
+        assertEquals(msg, cell.getColumnIndex(), cursor.getColumnIndex());
+        assertEquals(msg, ctCell.isSetS() ? (int)ctCell.getS() : 0, cursor.getStyleIndex());
+        assertEquals(msg, cell.getCellType(), cursor.getCellType());
+        int type = cell.getCellType();
+        if (type == Cell.CELL_TYPE_FORMULA) {
+            assertEquals(msg, ctCell.getF().getStringValue(), cursor.getCellFormula());
+            type = cell.getCachedFormulaResultType();
+            assertEquals(msg, type, cursor.getCachedFormulaResultType());
+        } else {
+            assertNull(msg, cursor.getCellFormula());
+        }
+        switch (type) {
+            case Cell.CELL_TYPE_NUMERIC:
+                assertEquals(msg, cell.getNumericCellValue(), cursor.getNumericCellValue(), 0.0);
+                break;
+            case Cell.CELL_TYPE_STRING:
+                if (cursor.isSharedString()) {
+                    assertEquals(msg, Integer.parseInt(ctCell.getV()), cursor.getSharedStringIndex());
+                }
+                assertEquals(msg, cell.getStringCellValue(), cursor.getStringCellValue());
+                break;
+            case Cell.CELL_TYPE_BOOLEAN:
+                assertEquals(msg, cell.getBooleanCellValue(), cursor.getBooleanCellValue());
+                break;
+            case Cell.CELL_TYPE_ERROR:
+                assertEquals(msg, cell.getErrorCellValue(), cursor.getErrorCellValue());
+                break;
+        }
+    }
+
+    /**
+     * Markup which Excel does not write, but other generators may
+     */
+    public void testUnusualMarkup() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+                + "<!-- a comment, with <c> in it -->"
+                + "<x:worksheet xmlns:x=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<x:sheetData>"
+                + "<x:row r='2'><x:c r='B2' s='3'><x:v>1.5</x:v></x:c><x:c t='inlineStr'><x:is><x:t>a &amp; b&#x41;</x:t></x:is></x:c></x:row>"
+                + "<x:row/>"
+                + "<x:row><x:c t=\"str\"><x:f>\"x\"&amp;\"y\"</x:f><x:v><![CDATA[x<&y]]></x:v></x:c><x:c r=\"AA4\"/>"
+                + "<x:c t=\"inlineStr\"><x:is><x:r><x:t>rich </x:t></x:r><x:r><x:t>text</x:t></x:r>"
+                + "<x:rPh><x:t>phonetic</x:t></x:rPh></x:is></x:c><x:c t=\"b\"><x:v>1</x:v></x:c>"
+                + "<x:c t=\"e\"><x:v>#DIV/0!</x:v></x:c><x:c><x:v> 2 </x:v></x:c></x:row>"
+                + "</x:sheetData>"
+                + "<x:row r='100'><x:c><x:v>1</x:v></x:c></x:row>"
+                + "</x:worksheet>";
+        XSSFSheetCursor cursor = new XSSFSheetCursor(new ByteArrayInputStream(xml.getBytes("UTF-8")), null);
+
+        assertTrue(cursor.nextRow());
+        assertEquals(1, cursor.getRowNum());
+        assertTrue(cursor.nextCell());
+        assertEquals(1, cursor.getColumnIndex());
+        assertEquals(3, cursor.getStyleIndex());
+        assertEquals(Cell.CELL_TYPE_NUMERIC, cursor.getCellType());
+        assertEquals(1.5, cursor.getNumericCellValue(), 0.0);
+        assertTrue(cursor.nextCell());
+        assertEquals(2, cursor.getColumnIndex());
+        assertEquals(0, cursor.getStyleIndex());
+        assertEquals(Cell.CELL_TYPE_STRING, cursor.getCellType());
+        assertFalse(cursor.isSharedString());
+        assertEquals("a & bA", cursor.getStringCellValue());
+        assertFalse(cursor.nextCell());
+
+        assertTrue(cursor.nextRow());
+        assertEquals(2, cursor.getRowNum());
+        assertFalse(cursor.nextCell());
+
+        assertTrue(cursor.nextRow());
+        assertEquals(3, cursor.getRowNum());
+        assertTrue(cursor.nextCell());
+        assertEquals(0, cursor.getColumnIndex());
+        assertEquals(Cell.CELL_TYPE_FORMULA, cursor.getCellType());
+        assertEquals(Cell.CELL_TYPE_STRING, cursor.getCachedFormulaResultType());
+        assertEquals("\"x\"&\"y\"", cursor.getCellFormula());
+        assertEquals("x<&y", cursor.getStringCellValue());
+        assertTrue(cursor.nextCell());
+        assertEquals(26, cursor.getColumnIndex());
+        assertEquals(Cell.CELL_TYPE_BLANK, cursor.getCellType());
+        assertTrue(cursor.nextCell());
+        assertEquals(27, cursor.getColumnIndex());
+        assertEquals("rich text", cursor.getStringCellValue());
+        assertTrue(cursor.nextCell());
+        assertEquals(Cell.CELL_TYPE_BOOLEAN, cursor.getCellType());
+        assertTrue(cursor.getBooleanCellValue());
+        assertTrue(cursor.nextCell());
+        assertEquals(Cell.CELL_TYPE_ERROR, cursor.getCellType());
+        assertEquals(7, cursor.getErrorCellValue());
+        assertTrue(cursor.nextCell());
+        assertEquals(2.0, cursor.getNumericCellValue(), 0.0);
+        assertFalse(cursor.nextCell());
+
+        // nothing after the sheet data
+        assertFalse(cursor.nextRow());
+        assertFalse(cursor.nextCell());
+        cursor.close();
+    }
+
+    /**
+     * Rows can be skipped without reading their cells
+     */
+    public void testSkipRows() throws Exception {
+        String xml = "<worksheet><sheetData>"
+                + "<row r=\"1\"><c r=\"A1\"><v>1</v></c><c r=\"B1\"><v>2</v></c></row>"
+                + "<row r=\"3\"><c r=\"C3\"><v>3</v></c></row>"
+                + "</sheetData></worksheet>";
+        XSSFSheetCursor cursor = new XSSFSheetCursor(new ByteArrayInputStream(xml.getBytes("UTF-8")), null);
+        assertTrue(cursor.nextRow());
+        assertTrue(cursor.nextCell());
+        assertTrue(cursor.nextRow());
+        assertEquals(2, cursor.getRowNum());
+        assertTrue(cursor.nextCell());
+        assertEquals(2, cursor.getColumnIndex());
+        assertEquals(3.0, cursor.getNumericCellValue(), 0.0);
+        assertFalse(cursor.nextRow());
+    }
+
+    /**
+     * Numbers are parsed to exactly the same doubles as by {@link Double#parseDouble(String)}
+     */
+    public void testNumbers() throws Exception {
+        Random random = new Random(12345);
+        StringBuilder xml = new StringBuilder("<worksheet><sheetData><row>");
+        String[] values = new String[5000];
+        String[] fixed = { "0", "-0", "1E-7", "1.7976931348623157E308", "4.9E-324", "123456789012345",
+                "1234567890123456789", "0.1", "-2.5e+3", "0.000000000000000000000000001", "1e23", "9007199254740993" };
+        for (int i = 0; i < values.length; i++) {
+            if (i < fixed.length) {
+                values[i] = fixed[i];
+            } else if (i % 3 == 0) {
+                values[i] = String.valueOf(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+            } else if (i % 3 == 1) {
+                values[i] = String.valueOf(random.nextInt(100000000) / 1000.0);
+            } else {
+                values[i] = String.valueOf(random.nextLong());
+            }
+            xml.append("<c><v>").append(values[i]).append("</v></c>");
+        }
+        xml.append("</row></sheetData></worksheet>");
+
+        XSSFSheetCursor cursor = new XSSFSheetCursor(new ByteArrayInputStream(xml.toString().getBytes("UTF-8")), null);
+        assertTrue(cursor.nextRow());
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(cursor.nextCell());
+            double expected = Double.parseDouble(values[i]);
+            assertEquals(values[i], Double.doubleToLongBits(expected), Double.doubleToLongBits(cursor.getNumericCellValue()));
+        }
+        assertFalse(cursor.nextCell());
+    }
+
+    public void testUTF16() throws Exception {
+        String xml = "<worksheet><sheetData><row><c t=\"inlineStr\"><is><t>\u00e9\u4e2d</t></is></c></row></sheetData></worksheet>";
+        XSSFSheetCursor cursor = new XSSFSheetCursor(new ByteArrayInputStream(xml.getBytes("UTF-16")), null);
+        assertTrue(cursor.nextRow());
+        assertTrue(cursor.nextCell());
+        assertEquals("\u00e9\u4e2d", cursor.getStringCellValue());
+    }
+}
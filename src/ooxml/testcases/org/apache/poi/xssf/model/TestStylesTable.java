@@ -17,12 +17,16 @@
 
 package org.apache.poi.xssf.model;
 
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xssf.XSSFTestDataSamples;
 
 import junit.framework.TestCase;
 
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
+
 public final class TestStylesTable extends TestCase {
 	private String testFile = "Formatting.xlsx";
 
@@ -148,4 +152,141 @@ public final class TestStylesTable extends TestCase {
 		assertEquals(nf1, st.putNumberFormat("YYYY-mm-dd"));
 		assertEquals(nf2, st.putNumberFormat("YYYY-mm-DD"));
 	}
+
+	public void testPutFontFillBorder() {
+		StylesTable st = new StylesTable();
+		int fonts = st.getFonts().size();
+
+		XSSFFont font = new XSSFFont(CTFont.Factory.newInstance());
+		font.setBold(true);
+		int idx = st.putFont(font);
+		assertEquals(fonts, idx);
+
+		XSSFFont same = new XSSFFont(CTFont.Factory.newInstance());
+		same.setBold(true);
+		assertEquals(idx, st.putFont(same));
+		assertEquals(fonts + 1, st.getFonts().size());
+		assertEquals(fonts + 1, st.putFont(same, true));
+
+		// A font changed in place is found by its new value, and no longer by its old one
+		font.setItalic(true);
+		XSSFFont changed = new XSSFFont(CTFont.Factory.newInstance());
+		changed.setBold(true);
+		changed.setItalic(true);
+		assertEquals(idx, st.putFont(changed));
+		assertEquals(fonts + 2, st.getFonts().size());
+		XSSFFont bold = new XSSFFont(CTFont.Factory.newInstance());
+		bold.setBold(true);
+		assertEquals(fonts + 1, st.putFont(bold));
+		XSSFFont italic = new XSSFFont(CTFont.Factory.newInstance());
+		italic.setBold(true);
+		italic.setItalic(true);
+		assertEquals(idx, st.putFont(italic));
+
+		XSSFCellStyle style = st.createCellStyle();
+		style.setBorderTop(CellStyle.BORDER_THIN);
+		style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+		int borders = st.getBorders().size();
+		int fills = st.getFills().size();
+
+		XSSFCellStyle other = st.createCellStyle();
+		other.setBorderTop(CellStyle.BORDER_THIN);
+		other.setFillPattern(CellStyle.SOLID_FOREGROUND);
+		assertEquals(borders, st.getBorders().size());
+		assertEquals(fills, st.getFills().size());
+		assertEquals(style.getCoreXf().getBorderId(), other.getCoreXf().getBorderId());
+		assertEquals(style.getCoreXf().getFillId(), other.getCoreXf().getFillId());
+	}
+
+	public void testGetOrCreateStyle() {
+		XSSFWorkbook workbook = XSSFTestDataSamples.openSampleWorkbook(testFile);
+		StylesTable st = workbook.getStylesSource();
+		int xfs = st._getXfsSize();
+
+		XSSFCellStyle wrapped = new XSSFCellStyle(st);
+		wrapped.setWrapText(true);
+		wrapped.setDataFormat((short)14);
+		XSSFCellStyle style = st.getOrCreateStyle(wrapped);
+		assertEquals(xfs + 1, st._getXfsSize());
+		assertEquals(xfs, style.getIndex());
+
+		for(int i=0; i<100; i++) {
+			XSSFCellStyle same = new XSSFCellStyle(st);
+			same.setDataFormat((short)14);
+			same.setWrapText(true);
+			assertEquals(style.getIndex(), st.getOrCreateStyle(same).getIndex());
+		}
+		assertEquals(xfs + 1, st._getXfsSize());
+
+		// Registered styles are found by their value too
+		XSSFCellStyle created = st.createCellStyle();
+		created.setWrapText(true);
+		XSSFCellStyle other = st.createCellStyle();
+		other.setWrapText(true);
+		assertEquals(created.getIndex(), st.getOrCreateStyle(other).getIndex());
+
+		// A style changed in place is found by its new value
+		created.setWrapText(false);
+		created.setRotation((short)45);
+		XSSFCellStyle rotated = new XSSFCellStyle(st);
+		rotated.getCoreXf().set(created.getCoreXf().copy());
+		assertEquals(created.getIndex(), st.getOrCreateStyle(rotated).getIndex());
+		assertEquals(other.getIndex(), st.getOrCreateStyle(other).getIndex());
+
+		try {
+			st.getOrCreateStyle(new XSSFCellStyle(new StylesTable()));
+			fail("Style of another table");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * New distinct entries are added to the indexes, which are only rebuilt
+	 *  after an indexed entry was changed in place
+	 */
+	public void testIndexesNotRebuiltOnMiss() {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		StylesTable st = workbook.getStylesSource();
+		int xfs = st._getXfsSize();
+
+		for(int i=0; i<500; i++) {
+			XSSFCellStyle style = new XSSFCellStyle(st);
+			style.setDataFormat((short)14);
+			style.setIndention((short)(i % 16));
+			style.setRotation((short)(i / 16));
+			style.setFillForegroundColor((short)(i % 64));
+			style.setBorderBottom((short)(i % 13 + 1));
+			assertEquals(xfs + i, st.getOrCreateStyle(style).getIndex());
+
+			XSSFFont font = new XSSFFont(CTFont.Factory.newInstance());
+			font.setFontHeight(8.0 + i);
+			st.putFont(font);
+		}
+		assertEquals(xfs + 500, st._getXfsSize());
+		assertEquals(0, st.getIndexRebuildCount());
+
+		// Changing a registered font rebuilds the font index, once
+		XSSFFont font = st.getFontAt(1);
+		font.setItalic(true);
+		XSSFFont italic = new XSSFFont(CTFont.Factory.newInstance());
+		italic.setFontHeight(8.0);
+		italic.setItalic(true);
+		assertEquals(1, st.putFont(italic));
+		assertEquals(1, st.getIndexRebuildCount());
+		XSSFFont other = new XSSFFont(CTFont.Factory.newInstance());
+		other.setFontHeight(1000.0);
+		st.putFont(other);
+		assertEquals(1, st.getIndexRebuildCount());
+
+		// Changing a registered style rebuilds the style index, once
+		XSSFCellStyle registered = st.getStyleAt(xfs);
+		registered.setWrapText(true);
+		XSSFCellStyle wrapped = new XSSFCellStyle(st);
+		wrapped.getCoreXf().set(registered.getCoreXf().copy());
+		assertEquals(xfs, st.getOrCreateStyle(wrapped).getIndex());
+		assertEquals(2, st.getIndexRebuildCount());
+		st.getOrCreateStyle(new XSSFCellStyle(st));
+		assertEquals(2, st.getIndexRebuildCount());
+	}
 }
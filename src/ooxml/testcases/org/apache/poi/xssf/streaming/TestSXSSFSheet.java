@@ -20,6 +20,7 @@
 package org.apache.poi.xssf.streaming;
 
 import org.apache.poi.ss.usermodel.BaseTestSheet;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.xssf.SXSSFITestDataProvider;
 
 
@@ -90,4 +91,38 @@ public class TestSXSSFSheet extends BaseTestSheet {
     public void testDefaultColumnStyle() {
         //TODO column styles are not yet supported by XSSF
     }
+
+    public void testTrackColumnsForAutoSizing() throws Exception {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(10);
+        try {
+            SXSSFSheet tracked = (SXSSFSheet)workbook.createSheet();
+            tracked.trackColumnsForAutoSizing(0, 1);
+            SXSSFSheet untracked = (SXSSFSheet)workbook.createSheet();
+            for (int i = 0; i < 100; i++) {
+                String value = i == 5 ? "A long value in one of the first rows" : "Short";
+                for (SXSSFSheet sheet : new SXSSFSheet[] { tracked, untracked }) {
+                    Row row = sheet.createRow(i);
+                    row.createCell(0).setCellValue(value);
+                    row.createCell(1).setCellValue(1.5);
+                    row.createCell(2).setCellValue(value);
+                }
+            }
+            assertNull(tracked.getRow(5));
+
+            tracked.autoSizeColumns(0, 1, 2);
+            untracked.autoSizeColumns(0, 1, 2);
+
+            // The flushed rows count for the tracked columns only
+            assertTrue(tracked.getColumnWidth(0) > untracked.getColumnWidth(0));
+            assertEquals(untracked.getColumnWidth(0), tracked.getColumnWidth(2));
+            assertEquals(untracked.getColumnWidth(1), tracked.getColumnWidth(1));
+
+            int width = tracked.getColumnWidth(0);
+            tracked.setColumnWidth(0, 256);
+            tracked.autoSizeColumn(0);
+            assertEquals(width, tracked.getColumnWidth(0));
+        } finally {
+            workbook.dispose();
+        }
+    }
 }
@@ -19,12 +19,19 @@
 
 package org.apache.poi.xssf.streaming;
 
+import org.apache.poi.openxml4j.exceptions.OpenXML4JRuntimeException;
+import org.apache.poi.openxml4j.util.TestParallelZipOutputStream;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.SXSSFITestDataProvider;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public final class TestSXSSFWorkbook extends BaseTestWorkbook {
     public static final SXSSFITestDataProvider _testDataProvider = SXSSFITestDataProvider.instance;
@@ -149,6 +156,41 @@ public final class TestSXSSFWorkbook extends BaseTestWorkbook {
     	assertEquals("value 3_1_1", cell3_1_1.getStringCellValue());
     }
 
+    public void testSharedStringsTable() {
+        XSSFWorkbook xssfWorkbook = new XSSFWorkbook();
+        Sheet sheet = xssfWorkbook.createSheet("S1");
+        sheet.createRow(0).createCell(0).setCellValue("template & value");
+        SXSSFWorkbook wb = new SXSSFWorkbook(xssfWorkbook, 10, false, true);
+
+        String[] values = {"DE", "FR", " spaced ", "DE", "<\u00e4>", "FR", "DE"};
+        sheet = wb.getSheetAt(0);
+        for (int rownum = 1; rownum <= 100; rownum++) {
+            Row row = sheet.createRow(rownum);
+            row.createCell(0).setCellValue(values[rownum % values.length]);
+            row.createCell(1).setCellValue(rownum);
+        }
+        Sheet sheet2 = wb.createSheet("S2");
+        sheet2.createRow(0).createCell(0).setCellValue("FR");
+        sheet2.getRow(0).createCell(1).setCellValue("new");
+
+        xssfWorkbook = (XSSFWorkbook) SXSSFITestDataProvider.instance.writeOutAndReadBack(wb);
+        assertTrue(wb.dispose());
+        // the template string and 5 distinct new ones
+        assertEquals(6, xssfWorkbook.getSharedStringSource().getUniqueCount());
+        assertEquals(103, xssfWorkbook.getSharedStringSource().getCount());
+
+        sheet = xssfWorkbook.getSheetAt(0);
+        assertEquals("template & value", sheet.getRow(0).getCell(0).getStringCellValue());
+        for (int rownum = 1; rownum <= 100; rownum++) {
+            Row row = sheet.getRow(rownum);
+            assertEquals(values[rownum % values.length], row.getCell(0).getStringCellValue());
+            assertEquals(rownum, row.getCell(1).getNumericCellValue(), 0.0);
+        }
+        sheet2 = xssfWorkbook.getSheetAt(1);
+        assertEquals("FR", sheet2.getRow(0).getCell(0).getStringCellValue());
+        assertEquals("new", sheet2.getRow(0).getCell(1).getStringCellValue());
+    }
+
     public void testSheetdataWriter(){
         SXSSFWorkbook wb = new SXSSFWorkbook();
         SXSSFSheet sh = (SXSSFSheet)wb.createSheet();
@@ -222,6 +264,139 @@ public final class TestSXSSFWorkbook extends BaseTestWorkbook {
 
     }
 
+    private static SXSSFSheet createVariousCells(SXSSFWorkbook wb) {
+        CellStyle style = wb.createCellStyle();
+        style.setWrapText(true);
+        SXSSFSheet sh = (SXSSFSheet)wb.createSheet();
+        for (int j = 0; j < 300; j++) {
+            Row row = sh.createRow(j * 2);
+            row.createCell(0).setCellValue("row " + j + " \u00e4<&>\u0000 ");
+            row.createCell(2).setCellValue(j * 1.5);
+            row.createCell(3).setCellValue(j % 2 == 0);
+            row.createCell(4).setCellErrorValue(FormulaError.DIV0.getCode());
+            row.createCell(5).setCellFormula("C" + (j * 2 + 1) + "*2");
+            row.createCell(6).setCellStyle(style);
+            row.createCell(200 + j).setCellValue(j);
+            if (j % 3 == 0) row.setHeightInPoints(25.5f);
+            if (j % 5 == 0) row.setZeroHeight(true);
+            if (j % 7 == 0) row.setRowStyle(style);
+        }
+        sh.groupRow(10, 20);
+        return sh;
+    }
+
+    private static byte[] readWorksheetXML(SXSSFSheet sh) throws IOException {
+        sh.flushRows();
+        InputStream in = sh.getWorksheetXMLInputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1000];
+        int count;
+        while ((count = in.read(chunk)) >= 0) {
+            out.write(chunk, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    public void testBinarySheetdataWriter() throws IOException {
+        SXSSFWorkbook xmlWb = new SXSSFWorkbook(10);
+        byte[] expected = readWorksheetXML(createVariousCells(xmlWb));
+        xmlWb.dispose();
+
+        for (boolean compress : new boolean[]{false, true}) {
+            SXSSFWorkbook wb = new SXSSFWorkbook(10);
+            wb.setBinaryTempFiles(true);
+            wb.setCompressTempFiles(compress);
+            SXSSFSheet sh = createVariousCells(wb);
+            SheetDataWriter wr = sh.getSheetDataWriter();
+            assertTrue(wr.getClass() == BinarySheetDataWriter.class);
+            assertTrue(wr.getTempFile().getName().endsWith(".bin"));
+            // the rendered XML is the same as the one written by SheetDataWriter
+            assertEquals(new String(expected, "UTF-8"), new String(readWorksheetXML(sh), "UTF-8"));
+            assertTrue(wb.dispose());
+            assertFalse(wr.getTempFile().exists());
+        }
+
+        SXSSFWorkbook wb = new SXSSFWorkbook(null, 10, false, true);
+        wb.setBinaryTempFiles(true);
+        createVariousCells(wb);
+        XSSFWorkbook xwb = (XSSFWorkbook)SXSSFITestDataProvider.instance.writeOutAndReadBack(wb);
+        wb.dispose();
+        Sheet sh = xwb.getSheetAt(0);
+        assertEquals(300, sh.getPhysicalNumberOfRows());
+        assertEquals("row 7 \u00e4<&>? ", sh.getRow(14).getCell(0).getStringCellValue());
+        assertEquals(10.5, sh.getRow(14).getCell(2).getNumericCellValue(), 0.0);
+        assertEquals("C15*2", sh.getRow(14).getCell(5).getCellFormula());
+        assertEquals(7.0, sh.getRow(14).getCell(207).getNumericCellValue(), 0.0);
+    }
+
+    public void testCompressionExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            SXSSFWorkbook wb = new SXSSFWorkbook(null, 10, false, true);
+            wb.setCompressionExecutor(executor);
+            wb.setCompressionLevel("xl/worksheets/", 1);
+            for (int i = 0; i < 3; i++) {
+                Sheet sh = wb.createSheet("sheet" + i);
+                for (int j = 0; j < 500; j++) {
+                    Row row = sh.createRow(j);
+                    row.createCell(0).setCellValue("value " + (j % 10));
+                    row.createCell(1).setCellValue(i * j);
+                }
+            }
+            XSSFWorkbook xwb = (XSSFWorkbook)SXSSFITestDataProvider.instance.writeOutAndReadBack(wb);
+            wb.dispose();
+            for (int i = 0; i < 3; i++) {
+                Sheet sh = xwb.getSheetAt(i);
+                assertEquals(499, sh.getLastRowNum());
+                assertEquals("value 7", sh.getRow(497).getCell(0).getStringCellValue());
+                assertEquals(i * 497, sh.getRow(497).getCell(1).getNumericCellValue(), 0.0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testFailedWriteDeletesCompressedSheets() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            SXSSFWorkbook wb = new SXSSFWorkbook(10);
+            wb.setCompressionExecutor(executor);
+            // stored, so the compressed sheets spill to temporary files
+            wb.setCompressionLevel("xl/worksheets/", 0);
+            // more sheets than entries kept pending, so the first is written while
+            //  the later ones are still being added
+            for (int i = 0; i < 20; i++) {
+                Sheet sh = wb.createSheet("sheet" + i);
+                for (int j = 0; j < 10000; j++) {
+                    Row row = sh.createRow(j);
+                    for (int k = 0; k < 3; k++) {
+                        row.createCell(k).setCellValue(i * j + k);
+                    }
+                }
+            }
+            int spooled = TestParallelZipOutputStream.countSpoolFiles();
+            try {
+                // runs out of space on the first sheet
+                wb.write(new ByteArrayOutputStream() {
+                    public void write(byte[] b, int off, int len) {
+                        if (size() + len > 1024 * 1024) {
+                            throw new IllegalStateException("disk full");
+                        }
+                        super.write(b, off, len);
+                    }
+                });
+                fail("expected the write to fail");
+            } catch (OpenXML4JRuntimeException e) {
+                assertEquals("disk full", e.getCause().getMessage());
+            }
+            assertEquals(spooled, TestParallelZipOutputStream.countSpoolFiles());
+            wb.dispose();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     static void assertWorkbookDispose(SXSSFWorkbook wb)
     {
         int rowNum = 1000;
@@ -18,6 +18,7 @@
 package org.apache.poi.xssf.usermodel;
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.XSSFITestDataProvider;
 import org.apache.poi.xssf.model.SharedStringsTable;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
@@ -169,6 +170,19 @@ public final class TestXSSFCell extends BaseTestCell {
         assertEquals(null, cell.getCellStyle());
     }
 
+    /**
+     * References the fast parser does not accept are handed to {@link CellReference}
+     */
+    public void testCellReferenceFallback() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFRow row = wb.createSheet("Sheet1").createRow(2);
+        CTCell ctCell = row.getCTRow().addNewC();
+        ctCell.setR("Sheet1!$C$3");
+        assertEquals(2, new XSSFCell(row, ctCell).getColumnIndex());
+        ctCell.setR("$D$3");
+        assertEquals(3, new XSSFCell(row, ctCell).getColumnIndex());
+    }
+
     /**
      * Cell with the formula that returns error must return error code(There was
      * an problem that cell could not return error value form formula cell).
@@ -0,0 +1,86 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.util;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public final class TestFileBackedStringTable extends TestCase {
+
+    public void testAppend() throws IOException {
+        FileBackedStringTable table = new FileBackedStringTable(false);
+        assertEquals(0, table.size());
+        assertEquals(0, table.addEntry("abc"));
+        assertEquals(1, table.addEntry("abc"));
+        assertEquals(2, table.append(""));
+        assertEquals(3, table.append("äöü €"));
+        assertEquals(4, table.size());
+
+        assertEquals("abc", table.getEntryAt(0));
+        assertEquals("abc", table.getEntryAt(1));
+        assertEquals("", table.getEntryAt(2));
+        assertEquals("äöü €", table.getEntryAt(3));
+        try {
+            table.getEntryAt(4);
+            fail("expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        table.close();
+    }
+
+    public void testDeduplicate() throws IOException {
+        FileBackedStringTable table = new FileBackedStringTable(true);
+        for (int i = 0; i < 50000; i++) {
+            assertEquals(i, table.addEntry("string " + i));
+        }
+        for (int i = 0; i < 50000; i += 7) {
+            assertEquals(i, table.addEntry("string " + i));
+        }
+        assertEquals(50000, table.size());
+        // a different string with an equal hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertEquals(50000, table.addEntry("Aa"));
+        assertEquals(50001, table.addEntry("BB"));
+        assertEquals(50000, table.addEntry("Aa"));
+        // appended duplicates are indexed, the first one is found
+        assertEquals(50002, table.append("BB"));
+        assertEquals(50001, table.addEntry("BB"));
+        assertEquals(50003, table.size());
+        table.close();
+    }
+
+    public void testLargeEntries() throws IOException {
+        FileBackedStringTable table = new FileBackedStringTable(false);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            large.append((char)('a' + i % 26));
+        }
+        // entries still in the write buffer, written through it, and written directly
+        for (int i = 0; i < 20; i++) {
+            table.append("small " + i);
+            table.append(large.substring(i * 1000));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertEquals("small " + i, table.getEntryAt(i * 2));
+            assertEquals(large.substring(i * 1000), table.getEntryAt(i * 2 + 1));
+        }
+        table.close();
+    }
+}
@@ -18,20 +18,35 @@
 package org.apache.poi.hssf.eventusermodel;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.TestCase;
 
 import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
 import org.apache.poi.hssf.record.ContinueRecord;
 import org.apache.poi.hssf.record.DVALRecord;
 import org.apache.poi.hssf.record.DVRecord;
+import org.apache.poi.hssf.record.DrawingRecord;
 import org.apache.poi.hssf.record.EOFRecord;
 import org.apache.poi.hssf.record.FeatHdrRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.ObjRecord;
+import org.apache.poi.hssf.record.RKRecord;
 import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
 import org.apache.poi.hssf.record.SelectionRecord;
+import org.apache.poi.hssf.record.TextObjectRecord;
 import org.apache.poi.hssf.record.WindowTwoRecord;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
 /**
  * 
  */
@@ -111,6 +126,206 @@ public final class TestHSSFEventFactory extends TestCase {
 		assertTrue("no errors while processing the file", true);
 	}
 
+	/**
+	 * Records only passed to some listeners are the same as when
+	 *  every record is created
+	 */
+	public void testSkipsRecordsNotListenedFor() throws Exception {
+		String[] files = { "SimpleWithSkip.xls", "ContinueRecordProblem.xls", "42844.xls", "FormulaEvalTestData.xls" };
+		for (String file : files) {
+			assertSameAsAllRecords(file, new short[] {
+					BoundSheetRecord.sid, SSTRecord.sid, NumberRecord.sid, LabelSSTRecord.sid, EOFRecord.sid });
+		}
+	}
+
+	/**
+	 * The continue records of records which are skipped are skipped with
+	 *  them, rather than being passed on as loose continue records
+	 */
+	public void testSkipsContinueRecordsWithTheirRecord() throws Exception {
+		String[] files = { "54016.xls", "StringContinueRecords.xls", "ContinueRecordProblem.xls",
+				"DrawingContinue.xls", "42844.xls", "45365.xls" };
+		short[][] sidSets = {
+				{ ContinueRecord.sid },
+				{ ContinueRecord.sid, SSTRecord.sid },
+				{ ContinueRecord.sid, ObjRecord.sid, TextObjectRecord.sid },
+				{ ContinueRecord.sid, DrawingRecord.sid },
+				{ SSTRecord.sid, LabelSSTRecord.sid },
+		};
+		for (String file : files) {
+			for (short[] sids : sidSets) {
+				assertSameAsAllRecords(file, sids);
+			}
+		}
+
+		// The shared strings of this file are continued many times over
+		HSSFRequest req = new HSSFRequest();
+		MockHSSFListener continues = new MockHSSFListener();
+		req.addListener(continues, ContinueRecord.sid);
+		new HSSFEventFactory().processWorkbookEvents(req, new POIFSFileSystem(openSample("54016.xls")));
+		assertEquals(0, continues.getRecords().length);
+	}
+
+	/**
+	 * Checks that listening for only some sids gives the same records
+	 *  as listening for all of them, and picking those sids out
+	 */
+	private static void assertSameAsAllRecords(String file, short[] sids) throws Exception {
+		HSSFRequest req = new HSSFRequest();
+		MockHSSFListener all = new MockHSSFListener();
+		req.addListenerForAllRecords(all);
+		new HSSFEventFactory().processWorkbookEvents(req, new POIFSFileSystem(openSample(file)));
+
+		req = new HSSFRequest();
+		MockHSSFListener some = new MockHSSFListener();
+		for (short sid : sids) {
+			req.addListener(some, sid);
+		}
+		new HSSFEventFactory().processWorkbookEvents(req, new POIFSFileSystem(openSample(file)));
+
+		List<String> expected = new ArrayList<String>();
+		for (Record r : all.getRecords()) {
+			for (short sid : sids) {
+				if (r.getSid() == sid) {
+					expected.add(r.toString());
+				}
+			}
+		}
+		List<String> actual = new ArrayList<String>();
+		for (Record r : some.getRecords()) {
+			actual.add(r.toString());
+		}
+		assertEquals(file + " " + Arrays.toString(sids), expected.size(), actual.size());
+		assertEquals(file + " " + Arrays.toString(sids), expected, actual);
+	}
+
+	/**
+	 * Cursor listeners see the same cell values as the records
+	 */
+	public void testCursorListener() throws Exception {
+		String file = "FormulaEvalTestData.xls";
+		HSSFRequest req = new HSSFRequest();
+		MockHSSFListener mockListen = new MockHSSFListener();
+		req.addListenerForAllRecords(mockListen);
+		new HSSFEventFactory().processWorkbookEvents(req, new POIFSFileSystem(openSample(file)));
+
+		List<String> expected = new ArrayList<String>();
+		for (Record r : mockListen.getRecords()) {
+			if (r instanceof NumberRecord) {
+				NumberRecord nr = (NumberRecord)r;
+				expected.add(nr.getRow() + "," + nr.getColumn() + "," + nr.getXFIndex() + "=" + nr.getValue());
+			} else if (r instanceof LabelSSTRecord) {
+				LabelSSTRecord lr = (LabelSSTRecord)r;
+				expected.add(lr.getRow() + "," + lr.getColumn() + "," + lr.getXFIndex() + "=#" + lr.getSSTIndex());
+			} else if (r instanceof FormulaRecord) {
+				FormulaRecord fr = (FormulaRecord)r;
+				String value = fr.getCachedResultType() == Cell.CELL_TYPE_NUMERIC ? String.valueOf(fr.getValue())
+						: fr.getCachedResultType() == Cell.CELL_TYPE_BOOLEAN ? String.valueOf(fr.getCachedBooleanValue())
+						: fr.getCachedResultType() == Cell.CELL_TYPE_ERROR ? "!" + fr.getCachedErrorValue()
+						: "type " + fr.getCachedResultType();
+				expected.add(fr.getRow() + "," + fr.getColumn() + "," + fr.getXFIndex() + "=f" + value);
+			}
+		}
+
+		final List<String> actual = new ArrayList<String>();
+		HSSFCursorListener cursorListen = new HSSFCursorListener() {
+			public void processRecord(HSSFRecordCursor cursor) {
+				switch (cursor.getSid()) {
+					case NumberRecord.sid:
+					case RKRecord.sid:
+						actual.add(cursor.getRow() + "," + cursor.getColumn() + "," + cursor.getXFIndex() + "=" + cursor.getNumberValue());
+						break;
+					case MulRKRecord.sid:
+						for (int i = 0; i < cursor.getMulRKCount(); i++) {
+							actual.add(cursor.getRow() + "," + (cursor.getColumn() + i) + "," + cursor.getMulRKXFIndex(i)
+									+ "=" + cursor.getMulRKNumberValue(i));
+						}
+						assertEquals(cursor.getColumn() + cursor.getMulRKCount() - 1, cursor.getMulRKLastColumn());
+						break;
+					case LabelSSTRecord.sid:
+						actual.add(cursor.getRow() + "," + cursor.getColumn() + "," + cursor.getXFIndex() + "=#" + cursor.getSSTIndex());
+						break;
+					case FormulaRecord.sid:
+						int type = cursor.getCachedResultType();
+						String value = type == Cell.CELL_TYPE_NUMERIC ? String.valueOf(cursor.getNumberValue())
+								: type == Cell.CELL_TYPE_BOOLEAN ? String.valueOf(cursor.getCachedBooleanValue())
+								: type == Cell.CELL_TYPE_ERROR ? "!" + cursor.getCachedErrorValue()
+								: "type " + type;
+						actual.add(cursor.getRow() + "," + cursor.getColumn() + "," + cursor.getXFIndex() + "=f" + value);
+						break;
+					default:
+						fail("Unexpected record " + cursor.getSid());
+				}
+			}
+		};
+		req = new HSSFRequest();
+		short[] sids = { NumberRecord.sid, RKRecord.sid, MulRKRecord.sid, LabelSSTRecord.sid, FormulaRecord.sid };
+		for (short sid : sids) {
+			req.addCursorListener(cursorListen, sid);
+		}
+		new HSSFEventFactory().processWorkbookEvents(req, new POIFSFileSystem(openSample(file)));
+
+		assertTrue(expected.size() > 100);
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * Processing the sheets in parallel passes each sheet's records to its own request,
+	 *  in the same order as processing the whole stream
+	 */
+	public void testParallelSheets() throws Exception {
+		String[] files = { "SimpleWithSkip.xls", "ContinueRecordProblem.xls", "FormulaEvalTestData.xls", "SimpleChart.xls" };
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (String file : files) {
+				HSSFRequest req = new HSSFRequest();
+				MockHSSFListener all = new MockHSSFListener();
+				req.addListenerForAllRecords(all);
+				new HSSFEventFactory().processWorkbookEvents(req, new POIFSFileSystem(openSample(file)));
+
+				req = new HSSFRequest();
+				MockHSSFListener globals = new MockHSSFListener();
+				req.addListenerForAllRecords(globals);
+				final List<MockHSSFListener> sheets = new ArrayList<MockHSSFListener>();
+				final List<String> sheetNames = new ArrayList<String>();
+				HSSFSheetRequestFactory sheetRequests = new HSSFSheetRequestFactory() {
+					public HSSFRequest createRequest(int sheetIndex, BoundSheetRecord boundSheet) {
+						assertEquals(sheets.size(), sheetIndex);
+						MockHSSFListener listener = new MockHSSFListener();
+						sheets.add(listener);
+						sheetNames.add(boundSheet.getSheetname());
+						HSSFRequest sheetReq = new HSSFRequest();
+						sheetReq.addListenerForAllRecords(listener);
+						return sheetReq;
+					}
+				};
+				new HSSFEventFactory().processWorkbookEvents(req, sheetRequests,
+						new POIFSFileSystem(openSample(file)).getRoot(), executor);
+
+				List<String> expected = new ArrayList<String>();
+				for (Record r : all.getRecords()) {
+					expected.add(r.toString());
+				}
+				List<String> actual = new ArrayList<String>();
+				for (Record r : globals.getRecords()) {
+					actual.add(r.toString());
+				}
+				for (MockHSSFListener sheet : sheets) {
+					Record[] records = sheet.getRecords();
+					assertEquals(BOFRecord.sid, records[0].getSid());
+					assertEquals(EOFRecord.sid, records[records.length - 1].getSid());
+					for (Record r : records) {
+						actual.add(r.toString());
+					}
+				}
+				assertTrue(file, sheets.size() > 0);
+				assertEquals(file, expected, actual);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	private static class MockHSSFListener implements HSSFListener {
 		private final List<Record> records = new ArrayList<Record>();
 
@@ -22,6 +22,8 @@ import junit.framework.TestCase;
 import org.apache.poi.hssf.record.CountryRecord;
 import org.apache.poi.hssf.record.FontRecord;
 import org.apache.poi.hssf.record.RecalcIdRecord;
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFFont;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.hssf.usermodel.TestHSSFWorkbook;
 import org.apache.poi.ss.formula.udf.UDFFinder;
@@ -92,6 +94,45 @@ public final class TestWorkbook extends TestCase {
 		assertEquals(n7, wb.getFontRecordAt(6));
 	}
 
+    public void testIndexesNotRebuiltOnMiss() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        InternalWorkbook iwb = TestHSSFWorkbook.getInternalWorkbook(wb);
+
+        // Each new font and style misses, and is then changed before it is indexed
+        HSSFFont first = null;
+        HSSFCellStyle firstStyle = null;
+        for (int i = 0; i < 500; i++) {
+            HSSFFont font = wb.getOrCreateFont(HSSFFont.BOLDWEIGHT_NORMAL, HSSFFont.COLOR_NORMAL,
+                    (short)(300 + i), "Arial", false, false, HSSFFont.SS_NONE, HSSFFont.U_NONE);
+            HSSFCellStyle style = wb.createCellStyle();
+            style.setFont(font);
+            assertSame(style, wb.getOrCreateCellStyle(style));
+            if (first == null) {
+                first = font;
+                firstStyle = style;
+            }
+        }
+        assertEquals(0, iwb.getIndexRebuildCount());
+
+        // Changing an indexed font rebuilds once, later misses don't
+        first.setItalic(true);
+        assertSame(first, wb.findFont(HSSFFont.BOLDWEIGHT_NORMAL, HSSFFont.COLOR_NORMAL,
+                (short)300, "Arial", true, false, HSSFFont.SS_NONE, HSSFFont.U_NONE));
+        assertEquals(1, iwb.getIndexRebuildCount());
+        assertNull(wb.findFont(HSSFFont.BOLDWEIGHT_NORMAL, HSSFFont.COLOR_NORMAL,
+                (short)300, "Arial", false, false, HSSFFont.SS_NONE, HSSFFont.U_NONE));
+        assertEquals(1, iwb.getIndexRebuildCount());
+
+        // And so does changing an indexed style
+        firstStyle.setWrapText(true);
+        assertEquals(firstStyle.getIndex(), wb.getOrCreateCellStyle(firstStyle).getIndex());
+        assertEquals(2, iwb.getIndexRebuildCount());
+        HSSFCellStyle style = wb.createCellStyle();
+        style.setRotation((short)45);
+        assertSame(style, wb.getOrCreateCellStyle(style));
+        assertEquals(2, iwb.getIndexRebuildCount());
+    }
+
     public void testAddNameX(){
         InternalWorkbook wb = TestHSSFWorkbook.getInternalWorkbook(new HSSFWorkbook());
         assertNotNull(wb.getNameXPtg("ISODD", UDFFinder.DEFAULT));
@@ -109,6 +109,46 @@ public final class TestRecordFactory extends TestCase {
 		assertEquals(21, numberRecord.getXFIndex());
 	}
 
+	/**
+	 * Every known record type is created as its own class, rather than
+	 *  as an {@link UnknownRecord}
+	 */
+	public void testAllKnownRecordsCreated() {
+		short[] sids = RecordFactory.getAllKnownRecordSIDs();
+		assertTrue(sids.length > 100);
+		int[] dataSizes = { 0, 200, 8, 16, };
+		for (short sid : sids) {
+			String msg = "sid 0x" + Integer.toHexString(sid);
+			Class<? extends Record> expectedClass = RecordFactory.getRecordClass(sid);
+			Record record = null;
+			RecordFormatException lastError = null;
+			for (int i = 0; i < dataSizes.length && record == null; i++) {
+				try {
+					record = RecordFactory.createSingleRecord(TestcaseRecordInputStream.create(sid, new byte[dataSizes[i]]));
+				} catch (RecordFormatException e) {
+					// Has a constructor, but needs other data
+					lastError = e;
+				}
+			}
+			if (record != null) {
+				assertEquals(msg, expectedClass, record.getClass());
+			} else {
+				// Still the constructor of the right class must have been called
+				assertTrue(msg, isThrownByConstructorOf(lastError.getCause(), expectedClass));
+			}
+		}
+	}
+
+	private static boolean isThrownByConstructorOf(Throwable e, Class<?> recordClass) {
+		StackTraceElement[] stack = e.getStackTrace();
+		for (int i = 0; i < stack.length; i++) {
+			if (stack[i].getClassName().equals(recordClass.getName()) && stack[i].getMethodName().equals("<init>")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * TEST NAME:  Test Creating ContinueRecords After Unknown Records From An InputStream <P>
 	 * OBJECTIVE:  Test that the RecordFactory given an InputStream
@@ -27,6 +27,7 @@ import java.util.Iterator;
 import org.apache.poi.hssf.HSSFTestDataSamples;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
 
 import junit.framework.TestCase;
 
@@ -313,6 +314,25 @@ public final class TestHSSFDataFormatter extends TestCase {
 		
 	}
 
+	/**
+	 * Appending the values of all the cells to one StringBuilder
+	 *  gives the same as formatting them one at a time
+	 */
+	public void testFormatCellValueToStringBuilder() {
+		HSSFFormulaEvaluator evaluator = new HSSFFormulaEvaluator(wb);
+		StringBuilder expected = new StringBuilder();
+		StringBuilder actual = new StringBuilder();
+		for (Row row : wb.getSheetAt(0)) {
+			for (Cell cell : row) {
+				expected.append(formatter.formatCellValue(cell, evaluator)).append(',');
+				formatter.formatCellValue(cell, evaluator, actual);
+				actual.append(',');
+			}
+		}
+		formatter.formatCellValue(null, evaluator, actual);
+		assertEquals(expected.toString(), actual.toString());
+	}
+
 	/**
 	 * Test using a default number format. The format should be used when a
 	 * format pattern cannot be parsed by DecimalFormat.
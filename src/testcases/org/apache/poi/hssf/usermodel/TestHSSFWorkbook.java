@@ -19,6 +19,8 @@ package org.apache.poi.hssf.usermodel;
 
 import java.io.*;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.AssertionFailedError;
 
@@ -28,10 +30,13 @@ import org.apache.poi.hssf.model.HSSFFormulaParser;
 import org.apache.poi.hssf.model.InternalWorkbook;
 import org.apache.poi.hssf.model.InternalSheet;
 import org.apache.poi.hssf.record.*;
+import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
 import org.apache.poi.ss.formula.ptg.Area3DPtg;
 import org.apache.poi.util.LittleEndian;
 import org.apache.poi.util.TempFile;
 import org.apache.poi.ss.usermodel.BaseTestWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.poifs.filesystem.DirectoryEntry;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
@@ -549,6 +554,115 @@ public final class TestHSSFWorkbook extends BaseTestWorkbook {
        }
     }
     
+    /**
+     * Sheets read in lazily match those read up front, whatever
+     *  order they are fetched in
+     */
+    public void testLazySheets() throws Exception {
+       String[] names = { "WithEmbeddedObjects.xls", "SimpleChart.xls", "FormulaRefs.xls", "SampleSS.xls" };
+       for(String name : names) {
+          HSSFWorkbook eager = HSSFTestDataSamples.openSampleWorkbook(name);
+          DirectoryNode[] files = new DirectoryNode[2];
+          files[0] = (new POIFSFileSystem(HSSFTestDataSamples.openSampleFileStream(name))).getRoot();
+          files[1] = (new NPOIFSFileSystem(HSSFTestDataSamples.getSampleFile(name))).getRoot();
+          
+          for(DirectoryNode dir : files) {
+             HSSFWorkbook lazy = new HSSFWorkbook(dir, false, true);
+             assertEquals(eager.getNumberOfSheets(), lazy.getNumberOfSheets());
+             for(int i=lazy.getNumberOfSheets()-1; i>=0; i--) {
+                assertEquals(eager.getSheetName(i), lazy.getSheetName(i));
+                assertSameCells(eager.getSheetAt(i), lazy.getSheetAt(i));
+                assertEquals(i, lazy.getSheetIndex(lazy.getSheetAt(i)));
+             }
+          }
+          
+          // Writing reads in the sheets not fetched yet
+          HSSFWorkbook lazy = new HSSFWorkbook(files[0], false, true);
+          lazy = HSSFTestDataSamples.writeOutAndReadBack(lazy);
+          for(int i=0; i<lazy.getNumberOfSheets(); i++) {
+             assertSameCells(eager.getSheetAt(i), lazy.getSheetAt(i));
+          }
+       }
+    }
+    
+    /**
+     * Encrypted workbooks can't be read sheet by sheet, so are read fully
+     */
+    public void testLazySheetsEncrypted() throws Exception {
+       Biff8EncryptionKey.setCurrentUserPassword("password");
+       try {
+          DirectoryNode dir = (new POIFSFileSystem(HSSFTestDataSamples.openSampleFileStream("password.xls"))).getRoot();
+          HSSFWorkbook eager = new HSSFWorkbook(dir, false);
+          HSSFWorkbook lazy = new HSSFWorkbook(dir, false, true);
+          assertEquals(eager.getNumberOfSheets(), lazy.getNumberOfSheets());
+          for(int i=0; i<lazy.getNumberOfSheets(); i++) {
+             assertSameCells(eager.getSheetAt(i), lazy.getSheetAt(i));
+          }
+       } finally {
+          Biff8EncryptionKey.setCurrentUserPassword(null);
+       }
+    }
+    
+    public void testParallelSheets() throws Exception {
+       String[] names = { "WithEmbeddedObjects.xls", "SimpleChart.xls", "FormulaRefs.xls", "SampleSS.xls", "SimpleWithSkip.xls" };
+       ExecutorService executor = Executors.newFixedThreadPool(4);
+       try {
+          for(String name : names) {
+             HSSFWorkbook eager = HSSFTestDataSamples.openSampleWorkbook(name);
+             DirectoryNode[] files = new DirectoryNode[2];
+             files[0] = (new POIFSFileSystem(HSSFTestDataSamples.openSampleFileStream(name))).getRoot();
+             files[1] = (new NPOIFSFileSystem(HSSFTestDataSamples.getSampleFile(name))).getRoot();
+
+             for(DirectoryNode dir : files) {
+                HSSFWorkbook parallel = new HSSFWorkbook(dir, false, executor);
+                assertEquals(eager.getNumberOfSheets(), parallel.getNumberOfSheets());
+                for(int i=0; i<parallel.getNumberOfSheets(); i++) {
+                   assertEquals(eager.getSheetName(i), parallel.getSheetName(i));
+                   assertSameCells(eager.getSheetAt(i), parallel.getSheetAt(i));
+                }
+                parallel = HSSFTestDataSamples.writeOutAndReadBack(parallel);
+                for(int i=0; i<parallel.getNumberOfSheets(); i++) {
+                   assertSameCells(eager.getSheetAt(i), parallel.getSheetAt(i));
+                }
+             }
+          }
+       } finally {
+          executor.shutdown();
+       }
+    }
+
+    /**
+     * Encrypted workbooks can't be read sheet by sheet, so are read sequentially
+     */
+    public void testParallelSheetsEncrypted() throws Exception {
+       Biff8EncryptionKey.setCurrentUserPassword("password");
+       ExecutorService executor = Executors.newFixedThreadPool(2);
+       try {
+          DirectoryNode dir = (new POIFSFileSystem(HSSFTestDataSamples.openSampleFileStream("password.xls"))).getRoot();
+          HSSFWorkbook eager = new HSSFWorkbook(dir, false);
+          HSSFWorkbook parallel = new HSSFWorkbook(dir, false, executor);
+          assertEquals(eager.getNumberOfSheets(), parallel.getNumberOfSheets());
+          for(int i=0; i<parallel.getNumberOfSheets(); i++) {
+             assertSameCells(eager.getSheetAt(i), parallel.getSheetAt(i));
+          }
+       } finally {
+          executor.shutdown();
+          Biff8EncryptionKey.setCurrentUserPassword(null);
+       }
+    }
+
+    private static void assertSameCells(HSSFSheet expected, HSSFSheet actual) {
+       assertEquals(expected.getPhysicalNumberOfRows(), actual.getPhysicalNumberOfRows());
+       for(Row row : expected) {
+          Row other = actual.getRow(row.getRowNum());
+          assertNotNull(other);
+          assertEquals(row.getPhysicalNumberOfCells(), other.getPhysicalNumberOfCells());
+          for(Cell cell : row) {
+             assertEquals(cell.toString(), other.getCell(cell.getColumnIndex()).toString());
+          }
+       }
+    }
+    
     public void testWordDocEmbeddedInXls() throws IOException {
        // Open the two filesystems
        DirectoryNode[] files = new DirectoryNode[2];
@@ -616,6 +730,77 @@ public final class TestHSSFWorkbook extends BaseTestWorkbook {
         assertEquals(MAX_STYLES, wb.getNumCellStyles());
     }
 
+    public void testGetOrCreateFont() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        int fonts = wb.getNumberOfFonts();
+
+        HSSFFont bold = wb.getOrCreateFont(HSSFFont.BOLDWEIGHT_BOLD, HSSFFont.COLOR_RED,
+                (short)240, "Arial", false, false, HSSFFont.SS_NONE, HSSFFont.U_NONE);
+        assertEquals(fonts + 1, wb.getNumberOfFonts());
+        for (int i = 0; i < 100; i++) {
+            assertSame(bold, wb.getOrCreateFont(HSSFFont.BOLDWEIGHT_BOLD, HSSFFont.COLOR_RED,
+                    (short)240, "Arial", false, false, HSSFFont.SS_NONE, HSSFFont.U_NONE));
+        }
+        assertEquals(fonts + 1, wb.getNumberOfFonts());
+
+        // Fonts changed in place are found by their new properties, even
+        //  with no lookup between the change and the find
+        HSSFFont plain = wb.getOrCreateFont(HSSFFont.BOLDWEIGHT_NORMAL, HSSFFont.COLOR_RED,
+                (short)240, "Arial", false, false, HSSFFont.SS_NONE, HSSFFont.U_NONE);
+        plain.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
+        plain.setUnderline(HSSFFont.U_DOUBLE);
+        assertSame(plain, wb.findFont(HSSFFont.BOLDWEIGHT_BOLD, HSSFFont.COLOR_RED,
+                (short)240, "Arial", false, false, HSSFFont.SS_NONE, HSSFFont.U_DOUBLE));
+        int count = wb.getNumberOfFonts();
+        assertSame(plain, wb.getOrCreateFont(HSSFFont.BOLDWEIGHT_BOLD, HSSFFont.COLOR_RED,
+                (short)240, "Arial", false, false, HSSFFont.SS_NONE, HSSFFont.U_DOUBLE));
+        assertEquals(count, wb.getNumberOfFonts());
+
+        bold.setItalic(true);
+        assertNull(wb.findFont(HSSFFont.BOLDWEIGHT_BOLD, HSSFFont.COLOR_RED,
+                (short)240, "Arial", false, false, HSSFFont.SS_NONE, HSSFFont.U_NONE));
+        assertSame(bold, wb.findFont(HSSFFont.BOLDWEIGHT_BOLD, HSSFFont.COLOR_RED,
+                (short)240, "Arial", true, false, HSSFFont.SS_NONE, HSSFFont.U_NONE));
+    }
+
+    public void testGetOrCreateCellStyle() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFFont font = wb.createFont();
+        font.setStrikeout(true);
+
+        HSSFCellStyle first = wb.createCellStyle();
+        first.setFont(font);
+        first.setWrapText(true);
+        assertSame(first, wb.getOrCreateCellStyle(first));
+
+        HSSFCellStyle second = wb.createCellStyle();
+        second.setFont(font);
+        assertSame(second, wb.getOrCreateCellStyle(second));
+        second.setWrapText(true);
+        assertEquals(first.getIndex(), wb.getOrCreateCellStyle(second).getIndex());
+
+        first.setWrapText(false);
+        assertEquals(second.getIndex(), wb.getOrCreateCellStyle(second).getIndex());
+
+        // A style changed in place after it was indexed is found by its new contents
+        HSSFCellStyle changed = wb.createCellStyle();
+        changed.setFont(font);
+        changed.setRotation((short)30);
+        assertSame(changed, wb.getOrCreateCellStyle(changed));
+        changed.setRotation((short)45);
+        ExtendedFormatRecord rotated = new ExtendedFormatRecord();
+        rotated.cloneStyleFrom(wb.getWorkbook().getExFormatAt(changed.getIndex()));
+        assertEquals(changed.getIndex(), wb.getWorkbook().findExFormat(rotated));
+
+        // Removing styles moves the indexes along
+        HSSFCellStyle third = wb.createCellStyle();
+        third.setFont(font);
+        third.setWrapText(true);
+        wb.getWorkbook().removeExFormatRecord(first.getIndex());
+        assertEquals(second.getIndex() - 1,
+                wb.getOrCreateCellStyle(wb.getCellStyleAt((short)(third.getIndex() - 1))).getIndex());
+    }
+
     public void testSetSheetOrderHSSF(){
         HSSFWorkbook wb = new HSSFWorkbook();
         HSSFSheet s1 = wb.createSheet("first sheet");
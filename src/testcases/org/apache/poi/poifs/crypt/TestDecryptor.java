@@ -17,13 +17,19 @@
 package org.apache.poi.poifs.crypt;
 
 import junit.framework.TestCase;
+import org.apache.poi.EncryptedDocumentException;
 import org.apache.poi.POIDataSamples;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.poifs.nio.DataSource;
+import org.apache.poi.util.IOUtils;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.Random;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -114,4 +120,99 @@ public class TestDecryptor extends TestCase {
         }
     }
 
+
+    public void testDataSource() throws Exception {
+        checkDataSource("protect.xlsx");
+        checkDataSource("protected_agile.docx");
+    }
+
+    private void checkDataSource(String file) throws Exception {
+        POIFSFileSystem fs = new POIFSFileSystem(POIDataSamples.getPOIFSInstance().openResourceAsStream(file));
+        EncryptionInfo info = new EncryptionInfo(fs);
+        Decryptor d = Decryptor.getInstance(info);
+        assertTrue(d.verifyPassword(Decryptor.DEFAULT_PASSWORD));
+
+        byte[] decrypted = IOUtils.toByteArray(d.getDataStream(fs));
+        DataSource source = d.getDataSource(fs.getRoot());
+
+        // The data stream of standard encryption includes the padding of the last block
+        assertTrue(source.size() <= decrypted.length && source.size() > decrypted.length - 16);
+        byte[] expected = new byte[(int)source.size()];
+        System.arraycopy(decrypted, 0, expected, 0, expected.length);
+
+        // In order, a chunk at a time and across the chunk boundaries
+        for (int length : new int[] { 4096, 1000, 5000 }) {
+            for (int pos = 0; pos < expected.length; pos += length) {
+                int len = Math.min(length, expected.length - pos);
+                assertBytes(expected, pos, source.read(len, pos), len);
+            }
+        }
+
+        // And in any order
+        Random random = new Random(12345);
+        for (int i = 0; i < 200; i++) {
+            int pos = random.nextInt(expected.length);
+            int len = 1 + random.nextInt(Math.min(10000, expected.length - pos));
+            assertBytes(expected, pos, source.read(len, pos), len);
+        }
+        source.close();
+    }
+
+    /**
+     * Decryptors which don't implement getDataSource() buffer the decrypted stream
+     */
+    public void testDefaultDataSource() throws Exception {
+        POIFSFileSystem fs = new POIFSFileSystem(POIDataSamples.getPOIFSInstance().openResourceAsStream("protected_agile.docx"));
+        final Decryptor d = Decryptor.getInstance(new EncryptionInfo(fs));
+        Decryptor buffering = new Decryptor() {
+            public InputStream getDataStream(DirectoryNode dir) throws IOException, GeneralSecurityException {
+                return d.getDataStream(dir);
+            }
+            public boolean verifyPassword(String password) throws GeneralSecurityException {
+                return d.verifyPassword(password);
+            }
+            public long getLength() {
+                return d.getLength();
+            }
+        };
+        assertTrue(buffering.verifyPassword(Decryptor.DEFAULT_PASSWORD));
+
+        DataSource expected = d.getDataSource(fs.getRoot());
+        DataSource source = buffering.getDataSource(fs.getRoot());
+        assertEquals(expected.size(), source.size());
+        int len = (int)expected.size();
+        byte[] expectedBytes = new byte[len];
+        expected.read(len, 0).get(expectedBytes);
+        assertBytes(expectedBytes, 0, source.read(len, 0), len);
+        expected.close();
+        source.close();
+    }
+
+    public void testDataSourceOfTruncatedPackage() throws Exception {
+        POIFSFileSystem fs = new POIFSFileSystem(POIDataSamples.getPOIFSInstance().openResourceAsStream("protect.xlsx"));
+        Decryptor d = Decryptor.getInstance(new EncryptionInfo(fs));
+        assertTrue(d.verifyPassword(Decryptor.DEFAULT_PASSWORD));
+
+        // Cut the encrypted package in the middle of a cipher block
+        DirectoryNode root = fs.getRoot();
+        byte[] encrypted = IOUtils.toByteArray(root.createDocumentInputStream("EncryptedPackage"));
+        byte[] truncated = new byte[encrypted.length - 5];
+        System.arraycopy(encrypted, 0, truncated, 0, truncated.length);
+        root.getEntry("EncryptedPackage").delete();
+        root.createDocument("EncryptedPackage", new ByteArrayInputStream(truncated));
+
+        try {
+            d.getDataSource(root);
+            fail("Expected EncryptedDocumentException");
+        } catch (EncryptedDocumentException e) {
+            // expected
+        }
+    }
+
+    private static void assertBytes(byte[] expected, int pos, ByteBuffer actual, int len) {
+        assertEquals(len, actual.remaining());
+        for (int i = 0; i < len; i++) {
+            assertEquals("byte " + (pos + i), expected[pos + i], actual.get());
+        }
+    }
 }
@@ -20,7 +20,11 @@ package org.apache.poi.poifs.filesystem;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -29,6 +33,7 @@ import org.apache.poi.hpsf.PropertySet;
 import org.apache.poi.hpsf.PropertySetFactory;
 import org.apache.poi.hpsf.SummaryInformation;
 import org.apache.poi.poifs.common.POIFSConstants;
+import org.apache.poi.poifs.nio.MemoryMappedDataSource;
 import org.apache.poi.poifs.property.NPropertyTable;
 import org.apache.poi.poifs.property.Property;
 import org.apache.poi.poifs.property.RootProperty;
@@ -548,6 +553,54 @@ public final class TestNPOIFSFileSystem extends TestCase {
       }
    }
    
+   /**
+    * A memory mapped file can be read from, including
+    *  by several threads at once
+    */
+   public void testMemoryMapped() throws Exception {
+      for(String name : new String[] {"BlockSize512.zvi", "BlockSize4096.zvi"}) {
+         NPOIFSFileSystem fsA = new NPOIFSFileSystem(_inst.getFile(name));
+         final NPOIFSFileSystem fsB = new NPOIFSFileSystem(
+               new MemoryMappedDataSource(_inst.getFile(name)));
+         assertEquals(fsA.getBigBlockSize(), fsB.getBigBlockSize());
+         
+         DocumentNode doc = (DocumentNode)fsA.getRoot().getEntry("\u0005SummaryInformation");
+         final byte[] expected = new byte[doc.getSize()];
+         assertEquals(doc.getSize(), new NDocumentInputStream(doc).read(expected));
+         
+         final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+         Thread[] threads = new Thread[4];
+         for(int i=0; i<threads.length; i++) {
+            threads[i] = new Thread() {
+               public void run() {
+                  try {
+                     for(int pass=0; pass<20; pass++) {
+                        DocumentNode doc = (DocumentNode)fsB.getRoot().getEntry("\u0005SummaryInformation");
+                        byte[] contents = new byte[doc.getSize()];
+                        new NDocumentInputStream(doc).read(contents);
+                        if(!Arrays.equals(expected, contents)) {
+                           throw new AssertionError("Wrong contents");
+                        }
+                     }
+                  } catch(Throwable t) {
+                     failures.add(t);
+                  }
+               }
+            };
+            threads[i].start();
+         }
+         for(Thread t : threads) {
+            t.join();
+         }
+         assertEquals(failures.toString(), 0, failures.size());
+         
+         SummaryInformation inf = (SummaryInformation)PropertySetFactory.create(
+               new NDocumentInputStream((DocumentNode)fsB.getRoot().getEntry("\u0005SummaryInformation")));
+         assertEquals(null, inf.getAuthor());
+         fsB.close();
+      }
+   }
+   
    /**
     * Read a file, write it and read it again.
     * Then, alter+add some streams, write and read
@@ -20,10 +20,20 @@
 package org.apache.poi.poifs.nio;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.poi.POIDataSamples;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.TempFile;
 
 import junit.framework.TestCase;
 
@@ -78,6 +88,156 @@ public class TestDataSource extends TestCase
       } catch(IllegalArgumentException e) {}
    }
    
+   public void testMemoryMapped() throws Exception {
+      File f = data.getFile("Notes.ole2");
+      
+      MemoryMappedDataSource ds = new MemoryMappedDataSource(f);
+      assertEquals(8192, ds.size());
+      
+      // Start of file
+      ByteBuffer bs; 
+      bs = ds.read(4, 0);
+      assertEquals(4, bs.capacity());
+      assertEquals(0, bs.position());
+      assertTrue(bs.isReadOnly());
+      assertEquals(0xd0-256, bs.get(0));
+      assertEquals(0xcf-256, bs.get(1));
+      assertEquals(0x11-000, bs.get(2));
+      assertEquals(0xe0-256, bs.get(3));
+      
+      // Mid way through
+      bs = ds.read(8, 0x400);
+      assertEquals(8, bs.capacity());
+      assertEquals(0, bs.position());
+      assertEquals((byte)'R', bs.get(0));
+      assertEquals(0, bs.get(1));
+      assertEquals((byte)'o', bs.get(2));
+      assertEquals((byte)'t', bs.get(6));
+      
+      // Can go to the end, but not past it
+      bs = ds.read(8, 8190);
+      assertEquals(0, bs.position());
+      assertEquals(8, bs.capacity());
+      assertEquals(0, bs.get(7));
+      
+      // Can't go off the end
+      try {
+         bs = ds.read(4, 8192);
+         fail("Shouldn't be able to read off the end of the file");
+      } catch(IllegalArgumentException e) {}
+      
+      // Read-only
+      try {
+         ds.write(ByteBuffer.allocate(4), 0);
+         fail("Shouldn't be able to write to a mapped file");
+      } catch(UnsupportedOperationException e) {}
+      
+      // Closed
+      ds.close();
+      try {
+         ds.read(4, 0);
+         fail("Shouldn't be able to read once closed");
+      } catch(IOException e) {}
+   }
+   
+   public void testFileCache() throws Exception {
+      File f = data.getFile("Notes.ole2");
+      
+      FileBackedDataSource ds = new FileBackedDataSource(
+            (new RandomAccessFile(f, "r")).getChannel(), 2);
+      
+      // Each read gets its own copy of a cached block
+      ByteBuffer a = ds.read(8, 0x400);
+      a.get();
+      a.put(0, (byte)0);
+      ByteBuffer b = ds.read(8, 0x400);
+      assertEquals(0, b.position());
+      assertEquals((byte)'R', b.get(0));
+      b.put(2, (byte)0);
+      assertEquals((byte)'R', ds.read(8, 0x400).get(0));
+      assertEquals((byte)'o', ds.read(8, 0x400).get(2));
+      
+      // A different length isn't served from the cache
+      b = ds.read(4, 0x400);
+      assertEquals(4, b.capacity());
+      
+      // Evicted blocks are read again
+      ds.read(4, 0);
+      ds.read(4, 0x200);
+      b = ds.read(8, 0x400);
+      assertEquals(8, b.capacity());
+      assertEquals((byte)'o', b.get(2));
+      
+      ds.close();
+   }
+   
+   public void testFileCacheWrite() throws Exception {
+      File f = TempFile.createTempFile("poifs", ".ole2");
+      FileOutputStream fos = new FileOutputStream(f);
+      InputStream is = data.openResourceAsStream("Notes.ole2");
+      IOUtils.copy(is, fos);
+      is.close();
+      fos.close();
+      
+      RandomAccessFile raf = new RandomAccessFile(f, "rw");
+      FileBackedDataSource ds = new FileBackedDataSource(raf.getChannel(), 2);
+      assertEquals((byte)'R', ds.read(8, 0x400).get(0));
+      
+      // Writes aren't hidden by the cache
+      ds.write(ByteBuffer.wrap(new byte[] { 'X' }), 0x400);
+      assertEquals((byte)'X', ds.read(8, 0x400).get(0));
+      
+      ds.close();
+      f.delete();
+   }
+   
+   public void testConcurrentReads() throws Exception {
+      File f = data.getFile("Notes.ole2");
+      final byte[] expected = new byte[8192];
+      FileInputStream fis = new FileInputStream(f);
+      assertEquals(expected.length, IOUtils.readFully(fis, expected));
+      fis.close();
+      
+      final DataSource[] sources = new DataSource[] {
+            new FileBackedDataSource((new RandomAccessFile(f, "r")).getChannel(), 4),
+            new MemoryMappedDataSource(f)
+      };
+      final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+      Thread[] threads = new Thread[8];
+      for(int i=0; i<threads.length; i++) {
+         final int offset = i;
+         threads[i] = new Thread() {
+            public void run() {
+               try {
+                  for(int pass=0; pass<50; pass++) {
+                     for(DataSource ds : sources) {
+                        for(int block=0; block<16; block++) {
+                           int pos = ((block + offset) % 16) * 512;
+                           ByteBuffer bs = ds.read(512, pos);
+                           for(int j=0; j<512; j++) {
+                              if(bs.get() != expected[pos+j]) {
+                                 throw new AssertionError("Wrong data at " + (pos+j));
+                              }
+                           }
+                        }
+                     }
+                  }
+               } catch(Throwable t) {
+                  failures.add(t);
+               }
+            }
+         };
+         threads[i].start();
+      }
+      for(Thread t : threads) {
+         t.join();
+      }
+      for(DataSource ds : sources) {
+         ds.close();
+      }
+      assertEquals(failures.toString(), 0, failures.size());
+   }
+   
    public void testByteArray() throws Exception {
       byte[] data = new byte[256];
       byte b;
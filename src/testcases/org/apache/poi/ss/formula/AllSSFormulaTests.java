@@ -31,6 +31,7 @@ public final class AllSSFormulaTests {
 		TestSuite result = new TestSuite(AllSSFormulaTests.class.getName());
 		result.addTestSuite(TestCellCacheEntry.class);
 		result.addTestSuite(TestEvaluationCache.class);
+		result.addTestSuite(TestFormulaDependencyGraph.class);
 		result.addTestSuite(TestWorkbookEvaluator.class);
 		result.addTestSuite(TestForkedEvaluator.class);
 		return result;
@@ -0,0 +1,252 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFEvaluationTestHelper;
+import org.apache.poi.hssf.usermodel.HSSFEvaluationWorkbook;
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * Tests {@link FormulaDependencyGraph} and the incremental recalculation built on it.
+ */
+public final class TestFormulaDependencyGraph extends TestCase {
+
+	private HSSFWorkbook _wb;
+	private HSSFSheet _sheet;
+
+	protected void setUp() {
+		_wb = new HSSFWorkbook();
+		_sheet = _wb.createSheet("Sheet1");
+		HSSFRow row = _sheet.createRow(0);
+		row.createCell(0).setCellValue(1.0);               // A1
+		row.createCell(1).setCellFormula("A1*2");          // B1
+		row.createCell(2).setCellFormula("SUM(B1:B2)+D1"); // C1
+		row.createCell(3).setCellValue(5.0);               // D1
+		row.createCell(4).setCellFormula("A2+1");          // E1
+		_sheet.createRow(1).createCell(0).setCellValue(3.0); // A2
+	}
+
+	private WorkbookEvaluator createEvaluator() {
+		WorkbookEvaluator evaluator = new WorkbookEvaluator(HSSFEvaluationWorkbook.create(_wb), null, null);
+		for (int i = 1; i <= 4; i++) {
+			HSSFCell cell = _sheet.getRow(0).getCell(i);
+			if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
+				evaluator.registerFormulaCell(HSSFEvaluationTestHelper.wrapCell(cell));
+			}
+		}
+		return evaluator;
+	}
+
+	private static String[] getDependents(WorkbookEvaluator evaluator, HSSFCell changedCell) {
+		EvaluationCell[] changed = { HSSFEvaluationTestHelper.wrapCell(changedCell), };
+		EvaluationCell[] dependents = evaluator.getDependentFormulaCells(changed);
+		String[] result = new String[dependents.length];
+		for (int i = 0; i < dependents.length; i++) {
+			result[i] = new CellReference(dependents[i].getRowIndex(),
+					dependents[i].getColumnIndex()).formatAsString();
+		}
+		return result;
+	}
+
+	private static void confirmDependents(String[] expected, String[] actual) {
+		assertEquals(join(expected), join(actual));
+	}
+
+	private static String join(String[] values) {
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(values[i]);
+		}
+		return sb.toString();
+	}
+
+	public void testTransitiveDependentsInCalculationOrder() {
+		WorkbookEvaluator evaluator = createEvaluator();
+
+		confirmDependents(new String[] { "B1", "C1", }, getDependents(evaluator, _sheet.getRow(0).getCell(0)));
+		confirmDependents(new String[] { "C1", }, getDependents(evaluator, _sheet.getRow(0).getCell(3)));
+		confirmDependents(new String[] { "E1", }, getDependents(evaluator, _sheet.getRow(1).getCell(0)));
+		// B2 is blank, but within the area referenced by C1
+		HSSFCell b2 = _sheet.getRow(1).createCell(1);
+		confirmDependents(new String[] { "C1", }, getDependents(evaluator, b2));
+	}
+
+	public void testNamesAndVolatileFunctions() {
+		Name name = _wb.createName();
+		name.setNameName("Rate");
+		name.setRefersToFormula("Sheet1!$D$1");
+		HSSFRow row = _sheet.getRow(0);
+		row.createCell(5).setCellFormula("Rate*2");         // F1
+		row.createCell(6).setCellFormula("INDIRECT(\"A2\")"); // G1
+
+		WorkbookEvaluator evaluator = new WorkbookEvaluator(HSSFEvaluationWorkbook.create(_wb), null, null);
+		for (int i = 1; i <= 6; i++) {
+			HSSFCell cell = row.getCell(i);
+			if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
+				evaluator.registerFormulaCell(HSSFEvaluationTestHelper.wrapCell(cell));
+			}
+		}
+		confirmDependents(new String[] { "C1", "F1", "G1", }, getDependents(evaluator, row.getCell(3)));
+		confirmDependents(new String[] { "B1", "G1", "C1", }, getDependents(evaluator, row.getCell(0)));
+	}
+
+	/**
+	 * Areas are indexed differently depending on how many rows and columns they span
+	 */
+	public void testAreasOfAllShapes() {
+		HSSFSheet sheet = _wb.createSheet("Sheet2");
+		String[] formulas = {
+			"SUM(C250:D260)",     // small block
+			"SUM(E1:E65536)",     // whole column
+			"SUM(A1000:IV1000)",  // whole row
+			"SUM(B5:IV65536)",    // (almost) the whole sheet
+		};
+		WorkbookEvaluator evaluator = new WorkbookEvaluator(HSSFEvaluationWorkbook.create(_wb), null, null);
+		for (int i = 0; i < formulas.length; i++) {
+			HSSFCell cell = sheet.createRow(i).createCell(0);
+			cell.setCellFormula(formulas[i]);
+			evaluator.registerFormulaCell(HSSFEvaluationTestHelper.wrapCell(cell));
+		}
+
+		confirmDependents(new String[] { "A1", "A4", }, getDependents(evaluator, createCell(sheet, "C255")));
+		confirmDependents(new String[] { "A1", "A4", }, getDependents(evaluator, createCell(sheet, "D260")));
+		confirmDependents(new String[] { "A4", }, getDependents(evaluator, createCell(sheet, "C261")));
+		confirmDependents(new String[] { "A2", "A4", }, getDependents(evaluator, createCell(sheet, "E60000")));
+		confirmDependents(new String[] { "A3", "A4", }, getDependents(evaluator, createCell(sheet, "Z1000")));
+		confirmDependents(new String[] { "A3", }, getDependents(evaluator, createCell(sheet, "A1000")));
+		confirmDependents(new String[] { }, getDependents(evaluator, createCell(sheet, "B2")));
+		// the same cell on another sheet
+		confirmDependents(new String[] { }, getDependents(evaluator, createCell(_sheet, "C255")));
+
+		// removed formulas are dropped from the index
+		HSSFCell a4 = sheet.getRow(3).getCell(0);
+		a4.setCellType(Cell.CELL_TYPE_BLANK);
+		evaluator.notifyUpdateCell(HSSFEvaluationTestHelper.wrapCell(a4));
+		HSSFCell a2 = sheet.getRow(1).getCell(0);
+		a2.setCellType(Cell.CELL_TYPE_BLANK);
+		evaluator.notifyUpdateCell(HSSFEvaluationTestHelper.wrapCell(a2));
+		confirmDependents(new String[] { "A1", }, getDependents(evaluator, sheet.getRow(254).getCell(2)));
+		confirmDependents(new String[] { }, getDependents(evaluator, sheet.getRow(59999).getCell(4)));
+	}
+
+	private static HSSFCell createCell(HSSFSheet sheet, String ref) {
+		CellReference cr = new CellReference(ref);
+		HSSFRow row = sheet.getRow(cr.getRow());
+		if (row == null) {
+			row = sheet.createRow(cr.getRow());
+		}
+		return row.createCell(cr.getCol());
+	}
+
+	public void testGraphFollowsCellUpdates() {
+		WorkbookEvaluator evaluator = createEvaluator();
+		HSSFCell e1 = _sheet.getRow(0).getCell(4);
+		e1.setCellFormula("A1+1");
+		evaluator.notifyUpdateCell(HSSFEvaluationTestHelper.wrapCell(e1));
+		confirmDependents(new String[] { "B1", "E1", "C1", }, getDependents(evaluator, _sheet.getRow(0).getCell(0)));
+
+		HSSFCell b1 = _sheet.getRow(0).getCell(1);
+		b1.setCellType(Cell.CELL_TYPE_NUMERIC);
+		b1.setCellValue(7.0);
+		evaluator.notifyUpdateCell(HSSFEvaluationTestHelper.wrapCell(b1));
+		confirmDependents(new String[] { "E1", }, getDependents(evaluator, _sheet.getRow(0).getCell(0)));
+
+		evaluator.clearAllCachedResultValues();
+		assertFalse(evaluator.hasDependencyGraph());
+	}
+
+	public void testEvaluateDependents() {
+		HSSFFormulaEvaluator fe = new HSSFFormulaEvaluator(_wb);
+		fe.evaluateAll();
+		HSSFRow row = _sheet.getRow(0);
+		assertEquals(2.0, row.getCell(1).getNumericCellValue(), 0.0);
+		assertEquals(7.0, row.getCell(2).getNumericCellValue(), 0.0);
+		assertEquals(4.0, row.getCell(4).getNumericCellValue(), 0.0);
+
+		HSSFCell a1 = row.getCell(0);
+		a1.setCellValue(10.0);
+		HSSFCell d1 = row.getCell(3);
+		d1.setCellValue(100.0);
+		fe.evaluateDependents(new Cell[] { a1, d1, });
+		assertEquals(20.0, row.getCell(1).getNumericCellValue(), 0.0);
+		assertEquals(120.0, row.getCell(2).getNumericCellValue(), 0.0);
+
+		// the graph persists between calls
+		a1.setCellValue(0.5);
+		fe.evaluateDependents(new Cell[] { a1, });
+		assertEquals(1.0, row.getCell(1).getNumericCellValue(), 0.0);
+		assertEquals(101.0, row.getCell(2).getNumericCellValue(), 0.0);
+		assertEquals(4.0, row.getCell(4).getNumericCellValue(), 0.0);
+	}
+
+	public void testIndependentGroups() {
+		WorkbookEvaluator evaluator = createEvaluator();
+		FormulaDependencyGraph graph = new FormulaDependencyGraph(HSSFEvaluationWorkbook.create(_wb));
+		for (int i = 1; i <= 4; i++) {
+			HSSFCell cell = _sheet.getRow(0).getCell(i);
+			if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
+				graph.addFormulaCell(0, HSSFEvaluationTestHelper.wrapCell(cell));
+			}
+		}
+		List<EvaluationCell[]> groups = graph.getIndependentGroups();
+		// B1 and C1 (via the area B1:B2) belong together, E1 is on its own
+		assertEquals(2, groups.size());
+		assertEquals(2, groups.get(0).length);
+		assertEquals(1, groups.get(1).length);
+		assertEquals(4, groups.get(1)[0].getColumnIndex());
+		assertTrue(evaluator.hasDependencyGraph());
+	}
+
+	public void testEvaluateAllParallel() {
+		HSSFRow row = _sheet.getRow(0);
+		for (int i = 2; i < 2000; i++) {
+			HSSFRow r = _sheet.createRow(i);
+			r.createCell(0).setCellValue(i);
+			r.createCell(1).setCellFormula("A" + (i + 1) + "*2");
+			r.createCell(2).setCellFormula("B" + (i + 1) + "+C" + i);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			HSSFFormulaEvaluator fe = new HSSFFormulaEvaluator(_wb);
+			fe.evaluateAllParallel(executor);
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(2.0, row.getCell(1).getNumericCellValue(), 0.0);
+		assertEquals(7.0, row.getCell(2).getNumericCellValue(), 0.0);
+		assertEquals(4.0, row.getCell(4).getNumericCellValue(), 0.0);
+		assertEquals(3998.0, _sheet.getRow(1999).getCell(1).getNumericCellValue(), 0.0);
+		assertEquals(1999.0 * 2000 - 2, _sheet.getRow(1999).getCell(2).getNumericCellValue(), 0.0);
+	}
+}
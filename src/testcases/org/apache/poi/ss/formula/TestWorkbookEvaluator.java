@@ -74,6 +74,31 @@ public class TestWorkbookEvaluator extends TestCase {
 		assertEquals(42, ((NumberEval)result).getNumberValue(), 0.0);
 	}
 
+	/**
+	 * The operand stack is shared between (nested) formula evaluations, so it must be
+	 * left clean even if evaluation of a bad token sequence fails.
+	 */
+	public void testOperandStackReleasedAfterError() {
+		WorkbookEvaluator evaluator = new WorkbookEvaluator(null, null, null);
+		OperationEvaluationContext ec = new OperationEvaluationContext(null, null, 0, 0, 0, null);
+		Ptg[] badPtgs = {
+			new IntPtg(1),
+			new IntPtg(2),
+		};
+		try {
+			evaluator.evaluateFormula(ec, badPtgs);
+			fail("expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("evaluation stack not empty", e.getMessage());
+		}
+		Ptg[] ptgs = {
+			new IntPtg(42),
+			AttrPtg.SUM,
+		};
+		ValueEval result = evaluator.evaluateFormula(ec, ptgs);
+		assertEquals(42, ((NumberEval)result).getNumberValue(), 0.0);
+	}
+
 	/**
 	 * Make sure that the evaluator can directly handle (deleted) ref error tokens
 	 * (instead of relying on re-parsing the whole formula which converts these
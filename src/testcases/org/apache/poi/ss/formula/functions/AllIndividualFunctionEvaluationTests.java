@@ -31,6 +31,7 @@ public final class AllIndividualFunctionEvaluationTests {
 		TestSuite result = new TestSuite(AllIndividualFunctionEvaluationTests.class.getName());
 		result.addTestSuite(TestAverage.class);
 		result.addTestSuite(TestCountFuncs.class);
+		result.addTestSuite(TestCriteriaRangeIndex.class);
 		result.addTestSuite(TestDate.class);
 		result.addTestSuite(TestDays360.class);
 		result.addTestSuite(TestFinanceLib.class);
@@ -41,6 +42,7 @@ public final class AllIndividualFunctionEvaluationTests {
 		result.addTestSuite(TestIsBlank.class);
 		result.addTestSuite(TestLen.class);
 		result.addTestSuite(TestLookupFunctionsFromSpreadsheet.class);
+		result.addTestSuite(TestLookupIndex.class);
 		result.addTestSuite(TestMatch.class);
 		result.addTestSuite(TestMathX.class);
 		result.addTestSuite(TestMid.class);
@@ -0,0 +1,135 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.ErrorConstants;
+
+/**
+ * Tests {@link CriteriaRangeIndex}, which is used by COUNTIF, SUMIF and SUMIFS when many
+ * formulas apply criteria to the same range.
+ */
+public final class TestCriteriaRangeIndex extends TestCase {
+
+	/** mixed types, numeric text, case variations, duplicates and blanks */
+	private static final Object[] COLUMN_VALUES = {
+		"apple", new Double(5), "5", "APPLE", null, Boolean.TRUE, "", new Double(0),
+		"banana", new Double(-3), "Apple", "TRUE", new Double(5), null, Boolean.FALSE, "0",
+		new Double(12), "b*", "cherry", new Integer(ErrorConstants.ERROR_NA), "apples", new Double(5),
+	};
+
+	private static final String[] CRITERIA = {
+		"5", "\"5\"", "\"apple\"", "\"=APPLE\"", "\"<>apple\"", "\">3\"", "\"<=b\"", "\"a*\"",
+		"\"\"", "\"=\"", "\"<>\"", "TRUE", "\"true\"", "\"#N/A\"", "0", "\"0\"", "\"~*\"",
+		"\"b~*\"", "\">=apple\"", "\"<>5\"", "\"kiwi\"",
+	};
+
+	private static HSSFSheet createSheet(HSSFWorkbook wb) {
+		HSSFSheet sheet = wb.createSheet("Sheet1");
+		for (int i = 0; i < COLUMN_VALUES.length; i++) {
+			HSSFRow row = sheet.createRow(i);
+			Object value = COLUMN_VALUES[i];
+			if (value instanceof Double) {
+				row.createCell(0).setCellValue(((Double) value).doubleValue());
+			} else if (value instanceof String) {
+				row.createCell(0).setCellValue((String) value);
+			} else if (value instanceof Boolean) {
+				row.createCell(0).setCellValue(((Boolean) value).booleanValue());
+			} else if (value instanceof Integer) {
+				row.createCell(0).setCellErrorValue((byte) ((Integer) value).intValue());
+			}
+			row.createCell(1).setCellValue(i + 1);
+			row.createCell(2).setCellValue(i % 3 == 0 ? "x" : "y");
+		}
+		return sheet;
+	}
+
+	private static String[] createFormulas() {
+		String range = "$A$1:$A$" + COLUMN_VALUES.length;
+		String sumRange = "$B$1:$B$" + COLUMN_VALUES.length;
+		String otherRange = "$C$1:$C$" + COLUMN_VALUES.length;
+		String[] result = new String[CRITERIA.length * 4];
+		for (int i = 0; i < CRITERIA.length; i++) {
+			result[i * 4] = "COUNTIF(" + range + "," + CRITERIA[i] + ")";
+			result[i * 4 + 1] = "SUMIF(" + range + "," + CRITERIA[i] + "," + sumRange + ")";
+			result[i * 4 + 2] = "SUMIFS(" + sumRange + "," + range + "," + CRITERIA[i] + "," + otherRange + ",\"x\")";
+			result[i * 4 + 3] = "SUMIF(" + range + "," + CRITERIA[i] + ")";
+		}
+		return result;
+	}
+
+	/**
+	 * A fresh evaluator never indexes a range on its first use, so each formula evaluated in
+	 * isolation gives the result of the plain scan.
+	 */
+	public void testIndexedResultsAgreeWithScan() {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		HSSFSheet sheet = createSheet(wb);
+		HSSFCell cell = sheet.getRow(0).createCell(4);
+		String[] formulas = createFormulas();
+		HSSFFormulaEvaluator sharedEvaluator = new HSSFFormulaEvaluator(wb);
+		// warm up so that every range is indexed
+		for (int i = 0; i < formulas.length; i++) {
+			cell.setCellFormula(formulas[i]);
+			sharedEvaluator.notifySetFormula(cell);
+			sharedEvaluator.evaluate(cell);
+		}
+		for (int i = 0; i < formulas.length; i++) {
+			cell.setCellFormula(formulas[i]);
+			sharedEvaluator.notifySetFormula(cell);
+			CellValue actual = sharedEvaluator.evaluate(cell);
+			CellValue expected = new HSSFFormulaEvaluator(wb).evaluate(cell);
+			assertEquals(formulas[i], expected.formatAsString(), actual.formatAsString());
+		}
+	}
+
+	public void testIndexInvalidatedByCellChange() {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		HSSFSheet sheet = createSheet(wb);
+		String range = "$A$1:$A$" + COLUMN_VALUES.length;
+		HSSFRow row = sheet.getRow(0);
+		HSSFCell e1 = row.createCell(4);
+		e1.setCellFormula("COUNTIF(" + range + ",\"apple\")");
+		HSSFCell f1 = row.createCell(5);
+		f1.setCellFormula("SUMIF(" + range + ",5,$B$1:$B$" + COLUMN_VALUES.length + ")");
+
+		HSSFFormulaEvaluator fe = new HSSFFormulaEvaluator(wb);
+		assertEquals(3.0, fe.evaluate(e1).getNumberValue(), 0.0);
+		assertEquals(2.0 + 3.0 + 13.0 + 22.0, fe.evaluate(f1).getNumberValue(), 0.0);
+		assertEquals(3.0, fe.evaluate(e1).getNumberValue(), 0.0);
+
+		HSSFCell a9 = sheet.getRow(8).getCell(0);
+		a9.setCellValue("Apple");
+		fe.notifyUpdateCell(a9);
+		assertEquals(4.0, fe.evaluate(e1).getNumberValue(), 0.0);
+
+		// blank cell receives a value
+		HSSFCell a5 = sheet.getRow(4).createCell(0);
+		a5.setCellValue(5);
+		fe.notifyUpdateCell(a5);
+		assertEquals(2.0 + 3.0 + 5.0 + 13.0 + 22.0, fe.evaluate(f1).getNumberValue(), 0.0);
+		assertEquals(4.0, fe.evaluate(e1).getNumberValue(), 0.0);
+	}
+}
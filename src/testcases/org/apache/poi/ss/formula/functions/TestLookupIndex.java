@@ -0,0 +1,183 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.eval.AreaEval;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellValue;
+
+/**
+ * Tests {@link LookupIndex}, which is used by VLOOKUP, HLOOKUP and MATCH when the same range
+ * is searched repeatedly.
+ */
+public final class TestLookupIndex extends TestCase {
+
+	/** unsorted, mixed types, duplicates and case variations */
+	private static final Object[] COLUMN_VALUES = {
+		new Double(7), "pear", new Double(3), Boolean.TRUE, "Apple", new Double(12),
+		null, new Double(3), "APPLE", new Double(-1), Boolean.FALSE, "zebra", new Double(7),
+		"", new Double(0), "banana", new Double(20), "Pear", new Double(5), Boolean.TRUE,
+	};
+
+	private static final ValueEval[] LOOKUP_VALUES = {
+		new NumberEval(7), new NumberEval(3), new NumberEval(4), new NumberEval(-5),
+		new NumberEval(0), new NumberEval(100), new StringEval("apple"), new StringEval("PEAR"),
+		new StringEval("b"), new StringEval("zz"), new StringEval(""), new StringEval("a"),
+		BoolEval.TRUE, BoolEval.FALSE,
+	};
+
+	private static final int[] MATCH_TYPES = { 1, 0, -1, };
+
+	private static HSSFSheet createTable(HSSFWorkbook wb) {
+		HSSFSheet sheet = wb.createSheet("Sheet1");
+		for (int i = 0; i < COLUMN_VALUES.length; i++) {
+			HSSFRow row = sheet.createRow(i);
+			Object value = COLUMN_VALUES[i];
+			if (value instanceof Double) {
+				row.createCell(0).setCellValue(((Double) value).doubleValue());
+			} else if (value instanceof String) {
+				row.createCell(0).setCellValue((String) value);
+			} else if (value instanceof Boolean) {
+				row.createCell(0).setCellValue(((Boolean) value).booleanValue());
+			}
+			row.createCell(1).setCellValue(i * 10);
+		}
+		return sheet;
+	}
+
+	private static ValueEval[] toValueEvals() {
+		ValueEval[] result = new ValueEval[COLUMN_VALUES.length];
+		for (int i = 0; i < result.length; i++) {
+			Object value = COLUMN_VALUES[i];
+			if (value instanceof Double) {
+				result[i] = new NumberEval(((Double) value).doubleValue());
+			} else if (value instanceof String) {
+				result[i] = new StringEval((String) value);
+			} else if (value instanceof Boolean) {
+				result[i] = BoolEval.valueOf(((Boolean) value).booleanValue());
+			} else {
+				result[i] = BlankEval.instance;
+			}
+		}
+		return result;
+	}
+
+	private static String toFormulaText(ValueEval value) {
+		if (value instanceof StringEval) {
+			return "\"" + ((StringEval) value).getStringValue() + "\"";
+		}
+		if (value instanceof BoolEval) {
+			return ((BoolEval) value).getBooleanValue() ? "TRUE" : "FALSE";
+		}
+		return String.valueOf((int) ((NumberEval) value).getNumberValue());
+	}
+
+	/**
+	 * Every MATCH formula after the first uses the index, so the results must agree with the
+	 * plain scan over an equivalent (non indexable) area.
+	 */
+	public void testMatchAgreesWithScan() {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		HSSFSheet sheet = createTable(wb);
+		String range = "$A$1:$A$" + COLUMN_VALUES.length;
+		AreaEval scannedArea = EvalFactory.createAreaEval("A1:A" + COLUMN_VALUES.length, toValueEvals());
+		HSSFFormulaEvaluator fe = new HSSFFormulaEvaluator(wb);
+		HSSFCell cell = sheet.getRow(0).createCell(3);
+
+		// twice over, so that each lookup is done both with and without the index
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < LOOKUP_VALUES.length; i++) {
+				for (int j = 0; j < MATCH_TYPES.length; j++) {
+					ValueEval[] args = { LOOKUP_VALUES[i], scannedArea, new NumberEval(MATCH_TYPES[j]), };
+					ValueEval expected = new Match().evaluate(args, 0, 3);
+
+					cell.setCellFormula("MATCH(" + toFormulaText(LOOKUP_VALUES[i]) + "," + range + "," + MATCH_TYPES[j] + ")");
+					fe.notifySetFormula(cell);
+					CellValue actual = fe.evaluate(cell);
+					String msg = "MATCH(" + toFormulaText(LOOKUP_VALUES[i]) + ", A, " + MATCH_TYPES[j] + ")";
+					if (expected instanceof ErrorEval) {
+						assertEquals(msg, Cell.CELL_TYPE_ERROR, actual.getCellType());
+						assertEquals(msg, ((ErrorEval) expected).getErrorCode(), actual.getErrorValue());
+					} else {
+						assertEquals(msg, Cell.CELL_TYPE_NUMERIC, actual.getCellType());
+						assertEquals(msg, ((NumberEval) expected).getNumberValue(), actual.getNumberValue(), 0.0);
+					}
+				}
+			}
+		}
+	}
+
+	public void testVlookupIndexInvalidatedByCellChange() {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		HSSFSheet sheet = createTable(wb);
+		String range = "$A$1:$B$" + COLUMN_VALUES.length;
+		HSSFRow row = sheet.getRow(0);
+		HSSFCell c1 = row.createCell(2);
+		c1.setCellFormula("VLOOKUP(\"banana\"," + range + ",2,FALSE)");
+		HSSFCell d1 = row.createCell(3);
+		d1.setCellFormula("VLOOKUP(12," + range + ",2,FALSE)");
+		HSSFCell e1 = row.createCell(4);
+		e1.setCellFormula("VLOOKUP(\"kiwi\"," + range + ",2,FALSE)");
+
+		HSSFFormulaEvaluator fe = new HSSFFormulaEvaluator(wb);
+		assertEquals(150.0, fe.evaluate(c1).getNumberValue(), 0.0);
+		assertEquals(50.0, fe.evaluate(d1).getNumberValue(), 0.0);
+		assertEquals(ErrorEval.NA.getErrorCode(), fe.evaluate(e1).getErrorValue());
+
+		// plain value change in the indexed column
+		HSSFCell a3 = sheet.getRow(2).getCell(0);
+		a3.setCellValue("Kiwi");
+		fe.notifyUpdateCell(a3);
+		assertEquals(20.0, fe.evaluate(e1).getNumberValue(), 0.0);
+		assertEquals(150.0, fe.evaluate(c1).getNumberValue(), 0.0);
+
+		// a previously blank cell gets a value
+		d1.setCellFormula("VLOOKUP(99," + range + ",2,FALSE)");
+		fe.notifySetFormula(d1);
+		assertEquals(ErrorEval.NA.getErrorCode(), fe.evaluate(d1).getErrorValue());
+		HSSFCell a7 = sheet.getRow(6).createCell(0);
+		a7.setCellValue(99);
+		fe.notifyUpdateCell(a7);
+		assertEquals(60.0, fe.evaluate(d1).getNumberValue(), 0.0);
+
+		// a formula cell within the indexed column follows its own inputs
+		HSSFCell a2 = sheet.getRow(1).getCell(0);
+		a2.setCellFormula("LOWER(H1)");
+		fe.notifySetFormula(a2);
+		HSSFCell h1 = row.createCell(7);
+		h1.setCellValue("BANANA");
+		fe.notifyUpdateCell(h1);
+		assertEquals(10.0, fe.evaluate(c1).getNumberValue(), 0.0);
+		h1.setCellValue("cherry");
+		fe.notifyUpdateCell(h1);
+		assertEquals(150.0, fe.evaluate(c1).getNumberValue(), 0.0);
+	}
+}
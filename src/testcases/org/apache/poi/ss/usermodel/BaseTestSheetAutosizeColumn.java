@@ -252,6 +252,48 @@ public abstract class BaseTestSheetAutosizeColumn extends TestCase {
         assertTrue(sheet.getColumnWidth(0) > defaulWidth);
     }
 
+
+    public void testAutoSizeColumns(){
+        Workbook workbook = _testDataProvider.createWorkbook();
+        Sheet sheet = workbook.createSheet();
+        Font font = workbook.createFont();
+        font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+        font.setFontHeightInPoints((short)14);
+        CellStyle style = workbook.createCellStyle();
+        style.setFont(font);
+        style.setRotation((short)45);
+
+        for (int i = 0; i < 50; i++) {
+            Row row = sheet.createRow(i);
+            row.createCell(0).setCellValue("Row " + (i % 7));
+            row.createCell(1).setCellValue(i * 1.5);
+            row.createCell(2).setCellValue(i % 3 == 0);
+            Cell cell = row.createCell(3);
+            cell.setCellValue("Line " + i + "\nand the longer second line");
+            cell.setCellStyle(style);
+            row.createCell(4).setCellValue("Merged " + i);
+        }
+        sheet.addMergedRegion(CellRangeAddress.valueOf("E3:F3"));
+        sheet.getRow(2).getCell(4).setCellValue("A much longer merged value");
+        sheet.getRow(2).createCell(5);
+
+        int[] columns = { 0, 1, 2, 3, 4, 5 };
+        for (int merged = 0; merged < 2; merged++) {
+            boolean useMergedCells = merged == 1;
+            int[] expected = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                sheet.setColumnWidth(columns[i], 256);
+                sheet.autoSizeColumn(columns[i], useMergedCells);
+                expected[i] = sheet.getColumnWidth(columns[i]);
+                sheet.setColumnWidth(columns[i], 256);
+            }
+            sheet.autoSizeColumns(useMergedCells, columns);
+            for (int i = 0; i < columns.length; i++) {
+                assertEquals("column " + columns[i], expected[i], sheet.getColumnWidth(columns[i]));
+            }
+        }
+        assertTrue(sheet.getColumnWidth(5) > 256);
+    }
     
     /**
      * Auto-Sizing a column needs to work when we have rows
@@ -473,6 +473,52 @@ public class TestDataFormatter extends TestCase {
         assertEquals(" $-   ", dfUS.formatRawCellContents(0.0, -1, "_-$* #,##0.00_-;-$* #,##0.00_-;_-$* \"-\"??_-;_-@_-"));
     }
 
+    /**
+     * The StringBuilder methods append just what the String
+     *  ones return, whatever was in the builder before
+     */
+    public void testAppendToStringBuilder() {
+        DataFormatter dfUS = new DataFormatter(Locale.US, true);
+        Object[][] values = {
+                { 12.34, "_-* #,##0.00_-;-* #,##0.00_-;_-* \"-\"??_-;_-@_-" },
+                { 0.0, "_-* #,##0.00_-;-* #,##0.00_-;_-* \"-\"??_-;_-@_-" },
+                { 1234567.0, "0.00E+00" },
+                { 0.000012, "0.00E+00" },
+                { 123456789.0, "000-00-0000" },
+                { 5.25, "# ?/?" },
+                { 41000.5, "yyyy-mm-dd hh:mm" },
+                { 40000.0, "yyyy-mmmmm-d" },
+                { 1.5, "[h]:mm" },
+                { 3.0, "General" },
+                { -1.0, "yyyy-mm-dd" },
+        };
+        StringBuilder sb = new StringBuilder("prefix");
+        for (int pass = 0; pass < 2; pass++) {
+            for (Object[] value : values) {
+                double d = ((Double)value[0]).doubleValue();
+                String fmt = (String)value[1];
+                String expected = dfUS.formatRawCellContents(d, -1, fmt, false);
+                sb.setLength(6);
+                dfUS.formatRawCellContents(d, -1, fmt, false, sb);
+                assertEquals(fmt, "prefix" + expected, sb.toString());
+            }
+        }
+    }
+
+    /**
+     * Whether a format is a date is cached, so must come out
+     *  the same each time
+     */
+    public void testDateFormatCached() {
+        for (int i = 0; i < 2; i++) {
+            assertTrue(DateUtil.isADateFormat(-1, "yyyy-mm-dd"));
+            assertTrue(DateUtil.isADateFormat(-1, "[h]:mm"));
+            assertFalse(DateUtil.isADateFormat(-1, "#,##0.00"));
+            assertTrue(DateUtil.isADateFormat(0x0e, "#,##0.00"));
+            assertFalse(DateUtil.isADateFormat(-1, ""));
+        }
+    }
+
     /**
      * TODO Fix these so that they work
      */
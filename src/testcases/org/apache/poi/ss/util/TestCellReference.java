@@ -210,6 +210,61 @@ public final class TestCellReference extends TestCase {
 	   } catch(IllegalArgumentException e) {}
 	}
 
+	public void testPackedReference() {
+		String[] refs = { "A1", "$A$1", "AB123", "ab123", "$XFD1048576", "A", "$AB", "1", "$17", "ZZZZZZ999999999" };
+		for (String ref : refs) {
+			CellReference expected = new CellReference(ref);
+			long packed = CellReference.parsePackedReference(ref, 0, ref.length());
+			assertEquals(ref, expected.getRow(), CellReference.getPackedRow(packed));
+			assertEquals(ref, expected.getCol(), (short)CellReference.getPackedColumn(packed));
+			assertEquals(packed, CellReference.parsePackedReference(" " + ref + " ", 1, ref.length() + 1));
+			assertEquals(packed, CellReference.parsePackedReference((" " + ref).toCharArray(), 1, ref.length() + 1));
+		}
+		assertEquals(CellReference.packReference(1048575, 16383), CellReference.parsePackedReference("XFD1048576", 0, 10));
+
+		String[] bad = { "", "$", "A$", "1A", "A1B", "A 1", "$$1", "AAAAAAA1", "A1234567890" };
+		for (String ref : bad) {
+			try {
+				CellReference.parsePackedReference(ref, 0, ref.length());
+				fail("Not a cell reference: '" + ref + "'");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testAppendCellReference() {
+		int[][] cells = { {0, 0}, {9, 25}, {99, 26}, {0, 702}, {1048575, 16383}, {-1, 3}, {4, -1}, {Integer.MAX_VALUE - 1, 0} };
+		char[] buf = new char[CellReference.MAX_FORMATTED_LENGTH + 2];
+		StringBuilder sb = new StringBuilder("x");
+		for (int[] cell : cells) {
+			String expected = new CellReference(cell[0], cell[1]).formatAsString();
+			assertEquals(expected, CellReference.formatCellReference(cell[0], cell[1]));
+			int end = CellReference.appendCellReference(buf, 2, cell[0], cell[1]);
+			assertEquals(expected, new String(buf, 2, end - 2));
+			sb.setLength(1);
+			CellReference.appendCellReference(sb, cell[0], cell[1]);
+			assertEquals("x" + expected, sb.toString());
+		}
+		assertEquals("FXSHRXW", CellReference.convertNumToColString(Integer.MAX_VALUE - 1));
+		assertEquals(Integer.MAX_VALUE - 1, CellReference.convertColStringToIndex("FXSHRXW"));
+		assertEquals("", CellReference.convertNumToColString(-1));
+	}
+
+	/**
+	 * The absolute markers of plain references are read as before
+	 */
+	public void testAbsoluteMarkers() {
+		String[] refs = { "A1", "$A1", "A$1", "$A$1", "$1", "A", "$A" };
+		boolean[][] flags = { {false, false}, {true, false}, {false, true}, {true, true},
+				{true, false}, {false, false}, {true, false} };
+		for (int i = 0; i < refs.length; i++) {
+			CellReference ref = new CellReference(refs[i]);
+			assertEquals(refs[i], flags[i][0], ref.isColAbsolute());
+			assertEquals(refs[i], flags[i][1], ref.isRowAbsolute());
+		}
+	}
+
 	private static void confirmCrInRange(boolean expResult, String colStr, String rowStr,
 			SpreadsheetVersion sv) {
 		if (expResult == CellReference.cellReferenceIsWithinRange(colStr, rowStr, sv)) {